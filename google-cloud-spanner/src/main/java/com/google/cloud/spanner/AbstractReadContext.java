@@ -53,6 +53,7 @@ import com.google.spanner.v1.TransactionSelector;
 import io.opencensus.trace.Span;
 import io.opencensus.trace.Tracing;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
@@ -612,6 +613,7 @@ abstract class AbstractReadContext
       Options options,
       ByteString partitionToken) {
     beforeReadOrQuery();
+    final ApiFuture<Void> precedingStatements = getPrecedingStatements();
     final ExecuteSqlRequest.Builder request = getExecuteSqlRequestBuilder(statement, queryMode);
     if (partitionToken != null) {
       request.setPartitionToken(partitionToken);
@@ -622,6 +624,7 @@ abstract class AbstractReadContext
         new ResumableStreamIterator(MAX_BUFFERED_CHUNKS, SpannerImpl.QUERY, span) {
           @Override
           CloseableIterator<PartialResultSet> startStream(@Nullable ByteString resumeToken) {
+            awaitPrecedingStatements(precedingStatements);
             GrpcStreamIterator stream = new GrpcStreamIterator(prefetchChunks);
             if (resumeToken != null) {
               request.setResumeToken(resumeToken);
@@ -646,6 +649,29 @@ abstract class AbstractReadContext
     }
   }
 
+  /**
+   * Returns a future that is done when all statements that must be executed before a read or query
+   * that is started now have finished. The read or query waits for this future when its stream is
+   * started, which for an asynchronous read or query is not on the thread of the caller. The
+   * default implementation returns a future that is already done.
+   */
+  ApiFuture<Void> getPrecedingStatements() {
+    return ApiFutures.immediateFuture(null);
+  }
+
+  static void awaitPrecedingStatements(ApiFuture<Void> precedingStatements) {
+    if (precedingStatements.isDone()) {
+      return;
+    }
+    try {
+      precedingStatements.get();
+    } catch (ExecutionException e) {
+      throw SpannerExceptionFactory.newSpannerException(e.getCause() == null ? e : e.getCause());
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    }
+  }
+
   /** Called as part of {@link #beforeReadOrQuery()} under {@link #lock}. */
   @GuardedBy("lock")
   void beforeReadOrQueryLocked() {
@@ -703,6 +729,7 @@ abstract class AbstractReadContext
       Options readOptions,
       ByteString partitionToken) {
     beforeReadOrQuery();
+    final ApiFuture<Void> precedingStatements = getPrecedingStatements();
     final ReadRequest.Builder builder =
         ReadRequest.newBuilder()
             .setSession(session.getName())
@@ -729,6 +756,7 @@ abstract class AbstractReadContext
         new ResumableStreamIterator(MAX_BUFFERED_CHUNKS, SpannerImpl.READ, span) {
           @Override
           CloseableIterator<PartialResultSet> startStream(@Nullable ByteString resumeToken) {
+            awaitPrecedingStatements(precedingStatements);
             GrpcStreamIterator stream = new GrpcStreamIterator(prefetchChunks);
             if (resumeToken != null) {
               builder.setResumeToken(resumeToken);
@@ -744,7 +772,7 @@ abstract class AbstractReadContext
     return resultSet;
   }
 
-  private Struct consumeSingleRow(ResultSet resultSet) {
+  static Struct consumeSingleRow(ResultSet resultSet) {
     if (!resultSet.next()) {
       return null;
     }
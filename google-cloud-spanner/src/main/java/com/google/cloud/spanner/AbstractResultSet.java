@@ -67,6 +67,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
+import org.threeten.bp.DateTimeException;
 
 /** Implementation of {@link ResultSet}. */
 abstract class AbstractResultSet<R> extends AbstractStructReader implements ResultSet {
@@ -195,9 +196,10 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
         return value;
       }
 
+      // Use a StringBuilder for chunked strings to prevent copying the string for each chunk.
       Object merged =
           kind == KindCase.STRING_VALUE
-              ? value.getStringValue()
+              ? new StringBuilder(value.getStringValue())
               : new ArrayList<com.google.protobuf.Value>(value.getListValue().getValuesList());
       while (current.getChunkedValue() && pos == current.getValuesCount()) {
         if (!ensureReady(StreamValue.RESULT)) {
@@ -214,14 +216,14 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
                   + newValue.getKindCase());
         }
         if (kind == KindCase.STRING_VALUE) {
-          merged = (String) merged + newValue.getStringValue();
+          ((StringBuilder) merged).append(newValue.getStringValue());
         } else {
           concatLists(
               (List<com.google.protobuf.Value>) merged, newValue.getListValue().getValuesList());
         }
       }
       if (kind == KindCase.STRING_VALUE) {
-        return com.google.protobuf.Value.newBuilder().setStringValue((String) merged).build();
+        return com.google.protobuf.Value.newBuilder().setStringValue(merged.toString()).build();
       } else {
         return com.google.protobuf.Value.newBuilder()
             .setListValue(
@@ -346,7 +348,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       for (int i = 0; i < structFields.size(); i++) {
         Type.StructField field = structFields.get(i);
         String fieldName = field.getName();
-        Object value = rowData.get(i);
+        Object value = getValue(i);
         Type fieldType = field.getType();
         switch (fieldType.getCode()) {
           case BOOL:
@@ -424,9 +426,41 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @Override
     public String toString() {
+      for (int i = 0; i < rowData.size(); i++) {
+        getValue(i);
+      }
       return this.rowData.toString();
     }
 
+    /**
+     * Returns the value of the given column. Column values are kept in their wire format when a row
+     * is consumed, and are only decoded into their Java type when they are accessed for the first
+     * time. Columns that are never read are never decoded. Rows that are copied with {@link
+     * #immutableCopy()} are decoded completely when they are copied.
+     *
+     * <p>{@link #consumeRow(Iterator)} verifies the kind of each value, and the complete value of
+     * BOOL and FLOAT64 columns. A value with the correct kind but invalid contents, such as an
+     * INT64 column with a string that is not a number or a TIMESTAMP or DATE column with an invalid
+     * date, is only detected by this method, and is reported as a {@link SpannerException} with
+     * error code {@link ErrorCode#INTERNAL}.
+     */
+    private Object getValue(int columnIndex) {
+      Object value = rowData.get(columnIndex);
+      if (value instanceof com.google.protobuf.Value) {
+        Type.StructField field = type.getStructFields().get(columnIndex);
+        try {
+          value = decodeValue(field.getType(), (com.google.protobuf.Value) value);
+        } catch (IllegalArgumentException | DateTimeException e) {
+          throw newSpannerException(
+              ErrorCode.INTERNAL,
+              "Invalid value for column " + field.getName() + ": " + e.getMessage(),
+              e);
+        }
+        rowData.set(columnIndex, value);
+      }
+      return value;
+    }
+
     boolean consumeRow(Iterator<com.google.protobuf.Value> iterator) {
       rowData.clear();
       if (!iterator.hasNext()) {
@@ -439,11 +473,36 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
               "Invalid value stream: end of stream reached before row is complete");
         }
         com.google.protobuf.Value value = iterator.next();
-        rowData.add(decodeValue(fieldType.getType(), value));
+        if (value.getKindCase() == KindCase.NULL_VALUE) {
+          rowData.add(null);
+        } else {
+          // Only verify the kind of the value here. The value is decoded when it is accessed.
+          checkKind(fieldType.getType(), value);
+          rowData.add(value);
+        }
       }
       return true;
     }
 
+    private static void checkKind(Type fieldType, com.google.protobuf.Value proto) {
+      switch (fieldType.getCode()) {
+        case BOOL:
+          checkType(fieldType, proto, KindCase.BOOL_VALUE);
+          break;
+        case FLOAT64:
+          // FLOAT64 values can be both a number and one of a fixed set of strings. Verifying the
+          // complete value is as cheap as verifying its kind.
+          valueProtoToFloat64(proto);
+          break;
+        case ARRAY:
+        case STRUCT:
+          checkType(fieldType, proto, KindCase.LIST_VALUE);
+          break;
+        default:
+          checkType(fieldType, proto, KindCase.STRING_VALUE);
+      }
+    }
+
     private static Object decodeValue(Type fieldType, com.google.protobuf.Value proto) {
       if (proto.getKindCase() == KindCase.NULL_VALUE) {
         return null;
@@ -591,8 +650,18 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
       }
     }
 
+    /**
+     * Returns a copy of this row that can be shared between threads. All columns of the copy are
+     * decoded, so the copy is never modified when it is accessed. Lazy decoding only applies to the
+     * current row of a result set, which is only accessed by the thread that consumes the result
+     * set.
+     */
     Struct immutableCopy() {
-      return new GrpcStruct(type, new ArrayList<>(rowData));
+      List<Object> values = new ArrayList<>(rowData.size());
+      for (int i = 0; i < rowData.size(); i++) {
+        values.add(getValue(i));
+      }
+      return new GrpcStruct(type, Collections.unmodifiableList(values));
     }
 
     @Override
@@ -607,48 +676,48 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @Override
     protected boolean getBooleanInternal(int columnIndex) {
-      return (Boolean) rowData.get(columnIndex);
+      return (Boolean) getValue(columnIndex);
     }
 
     @Override
     protected long getLongInternal(int columnIndex) {
-      return (Long) rowData.get(columnIndex);
+      return (Long) getValue(columnIndex);
     }
 
     @Override
     protected double getDoubleInternal(int columnIndex) {
-      return (Double) rowData.get(columnIndex);
+      return (Double) getValue(columnIndex);
     }
 
     @Override
     protected String getStringInternal(int columnIndex) {
-      return (String) rowData.get(columnIndex);
+      return (String) getValue(columnIndex);
     }
 
     @Override
     protected ByteArray getBytesInternal(int columnIndex) {
-      return (ByteArray) rowData.get(columnIndex);
+      return (ByteArray) getValue(columnIndex);
     }
 
     @Override
     protected Timestamp getTimestampInternal(int columnIndex) {
-      return (Timestamp) rowData.get(columnIndex);
+      return (Timestamp) getValue(columnIndex);
     }
 
     @Override
     protected Date getDateInternal(int columnIndex) {
-      return (Date) rowData.get(columnIndex);
+      return (Date) getValue(columnIndex);
     }
 
     @Override
     protected Struct getStructInternal(int columnIndex) {
-      return (Struct) rowData.get(columnIndex);
+      return (Struct) getValue(columnIndex);
     }
 
     @Override
     protected boolean[] getBooleanArrayInternal(int columnIndex) {
       @SuppressWarnings("unchecked") // We know ARRAY<BOOL> produces a List<Boolean>.
-      List<Boolean> values = (List<Boolean>) rowData.get(columnIndex);
+      List<Boolean> values = (List<Boolean>) getValue(columnIndex);
       boolean[] r = new boolean[values.size()];
       for (int i = 0; i < values.size(); ++i) {
         if (values.get(i) == null) {
@@ -662,7 +731,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<BOOL> produces a List<Boolean>.
     protected List<Boolean> getBooleanListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<Boolean>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<Boolean>) getValue(columnIndex));
     }
 
     @Override
@@ -672,7 +741,7 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @Override
     protected Int64Array getLongListInternal(int columnIndex) {
-      return (Int64Array) rowData.get(columnIndex);
+      return (Int64Array) getValue(columnIndex);
     }
 
     @Override
@@ -682,37 +751,37 @@ abstract class AbstractResultSet<R> extends AbstractStructReader implements Resu
 
     @Override
     protected Float64Array getDoubleListInternal(int columnIndex) {
-      return (Float64Array) rowData.get(columnIndex);
+      return (Float64Array) getValue(columnIndex);
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<STRING> produces a List<String>.
     protected List<String> getStringListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<String>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<String>) getValue(columnIndex));
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<BYTES> produces a List<ByteArray>.
     protected List<ByteArray> getBytesListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<ByteArray>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<ByteArray>) getValue(columnIndex));
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<TIMESTAMP> produces a List<Timestamp>.
     protected List<Timestamp> getTimestampListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<Timestamp>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<Timestamp>) getValue(columnIndex));
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<DATE> produces a List<Date>.
     protected List<Date> getDateListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<Date>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<Date>) getValue(columnIndex));
     }
 
     @Override
     @SuppressWarnings("unchecked") // We know ARRAY<STRUCT<...>> produces a List<STRUCT>.
     protected List<Struct> getStructListInternal(int columnIndex) {
-      return Collections.unmodifiableList((List<Struct>) rowData.get(columnIndex));
+      return Collections.unmodifiableList((List<Struct>) getValue(columnIndex));
     }
   }
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import io.grpc.CompressorRegistry;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Policy for compressing the requests that are sent to Cloud Spanner. A request is only compressed
+ * if it is sent by one of the methods of the policy and its serialized size is at least the minimum
+ * message size of the policy. Small requests, such as point reads, are sent uncompressed, as
+ * compressing them costs more CPU time than it saves in bandwidth.
+ *
+ * <p>The default policy compresses {@code Commit} and {@code ExecuteBatchDml} requests of at least
+ * 16 KiB with gzip.
+ */
+public final class CompressionPolicy {
+  private static final String DEFAULT_COMPRESSOR_NAME = "gzip";
+  private static final int DEFAULT_MIN_MESSAGE_SIZE = 16 * 1024;
+  private static final ImmutableSet<String> DEFAULT_METHODS =
+      ImmutableSet.of("Commit", "ExecuteBatchDml");
+
+  /** Builder for {@link CompressionPolicy}. */
+  public static final class Builder {
+    private String compressorName = DEFAULT_COMPRESSOR_NAME;
+    private int minMessageSize = DEFAULT_MIN_MESSAGE_SIZE;
+    private ImmutableSet<String> methods = DEFAULT_METHODS;
+
+    private Builder() {}
+
+    /**
+     * Sets the compressor to use for requests that should be compressed. The compressor must be a
+     * valid name known in the {@link CompressorRegistry}. The default is gzip.
+     */
+    public Builder setCompressorName(String compressorName) {
+      Preconditions.checkArgument(
+          CompressorRegistry.getDefaultInstance().lookupCompressor(compressorName) != null,
+          String.format("%s is not a known compressor", compressorName));
+      this.compressorName = compressorName;
+      return this;
+    }
+
+    /**
+     * Sets the minimum serialized size in bytes of a request message to be compressed. The default
+     * is 16 KiB.
+     */
+    public Builder setMinMessageSize(int minMessageSize) {
+      Preconditions.checkArgument(minMessageSize >= 0, "minMessageSize must be >= 0");
+      this.minMessageSize = minMessageSize;
+      return this;
+    }
+
+    /**
+     * Sets the names of the RPC methods whose requests may be compressed, for example {@code
+     * Commit} or {@code ExecuteBatchDml}. If no methods are given, the requests of all methods may
+     * be compressed.
+     */
+    public Builder setMethods(String... methods) {
+      return setMethods(Arrays.asList(methods));
+    }
+
+    /** @see #setMethods(String...) */
+    public Builder setMethods(Iterable<String> methods) {
+      this.methods = ImmutableSet.copyOf(methods);
+      return this;
+    }
+
+    public CompressionPolicy build() {
+      return new CompressionPolicy(this);
+    }
+  }
+
+  private final String compressorName;
+  private final int minMessageSize;
+  private final ImmutableSet<String> methods;
+
+  private CompressionPolicy(Builder builder) {
+    this.compressorName = builder.compressorName;
+    this.minMessageSize = builder.minMessageSize;
+    this.methods = builder.methods;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public String getCompressorName() {
+    return compressorName;
+  }
+
+  public int getMinMessageSize() {
+    return minMessageSize;
+  }
+
+  /** Returns the methods whose requests may be compressed. An empty set means all methods. */
+  public Set<String> getMethods() {
+    return methods;
+  }
+
+  /** Returns true if the requests of the given RPC method may be compressed. */
+  public boolean appliesTo(String methodName) {
+    return methods.isEmpty() || methods.contains(methodName);
+  }
+
+  /** Returns true if a request message of the given RPC method and size should be compressed. */
+  public boolean shouldCompress(String methodName, int messageSize) {
+    return messageSize >= minMessageSize && appliesTo(methodName);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof CompressionPolicy)) {
+      return false;
+    }
+    CompressionPolicy other = (CompressionPolicy) o;
+    return compressorName.equals(other.compressorName)
+        && minMessageSize == other.minMessageSize
+        && methods.equals(other.methods);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(compressorName, minMessageSize, methods);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "CompressionPolicy{compressorName=%s, minMessageSize=%d, methods=%s}",
+        compressorName, minMessageSize, methods);
+  }
+}
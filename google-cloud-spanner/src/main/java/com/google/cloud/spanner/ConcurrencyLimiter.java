@@ -0,0 +1,532 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.cloud.spanner.MetricRegistryConstants.CONCURRENCY_LIMIT;
+import static com.google.cloud.spanner.MetricRegistryConstants.CONCURRENCY_LIMITER_QUEUE_DEPTH;
+import static com.google.cloud.spanner.MetricRegistryConstants.CONCURRENCY_LIMITER_QUEUE_DEPTH_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.CONCURRENCY_LIMIT_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.COUNT;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_CONCURRENCY_LIMITER_TIMEOUTS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_CONCURRENCY_LIMITER_TIMEOUTS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.Options.QueryOption;
+import com.google.cloud.spanner.Options.ReadOption;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Adaptive limit for the number of operations that a {@link DatabaseClient} executes in parallel.
+ * See {@link ConcurrencyLimiterOptions} for a description of how the limit is adjusted.
+ *
+ * <p>The average latency is tracked separately for each {@link Operation}, as for example a
+ * read/write transaction is normally a lot slower than a single-row read, and mixing them would
+ * make every transaction look like a latency spike.
+ *
+ * <p>Permits are re-entrant per thread. An operation that is started by a thread that already holds
+ * a permit, for example a {@code singleUse().readRow(...)} inside a read/write transaction or
+ * inside a loop over the results of a query, does not wait for the limit and is not counted as an
+ * additional operation in flight. Waiting would otherwise deadlock the thread on its own permit
+ * once the limit has been reached. The outcome of a nested operation is still used to adjust the
+ * limit.
+ */
+class ConcurrencyLimiter {
+  /** The types of operations that are limited, each with its own average latency. */
+  enum Operation {
+    READ,
+    QUERY,
+    WRITE,
+    TRANSACTION
+  }
+
+  /** The weight of the most recent operation in the moving average of the latency. */
+  private static final double LATENCY_WEIGHT = 0.1D;
+  /** The number of operations that must have finished before the latency is used as a signal. */
+  @VisibleForTesting static final int MIN_LATENCY_SAMPLES = 10;
+
+  /**
+   * Thrown when an operation has waited longer than the max queue time for a permit. This error is
+   * generated by the client itself and is therefore never used as a signal that the backend is
+   * overloaded, even though it has the same error code as a server-side overload.
+   */
+  static final class QueueTimeoutException extends SpannerException {
+    private static final long serialVersionUID = 1L;
+
+    private QueueTimeoutException(String message) {
+      super(
+          DoNotConstructDirectly.ALLOWED,
+          ErrorCode.RESOURCE_EXHAUSTED,
+          /* retryable */ false,
+          message,
+          null);
+    }
+  }
+
+  /**
+   * Permission to execute one operation. A permit must be released exactly once by calling either
+   * {@link #release(Throwable)} or {@link #cancel()}.
+   */
+  final class Permit {
+    private final Operation operation;
+    private final Thread owner;
+    private final boolean nested;
+    private final long startNanos;
+    private long latencyNanos = -1L;
+    private boolean released;
+
+    private Permit(Operation operation, Thread owner, boolean nested) {
+      this.operation = operation;
+      this.owner = owner;
+      this.nested = nested;
+      this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records that the first response of the operation has been received. The latency of the
+     * operation is the time until the first response, and not the time that the application spends
+     * consuming a stream of results.
+     */
+    void recordResponse() {
+      if (latencyNanos < 0L) {
+        latencyNanos = System.nanoTime() - startNanos;
+      }
+    }
+
+    /** Releases the permit and adjusts the limit based on the latency and the outcome. */
+    void release(@Nullable Throwable error) {
+      if (!released) {
+        released = true;
+        recordResponse();
+        onRelease(this, latencyNanos, error);
+      }
+    }
+
+    /** Releases the permit without adjusting the limit, for example if a query was not consumed. */
+    void cancel() {
+      if (!released) {
+        released = true;
+        onRelease(this, -1L, null);
+      }
+    }
+  }
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+  private final long maxQueueTimeNanos;
+  private final AtomicLong timeouts = new AtomicLong();
+
+  @GuardedBy("this")
+  private double limit;
+
+  @GuardedBy("this")
+  private int inFlight;
+
+  @GuardedBy("this")
+  private int queueDepth;
+
+  /** The number of unreleased permits per thread that holds at least one permit. */
+  @GuardedBy("this")
+  private final Map<Thread, Integer> holders = new HashMap<>();
+
+  @GuardedBy("this")
+  private final double[] averageLatencyNanos = new double[Operation.values().length];
+
+  @GuardedBy("this")
+  private final long[] latencySamples = new long[Operation.values().length];
+
+  ConcurrencyLimiter(ConcurrencyLimiterOptions options) {
+    Preconditions.checkNotNull(options);
+    this.minLimit = options.getMinLimit();
+    this.maxLimit = options.getMaxLimit();
+    this.backoffRatio = options.getBackoffRatio();
+    this.latencyTolerance = options.getLatencyTolerance();
+    this.maxQueueTimeNanos = options.getMaxQueueTime().toNanos();
+    this.limit = options.getInitialLimit();
+  }
+
+  /**
+   * Returns a permit to execute an operation. Waits until the number of operations in flight is
+   * below the current limit, and throws a {@link QueueTimeoutException} with {@link
+   * ErrorCode#RESOURCE_EXHAUSTED} if that takes longer than the max queue time. Returns immediately
+   * if the current thread already holds a permit.
+   */
+  Permit acquire(Operation operation) {
+    Thread thread = Thread.currentThread();
+    boolean nested;
+    synchronized (this) {
+      Integer held = holders.get(thread);
+      nested = held != null;
+      if (!nested && inFlight >= (int) limit) {
+        long deadline = System.nanoTime() + maxQueueTimeNanos;
+        queueDepth++;
+        try {
+          while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) {
+              timeouts.incrementAndGet();
+              throw new QueueTimeoutException(
+                  String.format(
+                      "Timed out after waiting %d ms for the concurrency limit of %d operations "
+                          + "of the database client",
+                      TimeUnit.NANOSECONDS.toMillis(maxQueueTimeNanos), (int) limit));
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+          }
+        } catch (InterruptedException e) {
+          throw SpannerExceptionFactory.propagateInterrupt(e);
+        } finally {
+          queueDepth--;
+        }
+      }
+      if (nested) {
+        holders.put(thread, held + 1);
+      } else {
+        holders.put(thread, 1);
+        inFlight++;
+      }
+    }
+    return new Permit(operation, thread, nested);
+  }
+
+  private synchronized void onRelease(Permit permit, long latencyNanos, @Nullable Throwable error) {
+    Operation operation = permit.operation;
+    boolean limited = inFlight * 2 >= (int) limit;
+    Integer held = holders.get(permit.owner);
+    if (held != null && held > 1) {
+      holders.put(permit.owner, held - 1);
+    } else {
+      holders.remove(permit.owner);
+    }
+    if (!permit.nested) {
+      inFlight--;
+    }
+    if (isOverloaded(error)) {
+      backoff();
+    } else if (error == null && latencyNanos >= 0L) {
+      int index = operation.ordinal();
+      if (latencySamples[index] >= MIN_LATENCY_SAMPLES
+          && latencyNanos > latencyTolerance * averageLatencyNanos[index]) {
+        backoff();
+      } else if (limited) {
+        // Only increase the limit if it is actually being used, otherwise a client with a low load
+        // would grow its limit without ever testing whether the backend can handle it.
+        limit = Math.min(limit + 1.0D, maxLimit);
+      }
+      averageLatencyNanos[index] =
+          latencySamples[index] == 0L
+              ? latencyNanos
+              : averageLatencyNanos[index] * (1.0D - LATENCY_WEIGHT)
+                  + latencyNanos * LATENCY_WEIGHT;
+      latencySamples[index]++;
+    }
+    notifyAll();
+  }
+
+  @GuardedBy("this")
+  private void backoff() {
+    limit = Math.max(limit * backoffRatio, minLimit);
+  }
+
+  /**
+   * Returns true if the error indicates that the backend is overloaded. A queue timeout of this
+   * limiter, also when it was thrown by a nested operation and then propagated by for example a
+   * transaction, is generated locally and does not say anything about the backend.
+   */
+  private static boolean isOverloaded(@Nullable Throwable error) {
+    if (!(error instanceof SpannerException)
+        || ((SpannerException) error).getErrorCode() != ErrorCode.RESOURCE_EXHAUSTED) {
+      return false;
+    }
+    for (Throwable cause : Throwables.getCausalChain(error)) {
+      if (cause instanceof QueueTimeoutException) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the current limit for the number of operations in flight. */
+  synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /** Returns the number of operations that are waiting for the limit. */
+  synchronized int getQueueDepth() {
+    return queueDepth;
+  }
+
+  long getTimeouts() {
+    return timeouts.get();
+  }
+
+  /**
+   * Returns a {@link ReadContext} that acquires a permit for each read or query that it executes.
+   * The permit of a {@link ResultSet} is acquired when the first row is requested, and released
+   * when the result set has been consumed, has failed or has been closed. Async reads and queries
+   * are not limited.
+   */
+  ReadContext wrap(ReadContext context) {
+    return new LimitedReadContext(context);
+  }
+
+  /** Returns a {@link TransactionRunner} that acquires a permit for each call to run. */
+  TransactionRunner wrap(TransactionRunner runner) {
+    return new LimitedTransactionRunner(runner);
+  }
+
+  void register(MetricRegistry metricRegistry, List<LabelValue> labelValues) {
+    DerivedLongGauge limitMetric =
+        metricRegistry.addDerivedLongGauge(
+            CONCURRENCY_LIMIT,
+            MetricOptions.builder()
+                .setDescription(CONCURRENCY_LIMIT_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongGauge queueDepthMetric =
+        metricRegistry.addDerivedLongGauge(
+            CONCURRENCY_LIMITER_QUEUE_DEPTH,
+            MetricOptions.builder()
+                .setDescription(CONCURRENCY_LIMITER_QUEUE_DEPTH_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative timeoutsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_CONCURRENCY_LIMITER_TIMEOUTS,
+            MetricOptions.builder()
+                .setDescription(NUM_CONCURRENCY_LIMITER_TIMEOUTS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+
+    limitMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<ConcurrencyLimiter>() {
+          @Override
+          public long applyAsLong(ConcurrencyLimiter limiter) {
+            return limiter.getLimit();
+          }
+        });
+    queueDepthMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<ConcurrencyLimiter>() {
+          @Override
+          public long applyAsLong(ConcurrencyLimiter limiter) {
+            return limiter.getQueueDepth();
+          }
+        });
+    timeoutsMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<ConcurrencyLimiter>() {
+          @Override
+          public long applyAsLong(ConcurrencyLimiter limiter) {
+            return limiter.getTimeouts();
+          }
+        });
+  }
+
+  /** {@link ResultSet} that holds a permit while the results are being streamed. */
+  private final class LimitedResultSet extends ForwardingResultSet {
+    private final Operation operation;
+    private Permit permit;
+
+    private LimitedResultSet(ResultSet delegate, Operation operation) {
+      super(delegate);
+      this.operation = operation;
+    }
+
+    @Override
+    public boolean next() throws SpannerException {
+      if (permit == null) {
+        permit = acquire(operation);
+      }
+      try {
+        boolean hasNext = super.next();
+        permit.recordResponse();
+        if (!hasNext) {
+          permit.release(null);
+        }
+        return hasNext;
+      } catch (RuntimeException e) {
+        permit.release(e);
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        super.close();
+      } finally {
+        if (permit != null) {
+          permit.cancel();
+        }
+      }
+    }
+  }
+
+  private final class LimitedReadContext implements ReadContext {
+    private final ReadContext delegate;
+
+    private LimitedReadContext(ReadContext delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public ResultSet read(
+        String table, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return new LimitedResultSet(delegate.read(table, keys, columns, options), Operation.QUERY);
+    }
+
+    @Override
+    public AsyncResultSet readAsync(
+        String table, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return delegate.readAsync(table, keys, columns, options);
+    }
+
+    @Override
+    public ResultSet readUsingIndex(
+        String table, String index, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return new LimitedResultSet(
+          delegate.readUsingIndex(table, index, keys, columns, options), Operation.QUERY);
+    }
+
+    @Override
+    public AsyncResultSet readUsingIndexAsync(
+        String table, String index, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return delegate.readUsingIndexAsync(table, index, keys, columns, options);
+    }
+
+    @Override
+    @Nullable
+    public Struct readRow(String table, Key key, Iterable<String> columns) {
+      Permit permit = acquire(Operation.READ);
+      try {
+        Struct row = delegate.readRow(table, key, columns);
+        permit.release(null);
+        return row;
+      } catch (RuntimeException e) {
+        permit.release(e);
+        throw e;
+      }
+    }
+
+    @Override
+    public ApiFuture<Struct> readRowAsync(String table, Key key, Iterable<String> columns) {
+      return delegate.readRowAsync(table, key, columns);
+    }
+
+    @Override
+    @Nullable
+    public Struct readRowUsingIndex(String table, String index, Key key, Iterable<String> columns) {
+      Permit permit = acquire(Operation.READ);
+      try {
+        Struct row = delegate.readRowUsingIndex(table, index, key, columns);
+        permit.release(null);
+        return row;
+      } catch (RuntimeException e) {
+        permit.release(e);
+        throw e;
+      }
+    }
+
+    @Override
+    public ApiFuture<Struct> readRowUsingIndexAsync(
+        String table, String index, Key key, Iterable<String> columns) {
+      return delegate.readRowUsingIndexAsync(table, index, key, columns);
+    }
+
+    @Override
+    public ResultSet executeQuery(Statement statement, QueryOption... options) {
+      return new LimitedResultSet(delegate.executeQuery(statement, options), Operation.QUERY);
+    }
+
+    @Override
+    public AsyncResultSet executeQueryAsync(Statement statement, QueryOption... options) {
+      return delegate.executeQueryAsync(statement, options);
+    }
+
+    @Override
+    public ResultSet analyzeQuery(Statement statement, QueryAnalyzeMode queryMode) {
+      return new LimitedResultSet(delegate.analyzeQuery(statement, queryMode), Operation.QUERY);
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+
+  private final class LimitedTransactionRunner implements TransactionRunner {
+    private final TransactionRunner delegate;
+
+    private LimitedTransactionRunner(TransactionRunner delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public <T> T run(TransactionCallable<T> callable) {
+      Permit permit = acquire(Operation.TRANSACTION);
+      try {
+        T result = delegate.run(callable);
+        permit.release(null);
+        return result;
+      } catch (RuntimeException e) {
+        permit.release(e);
+        throw e;
+      }
+    }
+
+    @Override
+    public Timestamp getCommitTimestamp() {
+      return delegate.getCommitTimestamp();
+    }
+
+    @Override
+    public TransactionRunner allowNestedTransaction() {
+      delegate.allowNestedTransaction();
+      return this;
+    }
+  }
+}
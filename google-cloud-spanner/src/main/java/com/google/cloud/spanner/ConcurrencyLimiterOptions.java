@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
+
+/**
+ * Options for the adaptive concurrency limiter of a {@link DatabaseClient}. The limiter limits the
+ * number of operations that a database client executes in parallel, and adjusts the limit using
+ * additive increase/multiplicative decrease:
+ *
+ * <ul>
+ *   <li>Each operation that succeeds while the limit is being used increases the limit by one, up
+ *       to {@link #getMaxLimit()}.
+ *   <li>Each operation that fails with {@link ErrorCode#RESOURCE_EXHAUSTED} or that takes more than
+ *       {@link #getLatencyTolerance()} times the average latency of the client multiplies the limit
+ *       by {@link #getBackoffRatio()}, down to {@link #getMinLimit()}.
+ * </ul>
+ *
+ * Operations that are started while the limit has been reached wait until another operation
+ * finishes. An operation that has waited for {@link #getMaxQueueTime()} fails with {@link
+ * ErrorCode#RESOURCE_EXHAUSTED}. This timeout is generated by the client and does not lower the
+ * limit. An operation that is started by a thread that is already executing an operation, such as a
+ * read inside a read/write transaction, does not wait for the limit.
+ */
+public final class ConcurrencyLimiterOptions {
+  private static final int DEFAULT_INITIAL_LIMIT = 20;
+  private static final int DEFAULT_MIN_LIMIT = 1;
+  private static final int DEFAULT_MAX_LIMIT = 400;
+  private static final double DEFAULT_BACKOFF_RATIO = 0.9D;
+  private static final double DEFAULT_LATENCY_TOLERANCE = 2.0D;
+  private static final Duration DEFAULT_MAX_QUEUE_TIME = Duration.ofSeconds(10L);
+
+  /** Builder for {@link ConcurrencyLimiterOptions}. */
+  public static final class Builder {
+    private int initialLimit = DEFAULT_INITIAL_LIMIT;
+    private int minLimit = DEFAULT_MIN_LIMIT;
+    private int maxLimit = DEFAULT_MAX_LIMIT;
+    private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+    private double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+    private Duration maxQueueTime = DEFAULT_MAX_QUEUE_TIME;
+
+    private Builder() {}
+
+    /** Sets the limit that is used before any operation has finished. The default is 20. */
+    public Builder setInitialLimit(int initialLimit) {
+      Preconditions.checkArgument(initialLimit > 0, "initialLimit must be > 0");
+      this.initialLimit = initialLimit;
+      return this;
+    }
+
+    /** Sets the lowest limit that the limiter will back off to. The default is 1. */
+    public Builder setMinLimit(int minLimit) {
+      Preconditions.checkArgument(minLimit > 0, "minLimit must be > 0");
+      this.minLimit = minLimit;
+      return this;
+    }
+
+    /** Sets the highest limit that the limiter will grow to. The default is 400. */
+    public Builder setMaxLimit(int maxLimit) {
+      Preconditions.checkArgument(maxLimit > 0, "maxLimit must be > 0");
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    /**
+     * Sets the factor that the limit is multiplied by when an operation fails with {@link
+     * ErrorCode#RESOURCE_EXHAUSTED} or is slow. Must be in the range [0.5, 1). The default is 0.9.
+     */
+    public Builder setBackoffRatio(double backoffRatio) {
+      Preconditions.checkArgument(
+          backoffRatio >= 0.5D && backoffRatio < 1.0D,
+          "backoffRatio must be in the range [0.5, 1)");
+      this.backoffRatio = backoffRatio;
+      return this;
+    }
+
+    /**
+     * Sets how many times slower than the average latency of the client an operation may be before
+     * it is considered a sign of overload. Must be greater than 1. The default is 2.
+     */
+    public Builder setLatencyTolerance(double latencyTolerance) {
+      Preconditions.checkArgument(latencyTolerance > 1.0D, "latencyTolerance must be > 1");
+      this.latencyTolerance = latencyTolerance;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time that an operation will wait for the concurrency limit before it fails
+     * with {@link ErrorCode#RESOURCE_EXHAUSTED}. The default is 10 seconds.
+     */
+    public Builder setMaxQueueTime(Duration maxQueueTime) {
+      Preconditions.checkNotNull(maxQueueTime);
+      Preconditions.checkArgument(!maxQueueTime.isNegative(), "maxQueueTime must be >= 0");
+      this.maxQueueTime = maxQueueTime;
+      return this;
+    }
+
+    public ConcurrencyLimiterOptions build() {
+      Preconditions.checkState(minLimit <= maxLimit, "minLimit must be <= maxLimit");
+      Preconditions.checkState(
+          initialLimit >= minLimit && initialLimit <= maxLimit,
+          "initialLimit must be in the range [minLimit, maxLimit]");
+      return new ConcurrencyLimiterOptions(this);
+    }
+  }
+
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+  private final Duration maxQueueTime;
+
+  private ConcurrencyLimiterOptions(Builder builder) {
+    this.initialLimit = builder.initialLimit;
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.backoffRatio = builder.backoffRatio;
+    this.latencyTolerance = builder.latencyTolerance;
+    this.maxQueueTime = builder.maxQueueTime;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public int getInitialLimit() {
+    return initialLimit;
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  public double getBackoffRatio() {
+    return backoffRatio;
+  }
+
+  public double getLatencyTolerance() {
+    return latencyTolerance;
+  }
+
+  public Duration getMaxQueueTime() {
+    return maxQueueTime;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof ConcurrencyLimiterOptions)) {
+      return false;
+    }
+    ConcurrencyLimiterOptions other = (ConcurrencyLimiterOptions) o;
+    return initialLimit == other.initialLimit
+        && minLimit == other.minLimit
+        && maxLimit == other.maxLimit
+        && backoffRatio == other.backoffRatio
+        && latencyTolerance == other.latencyTolerance
+        && Objects.equal(maxQueueTime, other.maxQueueTime);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(
+        initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance, maxQueueTime);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "ConcurrencyLimiterOptions{initialLimit=%d, minLimit=%d, maxLimit=%d, backoffRatio=%s, "
+            + "latencyTolerance=%s, maxQueueTime=%s}",
+        initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance, maxQueueTime);
+  }
+}
@@ -16,7 +16,9 @@
 
 package com.google.cloud.spanner;
 
+import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
+import java.util.List;
 
 /**
  * Interface for all the APIs that are used to read/write data into a Cloud Spanner database. An
@@ -447,4 +449,49 @@ public interface DatabaseClient {
    * idempotent, such as deleting old rows from a very large table.
    */
   long executePartitionedUpdate(Statement stmt);
+
+  /**
+   * Same as {@link #executePartitionedUpdate(Statement)}, but is guaranteed to be non-blocking. The
+   * statement is executed on a separate thread, and the returned {@link ApiFuture} is done when the
+   * statement has finished. The future returns the lower bound of rows modified by the statement.
+   */
+  ApiFuture<Long> executePartitionedUpdateAsync(Statement stmt);
+
+  /**
+   * Executes the given Partitioned DML statements concurrently, each on a separate session from the
+   * session pool. At most {@code maxConcurrency} statements are executed at the same time; the next
+   * statement is started as soon as one of the running statements has finished. The statements are
+   * executed on background threads, and the number of threads that are used is bounded by {@code
+   * maxConcurrency}. The method does not block.
+   *
+   * <p>The returned list contains one {@link ApiFuture} per statement, in the same order as the
+   * given statements. The failure of one statement does not stop the execution of the other
+   * statements. See {@link #executePartitionedUpdate(Statement)} for the semantics of a single
+   * Partitioned DML statement.
+   *
+   * <p>A {@link Session} can only execute one transaction at a time, and executes the statements
+   * one after the other regardless of {@code maxConcurrency}.
+   *
+   * <p>Example of executing a number of maintenance statements with at most 4 running at the same
+   * time.
+   *
+   * <pre>{@code
+   * List<ApiFuture<Long>> updateCounts =
+   *     dbClient.executePartitionedUpdatesAsync(
+   *         Arrays.asList(
+   *             Statement.of("DELETE FROM Singers WHERE LastUpdated < '2010-01-01'"),
+   *             Statement.of("DELETE FROM Albums WHERE LastUpdated < '2010-01-01'")),
+   *         4);
+   * long total = 0L;
+   * for (long count : ApiFutures.allAsList(updateCounts).get()) {
+   *   total += count;
+   * }
+   * }</pre>
+   *
+   * @param statements the Partitioned DML statements to execute
+   * @param maxConcurrency the maximum number of statements to execute at the same time. Must be
+   *     greater than zero.
+   */
+  List<ApiFuture<Long>> executePartitionedUpdatesAsync(
+      Iterable<Statement> statements, int maxConcurrency);
 }
@@ -16,16 +16,23 @@
 
 package com.google.cloud.spanner;
 
+import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.SessionPool.PooledSessionFuture;
 import com.google.cloud.spanner.SpannerImpl.ClosedException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.opencensus.common.Scope;
 import io.opencensus.trace.Span;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 
 class DatabaseClientImpl implements DatabaseClient {
   private static final String READ_WRITE_TRANSACTION = "CloudSpanner.ReadWriteTransaction";
@@ -41,14 +48,43 @@ class DatabaseClientImpl implements DatabaseClient {
   @VisibleForTesting final String clientId;
   @VisibleForTesting final SessionPool pool;
 
+  @VisibleForTesting
+  final PartitionedDmlMetrics partitionedDmlMetrics = new PartitionedDmlMetrics();
+
+  @Nullable private final ReadHedger readHedger;
+  @VisibleForTesting @Nullable final ReadCoalescer readCoalescer;
+  @Nullable final RetryBudget retryBudget;
+  @VisibleForTesting @Nullable final ConcurrencyLimiter concurrencyLimiter;
+
+  @GuardedBy("this")
+  private boolean closed;
+
   @VisibleForTesting
   DatabaseClientImpl(SessionPool pool) {
     this("", pool);
   }
 
   DatabaseClientImpl(String clientId, SessionPool pool) {
+    this(clientId, pool, null, false, null, null);
+  }
+
+  DatabaseClientImpl(
+      String clientId,
+      SessionPool pool,
+      @Nullable HedgingOptions hedgingOptions,
+      boolean coalesceStaleReads,
+      @Nullable RetryBudgetOptions retryBudgetOptions,
+      @Nullable ConcurrencyLimiterOptions concurrencyLimiterOptions) {
     this.clientId = clientId;
     this.pool = pool;
+    this.readHedger = hedgingOptions == null ? null : new ReadHedger(hedgingOptions);
+    this.readCoalescer = coalesceStaleReads ? new ReadCoalescer() : null;
+    this.retryBudget = retryBudgetOptions == null ? null : new RetryBudget(retryBudgetOptions);
+    this.concurrencyLimiter =
+        concurrencyLimiterOptions == null
+            ? null
+            : new ConcurrencyLimiter(concurrencyLimiterOptions);
+    this.pool.setDatabaseClientResources(retryBudget, partitionedDmlMetrics);
   }
 
   @VisibleForTesting
@@ -65,7 +101,7 @@ class DatabaseClientImpl implements DatabaseClient {
   public Timestamp write(final Iterable<Mutation> mutations) throws SpannerException {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return runWithSessionRetry(
+      return runWithConcurrencyLimit(
           SessionMode.READ_WRITE,
           new Function<Session, Timestamp>() {
             @Override
@@ -85,7 +121,7 @@ class DatabaseClientImpl implements DatabaseClient {
   public Timestamp writeAtLeastOnce(final Iterable<Mutation> mutations) throws SpannerException {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return runWithSessionRetry(
+      return runWithConcurrencyLimit(
           SessionMode.READ_WRITE,
           new Function<Session, Timestamp>() {
             @Override
@@ -105,7 +141,19 @@ class DatabaseClientImpl implements DatabaseClient {
   public ReadContext singleUse() {
     Span span = tracer.spanBuilder(READ_ONLY_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return getReadSession().singleUse();
+      ReadContext context = getReadSession().singleUse();
+      if (readHedger != null) {
+        context =
+            readHedger.wrap(
+                context,
+                new ReadHedger.ReadContextFactory() {
+                  @Override
+                  public ReadContext create() {
+                    return getReadSession().singleUse();
+                  }
+                });
+      }
+      return limitConcurrency(context);
     } catch (RuntimeException e) {
       TraceUtil.endSpanWithFailure(span, e);
       throw e;
@@ -113,16 +161,42 @@ class DatabaseClientImpl implements DatabaseClient {
   }
 
   @Override
-  public ReadContext singleUse(TimestampBound bound) {
+  public ReadContext singleUse(final TimestampBound bound) {
     Span span = tracer.spanBuilder(READ_ONLY_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return getReadSession().singleUse(bound);
+      if (readCoalescer != null && ReadCoalescer.isCoalescable(bound)) {
+        return limitConcurrency(
+            readCoalescer.wrap(
+                bound,
+                new ReadHedger.ReadContextFactory() {
+                  @Override
+                  public ReadContext create() {
+                    return createSingleUse(bound);
+                  }
+                }));
+      }
+      return limitConcurrency(createSingleUse(bound));
     } catch (RuntimeException e) {
       TraceUtil.endSpanWithFailure(span, e);
       throw e;
     }
   }
 
+  private ReadContext createSingleUse(final TimestampBound bound) {
+    ReadContext context = getReadSession().singleUse(bound);
+    if (readHedger != null) {
+      return readHedger.wrap(
+          context,
+          new ReadHedger.ReadContextFactory() {
+            @Override
+            public ReadContext create() {
+              return getReadSession().singleUse(bound);
+            }
+          });
+    }
+    return context;
+  }
+
   @Override
   public ReadOnlyTransaction singleUseReadOnlyTransaction() {
     Span span = tracer.spanBuilder(READ_ONLY_TRANSACTION).startSpan();
@@ -171,7 +245,8 @@ class DatabaseClientImpl implements DatabaseClient {
   public TransactionRunner readWriteTransaction() {
     Span span = tracer.spanBuilder(READ_WRITE_TRANSACTION).startSpan();
     try (Scope s = tracer.withSpan(span)) {
-      return getReadWriteSession().readWriteTransaction();
+      TransactionRunner runner = getReadWriteSession().readWriteTransaction();
+      return concurrencyLimiter == null ? runner : concurrencyLimiter.wrap(runner);
     } catch (RuntimeException e) {
       TraceUtil.setWithFailure(span, e);
       throw e;
@@ -216,6 +291,8 @@ class DatabaseClientImpl implements DatabaseClient {
   @Override
   public long executePartitionedUpdate(final Statement stmt) {
     Span span = tracer.spanBuilder(PARTITION_DML_TRANSACTION).startSpan();
+    Stopwatch watch = Stopwatch.createStarted();
+    partitionedDmlMetrics.statementStarted();
     try (Scope s = tracer.withSpan(span)) {
       // A partitioned update transaction does not need a prepared write session, as the transaction
       // object will start a new transaction with specific options anyway.
@@ -230,6 +307,53 @@ class DatabaseClientImpl implements DatabaseClient {
     } catch (RuntimeException e) {
       TraceUtil.endSpanWithFailure(span, e);
       throw e;
+    } finally {
+      partitionedDmlMetrics.statementFinished(watch.elapsed(TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Override
+  public ApiFuture<Long> executePartitionedUpdateAsync(Statement stmt) {
+    return executePartitionedUpdatesAsync(ImmutableList.of(stmt), 1).get(0);
+  }
+
+  @Override
+  public List<ApiFuture<Long>> executePartitionedUpdatesAsync(
+      Iterable<Statement> statements, int maxConcurrency) {
+    synchronized (this) {
+      if (closed) {
+        throw SpannerExceptionFactory.newSpannerException(
+            ErrorCode.FAILED_PRECONDITION, "Database client has been closed");
+      }
+    }
+    return PartitionedUpdateRunner.run(
+        statements,
+        maxConcurrency,
+        new Function<Statement, Long>() {
+          @Override
+          public Long apply(Statement statement) {
+            return executePartitionedUpdate(statement);
+          }
+        });
+  }
+
+  private ReadContext limitConcurrency(ReadContext context) {
+    return concurrencyLimiter == null ? context : concurrencyLimiter.wrap(context);
+  }
+
+  private <T> T runWithConcurrencyLimit(SessionMode mode, Function<Session, T> callable) {
+    if (concurrencyLimiter == null) {
+      return runWithSessionRetry(mode, callable);
+    }
+    ConcurrencyLimiter.Permit permit =
+        concurrencyLimiter.acquire(ConcurrencyLimiter.Operation.WRITE);
+    try {
+      T result = runWithSessionRetry(mode, callable);
+      permit.release(null);
+      return result;
+    } catch (RuntimeException e) {
+      permit.release(e);
+      throw e;
     }
   }
 
@@ -249,6 +373,12 @@ class DatabaseClientImpl implements DatabaseClient {
   }
 
   ListenableFuture<Void> closeAsync(ClosedException closedException) {
+    synchronized (this) {
+      closed = true;
+      if (readHedger != null) {
+        readHedger.shutdown();
+      }
+    }
     return pool.closeAsync(closedException);
   }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import javax.annotation.Nullable;
+import org.threeten.bp.Duration;
+
+/**
+ * Options for hedging single-row reads in single-use read-only transactions. When hedging is
+ * enabled, a {@link ReadContext#readRow(String, Key, Iterable)} or {@link
+ * ReadContext#readRowUsingIndex(String, String, Key, Iterable)} call on a {@link
+ * DatabaseClient#singleUse()} read context that has not returned within the hedging delay is sent a
+ * second time on a different session. The first response is returned and the other request is
+ * cancelled. The number of additional requests is limited by a hedge budget.
+ *
+ * <p>Hedging is only applied to single-row reads, as these return a single response and are
+ * idempotent. Reads and queries that return a {@link ResultSet} are never hedged.
+ */
+public final class HedgingOptions {
+  private static final double DEFAULT_DELAY_PERCENTILE = 95.0D;
+  private static final double DEFAULT_MAX_HEDGE_RATIO = 0.05D;
+
+  /** Builder for {@link HedgingOptions}. */
+  public static final class Builder {
+    private Duration delay;
+    private double delayPercentile = DEFAULT_DELAY_PERCENTILE;
+    private double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+    private Builder() {}
+
+    /**
+     * Sets a fixed delay after which a hedged request is sent. If no fixed delay is set, the delay
+     * is the {@link #setDelayPercentile(double)} percentile of the recently observed latencies of
+     * single-row reads.
+     */
+    public Builder setDelay(Duration delay) {
+      Preconditions.checkNotNull(delay);
+      Preconditions.checkArgument(!delay.isNegative(), "delay must not be negative");
+      this.delay = delay;
+      return this;
+    }
+
+    /**
+     * Sets the percentile of the recently observed latencies that is used as the hedging delay if
+     * no fixed delay has been set. Must be in the range (0, 100). The default is 95.
+     */
+    public Builder setDelayPercentile(double delayPercentile) {
+      Preconditions.checkArgument(
+          delayPercentile > 0.0D && delayPercentile < 100.0D,
+          "delayPercentile must be in the range (0, 100)");
+      this.delayPercentile = delayPercentile;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of hedged requests as a fraction of the number of single-row reads.
+     * The default is 0.05, which means that at most one extra request is sent for every 20 reads.
+     */
+    public Builder setMaxHedgeRatio(double maxHedgeRatio) {
+      Preconditions.checkArgument(
+          maxHedgeRatio > 0.0D && maxHedgeRatio <= 1.0D,
+          "maxHedgeRatio must be in the range (0, 1]");
+      this.maxHedgeRatio = maxHedgeRatio;
+      return this;
+    }
+
+    public HedgingOptions build() {
+      return new HedgingOptions(this);
+    }
+  }
+
+  private final Duration delay;
+  private final double delayPercentile;
+  private final double maxHedgeRatio;
+
+  private HedgingOptions(Builder builder) {
+    this.delay = builder.delay;
+    this.delayPercentile = builder.delayPercentile;
+    this.maxHedgeRatio = builder.maxHedgeRatio;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Returns the fixed hedging delay, or <code>null</code> if the delay is based on latency. */
+  @Nullable
+  public Duration getDelay() {
+    return delay;
+  }
+
+  public double getDelayPercentile() {
+    return delayPercentile;
+  }
+
+  public double getMaxHedgeRatio() {
+    return maxHedgeRatio;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof HedgingOptions)) {
+      return false;
+    }
+    HedgingOptions other = (HedgingOptions) o;
+    return Objects.equal(delay, other.delay)
+        && delayPercentile == other.delayPercentile
+        && maxHedgeRatio == other.maxHedgeRatio;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(delay, delayPercentile, maxHedgeRatio);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "HedgingOptions{delay=%s, delayPercentile=%s, maxHedgeRatio=%s}",
+        delay, delayPercentile, maxHedgeRatio);
+  }
+}
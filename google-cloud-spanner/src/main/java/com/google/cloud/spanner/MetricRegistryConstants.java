@@ -52,6 +52,9 @@ class MetricRegistryConstants {
   /** Unit to represent counts. */
   static final String COUNT = "1";
 
+  /** Unit to represent milliseconds. */
+  static final String MILLISECOND = "ms";
+
   // The Metric name and description
   static final String MAX_IN_USE_SESSIONS = "cloud.google.com/java/spanner/max_in_use_sessions";
   static final String MAX_ALLOWED_SESSIONS = "cloud.google.com/java/spanner/max_allowed_sessions";
@@ -59,6 +62,27 @@ class MetricRegistryConstants {
   static final String NUM_ACQUIRED_SESSIONS = "cloud.google.com/java/spanner/num_acquired_sessions";
   static final String NUM_RELEASED_SESSIONS = "cloud.google.com/java/spanner/num_released_sessions";
   static final String NUM_SESSIONS_IN_POOL = "cloud.google.com/java/spanner/num_sessions_in_pool";
+  static final String NUM_ACTIVE_PARTITIONED_DML_STATEMENTS =
+      "cloud.google.com/java/spanner/num_active_partitioned_dml_statements";
+  static final String NUM_PARTITIONED_DML_STATEMENTS =
+      "cloud.google.com/java/spanner/num_partitioned_dml_statements";
+  static final String NUM_PARTITIONED_DML_RESUME_TOKENS =
+      "cloud.google.com/java/spanner/num_partitioned_dml_resume_tokens";
+  static final String PARTITIONED_DML_ELAPSED_TIME =
+      "cloud.google.com/java/spanner/partitioned_dml_elapsed_time";
+  static final String NUM_SHARED_READS = "cloud.google.com/java/spanner/num_shared_reads";
+  static final String NUM_COALESCED_READS = "cloud.google.com/java/spanner/num_coalesced_reads";
+  static final String NUM_ABORTED_TRANSACTION_ATTEMPTS =
+      "cloud.google.com/java/spanner/num_aborted_transaction_attempts";
+  static final String NUM_TRANSACTION_RETRIES =
+      "cloud.google.com/java/spanner/num_transaction_retries";
+  static final String NUM_RETRY_BUDGET_EXHAUSTED =
+      "cloud.google.com/java/spanner/num_retry_budget_exhausted";
+  static final String CONCURRENCY_LIMIT = "cloud.google.com/java/spanner/concurrency_limit";
+  static final String CONCURRENCY_LIMITER_QUEUE_DEPTH =
+      "cloud.google.com/java/spanner/concurrency_limiter_queue_depth";
+  static final String NUM_CONCURRENCY_LIMITER_TIMEOUTS =
+      "cloud.google.com/java/spanner/num_concurrency_limiter_timeouts";
 
   static final String MAX_IN_USE_SESSIONS_DESCRIPTION =
       "The maximum number of sessions in use during the last 10 minute interval.";
@@ -71,4 +95,28 @@ class MetricRegistryConstants {
   static final String NUM_RELEASED_SESSIONS_DESCRIPTION =
       "The number of sessions released by the user and pool maintainer.";
   static final String NUM_SESSIONS_IN_POOL_DESCRIPTION = "The number of sessions in the pool.";
+  static final String NUM_ACTIVE_PARTITIONED_DML_STATEMENTS_DESCRIPTION =
+      "The number of Partitioned DML statements that are currently executing.";
+  static final String NUM_PARTITIONED_DML_STATEMENTS_DESCRIPTION =
+      "The number of Partitioned DML statements that have finished executing.";
+  static final String NUM_PARTITIONED_DML_RESUME_TOKENS_DESCRIPTION =
+      "The number of resume tokens received from Partitioned DML streams.";
+  static final String PARTITIONED_DML_ELAPSED_TIME_DESCRIPTION =
+      "The total time spent executing Partitioned DML statements.";
+  static final String NUM_SHARED_READS_DESCRIPTION =
+      "The number of stale single-row reads that were executed with coalescing enabled.";
+  static final String NUM_COALESCED_READS_DESCRIPTION =
+      "The number of stale single-row reads that received the result of an identical read in flight.";
+  static final String NUM_ABORTED_TRANSACTION_ATTEMPTS_DESCRIPTION =
+      "The number of read/write transaction attempts that were aborted.";
+  static final String NUM_TRANSACTION_RETRIES_DESCRIPTION =
+      "The number of aborted read/write transactions that were retried.";
+  static final String NUM_RETRY_BUDGET_EXHAUSTED_DESCRIPTION =
+      "The number of aborted read/write transactions that were not retried, because the retry budget was exhausted.";
+  static final String CONCURRENCY_LIMIT_DESCRIPTION =
+      "The current limit for the number of operations that the database client executes in parallel.";
+  static final String CONCURRENCY_LIMITER_QUEUE_DEPTH_DESCRIPTION =
+      "The number of operations that are waiting for the concurrency limit of the database client.";
+  static final String NUM_CONCURRENCY_LIMITER_TIMEOUTS_DESCRIPTION =
+      "The number of operations that timed out while waiting for the concurrency limit.";
 }
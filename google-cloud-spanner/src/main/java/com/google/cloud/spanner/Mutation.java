@@ -16,13 +16,23 @@
 
 package com.google.cloud.spanner;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
 import com.google.common.collect.ImmutableList;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.ListValue;
+import com.google.protobuf.NullValue;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -92,6 +102,9 @@ public final class Mutation implements Serializable {
   private final ImmutableList<String> columns;
   private final ImmutableList<Value> values;
   private final KeySet keySet;
+  // For compact mutations: the rows encoded as repeated 'values' fields of a Mutation.Write proto.
+  private final byte[] encodedRows;
+  private final int rowCount;
 
   private Mutation(
       String table,
@@ -99,11 +112,24 @@ public final class Mutation implements Serializable {
       @Nullable ImmutableList<String> columns,
       @Nullable ImmutableList<Value> values,
       @Nullable KeySet keySet) {
+    this(table, operation, columns, values, keySet, null, 0);
+  }
+
+  private Mutation(
+      String table,
+      Op operation,
+      @Nullable ImmutableList<String> columns,
+      @Nullable ImmutableList<Value> values,
+      @Nullable KeySet keySet,
+      @Nullable byte[] encodedRows,
+      int rowCount) {
     this.table = table;
     this.operation = operation;
     this.columns = columns;
     this.values = values;
     this.keySet = keySet;
+    this.encodedRows = encodedRows;
+    this.rowCount = rowCount;
   }
 
   /**
@@ -138,6 +164,43 @@ public final class Mutation implements Serializable {
     return new WriteBuilder(table, Op.REPLACE);
   }
 
+  /**
+   * Returns a builder that can be used to construct a compact {@link Op#INSERT} mutation containing
+   * any number of rows for the given {@code columns} of {@code table}. See {@link
+   * CompactWriteBuilder} for more information.
+   */
+  public static CompactWriteBuilder newCompactInsertBuilder(String table, String... columns) {
+    return new CompactWriteBuilder(table, Op.INSERT, columns);
+  }
+
+  /**
+   * Returns a builder that can be used to construct a compact {@link Op#UPDATE} mutation containing
+   * any number of rows for the given {@code columns} of {@code table}. See {@link
+   * CompactWriteBuilder} for more information.
+   */
+  public static CompactWriteBuilder newCompactUpdateBuilder(String table, String... columns) {
+    return new CompactWriteBuilder(table, Op.UPDATE, columns);
+  }
+
+  /**
+   * Returns a builder that can be used to construct a compact {@link Op#INSERT_OR_UPDATE} mutation
+   * containing any number of rows for the given {@code columns} of {@code table}. See {@link
+   * CompactWriteBuilder} for more information.
+   */
+  public static CompactWriteBuilder newCompactInsertOrUpdateBuilder(
+      String table, String... columns) {
+    return new CompactWriteBuilder(table, Op.INSERT_OR_UPDATE, columns);
+  }
+
+  /**
+   * Returns a builder that can be used to construct a compact {@link Op#REPLACE} mutation
+   * containing any number of rows for the given {@code columns} of {@code table}. See {@link
+   * CompactWriteBuilder} for more information.
+   */
+  public static CompactWriteBuilder newCompactReplaceBuilder(String table, String... columns) {
+    return new CompactWriteBuilder(table, Op.REPLACE, columns);
+  }
+
   /**
    * Returns a mutation that will delete the row with primary key {@code key}. Exactly equivalent to
    * {@code delete(table, KeySet.singleKey(key))}.
@@ -225,6 +288,325 @@ public final class Mutation implements Serializable {
     }
   }
 
+  /**
+   * Builder for compact {@link Op#INSERT}, {@link Op#INSERT_OR_UPDATE}, {@link Op#UPDATE}, and
+   * {@link Op#REPLACE} mutations. A compact mutation contains any number of rows for a fixed set of
+   * columns. The cell values of each row are encoded directly into a growable byte array in the
+   * wire format of the commit request, which means that a buffered row uses approximately as much
+   * memory as its encoded size, instead of one {@link Value} object per cell. The rows are only
+   * decoded into protobuf values when the commit request is built. This makes compact mutations
+   * suitable for bulk loading large numbers of rows:
+   *
+   * <pre>{@code
+   * Mutation.CompactWriteBuilder builder =
+   *     Mutation.newCompactInsertBuilder("Singers", "SingerId", "FirstName", "LastName");
+   * for (Singer singer : singers) {
+   *   builder
+   *       .set("SingerId").to(singer.getId())
+   *       .set("FirstName").to(singer.getFirstName())
+   *       .set("LastName").to(singer.getLastName())
+   *       .endRow();
+   * }
+   * dbClient.write(Collections.singleton(builder.build()));
+   * }</pre>
+   *
+   * <p>The values of a row may be set in any order, but each row must contain a value for each
+   * column of the builder. The values of a compact mutation cannot be retrieved with {@link
+   * Mutation#getValues()}.
+   */
+  public static class CompactWriteBuilder {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int WRITE_VALUES_TAG =
+        (com.google.spanner.v1.Mutation.Write.VALUES_FIELD_NUMBER << 3) | 2;
+    private static final int LIST_VALUE_VALUES_TAG = (ListValue.VALUES_FIELD_NUMBER << 3) | 2;
+
+    private final String table;
+    private final Op operation;
+    private final ImmutableList<String> columns;
+    private final Map<String, Integer> columnIndices;
+    private final ValueBinder<CompactWriteBuilder> binder;
+    // The encoded rows of the mutation that is being built.
+    private byte[] rows = new byte[INITIAL_CAPACITY];
+    private int rowsSize;
+    private int rowCount;
+    // The encoded cells of the row that is currently being built.
+    private byte[] cells = new byte[INITIAL_CAPACITY];
+    private int cellsSize;
+    private final int[] cellOffsets;
+    private final int[] cellLengths;
+    private int currentColumn = -1;
+
+    private CompactWriteBuilder(String table, Op operation, String... columns) {
+      this.table = checkNotNull(table);
+      this.operation = operation;
+      this.columns = ImmutableList.copyOf(columns);
+      this.columnIndices = new HashMap<>(columns.length);
+      for (int i = 0; i < columns.length; i++) {
+        checkArgument(
+            columnIndices.put(columns[i].toLowerCase(), i) == null,
+            "Duplicate column: %s",
+            columns[i]);
+      }
+      this.cellOffsets = new int[columns.length];
+      this.cellLengths = new int[columns.length];
+      Arrays.fill(cellLengths, -1);
+      // Scalar values are encoded directly into the cell buffer without creating a Value for each
+      // cell. Arrays and structs are encoded through their Value representation.
+      class BinderImpl extends ValueBinder<CompactWriteBuilder> {
+        @Override
+        CompactWriteBuilder handle(Value value) {
+          com.google.protobuf.Value proto = value.toProto();
+          CodedOutputStream output = startCell(proto.getSerializedSize());
+          try {
+            proto.writeTo(output);
+          } catch (IOException e) {
+            throw new AssertionError(e);
+          }
+          return endCell(output);
+        }
+
+        @Override
+        public CompactWriteBuilder to(boolean value) {
+          CodedOutputStream output =
+              startCell(
+                  CodedOutputStream.computeBoolSize(
+                      com.google.protobuf.Value.BOOL_VALUE_FIELD_NUMBER, value));
+          try {
+            output.writeBool(com.google.protobuf.Value.BOOL_VALUE_FIELD_NUMBER, value);
+          } catch (IOException e) {
+            throw new AssertionError(e);
+          }
+          return endCell(output);
+        }
+
+        @Override
+        public CompactWriteBuilder to(@Nullable Boolean value) {
+          return value == null ? toNull() : to(value.booleanValue());
+        }
+
+        @Override
+        public CompactWriteBuilder to(long value) {
+          return toStringValue(Long.toString(value));
+        }
+
+        @Override
+        public CompactWriteBuilder to(@Nullable Long value) {
+          return value == null ? toNull() : to(value.longValue());
+        }
+
+        @Override
+        public CompactWriteBuilder to(double value) {
+          CodedOutputStream output =
+              startCell(
+                  CodedOutputStream.computeDoubleSize(
+                      com.google.protobuf.Value.NUMBER_VALUE_FIELD_NUMBER, value));
+          try {
+            output.writeDouble(com.google.protobuf.Value.NUMBER_VALUE_FIELD_NUMBER, value);
+          } catch (IOException e) {
+            throw new AssertionError(e);
+          }
+          return endCell(output);
+        }
+
+        @Override
+        public CompactWriteBuilder to(@Nullable Double value) {
+          return value == null ? toNull() : to(value.doubleValue());
+        }
+
+        @Override
+        public CompactWriteBuilder to(@Nullable String value) {
+          return value == null ? toNull() : toStringValue(value);
+        }
+
+        @Override
+        public CompactWriteBuilder to(@Nullable ByteArray value) {
+          return value == null ? toNull() : toStringValue(value.toBase64());
+        }
+
+        @Override
+        public CompactWriteBuilder to(@Nullable Timestamp value) {
+          if (value == null) {
+            return toNull();
+          }
+          // The commit timestamp placeholder is encoded by Value.
+          return value == Value.COMMIT_TIMESTAMP
+              ? handle(Value.timestamp(value))
+              : toStringValue(value.toString());
+        }
+
+        @Override
+        public CompactWriteBuilder to(@Nullable Date value) {
+          return value == null ? toNull() : toStringValue(value.toString());
+        }
+
+        private CompactWriteBuilder toNull() {
+          CodedOutputStream output =
+              startCell(
+                  CodedOutputStream.computeEnumSize(
+                      com.google.protobuf.Value.NULL_VALUE_FIELD_NUMBER,
+                      NullValue.NULL_VALUE_VALUE));
+          try {
+            output.writeEnum(
+                com.google.protobuf.Value.NULL_VALUE_FIELD_NUMBER, NullValue.NULL_VALUE_VALUE);
+          } catch (IOException e) {
+            throw new AssertionError(e);
+          }
+          return endCell(output);
+        }
+
+        private CompactWriteBuilder toStringValue(String value) {
+          CodedOutputStream output =
+              startCell(
+                  CodedOutputStream.computeStringSize(
+                      com.google.protobuf.Value.STRING_VALUE_FIELD_NUMBER, value));
+          try {
+            output.writeString(com.google.protobuf.Value.STRING_VALUE_FIELD_NUMBER, value);
+          } catch (IOException e) {
+            throw new AssertionError(e);
+          }
+          return endCell(output);
+        }
+      }
+      this.binder = new BinderImpl();
+    }
+
+    /**
+     * Returns a binder to set the value of {@code columnName} for the row that is currently being
+     * built.
+     *
+     * @throws IllegalArgumentException if {@code columnName} is not one of the columns of this
+     *     builder
+     * @throws IllegalStateException if a value has already been set for the column in the current
+     *     row. Detection of duplicates does not consider case.
+     */
+    public ValueBinder<CompactWriteBuilder> set(String columnName) {
+      checkBindingNotInProgress();
+      Integer index = columnIndices.get(checkNotNull(columnName).toLowerCase());
+      checkArgument(index != null, "Unknown column: %s", columnName);
+      if (cellLengths[index] >= 0) {
+        throw new IllegalStateException("Duplicate column: " + columnName);
+      }
+      currentColumn = index;
+      return binder;
+    }
+
+    /**
+     * Ends the row that is currently being built and appends it to the mutation.
+     *
+     * @throws IllegalStateException if the row does not contain a value for each column of this
+     *     builder
+     */
+    public CompactWriteBuilder endRow() {
+      checkBindingNotInProgress();
+      int rowSize = 0;
+      for (int i = 0; i < cellLengths.length; i++) {
+        if (cellLengths[i] < 0) {
+          throw new IllegalStateException("Missing value for column " + columns.get(i));
+        }
+        rowSize +=
+            CodedOutputStream.computeUInt32SizeNoTag(LIST_VALUE_VALUES_TAG)
+                + CodedOutputStream.computeUInt32SizeNoTag(cellLengths[i])
+                + cellLengths[i];
+      }
+      rows =
+          ensureCapacity(
+              rows,
+              rowsSize
+                  + CodedOutputStream.computeUInt32SizeNoTag(WRITE_VALUES_TAG)
+                  + CodedOutputStream.computeUInt32SizeNoTag(rowSize)
+                  + rowSize);
+      rowsSize = writeVarint(WRITE_VALUES_TAG, rows, rowsSize);
+      rowsSize = writeVarint(rowSize, rows, rowsSize);
+      for (int i = 0; i < cellLengths.length; i++) {
+        rowsSize = writeVarint(LIST_VALUE_VALUES_TAG, rows, rowsSize);
+        rowsSize = writeVarint(cellLengths[i], rows, rowsSize);
+        System.arraycopy(cells, cellOffsets[i], rows, rowsSize, cellLengths[i]);
+        rowsSize += cellLengths[i];
+      }
+      rowCount++;
+      cellsSize = 0;
+      Arrays.fill(cellLengths, -1);
+      return this;
+    }
+
+    /** Returns the number of rows that have been added to this builder since the last build. */
+    public int getRowCount() {
+      return rowCount;
+    }
+
+    /**
+     * Returns the number of bytes that are currently used by the encoded rows of this builder. This
+     * can be used to limit the size of a single commit request.
+     */
+    public int getEncodedSize() {
+      return rowsSize;
+    }
+
+    /**
+     * Returns a newly created {@code Mutation} containing all rows that have been added to this
+     * builder, and resets the builder so it can be used to build the next mutation for the same
+     * table and columns.
+     *
+     * @throws IllegalStateException if a row is still being built
+     */
+    public Mutation build() {
+      checkBindingNotInProgress();
+      for (int i = 0; i < cellLengths.length; i++) {
+        if (cellLengths[i] >= 0) {
+          throw new IllegalStateException("Incomplete row, call endRow() before build()");
+        }
+      }
+      Mutation mutation =
+          new Mutation(
+              table, operation, columns, null, null, Arrays.copyOf(rows, rowsSize), rowCount);
+      rowsSize = 0;
+      rowCount = 0;
+      return mutation;
+    }
+
+    /**
+     * Reserves {@code size} bytes in the cell buffer for the value of the column that is currently
+     * being bound, and returns a stream that writes the value into the reserved bytes.
+     */
+    private CodedOutputStream startCell(int size) {
+      checkState(currentColumn >= 0, "No binding currently active");
+      cells = ensureCapacity(cells, cellsSize + size);
+      cellOffsets[currentColumn] = cellsSize;
+      cellLengths[currentColumn] = size;
+      return CodedOutputStream.newInstance(cells, cellsSize, size);
+    }
+
+    private CompactWriteBuilder endCell(CodedOutputStream output) {
+      output.checkNoSpaceLeft();
+      cellsSize += cellLengths[currentColumn];
+      currentColumn = -1;
+      return this;
+    }
+
+    private void checkBindingNotInProgress() {
+      if (currentColumn >= 0) {
+        throw new IllegalStateException(
+            "Incomplete binding for column " + columns.get(currentColumn));
+      }
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int minCapacity) {
+      if (minCapacity <= buffer.length) {
+        return buffer;
+      }
+      return Arrays.copyOf(buffer, Math.max(minCapacity, buffer.length << 1));
+    }
+
+    private static int writeVarint(int value, byte[] buffer, int position) {
+      while ((value & ~0x7F) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+      return position;
+    }
+  }
+
   /** Returns the name of the table that this mutation will affect. */
   public String getTable() {
     return table;
@@ -250,10 +632,12 @@ public final class Mutation implements Serializable {
    * number of elements returned is always the same as the number returned by {@link #getColumns()},
    * and the {@code i}th value corresponds to the {@code i}th column.
    *
-   * @throws IllegalStateException if {@code operation() == Op.DELETE}
+   * @throws IllegalStateException if {@code operation() == Op.DELETE} or if this is a compact
+   *     mutation
    */
   public Iterable<Value> getValues() {
     checkState(operation != Op.DELETE, "values() cannot be called for a DELETE mutation");
+    checkState(encodedRows == null, "values() cannot be called for a compact mutation");
     return values;
   }
 
@@ -262,11 +646,13 @@ public final class Mutation implements Serializable {
    * mainly intended as a convenience for testing; direct access via {@link #getColumns()} and
    * {@link #getValues()} is more efficient.
    *
-   * @throws IllegalStateException if {@code operation() == Op.DELETE}, or if any duplicate columns
-   *     are present. Detection of duplicates does not consider case.
+   * @throws IllegalStateException if {@code operation() == Op.DELETE}, if this is a compact
+   *     mutation, or if any duplicate columns are present. Detection of duplicates does not
+   *     consider case.
    */
   public Map<String, Value> asMap() {
     checkState(operation != Op.DELETE, "asMap() cannot be called for a DELETE mutation");
+    checkState(encodedRows == null, "asMap() cannot be called for a compact mutation");
     LinkedHashMap<String, Value> map = new LinkedHashMap<>();
     for (int i = 0; i < columns.size(); ++i) {
       Value existing = map.put(columns.get(i), values.get(i));
@@ -274,6 +660,25 @@ public final class Mutation implements Serializable {
     return Collections.unmodifiableMap(map);
   }
 
+  /**
+   * Returns true if this mutation was created by a {@link CompactWriteBuilder}. The values of a
+   * compact mutation are only available in encoded form.
+   */
+  public boolean isCompact() {
+    return encodedRows != null;
+  }
+
+  /**
+   * For compact mutations, returns the number of rows in the mutation. Returns 1 for all other
+   * write mutations.
+   *
+   * @throws IllegalStateException if {@code operation() == Op.DELETE}
+   */
+  public int getRowCount() {
+    checkState(operation != Op.DELETE, "rowCount() cannot be called for a DELETE mutation");
+    return encodedRows == null ? 1 : rowCount;
+  }
+
   /**
    * For {@link Op#DELETE} mutations, returns the key set that defines the rows to be deleted.
    *
@@ -311,7 +716,16 @@ public final class Mutation implements Serializable {
       default:
         throw new AssertionError("Unhandled Op: " + operation);
     }
-    if (isWrite) {
+    if (isWrite && encodedRows != null) {
+      b.append(opName).append('(').append(table).append('{');
+      for (int i = 0; i < columns.size(); ++i) {
+        if (i > 0) {
+          b.append(',');
+        }
+        b.append(columns.get(i));
+      }
+      b.append("}[").append(rowCount).append(" rows])");
+    } else if (isWrite) {
       b.append(opName).append('(').append(table).append('{');
       for (int i = 0; i < columns.size(); ++i) {
         if (i > 0) {
@@ -350,12 +764,13 @@ public final class Mutation implements Serializable {
         && Objects.equals(table, that.table)
         && Objects.equals(columns, that.columns)
         && Objects.equals(values, that.values)
-        && Objects.equals(keySet, that.keySet);
+        && Objects.equals(keySet, that.keySet)
+        && Arrays.equals(encodedRows, that.encodedRows);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(operation, table, columns, values, keySet);
+    return Objects.hash(operation, table, columns, values, keySet, Arrays.hashCode(encodedRows));
   }
 
   static void toProto(Iterable<Mutation> mutations, List<com.google.spanner.v1.Mutation> out) {
@@ -381,16 +796,12 @@ public final class Mutation implements Serializable {
         }
         write = null;
       } else {
-        ListValue.Builder values = ListValue.newBuilder();
-        for (Value value : mutation.getValues()) {
-          values.addValues(value.toProto());
-        }
         if (last != null
             && mutation.operation == last.operation
             && mutation.table.equals(last.table)
             && mutation.columns.equals(last.columns)) {
           // Same as previous mutation: coalesce values to reduce request size.
-          write.addValues(values);
+          addValues(mutation, write);
         } else {
           if (proto != null) {
             out.add(proto.build());
@@ -412,7 +823,8 @@ public final class Mutation implements Serializable {
             default:
               throw new AssertionError("Impossible: " + mutation.operation);
           }
-          write.setTable(mutation.table).addAllColumns(mutation.columns).addValues(values);
+          write.setTable(mutation.table).addAllColumns(mutation.columns);
+          addValues(mutation, write);
         }
         keySet = null;
       }
@@ -423,4 +835,27 @@ public final class Mutation implements Serializable {
       out.add(proto.build());
     }
   }
+
+  /**
+   * Adds the values of the given mutation to the given write. The encoded rows of a compact
+   * mutation are repeated 'values' fields of a {@link com.google.spanner.v1.Mutation.Write}, and
+   * are merged into the write by the protobuf parser. The rows are therefore only decoded into
+   * {@link ListValue}s while the commit request is built.
+   */
+  private static void addValues(
+      Mutation mutation, com.google.spanner.v1.Mutation.Write.Builder write) {
+    if (mutation.encodedRows == null) {
+      ListValue.Builder values = write.addValuesBuilder();
+      for (Value value : mutation.values) {
+        values.addValues(value.toProto());
+      }
+    } else {
+      try {
+        write.mergeFrom(mutation.encodedRows);
+      } catch (InvalidProtocolBufferException e) {
+        throw SpannerExceptionFactory.newSpannerException(
+            ErrorCode.INTERNAL, "Invalid encoded rows in compact mutation", e);
+      }
+    }
+  }
 }
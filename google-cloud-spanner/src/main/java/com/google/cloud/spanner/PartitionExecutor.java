@@ -0,0 +1,544 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes all {@link Partition}s of a {@link BatchReadOnlyTransaction} in parallel.
+ *
+ * <p>The results can be delivered in three different ways:
+ *
+ * <ul>
+ *   <li>{@link #execute(List, PartitionConsumerFactory)}: Each partition gets its own {@link
+ *       PartitionConsumer} that receives the rows of that partition in order on the thread that
+ *       executes the partition.
+ *   <li>{@link #executeMerged(List)}: The rows of all partitions are merged into one {@link
+ *       RowStream} that is consumed by the caller. The rows of different partitions are interleaved
+ *       in the order in which they were received.
+ *   <li>{@link #executeUnordered(List, RowCallback)}: Same as {@link #executeMerged(List)}, but the
+ *       rows are pushed to a {@link RowCallback} on the calling thread.
+ * </ul>
+ *
+ * <p>The merged and unordered modes buffer at most {@link Builder#setMaxBufferedRows(int)} rows
+ * that have been received from Cloud Spanner but not yet consumed. Partitions that produce rows
+ * faster than they are consumed are blocked until there is room in the buffer again.
+ *
+ * <p>A partition that fails with a retryable error before it has delivered any rows is retried up
+ * to {@link Builder#setMaxAttemptsPerPartition(int)} times. Any other error cancels the execution
+ * of the remaining partitions and is propagated to the caller.
+ *
+ * <p>Example of exporting a table using 8 parallel streams:
+ *
+ * <pre>{@code
+ * BatchReadOnlyTransaction txn = batchClient.batchReadOnlyTransaction(TimestampBound.strong());
+ * List<Partition> partitions =
+ *     txn.partitionQuery(PartitionOptions.getDefaultInstance(), Statement.of("SELECT * FROM T"));
+ * PartitionExecutor executor =
+ *     PartitionExecutor.newBuilder(txn).setParallelism(8).setMaxBufferedRows(10000).build();
+ * try (RowStream rows = executor.executeMerged(partitions)) {
+ *   while (rows.next()) {
+ *     export(rows.getCurrentRow());
+ *   }
+ * }
+ * }</pre>
+ */
+public final class PartitionExecutor {
+  private static final Logger logger = Logger.getLogger(PartitionExecutor.class.getName());
+  private static final long BUFFER_POLL_INTERVAL_MILLIS = 10L;
+
+  /** Receives the rows of a single partition. */
+  public interface PartitionConsumer {
+    /**
+     * Called for each row in the partition. The rows of one partition are delivered sequentially on
+     * the thread that executes the partition.
+     */
+    void onRow(Struct row);
+
+    /** Called when all rows of the partition have been delivered. */
+    void onComplete(PartitionStats stats);
+  }
+
+  /** Creates a {@link PartitionConsumer} for each partition that is executed. */
+  public interface PartitionConsumerFactory {
+    PartitionConsumer create(Partition partition);
+  }
+
+  /** Receives the rows of all partitions in the order in which they are received. */
+  public interface RowCallback {
+    void onRow(Partition partition, Struct row);
+  }
+
+  /**
+   * A stream of the rows of multiple partitions. Rows are returned in the order in which they were
+   * received from Cloud Spanner. A {@link RowStream} must be closed if it is not consumed entirely.
+   */
+  public interface RowStream extends AutoCloseable {
+    /**
+     * Advances the stream to the next row. Returns <code>false</code> when all partitions have been
+     * executed and all rows have been returned.
+     */
+    boolean next() throws SpannerException;
+
+    /** Returns the current row of the stream. */
+    Struct getCurrentRow();
+
+    /** Returns the partition that the current row belongs to. */
+    Partition getCurrentPartition();
+
+    /**
+     * Returns the statistics of the partitions that have finished, in the order of the partitions
+     * that were passed in. All partitions have finished once {@link #next()} has returned <code>
+     * false</code>.
+     */
+    List<PartitionStats> getStats();
+
+    /** Cancels the execution of any partitions that have not yet finished. */
+    @Override
+    void close();
+  }
+
+  /** Execution statistics of a single partition. */
+  public static final class PartitionStats {
+    private final Partition partition;
+    private final long rowCount;
+    private final int attempts;
+    private final long elapsedMillis;
+
+    private PartitionStats(Partition partition, long rowCount, int attempts, long elapsedMillis) {
+      this.partition = partition;
+      this.rowCount = rowCount;
+      this.attempts = attempts;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public Partition getPartition() {
+      return partition;
+    }
+
+    /** The number of rows returned by the partition. */
+    public long getRowCount() {
+      return rowCount;
+    }
+
+    /** The number of times the partition was executed, including the successful attempt. */
+    public int getAttempts() {
+      return attempts;
+    }
+
+    /** The total time it took to execute the partition, including any retries. */
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    /** The throughput of the partition in rows per second. */
+    public double getRowsPerSecond() {
+      return rowCount * 1000d / Math.max(1L, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("rowCount", rowCount)
+          .add("attempts", attempts)
+          .add("elapsedMillis", elapsedMillis)
+          .toString();
+    }
+  }
+
+  /** Builder for {@link PartitionExecutor}. */
+  public static final class Builder {
+    private final BatchReadOnlyTransaction transaction;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxBufferedRows = 1000;
+    private int maxAttemptsPerPartition = 3;
+
+    private Builder(BatchReadOnlyTransaction transaction) {
+      this.transaction = Preconditions.checkNotNull(transaction);
+    }
+
+    /**
+     * Sets the maximum number of partitions that are executed at the same time. Defaults to the
+     * number of available processors.
+     */
+    public Builder setParallelism(int parallelism) {
+      Preconditions.checkArgument(parallelism > 0, "parallelism must be greater than zero");
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of rows that may be buffered by {@link #executeMerged(List)} and
+     * {@link #executeUnordered(List, RowCallback)} before the execution of the partitions is
+     * paused. Defaults to 1000.
+     */
+    public Builder setMaxBufferedRows(int maxBufferedRows) {
+      Preconditions.checkArgument(maxBufferedRows > 0, "maxBufferedRows must be greater than zero");
+      this.maxBufferedRows = maxBufferedRows;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of times a partition is executed if it fails with a retryable error
+     * before it has returned any rows. Defaults to 3.
+     */
+    public Builder setMaxAttemptsPerPartition(int maxAttemptsPerPartition) {
+      Preconditions.checkArgument(
+          maxAttemptsPerPartition > 0, "maxAttemptsPerPartition must be greater than zero");
+      this.maxAttemptsPerPartition = maxAttemptsPerPartition;
+      return this;
+    }
+
+    public PartitionExecutor build() {
+      return new PartitionExecutor(this);
+    }
+  }
+
+  /** Returns a builder for a {@link PartitionExecutor} for the given transaction. */
+  public static Builder newBuilder(BatchReadOnlyTransaction transaction) {
+    return new Builder(transaction);
+  }
+
+  private final BatchReadOnlyTransaction transaction;
+  private final int parallelism;
+  private final int maxBufferedRows;
+  private final int maxAttemptsPerPartition;
+
+  private PartitionExecutor(Builder builder) {
+    this.transaction = builder.transaction;
+    this.parallelism = builder.parallelism;
+    this.maxBufferedRows = builder.maxBufferedRows;
+    this.maxAttemptsPerPartition = builder.maxAttemptsPerPartition;
+  }
+
+  /**
+   * Executes the given partitions in parallel and delivers the rows of each partition to a separate
+   * {@link PartitionConsumer}. The method blocks until all partitions have been executed. If a
+   * partition fails, the execution of the other partitions is cancelled and the error is thrown.
+   *
+   * @return the statistics of each partition, in the same order as the given partitions
+   */
+  public List<PartitionStats> execute(
+      List<Partition> partitions, final PartitionConsumerFactory consumerFactory) {
+    Preconditions.checkNotNull(consumerFactory);
+    final Execution execution = new Execution(partitions);
+    // Wait for the partitions in the order in which they finish, so that a failure of any partition
+    // cancels the others immediately instead of only after all preceding partitions have finished.
+    CompletionService<Void> completionService = new ExecutorCompletionService<>(execution.executor);
+    for (int i = 0; i < partitions.size(); i++) {
+      final int index = i;
+      completionService.submit(
+          new Runnable() {
+            @Override
+            public void run() {
+              execution.executePartition(
+                  index, consumerFactory.create(execution.partitions.get(index)));
+            }
+          },
+          null);
+    }
+    execution.executor.shutdown();
+    try {
+      for (int i = 0; i < partitions.size(); i++) {
+        completionService.take().get();
+      }
+    } catch (ExecutionException e) {
+      execution.cancel();
+      throw asSpannerException(e.getCause());
+    } catch (InterruptedException e) {
+      execution.cancel();
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    }
+    return execution.getStats();
+  }
+
+  /**
+   * Executes the given partitions in parallel and delivers the rows of all partitions to the given
+   * {@link RowCallback} on the calling thread. The method blocks until all partitions have been
+   * executed.
+   *
+   * @return the statistics of each partition, in the same order as the given partitions
+   */
+  public List<PartitionStats> executeUnordered(List<Partition> partitions, RowCallback callback) {
+    Preconditions.checkNotNull(callback);
+    try (RowStream stream = executeMerged(partitions)) {
+      while (stream.next()) {
+        callback.onRow(stream.getCurrentPartition(), stream.getCurrentRow());
+      }
+      return stream.getStats();
+    }
+  }
+
+  /**
+   * Starts the execution of the given partitions in parallel and returns a {@link RowStream} that
+   * returns the rows of all partitions. The method does not block.
+   */
+  public RowStream executeMerged(List<Partition> partitions) {
+    final MergedRowStream stream = new MergedRowStream(new Execution(partitions));
+    for (int i = 0; i < partitions.size(); i++) {
+      final int index = i;
+      stream.execution.executor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              stream.executePartition(index);
+            }
+          });
+    }
+    stream.execution.executor.shutdown();
+    return stream;
+  }
+
+  /** The state of one invocation of one of the execute methods. */
+  private final class Execution {
+    private final List<Partition> partitions;
+    private final PartitionStats[] stats;
+    private final ExecutorService executor;
+    private volatile boolean cancelled;
+
+    private Execution(List<Partition> partitions) {
+      this.partitions = ImmutableList.copyOf(partitions);
+      this.stats = new PartitionStats[this.partitions.size()];
+      this.executor =
+          Executors.newFixedThreadPool(
+              Math.max(1, Math.min(parallelism, this.partitions.size())),
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("partition-executor-%d")
+                  .build());
+    }
+
+    private void executePartition(int index, PartitionConsumer consumer) {
+      Partition partition = partitions.get(index);
+      Stopwatch watch = Stopwatch.createStarted();
+      long rows = 0L;
+      int attempts = 0;
+      while (true) {
+        attempts++;
+        try (ResultSet resultSet = transaction.execute(partition)) {
+          while (resultSet.next()) {
+            checkCancelled();
+            consumer.onRow(resultSet.getCurrentRowAsStruct());
+            rows++;
+          }
+          break;
+        } catch (SpannerException e) {
+          // The partition cannot be retried once rows have been delivered to the consumer, as
+          // that would deliver those rows twice.
+          if (cancelled || rows > 0L || attempts >= maxAttemptsPerPartition || !e.isRetryable()) {
+            throw e;
+          }
+          logger.log(Level.FINE, "Retrying partition after retryable error", e);
+          backoff(e.getRetryDelayInMillis());
+        }
+      }
+      PartitionStats result =
+          new PartitionStats(partition, rows, attempts, watch.elapsed(TimeUnit.MILLISECONDS));
+      synchronized (stats) {
+        stats[index] = result;
+      }
+      consumer.onComplete(result);
+    }
+
+    private void backoff(long delayMillis) {
+      if (delayMillis > 0L) {
+        try {
+          Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+          throw SpannerExceptionFactory.propagateInterrupt(e);
+        }
+      }
+    }
+
+    private void checkCancelled() {
+      if (cancelled) {
+        throw SpannerExceptionFactory.newSpannerException(
+            ErrorCode.CANCELLED, "Partition execution was cancelled");
+      }
+    }
+
+    private void cancel() {
+      cancelled = true;
+      executor.shutdownNow();
+    }
+
+    private List<PartitionStats> getStats() {
+      ImmutableList.Builder<PartitionStats> builder = ImmutableList.builder();
+      synchronized (stats) {
+        for (PartitionStats partitionStats : stats) {
+          if (partitionStats != null) {
+            builder.add(partitionStats);
+          }
+        }
+      }
+      return builder.build();
+    }
+  }
+
+  /** An element in the buffer of a {@link MergedRowStream}. */
+  private static final class BufferedRow {
+    private static final BufferedRow END_OF_STREAM = new BufferedRow(null, null, null);
+
+    private final Partition partition;
+    private final Struct row;
+    private final SpannerException error;
+
+    private BufferedRow(Partition partition, Struct row, SpannerException error) {
+      this.partition = partition;
+      this.row = row;
+      this.error = error;
+    }
+  }
+
+  private final class MergedRowStream implements RowStream {
+    private final Execution execution;
+    private final BlockingQueue<BufferedRow> buffer;
+    private final AtomicInteger remainingPartitions;
+    private BufferedRow current;
+    private boolean done;
+
+    private MergedRowStream(Execution execution) {
+      this.execution = execution;
+      // The buffer holds one extra element for the end-of-stream or error marker.
+      this.buffer = new LinkedBlockingQueue<>(maxBufferedRows + 1);
+      this.remainingPartitions = new AtomicInteger(execution.partitions.size());
+      if (execution.partitions.isEmpty()) {
+        buffer.add(BufferedRow.END_OF_STREAM);
+      }
+    }
+
+    private void executePartition(int index) {
+      final Partition partition = execution.partitions.get(index);
+      try {
+        execution.executePartition(
+            index,
+            new PartitionConsumer() {
+              @Override
+              public void onRow(Struct row) {
+                put(new BufferedRow(partition, row, null));
+              }
+
+              @Override
+              public void onComplete(PartitionStats stats) {}
+            });
+        if (remainingPartitions.decrementAndGet() == 0) {
+          put(BufferedRow.END_OF_STREAM);
+        }
+      } catch (Throwable t) {
+        if (!execution.cancelled) {
+          execution.cancelled = true;
+          // Make room for the error by discarding buffered rows. This also unblocks the other
+          // partitions, which will stop at their next row as the execution has been cancelled.
+          BufferedRow error = new BufferedRow(null, null, asSpannerException(t));
+          while (!buffer.offer(error)) {
+            buffer.poll();
+          }
+        }
+      }
+    }
+
+    private void put(BufferedRow row) {
+      try {
+        while (!buffer.offer(row, BUFFER_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+          execution.checkCancelled();
+        }
+      } catch (InterruptedException e) {
+        throw SpannerExceptionFactory.propagateInterrupt(e);
+      }
+    }
+
+    @Override
+    public boolean next() throws SpannerException {
+      if (done) {
+        return false;
+      }
+      try {
+        current = buffer.take();
+      } catch (InterruptedException e) {
+        close();
+        throw SpannerExceptionFactory.propagateInterrupt(e);
+      }
+      if (current.error != null) {
+        done = true;
+        close();
+        throw current.error;
+      }
+      if (current == BufferedRow.END_OF_STREAM) {
+        done = true;
+        current = null;
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public Struct getCurrentRow() {
+      Preconditions.checkState(current != null, "next() call required");
+      return current.row;
+    }
+
+    @Override
+    public Partition getCurrentPartition() {
+      Preconditions.checkState(current != null, "next() call required");
+      return current.partition;
+    }
+
+    @Override
+    public List<PartitionStats> getStats() {
+      return execution.getStats();
+    }
+
+    @Override
+    public void close() {
+      done = true;
+      execution.cancel();
+      buffer.clear();
+    }
+  }
+
+  private static SpannerException asSpannerException(Throwable t) {
+    if (t instanceof SpannerException) {
+      return (SpannerException) t;
+    }
+    return SpannerExceptionFactory.newSpannerException(t);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("parallelism", parallelism)
+        .add("maxBufferedRows", maxBufferedRows)
+        .add("maxAttemptsPerPartition", maxAttemptsPerPartition)
+        .toString();
+  }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.cloud.spanner.PartitionExecutor.PartitionConsumer;
+import com.google.cloud.spanner.PartitionExecutor.PartitionConsumerFactory;
+import com.google.cloud.spanner.PartitionExecutor.PartitionStats;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * An append-only local journal of the partitions of a {@link BatchReadOnlyTransaction} that have
+ * been completed. A journal allows a partitioned export that was interrupted to be resumed with
+ * only the unfinished partitions, as long as the read timestamp of the transaction is still within
+ * the version retention period of the database.
+ *
+ * <p>The journal file starts with a header that contains the {@link BatchTransactionId}, the number
+ * of partitions and all {@link Partition}s of the run, followed by one record per completed
+ * partition. Completion records are buffered and written to disk with a single fsync per {@link
+ * #setMaxUnsyncedRecords(int)} records, or when {@link #sync()} or {@link #close()} is called. A
+ * crash can therefore lose the last unsynced records, which means that those partitions will be
+ * executed again when the run is resumed.
+ *
+ * <p>Example of a resumable export:
+ *
+ * <pre>{@code
+ * PartitionJournal journal;
+ * BatchReadOnlyTransaction txn;
+ * if (journalFile.exists()) {
+ *   journal = PartitionJournal.open(journalFile);
+ *   txn = batchClient.batchReadOnlyTransaction(journal.getBatchTransactionId());
+ * } else {
+ *   txn = batchClient.batchReadOnlyTransaction(TimestampBound.strong());
+ *   List<Partition> partitions =
+ *       txn.partitionQuery(PartitionOptions.getDefaultInstance(), Statement.of("SELECT * FROM T"));
+ *   journal = PartitionJournal.create(journalFile, txn.getBatchTransactionId(), partitions);
+ * }
+ * try {
+ *   PartitionExecutor.newBuilder(txn)
+ *       .build()
+ *       .execute(journal.getUnfinishedPartitions(), journal.journaled(exportConsumerFactory));
+ * } finally {
+ *   journal.close();
+ * }
+ * }</pre>
+ */
+public final class PartitionJournal implements AutoCloseable {
+  private static final int DEFAULT_MAX_UNSYNCED_RECORDS = 32;
+  private static final String TRANSACTION_RECORD = "T";
+  private static final String PARTITION_RECORD = "P";
+  private static final String COMPLETED_RECORD = "C";
+  private static final String SEPARATOR = " ";
+
+  private final File file;
+  private final BatchTransactionId batchTransactionId;
+  private final List<Partition> partitions;
+
+  @GuardedBy("this")
+  private final Map<Integer, Long> completedRowCounts;
+
+  @GuardedBy("this")
+  private final FileOutputStream output;
+
+  @GuardedBy("this")
+  private final Writer writer;
+
+  @GuardedBy("this")
+  private int maxUnsyncedRecords = DEFAULT_MAX_UNSYNCED_RECORDS;
+
+  @GuardedBy("this")
+  private int unsyncedRecords;
+
+  @GuardedBy("this")
+  private boolean closed;
+
+  private PartitionJournal(
+      File file,
+      BatchTransactionId batchTransactionId,
+      List<Partition> partitions,
+      Map<Integer, Long> completedRowCounts)
+      throws IOException {
+    this.file = file;
+    this.batchTransactionId = batchTransactionId;
+    this.partitions = partitions;
+    this.completedRowCounts = completedRowCounts;
+    this.output = new FileOutputStream(file, true);
+    this.writer = new BufferedWriter(new OutputStreamWriter(output, Charsets.UTF_8));
+  }
+
+  /**
+   * Creates a new journal file for the given transaction and partitions. The file must not exist.
+   * The header of the journal is synced to disk before this method returns.
+   */
+  public static PartitionJournal create(
+      File file, BatchTransactionId batchTransactionId, List<Partition> partitions)
+      throws IOException {
+    Preconditions.checkNotNull(file);
+    Preconditions.checkNotNull(batchTransactionId);
+    Preconditions.checkNotNull(partitions);
+    if (!file.createNewFile()) {
+      throw new IOException("Journal file " + file + " already exists");
+    }
+    PartitionJournal journal =
+        new PartitionJournal(
+            file,
+            batchTransactionId,
+            ImmutableList.copyOf(partitions),
+            new HashMap<Integer, Long>());
+    synchronized (journal) {
+      journal.writeRecord(
+          TRANSACTION_RECORD,
+          serialize(batchTransactionId),
+          String.valueOf(journal.partitions.size()));
+      for (Partition partition : journal.partitions) {
+        journal.writeRecord(PARTITION_RECORD, serialize(partition));
+      }
+      journal.sync();
+    }
+    return journal;
+  }
+
+  /**
+   * Opens an existing journal file. New completion records are appended to the file. A completion
+   * record that was only partially written at the end of the file is removed from the file. An
+   * {@link IOException} is thrown if the header of the journal with the transaction id and the
+   * partitions is incomplete or invalid.
+   */
+  public static PartitionJournal open(File file) throws IOException {
+    Preconditions.checkNotNull(file);
+    BatchTransactionId batchTransactionId = null;
+    int partitionCount = -1;
+    List<Partition> partitions = new ArrayList<>();
+    Map<Integer, Long> completedRowCounts = new HashMap<>();
+    byte[] content = Files.toByteArray(file);
+    int start = 0;
+    while (start < content.length) {
+      int end = start;
+      while (end < content.length && content[end] != '\n') {
+        end++;
+      }
+      String line = new String(content, start, end - start, Charsets.UTF_8);
+      boolean headerComplete = partitions.size() == partitionCount;
+      try {
+        // A record without a line terminator was not written completely.
+        Preconditions.checkArgument(end < content.length, "Incomplete record");
+        String[] record = line.split(SEPARATOR);
+        if (batchTransactionId == null) {
+          Preconditions.checkArgument(
+              TRANSACTION_RECORD.equals(record[0]), "Journal must start with a transaction record");
+          batchTransactionId = deserialize(record[1], BatchTransactionId.class);
+          partitionCount = Integer.parseInt(record[2]);
+          Preconditions.checkArgument(partitionCount >= 0, "Invalid partition count");
+        } else if (!headerComplete) {
+          Preconditions.checkArgument(
+              PARTITION_RECORD.equals(record[0]), "Expected a partition record");
+          partitions.add(deserialize(record[1], Partition.class));
+        } else {
+          Preconditions.checkArgument(
+              COMPLETED_RECORD.equals(record[0]), "Unexpected record type: %s", record[0]);
+          int index = Integer.parseInt(record[1]);
+          Preconditions.checkElementIndex(index, partitions.size());
+          completedRowCounts.put(index, Long.valueOf(record[2]));
+        }
+      } catch (RuntimeException e) {
+        // Only the last completion record can be invalid, as it might have been written when the
+        // process that wrote the journal crashed. It is removed so that new records can be
+        // appended. The header is synced before any completion records are written, which means
+        // that an invalid header record cannot be caused by a crash after the journal was created.
+        if (!headerComplete || end + 1 < content.length || !line.startsWith(COMPLETED_RECORD)) {
+          throw new IOException("Invalid record in journal file " + file + ": " + line, e);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+          raf.getChannel().truncate(start);
+        }
+        break;
+      }
+      start = end + 1;
+    }
+    if (batchTransactionId == null || partitions.size() != partitionCount) {
+      throw new IOException("Journal file " + file + " does not contain a complete header");
+    }
+    return new PartitionJournal(
+        file, batchTransactionId, ImmutableList.copyOf(partitions), completedRowCounts);
+  }
+
+  /** Returns the id of the transaction that the partitions in this journal belong to. */
+  public BatchTransactionId getBatchTransactionId() {
+    return batchTransactionId;
+  }
+
+  /** Returns all partitions of the run, both finished and unfinished. */
+  public List<Partition> getPartitions() {
+    return partitions;
+  }
+
+  /** Returns the partitions that have not yet been marked as completed. */
+  public synchronized List<Partition> getUnfinishedPartitions() {
+    ImmutableList.Builder<Partition> builder = ImmutableList.builder();
+    for (int i = 0; i < partitions.size(); i++) {
+      if (!completedRowCounts.containsKey(i)) {
+        builder.add(partitions.get(i));
+      }
+    }
+    return builder.build();
+  }
+
+  /** Returns <code>true</code> if the given partition has been marked as completed. */
+  public synchronized boolean isCompleted(Partition partition) {
+    return completedRowCounts.containsKey(indexOf(partition));
+  }
+
+  /** Returns the total number of rows of all partitions that have been marked as completed. */
+  public synchronized long getCompletedRowCount() {
+    long total = 0L;
+    for (long rowCount : completedRowCounts.values()) {
+      total += rowCount;
+    }
+    return total;
+  }
+
+  /**
+   * Sets the maximum number of completion records that may be written before the journal is synced
+   * to disk. A higher value reduces the number of fsync calls, at the cost of more partitions that
+   * might need to be executed again after a crash. Defaults to 32.
+   */
+  public synchronized void setMaxUnsyncedRecords(int maxUnsyncedRecords) {
+    Preconditions.checkArgument(
+        maxUnsyncedRecords > 0, "maxUnsyncedRecords must be greater than zero");
+    this.maxUnsyncedRecords = maxUnsyncedRecords;
+  }
+
+  /** Records that the given partition has been completed with the given number of rows. */
+  public synchronized void markCompleted(Partition partition, long rowCount) throws IOException {
+    Preconditions.checkState(!closed, "Journal has been closed");
+    int index = indexOf(partition);
+    if (completedRowCounts.containsKey(index)) {
+      return;
+    }
+    writeRecord(COMPLETED_RECORD, String.valueOf(index), String.valueOf(rowCount));
+    completedRowCounts.put(index, rowCount);
+    if (++unsyncedRecords >= maxUnsyncedRecords) {
+      sync();
+    }
+  }
+
+  /**
+   * Returns a {@link PartitionConsumerFactory} that marks each partition as completed in this
+   * journal after the consumer that is created by the given factory has received all rows of the
+   * partition.
+   */
+  public PartitionConsumerFactory journaled(final PartitionConsumerFactory factory) {
+    Preconditions.checkNotNull(factory);
+    return new PartitionConsumerFactory() {
+      @Override
+      public PartitionConsumer create(final Partition partition) {
+        final PartitionConsumer delegate = factory.create(partition);
+        return new PartitionConsumer() {
+          @Override
+          public void onRow(Struct row) {
+            delegate.onRow(row);
+          }
+
+          @Override
+          public void onComplete(PartitionStats stats) {
+            delegate.onComplete(stats);
+            try {
+              markCompleted(partition, stats.getRowCount());
+            } catch (IOException e) {
+              throw SpannerExceptionFactory.newSpannerException(
+                  ErrorCode.INTERNAL, "Failed to write to journal file " + file, e);
+            }
+          }
+        };
+      }
+    };
+  }
+
+  /** Writes all buffered records to the journal file and syncs the file to disk. */
+  public synchronized void sync() throws IOException {
+    writer.flush();
+    output.getChannel().force(false);
+    unsyncedRecords = 0;
+  }
+
+  /** Syncs and closes the journal file. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      try {
+        sync();
+      } finally {
+        writer.close();
+      }
+    }
+  }
+
+  private int indexOf(Partition partition) {
+    int index = partitions.indexOf(partition);
+    Preconditions.checkArgument(index > -1, "Unknown partition: %s", partition);
+    return index;
+  }
+
+  @GuardedBy("this")
+  private void writeRecord(String type, String... values) throws IOException {
+    writer.write(type);
+    for (String value : values) {
+      writer.write(SEPARATOR);
+      writer.write(value);
+    }
+    writer.write('\n');
+  }
+
+  private static String serialize(Serializable value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+      stream.writeObject(value);
+    }
+    return BaseEncoding.base64().encode(bytes.toByteArray());
+  }
+
+  private static <T> T deserialize(String value, Class<T> type) {
+    try (ObjectInputStream stream =
+        new ObjectInputStream(new ByteArrayInputStream(BaseEncoding.base64().decode(value)))) {
+      return type.cast(stream.readObject());
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalArgumentException("Could not deserialize " + type.getSimpleName(), e);
+    }
+  }
+}
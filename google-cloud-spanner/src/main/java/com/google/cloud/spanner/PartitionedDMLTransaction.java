@@ -38,6 +38,7 @@ import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import org.threeten.bp.Duration;
 import org.threeten.bp.temporal.ChronoUnit;
 
@@ -47,11 +48,14 @@ class PartitionedDMLTransaction implements SessionTransaction {
 
   private final SessionImpl session;
   private final SpannerRpc rpc;
+  private final PartitionedDmlMetrics metrics;
   private volatile boolean isValid = true;
 
-  PartitionedDMLTransaction(SessionImpl session, SpannerRpc rpc) {
+  PartitionedDMLTransaction(
+      SessionImpl session, SpannerRpc rpc, @Nullable PartitionedDmlMetrics metrics) {
     this.session = session;
     this.rpc = rpc;
+    this.metrics = metrics == null ? new PartitionedDmlMetrics() : metrics;
   }
 
   private ByteString initTransaction() {
@@ -115,6 +119,7 @@ class PartitionedDMLTransaction implements SessionTransaction {
               for (PartialResultSet rs : stream) {
                 if (rs.getResumeToken() != null && !ByteString.EMPTY.equals(rs.getResumeToken())) {
                   resumeToken = rs.getResumeToken();
+                  metrics.resumeTokenReceived();
                 }
                 if (rs.hasStats()) {
                   foundStats = true;
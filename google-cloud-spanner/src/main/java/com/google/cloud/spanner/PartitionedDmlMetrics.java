@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.spanner;
+
+import static com.google.cloud.spanner.MetricRegistryConstants.COUNT;
+import static com.google.cloud.spanner.MetricRegistryConstants.MILLISECOND;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_ACTIVE_PARTITIONED_DML_STATEMENTS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_ACTIVE_PARTITIONED_DML_STATEMENTS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_PARTITIONED_DML_RESUME_TOKENS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_PARTITIONED_DML_RESUME_TOKENS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_PARTITIONED_DML_STATEMENTS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_PARTITIONED_DML_STATEMENTS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.PARTITIONED_DML_ELAPSED_TIME;
+import static com.google.cloud.spanner.MetricRegistryConstants.PARTITIONED_DML_ELAPSED_TIME_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS;
+
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress counters for the Partitioned DML statements that are executed by one {@link
+ * DatabaseClient}. The counters are updated while the statements are streaming and are exported
+ * through OpenCensus when the instance has been registered with a {@link MetricRegistry}.
+ */
+class PartitionedDmlMetrics {
+  private final AtomicLong activeStatements = new AtomicLong();
+  private final AtomicLong finishedStatements = new AtomicLong();
+  private final AtomicLong resumeTokens = new AtomicLong();
+  private final AtomicLong elapsedMillis = new AtomicLong();
+
+  void statementStarted() {
+    activeStatements.incrementAndGet();
+  }
+
+  void statementFinished(long elapsed) {
+    activeStatements.decrementAndGet();
+    finishedStatements.incrementAndGet();
+    elapsedMillis.addAndGet(elapsed);
+  }
+
+  void resumeTokenReceived() {
+    resumeTokens.incrementAndGet();
+  }
+
+  long getActiveStatements() {
+    return activeStatements.get();
+  }
+
+  long getFinishedStatements() {
+    return finishedStatements.get();
+  }
+
+  long getResumeTokens() {
+    return resumeTokens.get();
+  }
+
+  long getElapsedMillis() {
+    return elapsedMillis.get();
+  }
+
+  /** Registers the counters of this instance as time series with the given labels. */
+  void register(MetricRegistry metricRegistry, List<LabelValue> labelValues) {
+    DerivedLongGauge activeStatementsMetric =
+        metricRegistry.addDerivedLongGauge(
+            NUM_ACTIVE_PARTITIONED_DML_STATEMENTS,
+            MetricOptions.builder()
+                .setDescription(NUM_ACTIVE_PARTITIONED_DML_STATEMENTS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative finishedStatementsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_PARTITIONED_DML_STATEMENTS,
+            MetricOptions.builder()
+                .setDescription(NUM_PARTITIONED_DML_STATEMENTS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative resumeTokensMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_PARTITIONED_DML_RESUME_TOKENS,
+            MetricOptions.builder()
+                .setDescription(NUM_PARTITIONED_DML_RESUME_TOKENS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative elapsedTimeMetric =
+        metricRegistry.addDerivedLongCumulative(
+            PARTITIONED_DML_ELAPSED_TIME,
+            MetricOptions.builder()
+                .setDescription(PARTITIONED_DML_ELAPSED_TIME_DESCRIPTION)
+                .setUnit(MILLISECOND)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+
+    activeStatementsMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<PartitionedDmlMetrics>() {
+          @Override
+          public long applyAsLong(PartitionedDmlMetrics metrics) {
+            return metrics.getActiveStatements();
+          }
+        });
+    finishedStatementsMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<PartitionedDmlMetrics>() {
+          @Override
+          public long applyAsLong(PartitionedDmlMetrics metrics) {
+            return metrics.getFinishedStatements();
+          }
+        });
+    resumeTokensMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<PartitionedDmlMetrics>() {
+          @Override
+          public long applyAsLong(PartitionedDmlMetrics metrics) {
+            return metrics.getResumeTokens();
+          }
+        });
+    elapsedTimeMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<PartitionedDmlMetrics>() {
+          @Override
+          public long applyAsLong(PartitionedDmlMetrics metrics) {
+            return metrics.getElapsedMillis();
+          }
+        });
+  }
+}
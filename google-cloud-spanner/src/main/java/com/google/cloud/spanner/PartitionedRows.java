@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.cloud.spanner.PartitionExecutor.RowCallback;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The rows of a set of {@link Partition}s of a {@link BatchReadOnlyTransaction} as a splittable
+ * {@link Iterable}. A {@link PartitionedRows} instance can be split along partition boundaries into
+ * smaller instances that can be consumed independently, for example by the tasks of a {@link
+ * ForkJoinPool}.
+ *
+ * <p>Iterating over a {@link PartitionedRows} instance executes the partitions sequentially. Each
+ * partition is only executed when the iterator reaches it, and the {@link ResultSet} of a partition
+ * is closed when all its rows have been returned. Use {@link #forEachParallel(ForkJoinPool,
+ * RowCallback)} to consume all partitions in parallel.
+ *
+ * <p>Example of counting the rows of a table in parallel:
+ *
+ * <pre>{@code
+ * final AtomicLong count = new AtomicLong();
+ * PartitionedRows.of(txn, txn.partitionQuery(PartitionOptions.getDefaultInstance(), statement))
+ *     .forEachParallel(
+ *         forkJoinPool,
+ *         new RowCallback() {
+ *           public void onRow(Partition partition, Struct row) {
+ *             count.incrementAndGet();
+ *           }
+ *         });
+ * }</pre>
+ */
+public final class PartitionedRows implements Iterable<Struct> {
+  private final BatchReadOnlyTransaction transaction;
+  private final List<Partition> partitions;
+
+  private PartitionedRows(BatchReadOnlyTransaction transaction, List<Partition> partitions) {
+    this.transaction = transaction;
+    this.partitions = partitions;
+  }
+
+  /** Returns the rows of the given partitions of the given transaction. */
+  public static PartitionedRows of(
+      BatchReadOnlyTransaction transaction, List<Partition> partitions) {
+    return new PartitionedRows(
+        Preconditions.checkNotNull(transaction), ImmutableList.copyOf(partitions));
+  }
+
+  /** Returns the partitions that are covered by this instance. */
+  public List<Partition> getPartitions() {
+    return partitions;
+  }
+
+  /**
+   * Splits this instance into two instances that each cover half of the partitions. Returns a list
+   * containing only this instance if it covers less than two partitions.
+   */
+  public List<PartitionedRows> split() {
+    if (partitions.size() < 2) {
+      return ImmutableList.of(this);
+    }
+    int half = partitions.size() / 2;
+    return ImmutableList.of(
+        new PartitionedRows(transaction, partitions.subList(0, half)),
+        new PartitionedRows(transaction, partitions.subList(half, partitions.size())));
+  }
+
+  /**
+   * Returns an iterator that executes the partitions one by one and returns their rows. The {@link
+   * ResultSet} of the partition that is currently being read stays open if the iterator is not
+   * consumed entirely.
+   */
+  @Override
+  public Iterator<Struct> iterator() {
+    return Iterators.concat(
+        Iterators.transform(
+            partitions.iterator(),
+            new Function<Partition, Iterator<Struct>>() {
+              @Override
+              public Iterator<Struct> apply(Partition partition) {
+                return ResultSets.toIterator(transaction.execute(partition));
+              }
+            }));
+  }
+
+  /**
+   * Executes all partitions in parallel using the given {@link ForkJoinPool} and delivers the rows
+   * to the given {@link RowCallback}. The callback is called concurrently from multiple threads,
+   * but the rows of one partition are delivered sequentially. The method blocks until all rows have
+   * been delivered.
+   */
+  public void forEachParallel(ForkJoinPool pool, RowCallback callback) {
+    Preconditions.checkNotNull(callback);
+    pool.invoke(new ForEachAction(this, callback));
+  }
+
+  private static final class ForEachAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final PartitionedRows rows;
+    private final RowCallback callback;
+
+    private ForEachAction(PartitionedRows rows, RowCallback callback) {
+      this.rows = rows;
+      this.callback = callback;
+    }
+
+    @Override
+    protected void compute() {
+      List<PartitionedRows> parts = rows.split();
+      if (parts.size() > 1) {
+        invokeAll(
+            new ForEachAction(parts.get(0), callback), new ForEachAction(parts.get(1), callback));
+      } else {
+        for (Partition partition : rows.partitions) {
+          try (ResultSet resultSet = rows.transaction.execute(partition)) {
+            while (resultSet.next()) {
+              callback.onRow(partition, resultSet.getCurrentRowAsStruct());
+            }
+          }
+        }
+      }
+    }
+  }
+}
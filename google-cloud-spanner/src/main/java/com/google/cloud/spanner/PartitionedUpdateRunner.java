@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a number of Partitioned DML statements in the background with a fixed maximum
+ * concurrency. A Partitioned DML statement blocks a thread for as long as it runs, which can be
+ * minutes or hours. Each invocation of {@link #run(Iterable, int, Function)} therefore uses its own
+ * threads, and the number of threads is bounded by the requested concurrency. The threads are
+ * stopped when all statements have finished.
+ */
+final class PartitionedUpdateRunner {
+
+  /** A Partitioned DML statement that is waiting to be executed by a background worker. */
+  private static final class PartitionedUpdate {
+    private final Statement statement;
+    private final SettableApiFuture<Long> result = SettableApiFuture.create();
+
+    private PartitionedUpdate(Statement statement) {
+      this.statement = Preconditions.checkNotNull(statement);
+    }
+  }
+
+  private PartitionedUpdateRunner() {}
+
+  /**
+   * Executes the given statements with at most {@code maxConcurrency} statements running at the
+   * same time, and returns one future per statement in the same order as the statements.
+   */
+  static List<ApiFuture<Long>> run(
+      Iterable<Statement> statements,
+      int maxConcurrency,
+      final Function<Statement, Long> partitionedUpdate) {
+    Preconditions.checkNotNull(statements);
+    Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be greater than zero");
+    final Queue<PartitionedUpdate> updates = new ConcurrentLinkedQueue<>();
+    ImmutableList.Builder<ApiFuture<Long>> results = ImmutableList.builder();
+    for (Statement statement : statements) {
+      PartitionedUpdate update = new PartitionedUpdate(statement);
+      updates.add(update);
+      results.add(update.result);
+    }
+    if (updates.isEmpty()) {
+      return results.build();
+    }
+    // Each worker executes statements from the shared queue until it is empty. The number of
+    // workers therefore determines the number of statements that are executed in parallel.
+    Runnable worker =
+        new Runnable() {
+          @Override
+          public void run() {
+            PartitionedUpdate update;
+            while ((update = updates.poll()) != null) {
+              try {
+                update.result.set(partitionedUpdate.apply(update.statement));
+              } catch (Throwable t) {
+                update.result.setException(t);
+              }
+            }
+          }
+        };
+    int workers = Math.min(maxConcurrency, updates.size());
+    ExecutorService executor =
+        new ThreadPoolExecutor(
+            workers,
+            workers,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("partitioned-dml-%d").build());
+    for (int i = 0; i < workers; i++) {
+      executor.execute(worker);
+    }
+    // Shutting down the executor lets the workers finish the queued statements, after which the
+    // threads are stopped.
+    executor.shutdown();
+    return results.build();
+  }
+}
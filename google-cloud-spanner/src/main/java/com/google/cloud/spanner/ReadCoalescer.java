@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.cloud.spanner.MetricRegistryConstants.COUNT;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_COALESCED_READS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_COALESCED_READS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_SHARED_READS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_SHARED_READS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.spanner.Options.QueryOption;
+import com.google.cloud.spanner.Options.ReadOption;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Coalesces identical single-row reads in single-use read-only transactions with a stale {@link
+ * TimestampBound}. If a read is started while an identical read is already in flight, the new read
+ * waits for the result of the read in flight instead of executing its own RPC. A coalesced read
+ * does not check out a session from the pool.
+ *
+ * <p>Reads with a {@link TimestampBound#strong()} bound are never coalesced, as a strong read must
+ * observe all transactions that committed before the read started.
+ */
+class ReadCoalescer {
+  /** The parameters of a single-row read that must be equal for two reads to be coalesced. */
+  private static final class RowRequest {
+    private final TimestampBound bound;
+    private final String table;
+    @Nullable private final String index;
+    private final Key key;
+    private final List<String> columns;
+
+    private RowRequest(
+        TimestampBound bound,
+        String table,
+        @Nullable String index,
+        Key key,
+        Iterable<String> columns) {
+      this.bound = bound;
+      this.table = table;
+      this.index = index;
+      this.key = key;
+      this.columns = ImmutableList.copyOf(columns);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof RowRequest)) {
+        return false;
+      }
+      RowRequest other = (RowRequest) o;
+      return bound.equals(other.bound)
+          && table.equals(other.table)
+          && Objects.equal(index, other.index)
+          && key.equals(other.key)
+          && columns.equals(other.columns);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(bound, table, index, key, columns);
+    }
+  }
+
+  private final ConcurrentMap<RowRequest, SettableApiFuture<Struct>> inFlight =
+      new ConcurrentHashMap<>();
+  private final AtomicLong sharedReads = new AtomicLong();
+  private final AtomicLong coalescedReads = new AtomicLong();
+
+  /** Returns true if reads with the given bound may be coalesced. */
+  static boolean isCoalescable(TimestampBound bound) {
+    return bound.getMode() != TimestampBound.Mode.STRONG;
+  }
+
+  /**
+   * Returns a {@link ReadContext} that coalesces its single-row reads with identical reads of other
+   * contexts of this coalescer. The underlying single-use read context is only created by the given
+   * factory if the context executes an RPC.
+   */
+  ReadContext wrap(TimestampBound bound, ReadHedger.ReadContextFactory contexts) {
+    return new CoalescingReadContext(bound, contexts);
+  }
+
+  /** Returns the number of reads that were executed and whose result could be shared. */
+  long getSharedReads() {
+    return sharedReads.get();
+  }
+
+  /** Returns the number of reads that received the result of an identical read in flight. */
+  long getCoalescedReads() {
+    return coalescedReads.get();
+  }
+
+  @VisibleForTesting
+  int getInFlightReads() {
+    return inFlight.size();
+  }
+
+  private Struct readRow(RowRequest request, CoalescingReadContext context) {
+    SettableApiFuture<Struct> result = SettableApiFuture.create();
+    SettableApiFuture<Struct> existing = inFlight.putIfAbsent(request, result);
+    if (existing != null) {
+      coalescedReads.incrementAndGet();
+      return get(existing);
+    }
+    sharedReads.incrementAndGet();
+    try {
+      ReadContext delegate = context.getDelegate();
+      Struct row =
+          request.index == null
+              ? delegate.readRow(request.table, request.key, request.columns)
+              : delegate.readRowUsingIndex(
+                  request.table, request.index, request.key, request.columns);
+      result.set(row);
+      return row;
+    } catch (RuntimeException | Error e) {
+      result.setException(e);
+      throw e;
+    } finally {
+      inFlight.remove(request, result);
+    }
+  }
+
+  private static Struct get(ApiFuture<Struct> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw SpannerExceptionFactory.newSpannerException(e.getCause() == null ? e : e.getCause());
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    }
+  }
+
+  /** Registers the counters of this instance as time series with the given labels. */
+  void register(MetricRegistry metricRegistry, List<LabelValue> labelValues) {
+    DerivedLongCumulative sharedReadsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_SHARED_READS,
+            MetricOptions.builder()
+                .setDescription(NUM_SHARED_READS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative coalescedReadsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_COALESCED_READS,
+            MetricOptions.builder()
+                .setDescription(NUM_COALESCED_READS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+
+    sharedReadsMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<ReadCoalescer>() {
+          @Override
+          public long applyAsLong(ReadCoalescer coalescer) {
+            return coalescer.getSharedReads();
+          }
+        });
+    coalescedReadsMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<ReadCoalescer>() {
+          @Override
+          public long applyAsLong(ReadCoalescer coalescer) {
+            return coalescer.getCoalescedReads();
+          }
+        });
+  }
+
+  /**
+   * A single-use {@link ReadContext} that coalesces its single-row reads and that creates the
+   * underlying read context when it is needed.
+   */
+  private final class CoalescingReadContext implements ReadContext {
+    private final TimestampBound bound;
+    private final ReadHedger.ReadContextFactory contexts;
+
+    @GuardedBy("this")
+    private ReadContext delegate;
+
+    @GuardedBy("this")
+    private boolean used;
+
+    @GuardedBy("this")
+    private boolean closed;
+
+    private CoalescingReadContext(TimestampBound bound, ReadHedger.ReadContextFactory contexts) {
+      this.bound = bound;
+      this.contexts = contexts;
+    }
+
+    private synchronized void markUsed() {
+      checkState(!closed, "This ReadContext has been closed");
+      checkState(!used, "Cannot use a single-read ReadContext for multiple reads");
+      used = true;
+    }
+
+    private synchronized ReadContext getDelegate() {
+      checkState(!closed, "This ReadContext has been closed");
+      if (delegate == null) {
+        delegate = contexts.create();
+      }
+      return delegate;
+    }
+
+    @Override
+    public ResultSet read(
+        String table, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return getDelegate().read(table, keys, columns, options);
+    }
+
+    @Override
+    public AsyncResultSet readAsync(
+        String table, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return getDelegate().readAsync(table, keys, columns, options);
+    }
+
+    @Override
+    public ResultSet readUsingIndex(
+        String table, String index, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return getDelegate().readUsingIndex(table, index, keys, columns, options);
+    }
+
+    @Override
+    public AsyncResultSet readUsingIndexAsync(
+        String table, String index, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return getDelegate().readUsingIndexAsync(table, index, keys, columns, options);
+    }
+
+    @Override
+    @Nullable
+    public Struct readRow(String table, Key key, Iterable<String> columns) {
+      markUsed();
+      return ReadCoalescer.this.readRow(new RowRequest(bound, table, null, key, columns), this);
+    }
+
+    @Override
+    public ApiFuture<Struct> readRowAsync(String table, Key key, Iterable<String> columns) {
+      return getDelegate().readRowAsync(table, key, columns);
+    }
+
+    @Override
+    @Nullable
+    public Struct readRowUsingIndex(String table, String index, Key key, Iterable<String> columns) {
+      markUsed();
+      return ReadCoalescer.this.readRow(new RowRequest(bound, table, index, key, columns), this);
+    }
+
+    @Override
+    public ApiFuture<Struct> readRowUsingIndexAsync(
+        String table, String index, Key key, Iterable<String> columns) {
+      return getDelegate().readRowUsingIndexAsync(table, index, key, columns);
+    }
+
+    @Override
+    public ResultSet executeQuery(Statement statement, QueryOption... options) {
+      return getDelegate().executeQuery(statement, options);
+    }
+
+    @Override
+    public AsyncResultSet executeQueryAsync(Statement statement, QueryOption... options) {
+      return getDelegate().executeQueryAsync(statement, options);
+    }
+
+    @Override
+    public ResultSet analyzeQuery(Statement statement, QueryAnalyzeMode queryMode) {
+      return getDelegate().analyzeQuery(statement, queryMode);
+    }
+
+    @Override
+    public synchronized void close() {
+      if (!closed) {
+        closed = true;
+        if (delegate != null) {
+          delegate.close();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.spanner.Options.QueryOption;
+import com.google.cloud.spanner.Options.ReadOption;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Hedges single-row reads in single-use read-only transactions according to a {@link
+ * HedgingOptions}. A read that has not returned within the hedging delay is sent a second time on a
+ * different session, and the first response is used. The other request is cancelled.
+ *
+ * <p>The primary read is executed on the calling thread. The hedged read is executed on a thread of
+ * the hedger, so reads that return within the hedging delay incur no thread switch.
+ */
+class ReadHedger {
+  /** The number of recent latencies that are used to compute the hedging delay. */
+  private static final int LATENCY_WINDOW = 128;
+  /** The minimum number of observed latencies before hedging based on latency starts. */
+  @VisibleForTesting static final int MIN_LATENCY_SAMPLES = 16;
+  /** The number of new latency samples after which the hedging delay is recomputed. */
+  private static final int DELAY_RECOMPUTE_INTERVAL = 16;
+  /**
+   * The maximum number of hedges that can be saved up in the budget. This is also the maximum
+   * number of hedged reads that can run at the same time.
+   */
+  @VisibleForTesting static final int MAX_BUDGET = 10;
+  /** The budget is kept in fixed-point units, so it can be updated without locking. */
+  private static final long BUDGET_UNITS_PER_HEDGE = 1000000L;
+
+  /** Starts a single-row read on the given read context. */
+  interface SingleRowRead {
+    ResultSet start(ReadContext context);
+  }
+
+  /** Creates the single-use read context that is used for a hedged read. */
+  interface ReadContextFactory {
+    ReadContext create();
+  }
+
+  private final HedgingOptions options;
+  private final Ticker ticker;
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final ThreadPoolExecutor hedgeExecutor;
+  private final AtomicLong hedgeCount = new AtomicLong();
+  private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_WINDOW);
+  private final AtomicLong latencyCount = new AtomicLong();
+  private volatile long delayNanos = -1L;
+  private final long budgetEarnedPerRead;
+  private final AtomicLong budget = new AtomicLong();
+
+  ReadHedger(HedgingOptions options) {
+    this(options, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  ReadHedger(HedgingOptions options, Ticker ticker) {
+    this.options = Preconditions.checkNotNull(options);
+    this.ticker = ticker;
+    ThreadFactory threadFactory =
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("read-hedger-%d").build();
+    this.scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+    this.scheduler.setRemoveOnCancelPolicy(true);
+    // A hedged read needs a hedge from the budget, so no more than MAX_BUDGET hedged reads can
+    // run at the same time. A hedge that cannot get a thread is not sent.
+    this.hedgeExecutor =
+        new ThreadPoolExecutor(
+            0, MAX_BUDGET, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+    this.budgetEarnedPerRead = (long) (options.getMaxHedgeRatio() * BUDGET_UNITS_PER_HEDGE);
+    if (options.getDelay() != null) {
+      this.delayNanos = TimeUnit.MILLISECONDS.toNanos(options.getDelay().toMillis());
+    }
+  }
+
+  /**
+   * Returns a {@link ReadContext} that hedges the single-row reads that are executed on the given
+   * single-use read context. Hedged reads use a read context that is created by the given factory.
+   */
+  ReadContext wrap(ReadContext delegate, ReadContextFactory hedgeContexts) {
+    return new HedgingReadContext(delegate, hedgeContexts);
+  }
+
+  /** Returns the number of hedged reads that have been sent. */
+  long getHedgeCount() {
+    return hedgeCount.get();
+  }
+
+  /** Returns the current hedging delay in nanoseconds, or -1 if no reads should be hedged. */
+  @VisibleForTesting
+  long getDelayNanos() {
+    return delayNanos;
+  }
+
+  @VisibleForTesting
+  void recordLatency(long nanos) {
+    long count = latencyCount.incrementAndGet();
+    latencies.set((int) ((count - 1L) % LATENCY_WINDOW), nanos);
+    if (options.getDelay() == null
+        && count >= MIN_LATENCY_SAMPLES
+        && count % DELAY_RECOMPUTE_INTERVAL == 0L) {
+      // Concurrent reads may overwrite samples while the window is copied. The delay is an
+      // estimate, so that does not need to be prevented.
+      long[] window = new long[(int) Math.min(count, LATENCY_WINDOW)];
+      for (int i = 0; i < window.length; i++) {
+        window[i] = latencies.get(i);
+      }
+      Arrays.sort(window);
+      int index = (int) Math.ceil(options.getDelayPercentile() / 100.0D * window.length) - 1;
+      delayNanos = window[Math.max(0, index)];
+    }
+  }
+
+  /** Adds the hedge budget that is earned by one read. */
+  private void earnBudget() {
+    long current;
+    do {
+      current = budget.get();
+      if (current >= MAX_BUDGET * BUDGET_UNITS_PER_HEDGE) {
+        return;
+      }
+    } while (!budget.compareAndSet(
+        current, Math.min(MAX_BUDGET * BUDGET_UNITS_PER_HEDGE, current + budgetEarnedPerRead)));
+  }
+
+  /** Tries to spend the budget for one hedged read. */
+  private boolean trySpendBudget() {
+    long current;
+    do {
+      current = budget.get();
+      if (current < BUDGET_UNITS_PER_HEDGE) {
+        return false;
+      }
+    } while (!budget.compareAndSet(current, current - BUDGET_UNITS_PER_HEDGE));
+    return true;
+  }
+
+  /** Returns the budget of a hedge that was not sent. */
+  private void refundBudget() {
+    budget.addAndGet(BUDGET_UNITS_PER_HEDGE);
+  }
+
+  void shutdown() {
+    scheduler.shutdownNow();
+    hedgeExecutor.shutdown();
+  }
+
+  Struct readRow(
+      ReadContext primary, final ReadContextFactory hedgeContexts, final SingleRowRead read) {
+    earnBudget();
+    final HedgedRead hedgedRead = new HedgedRead(read);
+    long delay = getDelayNanos();
+    if (delay >= 0L) {
+      try {
+        hedgedRead.setHedgeTask(
+            scheduler.schedule(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    startHedge(hedgedRead, hedgeContexts);
+                  }
+                },
+                delay,
+                TimeUnit.NANOSECONDS));
+      } catch (RejectedExecutionException e) {
+        // The hedger has been shut down, execute the read without hedging.
+      }
+    }
+    hedgedRead.attempt(primary);
+    return get(hedgedRead.result);
+  }
+
+  private void startHedge(final HedgedRead hedgedRead, final ReadContextFactory hedgeContexts) {
+    if (hedgedRead.result.isDone() || !trySpendBudget()) {
+      return;
+    }
+    try {
+      hedgeExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              hedgedRead.attemptHedge(hedgeContexts);
+            }
+          });
+      hedgeCount.incrementAndGet();
+    } catch (RejectedExecutionException e) {
+      // The hedger has been shut down or the maximum number of hedged reads are running, let the
+      // primary read finish by itself.
+      refundBudget();
+    }
+  }
+
+  private static Struct get(ApiFuture<Struct> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw SpannerExceptionFactory.newSpannerException(e.getCause() == null ? e : e.getCause());
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    }
+  }
+
+  /** The primary and (possibly) hedged attempt of one single-row read. */
+  private final class HedgedRead {
+    private final SingleRowRead read;
+    private final long startNanos = ticker.read();
+    private final SettableApiFuture<Struct> result = SettableApiFuture.create();
+
+    @GuardedBy("this")
+    private final List<ResultSet> resultSets = new ArrayList<>(2);
+
+    @GuardedBy("this")
+    private int running;
+
+    @GuardedBy("this")
+    private Throwable error;
+
+    @GuardedBy("this")
+    private ScheduledFuture<?> hedgeTask;
+
+    private HedgedRead(SingleRowRead read) {
+      this.read = read;
+    }
+
+    private synchronized void setHedgeTask(ScheduledFuture<?> hedgeTask) {
+      this.hedgeTask = hedgeTask;
+    }
+
+    /**
+     * Executes the hedged attempt of the read on the calling thread. The read context of the hedge
+     * is always closed when the attempt has finished, also if the read could not be started.
+     */
+    private void attemptHedge(ReadContextFactory hedgeContexts) {
+      ReadContext context;
+      try {
+        context = hedgeContexts.create();
+      } catch (Throwable t) {
+        synchronized (this) {
+          running++;
+        }
+        finished(t);
+        return;
+      }
+      try {
+        attempt(context);
+      } finally {
+        context.close();
+      }
+    }
+
+    /** Executes one attempt of the read on the calling thread. */
+    private void attempt(ReadContext context) {
+      synchronized (this) {
+        if (result.isDone()) {
+          return;
+        }
+        running++;
+      }
+      Throwable failure = null;
+      try (ResultSet resultSet = read.start(context)) {
+        synchronized (this) {
+          if (result.isDone()) {
+            return;
+          }
+          resultSets.add(resultSet);
+        }
+        Struct row = AbstractReadContext.consumeSingleRow(resultSet);
+        if (result.set(row)) {
+          // The latency is measured from the start of the read and not from the start of the
+          // winning attempt. Measuring a hedged attempt from its own start would record a latency
+          // that is lower than the hedging delay, and bias the delay towards ever lower values.
+          recordLatency(ticker.read() - startNanos);
+          cancelOthers(resultSet);
+        }
+      } catch (Throwable t) {
+        failure = t;
+      } finally {
+        finished(failure);
+      }
+    }
+
+    private synchronized void cancelOthers(ResultSet winner) {
+      if (hedgeTask != null) {
+        hedgeTask.cancel(false);
+      }
+      for (ResultSet resultSet : resultSets) {
+        if (resultSet != winner) {
+          // Closing the result set cancels the stream, which makes the other attempt fail.
+          resultSet.close();
+        }
+      }
+    }
+
+    private synchronized void finished(@Nullable Throwable failure) {
+      running--;
+      if (failure != null && error == null) {
+        error = failure;
+      }
+      if (running == 0 && !result.isDone() && error != null) {
+        // Do not wait for a hedge if all running attempts have failed.
+        if (hedgeTask != null) {
+          hedgeTask.cancel(false);
+        }
+        result.setException(error);
+      }
+    }
+  }
+
+  /** A {@link ReadContext} that hedges its single-row reads. */
+  private final class HedgingReadContext implements ReadContext {
+    private final ReadContext delegate;
+    private final ReadContextFactory hedgeContexts;
+
+    private HedgingReadContext(ReadContext delegate, ReadContextFactory hedgeContexts) {
+      this.delegate = delegate;
+      this.hedgeContexts = hedgeContexts;
+    }
+
+    @Override
+    public ResultSet read(
+        String table, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return delegate.read(table, keys, columns, options);
+    }
+
+    @Override
+    public AsyncResultSet readAsync(
+        String table, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return delegate.readAsync(table, keys, columns, options);
+    }
+
+    @Override
+    public ResultSet readUsingIndex(
+        String table, String index, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return delegate.readUsingIndex(table, index, keys, columns, options);
+    }
+
+    @Override
+    public AsyncResultSet readUsingIndexAsync(
+        String table, String index, KeySet keys, Iterable<String> columns, ReadOption... options) {
+      return delegate.readUsingIndexAsync(table, index, keys, columns, options);
+    }
+
+    @Override
+    @Nullable
+    public Struct readRow(final String table, final Key key, final Iterable<String> columns) {
+      return ReadHedger.this.readRow(
+          delegate,
+          hedgeContexts,
+          new SingleRowRead() {
+            @Override
+            public ResultSet start(ReadContext context) {
+              return context.read(table, KeySet.singleKey(key), columns);
+            }
+          });
+    }
+
+    @Override
+    public ApiFuture<Struct> readRowAsync(String table, Key key, Iterable<String> columns) {
+      return delegate.readRowAsync(table, key, columns);
+    }
+
+    @Override
+    @Nullable
+    public Struct readRowUsingIndex(
+        final String table, final String index, final Key key, final Iterable<String> columns) {
+      return ReadHedger.this.readRow(
+          delegate,
+          hedgeContexts,
+          new SingleRowRead() {
+            @Override
+            public ResultSet start(ReadContext context) {
+              return context.readUsingIndex(table, index, KeySet.singleKey(key), columns);
+            }
+          });
+    }
+
+    @Override
+    public ApiFuture<Struct> readRowUsingIndexAsync(
+        String table, String index, Key key, Iterable<String> columns) {
+      return delegate.readRowUsingIndexAsync(table, index, key, columns);
+    }
+
+    @Override
+    public ResultSet executeQuery(Statement statement, QueryOption... options) {
+      return delegate.executeQuery(statement, options);
+    }
+
+    @Override
+    public AsyncResultSet executeQueryAsync(Statement statement, QueryOption... options) {
+      return delegate.executeQueryAsync(statement, options);
+    }
+
+    @Override
+    public ResultSet analyzeQuery(Statement statement, QueryAnalyzeMode queryMode) {
+      return delegate.analyzeQuery(statement, queryMode);
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+}
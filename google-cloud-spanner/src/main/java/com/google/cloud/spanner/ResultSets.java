@@ -24,9 +24,11 @@ import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.Type.Code;
 import com.google.cloud.spanner.Type.StructField;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.spanner.v1.ResultSetStats;
+import java.util.Iterator;
 import java.util.List;
 
 /** Utility methods for working with {@link com.google.cloud.spanner.ResultSet}. */
@@ -68,6 +70,25 @@ public final class ResultSets {
     return new AsyncResultSetImpl(executorProvider, delegate, 100);
   }
 
+  /**
+   * Returns an {@link Iterator} over the rows of the given {@link ResultSet}. The iterator advances
+   * the {@link ResultSet} lazily and closes it when all rows have been returned. The {@link
+   * ResultSet} must be closed by the caller if the iterator is not consumed entirely.
+   */
+  public static Iterator<Struct> toIterator(final ResultSet resultSet) {
+    Preconditions.checkNotNull(resultSet);
+    return new AbstractIterator<Struct>() {
+      @Override
+      protected Struct computeNext() {
+        if (resultSet.next()) {
+          return resultSet.getCurrentRowAsStruct();
+        }
+        resultSet.close();
+        return endOfData();
+      }
+    };
+  }
+
   private static class PrePopulatedResultSet implements ResultSet {
     private final List<Struct> rows;
     private final Type type;
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.cloud.spanner.MetricRegistryConstants.COUNT;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_ABORTED_TRANSACTION_ATTEMPTS;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_ABORTED_TRANSACTION_ATTEMPTS_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_RETRY_BUDGET_EXHAUSTED;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_RETRY_BUDGET_EXHAUSTED_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_TRANSACTION_RETRIES;
+import static com.google.cloud.spanner.MetricRegistryConstants.NUM_TRANSACTION_RETRIES_DESCRIPTION;
+import static com.google.cloud.spanner.MetricRegistryConstants.SPANNER_LABEL_KEYS;
+
+import com.google.common.base.Preconditions;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+import org.threeten.bp.Duration;
+
+/**
+ * Token bucket that limits the number of retries of aborted read/write transactions on a database.
+ * See {@link RetryBudgetOptions} for a description of the budget. The tokens are stored in
+ * thousandths of a token, so fractional token ratios can be added atomically.
+ */
+class RetryBudget {
+  private static final int TOKEN_SCALE = 1000;
+  /** The weight of the most recent transaction attempt in the moving average of the abort rate. */
+  private static final double ABORT_RATE_WEIGHT = 0.05D;
+
+  private final int maxTokens;
+  private final int threshold;
+  private final int tokenRatio;
+  private final double maxBackoffMultiplier;
+  private final AtomicInteger tokens;
+
+  private final AtomicLong abortedAttempts = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong budgetExhausted = new AtomicLong();
+
+  @GuardedBy("this")
+  private double abortRate;
+
+  RetryBudget(RetryBudgetOptions options) {
+    Preconditions.checkNotNull(options);
+    this.maxTokens = options.getMaxTokens() * TOKEN_SCALE;
+    this.threshold = maxTokens / 2;
+    this.tokenRatio = Math.max((int) Math.round(options.getTokenRatio() * TOKEN_SCALE), 1);
+    this.maxBackoffMultiplier = options.getMaxBackoffMultiplier();
+    this.tokens = new AtomicInteger(maxTokens);
+  }
+
+  /**
+   * Records an aborted transaction attempt and returns true if the transaction may be retried. The
+   * attempt removes one token from the budget, and the transaction may be retried if the budget
+   * still contains more than half of the maximum number of tokens.
+   */
+  boolean tryRetry() {
+    abortedAttempts.incrementAndGet();
+    recordAttempt(true);
+    while (true) {
+      int current = tokens.get();
+      int next = Math.max(current - TOKEN_SCALE, 0);
+      if (tokens.compareAndSet(current, next)) {
+        if (next > threshold) {
+          retries.incrementAndGet();
+          return true;
+        }
+        budgetExhausted.incrementAndGet();
+        return false;
+      }
+    }
+  }
+
+  /** Records a committed transaction, which adds the token ratio to the budget. */
+  void recordSuccess() {
+    recordAttempt(false);
+    while (true) {
+      int current = tokens.get();
+      int next = Math.min(current + tokenRatio, maxTokens);
+      if (current == next || tokens.compareAndSet(current, next)) {
+        return;
+      }
+    }
+  }
+
+  private synchronized void recordAttempt(boolean aborted) {
+    abortRate = abortRate * (1.0D - ABORT_RATE_WEIGHT) + (aborted ? ABORT_RATE_WEIGHT : 0.0D);
+  }
+
+  /**
+   * Returns the given backoff increased by a random factor that grows with the recent abort rate.
+   * The factor is between 1 and {@code 1 + (maxBackoffMultiplier - 1) * abortRate}, so clients that
+   * see the same abort rate spread their retries instead of retrying at the same time.
+   */
+  Duration backoff(Duration delay) {
+    double multiplier =
+        1.0D
+            + (maxBackoffMultiplier - 1.0D)
+                * getAbortRate()
+                * ThreadLocalRandom.current().nextDouble();
+    return Duration.ofNanos((long) (delay.toNanos() * multiplier));
+  }
+
+  /** Returns the moving average of the fraction of transaction attempts that were aborted. */
+  synchronized double getAbortRate() {
+    return abortRate;
+  }
+
+  /** Returns the number of tokens in the budget. */
+  double getTokens() {
+    return (double) tokens.get() / TOKEN_SCALE;
+  }
+
+  long getAbortedAttempts() {
+    return abortedAttempts.get();
+  }
+
+  long getRetries() {
+    return retries.get();
+  }
+
+  long getBudgetExhausted() {
+    return budgetExhausted.get();
+  }
+
+  void register(MetricRegistry metricRegistry, List<LabelValue> labelValues) {
+    DerivedLongCumulative abortedAttemptsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_ABORTED_TRANSACTION_ATTEMPTS,
+            MetricOptions.builder()
+                .setDescription(NUM_ABORTED_TRANSACTION_ATTEMPTS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative retriesMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_TRANSACTION_RETRIES,
+            MetricOptions.builder()
+                .setDescription(NUM_TRANSACTION_RETRIES_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative budgetExhaustedMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_RETRY_BUDGET_EXHAUSTED,
+            MetricOptions.builder()
+                .setDescription(NUM_RETRY_BUDGET_EXHAUSTED_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(SPANNER_LABEL_KEYS)
+                .build());
+
+    abortedAttemptsMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<RetryBudget>() {
+          @Override
+          public long applyAsLong(RetryBudget budget) {
+            return budget.getAbortedAttempts();
+          }
+        });
+    retriesMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<RetryBudget>() {
+          @Override
+          public long applyAsLong(RetryBudget budget) {
+            return budget.getRetries();
+          }
+        });
+    budgetExhaustedMetric.createTimeSeries(
+        labelValues,
+        this,
+        new ToLongFunction<RetryBudget>() {
+          @Override
+          public long applyAsLong(RetryBudget budget) {
+            return budget.getBudgetExhausted();
+          }
+        });
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for the retry budget of aborted read/write transactions. Each database client has one
+ * budget of tokens that is shared by all transactions on the database. Each aborted transaction
+ * attempt removes one token from the budget, and each successfully committed transaction adds
+ * {@link #getTokenRatio()} tokens to the budget, up to {@link #getMaxTokens()}. An aborted
+ * transaction is only retried while the budget contains more than half of the maximum number of
+ * tokens. Otherwise the {@link AbortedException} is returned to the application.
+ *
+ * <p>The backoff between retries grows with the rate of aborted transaction attempts that has
+ * recently been observed for the database, up to {@link #getMaxBackoffMultiplier()} times the
+ * normal backoff.
+ */
+public final class RetryBudgetOptions {
+  private static final int DEFAULT_MAX_TOKENS = 100;
+  private static final double DEFAULT_TOKEN_RATIO = 0.1D;
+  private static final double DEFAULT_MAX_BACKOFF_MULTIPLIER = 4.0D;
+
+  /** Builder for {@link RetryBudgetOptions}. */
+  public static final class Builder {
+    private int maxTokens = DEFAULT_MAX_TOKENS;
+    private double tokenRatio = DEFAULT_TOKEN_RATIO;
+    private double maxBackoffMultiplier = DEFAULT_MAX_BACKOFF_MULTIPLIER;
+
+    private Builder() {}
+
+    /**
+     * Sets the maximum number of tokens in the budget. Aborted transactions are retried while the
+     * budget contains more than half of this number of tokens. The default is 100.
+     */
+    public Builder setMaxTokens(int maxTokens) {
+      Preconditions.checkArgument(maxTokens > 1, "maxTokens must be > 1");
+      this.maxTokens = maxTokens;
+      return this;
+    }
+
+    /**
+     * Sets the number of tokens that is added to the budget for each committed transaction. Must be
+     * in the range (0, 1]. The default is 0.1, which means that ten committed transactions refill
+     * the token of one aborted transaction attempt.
+     */
+    public Builder setTokenRatio(double tokenRatio) {
+      Preconditions.checkArgument(
+          tokenRatio > 0.0D && tokenRatio <= 1.0D, "tokenRatio must be in the range (0, 1]");
+      this.tokenRatio = tokenRatio;
+      return this;
+    }
+
+    /**
+     * Sets the maximum factor by which the backoff between retries is increased when all recent
+     * transaction attempts on the database were aborted. Must be at least 1. The default is 4.
+     */
+    public Builder setMaxBackoffMultiplier(double maxBackoffMultiplier) {
+      Preconditions.checkArgument(
+          maxBackoffMultiplier >= 1.0D, "maxBackoffMultiplier must be >= 1");
+      this.maxBackoffMultiplier = maxBackoffMultiplier;
+      return this;
+    }
+
+    public RetryBudgetOptions build() {
+      return new RetryBudgetOptions(this);
+    }
+  }
+
+  private final int maxTokens;
+  private final double tokenRatio;
+  private final double maxBackoffMultiplier;
+
+  private RetryBudgetOptions(Builder builder) {
+    this.maxTokens = builder.maxTokens;
+    this.tokenRatio = builder.tokenRatio;
+    this.maxBackoffMultiplier = builder.maxBackoffMultiplier;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public int getMaxTokens() {
+    return maxTokens;
+  }
+
+  public double getTokenRatio() {
+    return tokenRatio;
+  }
+
+  public double getMaxBackoffMultiplier() {
+    return maxBackoffMultiplier;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof RetryBudgetOptions)) {
+      return false;
+    }
+    RetryBudgetOptions other = (RetryBudgetOptions) o;
+    return maxTokens == other.maxTokens
+        && tokenRatio == other.tokenRatio
+        && maxBackoffMultiplier == other.maxBackoffMultiplier;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(maxTokens, tokenRatio, maxBackoffMultiplier);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "RetryBudgetOptions{maxTokens=%d, tokenRatio=%s, maxBackoffMultiplier=%s}",
+        maxTokens, tokenRatio, maxBackoffMultiplier);
+  }
+}
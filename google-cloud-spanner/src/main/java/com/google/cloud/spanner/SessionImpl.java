@@ -17,6 +17,7 @@
 package com.google.cloud.spanner;
 
 import static com.google.cloud.spanner.SpannerExceptionFactory.newSpannerException;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.api.core.ApiFuture;
@@ -28,6 +29,7 @@ import com.google.cloud.spanner.AbstractReadContext.SingleUseReadOnlyTransaction
 import com.google.cloud.spanner.SessionClient.SessionId;
 import com.google.cloud.spanner.TransactionRunnerImpl.TransactionContextImpl;
 import com.google.cloud.spanner.spi.v1.SpannerRpc;
+import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.ByteString;
@@ -43,6 +45,7 @@ import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -90,6 +93,10 @@ class SessionImpl implements Session {
   ByteString readyTransactionId;
   private final Map<SpannerRpc.Option, ?> options;
   private Span currentSpan;
+  // The retry budget and Partitioned DML metrics of the database client that has checked out this
+  // session. These are set by the session pool together with the current span.
+  @Nullable private RetryBudget retryBudget;
+  @Nullable private PartitionedDmlMetrics partitionedDmlMetrics;
 
   SessionImpl(SpannerImpl spanner, String name, Map<SpannerRpc.Option, ?> options) {
     this.spanner = spanner;
@@ -111,14 +118,47 @@ class SessionImpl implements Session {
     currentSpan = span;
   }
 
+  void setRetryBudget(@Nullable RetryBudget retryBudget) {
+    this.retryBudget = retryBudget;
+  }
+
+  void setPartitionedDmlMetrics(@Nullable PartitionedDmlMetrics partitionedDmlMetrics) {
+    this.partitionedDmlMetrics = partitionedDmlMetrics;
+  }
+
   @Override
   public long executePartitionedUpdate(Statement stmt) {
     setActive(null);
-    PartitionedDMLTransaction txn = new PartitionedDMLTransaction(this, spanner.getRpc());
+    PartitionedDMLTransaction txn =
+        new PartitionedDMLTransaction(this, spanner.getRpc(), partitionedDmlMetrics);
     return txn.executeStreamingPartitionedUpdate(
         stmt, spanner.getOptions().getPartitionedDmlTimeout());
   }
 
+  @Override
+  public ApiFuture<Long> executePartitionedUpdateAsync(Statement stmt) {
+    return executePartitionedUpdatesAsync(Collections.singleton(stmt), 1).get(0);
+  }
+
+  /**
+   * Executes the given statements one after the other on a background thread, as a session can only
+   * execute one transaction at a time.
+   */
+  @Override
+  public List<ApiFuture<Long>> executePartitionedUpdatesAsync(
+      Iterable<Statement> statements, int maxConcurrency) {
+    checkArgument(maxConcurrency > 0, "maxConcurrency must be greater than zero");
+    return PartitionedUpdateRunner.run(
+        statements,
+        1,
+        new Function<Statement, Long>() {
+          @Override
+          public Long apply(Statement statement) {
+            return executePartitionedUpdate(statement);
+          }
+        });
+  }
+
   @Override
   public Timestamp write(Iterable<Mutation> mutations) throws SpannerException {
     TransactionRunner runner = readWriteTransaction();
@@ -226,14 +266,16 @@ class SessionImpl implements Session {
   @Override
   public TransactionRunner readWriteTransaction() {
     return setActive(
-        new TransactionRunnerImpl(this, spanner.getRpc(), spanner.getDefaultPrefetchChunks()));
+        new TransactionRunnerImpl(
+            this, spanner.getRpc(), spanner.getDefaultPrefetchChunks(), retryBudget));
   }
 
   @Override
   public AsyncRunner runAsync() {
     return new AsyncRunnerImpl(
         setActive(
-            new TransactionRunnerImpl(this, spanner.getRpc(), spanner.getDefaultPrefetchChunks())));
+            new TransactionRunnerImpl(
+                this, spanner.getRpc(), spanner.getDefaultPrefetchChunks(), retryBudget)));
   }
 
   @Override
@@ -328,6 +370,7 @@ class SessionImpl implements Session {
     return TransactionContextImpl.newBuilder()
         .setSession(this)
         .setTransactionId(readyTransactionId)
+        .setBatchUpdateChunkSize(spanner.getDefaultBatchDmlChunkSize())
         .setRpc(spanner.getRpc())
         .setDefaultQueryOptions(spanner.getDefaultQueryOptions(databaseId))
         .setDefaultPrefetchChunks(spanner.getDefaultPrefetchChunks())
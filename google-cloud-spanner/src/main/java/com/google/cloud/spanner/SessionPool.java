@@ -92,9 +92,9 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -674,6 +674,15 @@ final class SessionPool {
         }
       }
 
+      @Override
+      public ApiFuture<Long> executeUpdatePipelinedAsync(Statement statement) {
+        try {
+          return delegate.executeUpdatePipelinedAsync(statement);
+        } catch (SessionNotFoundException e) {
+          throw handleSessionNotFound(e);
+        }
+      }
+
       @Override
       public long[] batchUpdate(Iterable<Statement> statements) {
         try {
@@ -1239,6 +1248,57 @@ final class SessionPool {
       }
     }
 
+    @Override
+    public List<ApiFuture<Long>> executePartitionedUpdatesAsync(
+        Iterable<Statement> statements, int maxConcurrency) {
+      List<ApiFuture<Long>> results;
+      try {
+        results = get().executePartitionedUpdatesAsync(statements, maxConcurrency);
+      } catch (RuntimeException e) {
+        close();
+        throw e;
+      }
+      if (results.isEmpty()) {
+        close();
+        return results;
+      }
+      // Return the session to the pool when all statements have finished.
+      final AtomicInteger remaining = new AtomicInteger(results.size());
+      Runnable listener =
+          new Runnable() {
+            @Override
+            public void run() {
+              if (remaining.decrementAndGet() == 0) {
+                close();
+              }
+            }
+          };
+      for (ApiFuture<Long> result : results) {
+        result.addListener(listener, MoreExecutors.directExecutor());
+      }
+      return results;
+    }
+
+    @Override
+    public ApiFuture<Long> executePartitionedUpdateAsync(Statement stmt) {
+      final ApiFuture<Long> result;
+      try {
+        result = get().executePartitionedUpdateAsync(stmt);
+      } catch (RuntimeException e) {
+        close();
+        throw e;
+      }
+      result.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              close();
+            }
+          },
+          MoreExecutors.directExecutor());
+      return result;
+    }
+
     @Override
     public String getName() {
       return get().getName();
@@ -1352,6 +1412,19 @@ final class SessionPool {
       }
     }
 
+    @Override
+    public ApiFuture<Long> executePartitionedUpdateAsync(Statement stmt) {
+      markUsed();
+      return delegate.executePartitionedUpdateAsync(stmt);
+    }
+
+    @Override
+    public List<ApiFuture<Long>> executePartitionedUpdatesAsync(
+        Iterable<Statement> statements, int maxConcurrency) {
+      markUsed();
+      return delegate.executePartitionedUpdatesAsync(statements, maxConcurrency);
+    }
+
     @Override
     public ReadContext singleUse() {
       return delegate.singleUse();
@@ -1453,6 +1526,8 @@ final class SessionPool {
 
     private void markBusy(Span span) {
       this.delegate.setCurrentSpan(span);
+      this.delegate.setRetryBudget(retryBudget);
+      this.delegate.setPartitionedDmlMetrics(partitionedDmlMetrics);
       this.state = SessionState.BUSY;
     }
 
@@ -1701,6 +1776,7 @@ final class SessionPool {
   private final SessionClient sessionClient;
   private final ScheduledExecutorService executor;
   private final ExecutorFactory<ScheduledExecutorService> executorFactory;
+  private static final long PREPARE_THREAD_KEEP_ALIVE_SECONDS = 60L;
   private final ScheduledExecutorService prepareExecutor;
 
   private final int prepareThreadPoolSize;
@@ -1709,6 +1785,10 @@ final class SessionPool {
   private final Object lock = new Object();
   private final Random random = new Random();
 
+  // Set once by the database client that uses this pool, and handed to each session on checkout.
+  @Nullable private volatile RetryBudget retryBudget;
+  private volatile PartitionedDmlMetrics partitionedDmlMetrics;
+
   @GuardedBy("lock")
   private int pendingClosure;
 
@@ -1849,13 +1929,18 @@ final class SessionPool {
     } else {
       prepareThreadPoolSize = 8;
     }
-    this.prepareExecutor =
-        Executors.newScheduledThreadPool(
+    // Sessions are only prepared in bursts, so the threads of the prepare executor are allowed to
+    // time out when they are idle instead of being kept alive for the lifetime of the pool.
+    ScheduledThreadPoolExecutor prepareThreadPool =
+        new ScheduledThreadPoolExecutor(
             prepareThreadPoolSize,
             new ThreadFactoryBuilder()
                 .setDaemon(true)
                 .setNameFormat("session-pool-prepare-%d")
                 .build());
+    prepareThreadPool.setKeepAliveTime(PREPARE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+    prepareThreadPool.allowCoreThreadTimeOut(true);
+    this.prepareExecutor = prepareThreadPool;
     this.sessionClient = sessionClient;
     this.clock = clock;
     this.poolMaintainer = new PoolMaintainer();
@@ -2008,6 +2093,21 @@ final class SessionPool {
     return null;
   }
 
+  SessionPoolOptions getOptions() {
+    return options;
+  }
+
+  /**
+   * Sets the retry budget and Partitioned DML metrics of the database client that uses this pool.
+   * These are handed to each session when it is checked out, so transactions do not need to look
+   * them up.
+   */
+  void setDatabaseClientResources(
+      @Nullable RetryBudget retryBudget, PartitionedDmlMetrics partitionedDmlMetrics) {
+    this.retryBudget = retryBudget;
+    this.partitionedDmlMetrics = partitionedDmlMetrics;
+  }
+
   /** @return true if this {@link SessionPool} is still valid. */
   boolean isValid() {
     synchronized (lock) {
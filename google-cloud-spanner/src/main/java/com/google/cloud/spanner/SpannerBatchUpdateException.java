@@ -16,12 +16,24 @@
 
 package com.google.cloud.spanner;
 
+import javax.annotation.Nullable;
+
 public class SpannerBatchUpdateException extends SpannerException {
   private long[] updateCounts;
   /** Private constructor. Use {@link SpannerExceptionFactory} to create instances. */
   SpannerBatchUpdateException(
       DoNotConstructDirectly token, ErrorCode code, String message, long[] counts) {
-    super(token, code, false, message, null);
+    this(token, code, message, counts, null);
+  }
+
+  /** Private constructor. Use {@link SpannerExceptionFactory} to create instances. */
+  SpannerBatchUpdateException(
+      DoNotConstructDirectly token,
+      ErrorCode code,
+      String message,
+      long[] counts,
+      @Nullable Throwable cause) {
+    super(token, code, false, message, cause);
     updateCounts = counts;
   }
 
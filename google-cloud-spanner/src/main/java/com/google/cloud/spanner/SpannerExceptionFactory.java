@@ -100,6 +100,12 @@ public final class SpannerExceptionFactory {
     return new SpannerBatchUpdateException(token, code, message, updateCounts);
   }
 
+  public static SpannerBatchUpdateException newSpannerBatchUpdateException(
+      ErrorCode code, String message, long[] updateCounts, @Nullable Throwable cause) {
+    DoNotConstructDirectly token = DoNotConstructDirectly.ALLOWED;
+    return new SpannerBatchUpdateException(token, code, message, updateCounts, cause);
+  }
+
   /**
    * Constructs a specific aborted exception that should only be thrown by a connection after an
    * internal retry aborted due to concurrent modifications.
@@ -36,6 +36,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.spanner.v1.ExecuteSqlRequest.QueryOptions;
 import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.Metrics;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
 import java.util.ArrayList;
@@ -144,6 +145,11 @@ class SpannerImpl extends BaseService<SpannerOptions> implements Spanner {
     return getOptions().getPrefetchChunks();
   }
 
+  /** Returns the default batch DML chunk size of this {@link SpannerImpl} instance. */
+  int getDefaultBatchDmlChunkSize() {
+    return getOptions().getBatchDmlChunkSize();
+  }
+
   /** Returns the default query options that should be used for the specified database. */
   QueryOptions getDefaultQueryOptions(DatabaseId databaseId) {
     return getOptions().getDefaultQueryOptions(databaseId);
@@ -225,6 +231,16 @@ class SpannerImpl extends BaseService<SpannerOptions> implements Spanner {
             SessionPool.createPool(
                 getOptions(), SpannerImpl.this.getSessionClient(db), labelValues);
         DatabaseClientImpl dbClient = createDatabaseClient(clientId, pool);
+        dbClient.partitionedDmlMetrics.register(Metrics.getMetricRegistry(), labelValues);
+        if (dbClient.readCoalescer != null) {
+          dbClient.readCoalescer.register(Metrics.getMetricRegistry(), labelValues);
+        }
+        if (dbClient.retryBudget != null) {
+          dbClient.retryBudget.register(Metrics.getMetricRegistry(), labelValues);
+        }
+        if (dbClient.concurrencyLimiter != null) {
+          dbClient.concurrencyLimiter.register(Metrics.getMetricRegistry(), labelValues);
+        }
         dbClients.put(db, dbClient);
         return dbClient;
       }
@@ -233,7 +249,13 @@ class SpannerImpl extends BaseService<SpannerOptions> implements Spanner {
 
   @VisibleForTesting
   DatabaseClientImpl createDatabaseClient(String clientId, SessionPool pool) {
-    return new DatabaseClientImpl(clientId, pool);
+    return new DatabaseClientImpl(
+        clientId,
+        pool,
+        getOptions().getHedgingOptions(),
+        getOptions().isCoalesceStaleReads(),
+        getOptions().getRetryBudgetOptions(),
+        getOptions().getConcurrencyLimiterOptions());
   }
 
   @Override
@@ -85,6 +85,7 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
           "https://www.googleapis.com/auth/spanner.admin",
           "https://www.googleapis.com/auth/spanner.data");
   private static final int MAX_CHANNELS = 256;
+  private static final int DEFAULT_MAX_IN_FLIGHT_CALLS_PER_CHANNEL = 50;
   private final TransportChannelProvider channelProvider;
 
   @SuppressWarnings("rawtypes")
@@ -94,12 +95,18 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
   private final SessionPoolOptions sessionPoolOptions;
   private final int prefetchChunks;
   private final int numChannels;
+  private final int maxNumChannels;
+  private final int maxInFlightCallsPerChannel;
   private final ImmutableMap<String, String> sessionLabels;
   private final SpannerStubSettings spannerStubSettings;
   private final InstanceAdminStubSettings instanceAdminStubSettings;
   private final DatabaseAdminStubSettings databaseAdminStubSettings;
   private final Duration partitionedDmlTimeout;
+  private final int batchDmlChunkSize;
   private final boolean autoThrottleAdministrativeRequests;
+  private final boolean loadAwareChannelSelection;
+  private final HedgingOptions hedgingOptions;
+  private final boolean coalesceStaleReads;
   /**
    * These are the default {@link QueryOptions} defined by the user on this {@link SpannerOptions}.
    */
@@ -117,6 +124,10 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
   private final CallCredentialsProvider callCredentialsProvider;
   private final CloseableExecutorProvider asyncExecutorProvider;
   private final String compressorName;
+  private final CompressionPolicy compressionPolicy;
+  private final ExecutorProvider transportExecutorProvider;
+  private final RetryBudgetOptions retryBudgetOptions;
+  private final ConcurrencyLimiterOptions concurrencyLimiterOptions;
 
   /**
    * Interface that can be used to provide {@link CallCredentials} instead of {@link Credentials} to
@@ -216,6 +227,13 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
         "Number of channels must fall in the range [1, %s], found: %s",
         MAX_CHANNELS,
         numChannels);
+    maxNumChannels = Math.max(numChannels, builder.maxNumChannels);
+    Preconditions.checkArgument(
+        maxNumChannels <= MAX_CHANNELS,
+        "Maximum number of channels must be at most %s, found: %s",
+        MAX_CHANNELS,
+        maxNumChannels);
+    maxInFlightCallsPerChannel = builder.maxInFlightCallsPerChannel;
 
     channelProvider = builder.channelProvider;
     channelConfigurator = builder.channelConfigurator;
@@ -234,7 +252,11 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       throw SpannerExceptionFactory.newSpannerException(e);
     }
     partitionedDmlTimeout = builder.partitionedDmlTimeout;
+    batchDmlChunkSize = builder.batchDmlChunkSize;
     autoThrottleAdministrativeRequests = builder.autoThrottleAdministrativeRequests;
+    loadAwareChannelSelection = builder.loadAwareChannelSelection;
+    hedgingOptions = builder.hedgingOptions;
+    coalesceStaleReads = builder.coalesceStaleReads;
     defaultQueryOptions = builder.defaultQueryOptions;
     envQueryOptions = builder.getEnvironmentQueryOptions();
     if (envQueryOptions.equals(QueryOptions.getDefaultInstance())) {
@@ -250,6 +272,10 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     callCredentialsProvider = builder.callCredentialsProvider;
     asyncExecutorProvider = builder.asyncExecutorProvider;
     compressorName = builder.compressorName;
+    compressionPolicy = builder.compressionPolicy;
+    transportExecutorProvider = builder.transportExecutorProvider;
+    retryBudgetOptions = builder.retryBudgetOptions;
+    concurrencyLimiterOptions = builder.concurrencyLimiterOptions;
   }
 
   /**
@@ -301,6 +327,9 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     /** By default, we create 4 channels per {@link SpannerOptions} */
     private int numChannels = 4;
 
+    private int maxNumChannels = 0;
+    private int maxInFlightCallsPerChannel = DEFAULT_MAX_IN_FLIGHT_CALLS_PER_CHANNEL;
+
     private int prefetchChunks = DEFAULT_PREFETCH_CHUNKS;
     private SessionPoolOptions sessionPoolOptions;
     private ImmutableMap<String, String> sessionLabels;
@@ -311,11 +340,19 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     private DatabaseAdminStubSettings.Builder databaseAdminStubSettingsBuilder =
         DatabaseAdminStubSettings.newBuilder();
     private Duration partitionedDmlTimeout = Duration.ofHours(2L);
+    private int batchDmlChunkSize = 0;
     private boolean autoThrottleAdministrativeRequests = false;
+    private boolean loadAwareChannelSelection = false;
+    private HedgingOptions hedgingOptions;
+    private boolean coalesceStaleReads = false;
     private Map<DatabaseId, QueryOptions> defaultQueryOptions = new HashMap<>();
     private CallCredentialsProvider callCredentialsProvider;
     private CloseableExecutorProvider asyncExecutorProvider;
     private String compressorName;
+    private CompressionPolicy compressionPolicy;
+    private ExecutorProvider transportExecutorProvider;
+    private RetryBudgetOptions retryBudgetOptions;
+    private ConcurrencyLimiterOptions concurrencyLimiterOptions;
     private String emulatorHost = System.getenv("SPANNER_EMULATOR_HOST");
 
     private Builder() {
@@ -382,6 +419,8 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
         this.emulatorHost = null;
       }
       this.numChannels = options.numChannels;
+      this.maxNumChannels = options.maxNumChannels;
+      this.maxInFlightCallsPerChannel = options.maxInFlightCallsPerChannel;
       this.sessionPoolOptions = options.sessionPoolOptions;
       this.prefetchChunks = options.prefetchChunks;
       this.sessionLabels = options.sessionLabels;
@@ -389,11 +428,19 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       this.instanceAdminStubSettingsBuilder = options.instanceAdminStubSettings.toBuilder();
       this.databaseAdminStubSettingsBuilder = options.databaseAdminStubSettings.toBuilder();
       this.partitionedDmlTimeout = options.partitionedDmlTimeout;
+      this.batchDmlChunkSize = options.batchDmlChunkSize;
       this.autoThrottleAdministrativeRequests = options.autoThrottleAdministrativeRequests;
+      this.loadAwareChannelSelection = options.loadAwareChannelSelection;
+      this.hedgingOptions = options.hedgingOptions;
+      this.coalesceStaleReads = options.coalesceStaleReads;
       this.defaultQueryOptions = options.defaultQueryOptions;
       this.callCredentialsProvider = options.callCredentialsProvider;
       this.asyncExecutorProvider = options.asyncExecutorProvider;
       this.compressorName = options.compressorName;
+      this.compressionPolicy = options.compressionPolicy;
+      this.transportExecutorProvider = options.transportExecutorProvider;
+      this.retryBudgetOptions = options.retryBudgetOptions;
+      this.concurrencyLimiterOptions = options.concurrencyLimiterOptions;
       this.channelProvider = options.channelProvider;
       this.channelConfigurator = options.channelConfigurator;
       this.interceptorProvider = options.interceptorProvider;
@@ -451,6 +498,34 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       return this;
     }
 
+    /**
+     * Sets the maximum number of gRPC channels to use. If this value is larger than the number of
+     * channels set with {@link #setNumChannels(int)}, the client starts with that number of
+     * channels and activates additional channels when the average number of outstanding calls per
+     * channel exceeds {@link #setMaxInFlightCallsPerChannel(int)}. Channels are deactivated again
+     * when the load decreases. The channel affinity of sessions is redistributed over the active
+     * channels when the number of active channels changes. By default the number of channels is
+     * fixed.
+     */
+    public Builder setMaxNumChannels(int maxNumChannels) {
+      Preconditions.checkArgument(maxNumChannels > 0, "maxNumChannels must be greater than zero");
+      this.maxNumChannels = maxNumChannels;
+      return this;
+    }
+
+    /**
+     * Sets the average number of outstanding calls per gRPC channel above which an additional
+     * channel is activated. This value only has an effect if {@link #setMaxNumChannels(int)} is
+     * larger than the number of channels. A gRPC channel can by default handle at most 100
+     * concurrent streams before new calls are queued. The default is 50.
+     */
+    public Builder setMaxInFlightCallsPerChannel(int maxInFlightCallsPerChannel) {
+      Preconditions.checkArgument(
+          maxInFlightCallsPerChannel > 0, "maxInFlightCallsPerChannel must be greater than zero");
+      this.maxInFlightCallsPerChannel = maxInFlightCallsPerChannel;
+      return this;
+    }
+
     /**
      * Sets the options for managing the session pool. If not specified then the default {@code
      * SessionPoolOptions} is used.
@@ -585,6 +660,22 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       return this;
     }
 
+    /**
+     * Sets the maximum number of statements that will be sent to Cloud Spanner in one {@code
+     * ExecuteBatchDml} request by {@link TransactionContext#batchUpdate(Iterable)} and {@link
+     * TransactionContext#batchUpdateAsync(Iterable)}. Larger batches are split into chunks of at
+     * most this size. The chunks are executed one after the other in the same transaction, and the
+     * update counts of all chunks are returned as if the batch had been executed in one request.
+     * Execution stops at the first statement that fails, also if that statement is in a later
+     * chunk. The latency of each chunk is added as an annotation to the trace of the transaction.
+     * The default is 0, which means that batches are never split.
+     */
+    public Builder setBatchDmlChunkSize(int chunkSize) {
+      Preconditions.checkArgument(chunkSize >= 0, "Chunk size must be >= 0");
+      this.batchDmlChunkSize = chunkSize;
+      return this;
+    }
+
     /**
      * Instructs the client library to automatically throttle the number of administrative requests
      * if the rate of administrative requests generated by this {@link Spanner} instance will exceed
@@ -601,6 +692,42 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       return this;
     }
 
+    /**
+     * Enables load-aware channel selection. By default, each RPC is sent on the gRPC channel that
+     * is determined by the session that it uses. With load-aware channel selection, the client
+     * keeps track of the number of outstanding calls and the recent latency of each channel, and
+     * sends calls that are not part of a transaction, such as single-use reads, session creation
+     * and keep-alive queries, on the least loaded channel. Calls that are part of a transaction
+     * keep using the channel of their session. The default is false.
+     */
+    public Builder setLoadAwareChannelSelection(boolean loadAwareChannelSelection) {
+      this.loadAwareChannelSelection = loadAwareChannelSelection;
+      return this;
+    }
+
+    /**
+     * Enables hedging of single-row reads in single-use read-only transactions with the given
+     * {@link HedgingOptions}. A hedged read is sent a second time on a different session if it has
+     * not returned within the hedging delay, which reduces the tail latency of reads at the cost of
+     * a limited number of extra requests. Hedging is disabled by default.
+     */
+    public Builder setHedgingOptions(HedgingOptions hedgingOptions) {
+      this.hedgingOptions = Preconditions.checkNotNull(hedgingOptions);
+      return this;
+    }
+
+    /**
+     * Enables coalescing of identical single-row reads in single-use read-only transactions with a
+     * stale {@link TimestampBound}. A read that is identical to a read that is already in flight
+     * will wait for and return the result of that read instead of executing a separate RPC. This
+     * reduces the load on the backend when many threads read the same row at the same moment.
+     * Strong reads are never coalesced. Coalescing is disabled by default.
+     */
+    public Builder setCoalesceStaleReads(boolean coalesceStaleReads) {
+      this.coalesceStaleReads = coalesceStaleReads;
+      return this;
+    }
+
     /**
      * Sets the default {@link QueryOptions} that will be used for all queries on the specified
      * database. Query options can also be specified on a per-query basis and as environment
@@ -665,6 +792,61 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
       return this;
     }
 
+    /**
+     * Sets the policy for compressing requests. When a policy is set, only the requests of the
+     * methods of the policy whose serialized size is at least the minimum message size of the
+     * policy are compressed. This prevents spending CPU time on compressing small requests, while
+     * large requests such as commits with many mutations are still compressed. No compression
+     * policy is set by default.
+     */
+    public Builder setCompressionPolicy(CompressionPolicy compressionPolicy) {
+      this.compressionPolicy = Preconditions.checkNotNull(compressionPolicy);
+      return this;
+    }
+
+    /**
+     * Sets the {@link ExecutorProvider} for the gRPC channels, the stream watchdog and the
+     * background work of the Gapic clients of a {@link Spanner} instance. All these components use
+     * one executor that is created by this provider. By default, each {@link Spanner} instance
+     * creates one bounded executor with at least 16 threads.
+     *
+     * <p>A provider that returns the same executor for multiple {@link Spanner} instances can be
+     * used to limit the total number of threads in an application that uses several {@link Spanner}
+     * instances. The executor is only shut down when the {@link Spanner} instance is closed if
+     * {@link ExecutorProvider#shouldAutoClose()} returns true.
+     */
+    public Builder setTransportExecutorProvider(ExecutorProvider transportExecutorProvider) {
+      this.transportExecutorProvider = Preconditions.checkNotNull(transportExecutorProvider);
+      return this;
+    }
+
+    /**
+     * Sets the retry budget for aborted read/write transactions. When a retry budget is set, each
+     * database client limits the number of retries of aborted transactions based on the number of
+     * recently committed transactions, and increases the backoff between retries when the abort
+     * rate on the database is high. This prevents clients from retrying indefinitely when many
+     * transactions are aborted because of contention on the same rows. No retry budget is set by
+     * default.
+     */
+    public Builder setRetryBudgetOptions(RetryBudgetOptions retryBudgetOptions) {
+      this.retryBudgetOptions = Preconditions.checkNotNull(retryBudgetOptions);
+      return this;
+    }
+
+    /**
+     * Sets an adaptive concurrency limiter for database clients. When a limiter is set, each
+     * database client limits the number of synchronous single-use reads and queries, blind writes
+     * and read/write transactions that it executes in parallel. The limit is lowered when Cloud
+     * Spanner returns {@link ErrorCode#RESOURCE_EXHAUSTED} or when the latency of operations
+     * increases, and raised again when operations succeed. Operations that exceed the limit wait
+     * until another operation finishes. No limiter is set by default.
+     */
+    public Builder setConcurrencyLimiterOptions(
+        ConcurrencyLimiterOptions concurrencyLimiterOptions) {
+      this.concurrencyLimiterOptions = Preconditions.checkNotNull(concurrencyLimiterOptions);
+      return this;
+    }
+
     /**
      * Specifying this will allow the client to prefetch up to {@code prefetchChunks} {@code
      * PartialResultSet} chunks for each read and query. The data size of each chunk depends on the
@@ -765,6 +947,14 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     return numChannels;
   }
 
+  public int getMaxNumChannels() {
+    return maxNumChannels;
+  }
+
+  public int getMaxInFlightCallsPerChannel() {
+    return maxInFlightCallsPerChannel;
+  }
+
   public SessionPoolOptions getSessionPoolOptions() {
     return sessionPoolOptions;
   }
@@ -789,10 +979,28 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     return partitionedDmlTimeout;
   }
 
+  public int getBatchDmlChunkSize() {
+    return batchDmlChunkSize;
+  }
+
   public boolean isAutoThrottleAdministrativeRequests() {
     return autoThrottleAdministrativeRequests;
   }
 
+  public boolean isLoadAwareChannelSelection() {
+    return loadAwareChannelSelection;
+  }
+
+  /** Returns the options for hedging single-row reads, or <code>null</code> if disabled. */
+  @Nullable
+  public HedgingOptions getHedgingOptions() {
+    return hedgingOptions;
+  }
+
+  public boolean isCoalesceStaleReads() {
+    return coalesceStaleReads;
+  }
+
   public CallCredentialsProvider getCallCredentialsProvider() {
     return callCredentialsProvider;
   }
@@ -801,6 +1009,33 @@ public class SpannerOptions extends ServiceOptions<Spanner, SpannerOptions> {
     return compressorName;
   }
 
+  /** Returns the policy for compressing requests, or <code>null</code> if none has been set. */
+  @Nullable
+  public CompressionPolicy getCompressionPolicy() {
+    return compressionPolicy;
+  }
+
+  /**
+   * Returns the {@link ExecutorProvider} for the transport of the client, or <code>null</code> if
+   * the default provider should be used.
+   */
+  @Nullable
+  public ExecutorProvider getTransportExecutorProvider() {
+    return transportExecutorProvider;
+  }
+
+  /** Returns the retry budget for aborted transactions, or <code>null</code> if none is set. */
+  @Nullable
+  public RetryBudgetOptions getRetryBudgetOptions() {
+    return retryBudgetOptions;
+  }
+
+  /** Returns the adaptive concurrency limiter options, or <code>null</code> if none are set. */
+  @Nullable
+  public ConcurrencyLimiterOptions getConcurrencyLimiterOptions() {
+    return concurrencyLimiterOptions;
+  }
+
   /** Returns the default query options to use for the specific database. */
   public QueryOptions getDefaultQueryOptions(DatabaseId databaseId) {
     // Use the specific query options for the database if any have been specified. These have
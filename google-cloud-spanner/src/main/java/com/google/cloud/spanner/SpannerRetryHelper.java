@@ -17,6 +17,7 @@
 package com.google.cloud.spanner;
 
 import com.google.api.core.NanoClock;
+import com.google.api.gax.retrying.ExponentialRetryAlgorithm;
 import com.google.api.gax.retrying.ResultRetryAlgorithm;
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.api.gax.retrying.TimedAttemptSettings;
@@ -29,12 +30,13 @@ import com.google.spanner.v1.RollbackRequest;
 import io.grpc.Context;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import javax.annotation.Nullable;
 import org.threeten.bp.Duration;
 
 /**
  * Util class for retrying aborted transactions. This class is a wrapper around {@link RetryHelper}
  * that uses specific settings to only retry on aborted transactions, without a timeout and without
- * a cap on the number of retries.
+ * a cap on the number of retries, unless a {@link RetryBudget} is given.
  */
 class SpannerRetryHelper {
 
@@ -53,7 +55,16 @@ class SpannerRetryHelper {
 
   /** Executes the {@link Callable} and retries if it fails with an {@link AbortedException}. */
   static <T> T runTxWithRetriesOnAborted(Callable<T> callable) {
-    return runTxWithRetriesOnAborted(callable, txRetrySettings);
+    return runTxWithRetriesOnAborted(callable, txRetrySettings, null);
+  }
+
+  /**
+   * Executes the {@link Callable} and retries if it fails with an {@link AbortedException} and the
+   * {@link RetryBudget} allows a retry. The backoff between retries is increased by the budget
+   * based on the abort rate of the database.
+   */
+  static <T> T runTxWithRetriesOnAborted(Callable<T> callable, @Nullable RetryBudget budget) {
+    return runTxWithRetriesOnAborted(callable, txRetrySettings, budget);
   }
 
   /**
@@ -61,9 +72,22 @@ class SpannerRetryHelper {
    * the specific {@link RetrySettings}.
    */
   static <T> T runTxWithRetriesOnAborted(Callable<T> callable, RetrySettings retrySettings) {
+    return runTxWithRetriesOnAborted(callable, retrySettings, null);
+  }
+
+  private static <T> T runTxWithRetriesOnAborted(
+      Callable<T> callable, RetrySettings retrySettings, @Nullable RetryBudget budget) {
     try {
-      return RetryHelper.runWithRetries(
-          callable, retrySettings, new TxRetryAlgorithm<>(), NanoClock.getDefaultClock());
+      T result =
+          RetryHelper.runWithRetries(
+              callable,
+              retrySettings,
+              new TxRetryAlgorithm<T>(retrySettings, budget),
+              NanoClock.getDefaultClock());
+      if (budget != null) {
+        budget.recordSuccess();
+      }
+      return result;
     } catch (RetryHelperException e) {
       if (e.getCause() != null) {
         Throwables.throwIfUnchecked(e.getCause());
@@ -73,21 +97,49 @@ class SpannerRetryHelper {
   }
 
   private static class TxRetryAlgorithm<T> implements ResultRetryAlgorithm<T> {
+    private final RetrySettings retrySettings;
+    @Nullable private final RetryBudget budget;
+
+    private TxRetryAlgorithm(RetrySettings retrySettings, @Nullable RetryBudget budget) {
+      this.retrySettings = retrySettings;
+      this.budget = budget;
+    }
+
     @Override
     public TimedAttemptSettings createNextAttempt(
         Throwable prevThrowable, T prevResponse, TimedAttemptSettings prevSettings) {
       if (prevThrowable != null) {
+        // This method is only called once for each attempt that should be retried, while
+        // shouldRetry(Throwable, T) may be called multiple times for the same attempt.
+        if (budget != null && !budget.tryRetry()) {
+          throw SpannerExceptionFactory.newSpannerException(
+              ErrorCode.ABORTED,
+              "Transaction was aborted and the retry budget of the database has been exhausted",
+              prevThrowable);
+        }
         long retryDelay = SpannerException.extractRetryDelay(prevThrowable);
         if (retryDelay > -1L) {
           return prevSettings
               .toBuilder()
-              .setRandomizedRetryDelay(Duration.ofMillis(retryDelay))
+              .setRandomizedRetryDelay(backoff(Duration.ofMillis(retryDelay)))
+              .build();
+        }
+        if (budget != null) {
+          TimedAttemptSettings next =
+              new ExponentialRetryAlgorithm(retrySettings, NanoClock.getDefaultClock())
+                  .createNextAttempt(prevSettings);
+          return next.toBuilder()
+              .setRandomizedRetryDelay(backoff(next.getRandomizedRetryDelay()))
               .build();
         }
       }
       return null;
     }
 
+    private Duration backoff(Duration delay) {
+      return budget == null ? delay : budget.backoff(delay);
+    }
+
     @Override
     public boolean shouldRetry(Throwable prevThrowable, T prevResponse)
         throws CancellationException {
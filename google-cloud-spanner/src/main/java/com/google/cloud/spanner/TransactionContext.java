@@ -142,4 +142,22 @@ public interface TransactionContext extends ReadContext {
    * of that statement is known and has been returned to the client.
    */
   ApiFuture<long[]> batchUpdateAsync(Iterable<Statement> statements);
+
+  /**
+   * Same as {@link #executeUpdateAsync(Statement)}, but the statement is executed as part of a
+   * pipeline of DML statements. Pipelined statements are sent to Cloud Spanner in the order that
+   * they were submitted in the client. All statements that are submitted while a previous part of
+   * the pipeline is still being executed are sent together in a single {@code ExecuteBatchDml}
+   * request when that part of the pipeline has finished. Submitting a number of independent DML
+   * statements back-to-back therefore costs approximately two round trips instead of one round trip
+   * per statement, while each statement will see the results of all statements that were submitted
+   * before it.
+   *
+   * <p>A failure of one pipelined statement does not prevent the execution of the following
+   * statements, unless the failure aborts the transaction. Any other read, query or update in the
+   * transaction will first wait until all pipelined statements that have been submitted before it
+   * have finished. Asynchronous reads, queries and updates do not block the calling thread while
+   * they wait.
+   */
+  ApiFuture<Long> executeUpdatePipelinedAsync(Statement statement);
 }
@@ -32,14 +32,17 @@ import com.google.cloud.spanner.Options.ReadOption;
 import com.google.cloud.spanner.SessionImpl.SessionTransaction;
 import com.google.cloud.spanner.spi.v1.SpannerRpc;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 import com.google.rpc.Code;
 import com.google.spanner.v1.CommitRequest;
 import com.google.spanner.v1.CommitResponse;
-import com.google.spanner.v1.ExecuteBatchDmlRequest;
 import com.google.spanner.v1.ExecuteBatchDmlResponse;
 import com.google.spanner.v1.ExecuteSqlRequest;
 import com.google.spanner.v1.ExecuteSqlRequest.QueryMode;
@@ -52,10 +55,13 @@ import io.opencensus.trace.Span;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -71,6 +77,7 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
   static class TransactionContextImpl extends AbstractReadContext implements TransactionContext {
     static class Builder extends AbstractReadContext.Builder<Builder, TransactionContextImpl> {
       private ByteString transactionId;
+      private int batchUpdateChunkSize;
 
       private Builder() {}
 
@@ -79,6 +86,11 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
         return self();
       }
 
+      Builder setBatchUpdateChunkSize(int batchUpdateChunkSize) {
+        this.batchUpdateChunkSize = batchUpdateChunkSize;
+        return self();
+      }
+
       @Override
       TransactionContextImpl build() {
         return new TransactionContextImpl(this);
@@ -146,17 +158,40 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
     @GuardedBy("lock")
     private boolean aborted;
 
+    /** A pipelined DML statement that is waiting to be sent to Cloud Spanner. */
+    private static final class PipelinedUpdate {
+      private final Statement statement;
+      private final SettableApiFuture<Long> result = SettableApiFuture.create();
+
+      private PipelinedUpdate(Statement statement) {
+        this.statement = statement;
+      }
+    }
+
+    /** The pipelined DML statements that will be sent in the next batch of the pipeline. */
+    @GuardedBy("lock")
+    private List<PipelinedUpdate> pipelinedUpdates = new ArrayList<>();
+
+    @GuardedBy("lock")
+    private boolean pipelineRunning;
+
+    @GuardedBy("lock")
+    private SettableApiFuture<Void> pipelineFinished = SettableApiFuture.create();
+
     /** Default to -1 to indicate not available. */
     @GuardedBy("lock")
     private long retryDelayInMillis = -1L;
 
     private ByteString transactionId;
     private Timestamp commitTimestamp;
+    private final int batchUpdateChunkSize;
 
     private TransactionContextImpl(Builder builder) {
       super(builder);
       this.transactionId = builder.transactionId;
+      this.batchUpdateChunkSize = builder.batchUpdateChunkSize;
       this.finishedAsyncOperations.set(null);
+      this.pipelineFinished.set(null);
     }
 
     private void increaseAsynOperations() {
@@ -424,6 +459,7 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
     @Override
     public long executeUpdate(Statement statement) {
       beforeReadOrQuery();
+      awaitPrecedingStatements(getPrecedingStatements());
       final ExecuteSqlRequest.Builder builder =
           getExecuteSqlRequestBuilder(statement, QueryMode.NORMAL);
       try {
@@ -442,8 +478,23 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
     }
 
     @Override
-    public ApiFuture<Long> executeUpdateAsync(Statement statement) {
+    public ApiFuture<Long> executeUpdateAsync(final Statement statement) {
       beforeReadOrQuery();
+      ApiFuture<Void> precedingStatements = getPrecedingStatements();
+      if (precedingStatements.isDone()) {
+        return internalExecuteUpdateAsync(statement);
+      }
+      return executeAfter(
+          precedingStatements,
+          new ApiAsyncFunction<Void, Long>() {
+            @Override
+            public ApiFuture<Long> apply(Void input) {
+              return internalExecuteUpdateAsync(statement);
+            }
+          });
+    }
+
+    private ApiFuture<Long> internalExecuteUpdateAsync(Statement statement) {
       final ExecuteSqlRequest.Builder builder =
           getExecuteSqlRequestBuilder(statement, QueryMode.NORMAL);
       ApiFuture<com.google.spanner.v1.ResultSet> resultSet;
@@ -496,30 +547,185 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
       return updateCount;
     }
 
+    /**
+     * Returns a future that is done when all pipelined DML statements that have been submitted so
+     * far have finished. Any other statement in the transaction must wait for this future, so it
+     * will see the results of the pipelined statements.
+     */
     @Override
-    public long[] batchUpdate(Iterable<Statement> statements) {
-      beforeReadOrQuery();
-      final ExecuteBatchDmlRequest.Builder builder = getExecuteBatchDmlRequestBuilder(statements);
+    ApiFuture<Void> getPrecedingStatements() {
+      synchronized (lock) {
+        return pipelineFinished;
+      }
+    }
+
+    /**
+     * Executes the given asynchronous statement when the given preceding statements have finished,
+     * without blocking the calling thread. The statement is registered as an async operation that
+     * must finish before the transaction may commit while it is waiting.
+     */
+    private <T> ApiFuture<T> executeAfter(
+        ApiFuture<Void> precedingStatements, ApiAsyncFunction<Void, T> statement) {
+      increaseAsynOperations();
+      ApiFuture<T> result =
+          ApiFutures.transformAsync(precedingStatements, statement, MoreExecutors.directExecutor());
+      result.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              decreaseAsyncOperations();
+            }
+          },
+          MoreExecutors.directExecutor());
+      return result;
+    }
+
+    @Override
+    public ApiFuture<Long> executeUpdatePipelinedAsync(Statement statement) {
+      PipelinedUpdate update = new PipelinedUpdate(checkNotNull(statement));
+      List<PipelinedUpdate> batch = null;
+      synchronized (lock) {
+        beforeReadOrQueryLocked();
+        // Register the update as an async operation that must finish before the transaction may
+        // commit.
+        increaseAsynOperations();
+        pipelinedUpdates.add(update);
+        if (!pipelineRunning) {
+          pipelineRunning = true;
+          pipelineFinished = SettableApiFuture.create();
+          batch = pipelinedUpdates;
+          pipelinedUpdates = new ArrayList<>();
+        }
+      }
+      if (batch != null) {
+        sendPipelinedUpdates(batch);
+      }
+      return update.result;
+    }
+
+    /**
+     * Sends the given pipelined DML statements in a single batch. All statements that are submitted
+     * while this batch is being executed are sent in the next batch when this batch has finished.
+     */
+    private void sendPipelinedUpdates(final List<PipelinedUpdate> batch) {
+      List<Statement> statements = new ArrayList<>(batch.size());
+      for (PipelinedUpdate update : batch) {
+        statements.add(update.statement);
+      }
+      ApiFuture<ExecuteBatchDmlResponse> response;
+      try {
+        response =
+            rpc.executeBatchDmlAsync(
+                getExecuteBatchDmlRequestBuilder(statements).build(), session.getOptions());
+      } catch (Throwable t) {
+        response = ApiFutures.immediateFailedFuture(t);
+      }
+      final ApiFuture<ExecuteBatchDmlResponse> finalResponse = response;
+      response.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              handlePipelinedUpdatesResponse(batch, finalResponse);
+            }
+          },
+          MoreExecutors.directExecutor());
+    }
+
+    private void handlePipelinedUpdatesResponse(
+        List<PipelinedUpdate> batch, ApiFuture<ExecuteBatchDmlResponse> response) {
+      long[] updateCounts = new long[0];
+      SpannerException error = null;
+      // The number of statements in the batch that have finished, either successfully or with
+      // the error.
+      int finished = 0;
       try {
-        com.google.spanner.v1.ExecuteBatchDmlResponse response =
-            rpc.executeBatchDml(builder.build(), session.getOptions());
-        long[] results = new long[response.getResultSetsCount()];
-        for (int i = 0; i < response.getResultSetsCount(); ++i) {
-          results[i] = response.getResultSets(i).getStats().getRowCountExact();
+        ExecuteBatchDmlResponse input = response.get();
+        updateCounts = new long[Math.min(input.getResultSetsCount(), batch.size())];
+        for (int i = 0; i < updateCounts.length; i++) {
+          updateCounts[i] = input.getResultSets(i).getStats().getRowCountExact();
+        }
+        finished = updateCounts.length;
+        if (input.getStatus().getCode() != Code.OK_VALUE && finished < batch.size()) {
+          error =
+              newSpannerException(
+                  ErrorCode.fromRpcStatus(input.getStatus()), input.getStatus().getMessage());
+          onError(error);
+          // The statements after the failed statement were not executed. These are put back at
+          // the front of the pipeline, as a failure of one statement should not affect the others,
+          // unless the transaction was aborted.
+          finished = error.getErrorCode() == ErrorCode.ABORTED ? batch.size() : finished + 1;
+        }
+      } catch (ExecutionException e) {
+        error =
+            SpannerExceptionFactory.newSpannerException(e.getCause() == null ? e : e.getCause());
+        onError(error);
+        finished = batch.size();
+      } catch (InterruptedException e) {
+        error = SpannerExceptionFactory.propagateInterrupt(e);
+        finished = batch.size();
+      }
+
+      List<PipelinedUpdate> next = null;
+      SettableApiFuture<Void> pipelineDone = null;
+      synchronized (lock) {
+        if (finished < batch.size()) {
+          List<PipelinedUpdate> notExecuted =
+              new ArrayList<>(batch.subList(finished, batch.size()));
+          notExecuted.addAll(pipelinedUpdates);
+          pipelinedUpdates = notExecuted;
         }
+        if (pipelinedUpdates.isEmpty()) {
+          pipelineRunning = false;
+          pipelineDone = pipelineFinished;
+        } else {
+          next = pipelinedUpdates;
+          pipelinedUpdates = new ArrayList<>();
+        }
+      }
+      // Continue or finish the pipeline before the results of this batch are returned. A callback
+      // on one of the results could otherwise wait for the pipeline on the thread that must
+      // continue it.
+      if (next == null) {
+        pipelineDone.set(null);
+      } else {
+        sendPipelinedUpdates(next);
+      }
+      // Statements that have been put back in the pipeline are still registered as running async
+      // operations.
+      for (int i = 0; i < finished; i++) {
+        decreaseAsyncOperations();
+      }
+      for (int i = 0; i < finished; i++) {
+        if (i < updateCounts.length) {
+          batch.get(i).result.set(updateCounts[i]);
+        } else {
+          batch.get(i).result.setException(error);
+        }
+      }
+    }
 
-        // If one of the DML statements was aborted, we should throw an aborted exception.
-        // In all other cases, we should throw a BatchUpdateException.
-        if (response.getStatus().getCode() == Code.ABORTED_VALUE) {
-          throw newSpannerException(
-              ErrorCode.fromRpcStatus(response.getStatus()), response.getStatus().getMessage());
-        } else if (response.getStatus().getCode() != 0) {
-          throw newSpannerBatchUpdateException(
-              ErrorCode.fromRpcStatus(response.getStatus()),
-              response.getStatus().getMessage(),
-              results);
+    @Override
+    public long[] batchUpdate(Iterable<Statement> statements) {
+      beforeReadOrQuery();
+      awaitPrecedingStatements(getPrecedingStatements());
+      List<List<Statement>> chunks = partitionBatchUpdate(statements);
+      long[][] results = new long[chunks.size()][];
+      try {
+        for (int i = 0; i < chunks.size(); i++) {
+          Stopwatch watch = Stopwatch.createStarted();
+          com.google.spanner.v1.ExecuteBatchDmlResponse response =
+              rpc.executeBatchDml(
+                  getExecuteBatchDmlRequestBuilder(chunks.get(i)).build(), session.getOptions());
+          annotateBatchUpdateChunk(chunks, i, watch);
+          try {
+            results[i] = toUpdateCounts(response);
+          } catch (SpannerBatchUpdateException e) {
+            results[i] = e.getUpdateCounts();
+            throw newSpannerBatchUpdateException(
+                e.getErrorCode(), e.getMessage(), Longs.concat(Arrays.copyOf(results, i + 1)));
+          }
         }
-        return results;
+        return Longs.concat(results);
       } catch (SpannerException e) {
         onError(e);
         throw e;
@@ -529,42 +735,32 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
     @Override
     public ApiFuture<long[]> batchUpdateAsync(Iterable<Statement> statements) {
       beforeReadOrQuery();
-      final ExecuteBatchDmlRequest.Builder builder = getExecuteBatchDmlRequestBuilder(statements);
-      ApiFuture<com.google.spanner.v1.ExecuteBatchDmlResponse> response;
+      final List<List<Statement>> chunks = partitionBatchUpdate(statements);
+      ApiFuture<Void> precedingStatements = getPrecedingStatements();
+      if (precedingStatements.isDone()) {
+        return internalBatchUpdateAsync(chunks);
+      }
+      return executeAfter(
+          precedingStatements,
+          new ApiAsyncFunction<Void, long[]>() {
+            @Override
+            public ApiFuture<long[]> apply(Void input) {
+              return internalBatchUpdateAsync(chunks);
+            }
+          });
+    }
+
+    private ApiFuture<long[]> internalBatchUpdateAsync(List<List<Statement>> chunks) {
+      final ApiFuture<long[]> updateCounts;
       try {
         // Register the update as an async operation that must finish before the transaction may
         // commit.
         increaseAsynOperations();
-        response = rpc.executeBatchDmlAsync(builder.build(), session.getOptions());
+        updateCounts = executeBatchUpdateChunksAsync(chunks, 0, new long[0]);
       } catch (Throwable t) {
         decreaseAsyncOperations();
         throw t;
       }
-      final ApiFuture<long[]> updateCounts =
-          ApiFutures.transform(
-              response,
-              new ApiFunction<ExecuteBatchDmlResponse, long[]>() {
-                @Override
-                public long[] apply(ExecuteBatchDmlResponse input) {
-                  long[] results = new long[input.getResultSetsCount()];
-                  for (int i = 0; i < input.getResultSetsCount(); ++i) {
-                    results[i] = input.getResultSets(i).getStats().getRowCountExact();
-                  }
-                  // If one of the DML statements was aborted, we should throw an aborted exception.
-                  // In all other cases, we should throw a BatchUpdateException.
-                  if (input.getStatus().getCode() == Code.ABORTED_VALUE) {
-                    throw newSpannerException(
-                        ErrorCode.fromRpcStatus(input.getStatus()), input.getStatus().getMessage());
-                  } else if (input.getStatus().getCode() != 0) {
-                    throw newSpannerBatchUpdateException(
-                        ErrorCode.fromRpcStatus(input.getStatus()),
-                        input.getStatus().getMessage(),
-                        results);
-                  }
-                  return results;
-                }
-              },
-              MoreExecutors.directExecutor());
       updateCounts.addListener(
           new Runnable() {
             @Override
@@ -584,6 +780,101 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
       return updateCounts;
     }
 
+    /**
+     * Executes the chunk with the given index and then all following chunks of a batch update. Each
+     * chunk is only sent when the previous chunk has finished, as the statements must be executed
+     * in order, and execution must stop at the first statement that fails.
+     */
+    private ApiFuture<long[]> executeBatchUpdateChunksAsync(
+        final List<List<Statement>> chunks, final int index, final long[] previousUpdateCounts) {
+      final Stopwatch watch = Stopwatch.createStarted();
+      ApiFuture<ExecuteBatchDmlResponse> response =
+          rpc.executeBatchDmlAsync(
+              getExecuteBatchDmlRequestBuilder(chunks.get(index)).build(), session.getOptions());
+      ApiFuture<long[]> updateCounts =
+          ApiFutures.transform(
+              response,
+              new ApiFunction<ExecuteBatchDmlResponse, long[]>() {
+                @Override
+                public long[] apply(ExecuteBatchDmlResponse input) {
+                  annotateBatchUpdateChunk(chunks, index, watch);
+                  try {
+                    return Longs.concat(previousUpdateCounts, toUpdateCounts(input));
+                  } catch (SpannerBatchUpdateException e) {
+                    throw newSpannerBatchUpdateException(
+                        e.getErrorCode(),
+                        e.getMessage(),
+                        Longs.concat(previousUpdateCounts, e.getUpdateCounts()));
+                  }
+                }
+              },
+              MoreExecutors.directExecutor());
+      if (index == chunks.size() - 1) {
+        return updateCounts;
+      }
+      return ApiFutures.transformAsync(
+          updateCounts,
+          new ApiAsyncFunction<long[], long[]>() {
+            @Override
+            public ApiFuture<long[]> apply(long[] input) throws Exception {
+              return executeBatchUpdateChunksAsync(chunks, index + 1, input);
+            }
+          },
+          MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Splits the given statements into chunks of at most {@link #batchUpdateChunkSize} statements.
+     * Returns all statements as one chunk if chunking has not been enabled.
+     */
+    private List<List<Statement>> partitionBatchUpdate(Iterable<Statement> statements) {
+      List<Statement> list = ImmutableList.copyOf(statements);
+      if (batchUpdateChunkSize <= 0 || list.size() <= batchUpdateChunkSize) {
+        return Collections.singletonList(list);
+      }
+      return Lists.partition(list, batchUpdateChunkSize);
+    }
+
+    private void annotateBatchUpdateChunk(
+        List<List<Statement>> chunks, int index, Stopwatch watch) {
+      if (chunks.size() > 1) {
+        span.addAnnotation(
+            "Batch DML chunk done",
+            ImmutableMap.of(
+                "Chunk",
+                AttributeValue.longAttributeValue(index + 1),
+                "Chunks",
+                AttributeValue.longAttributeValue(chunks.size()),
+                "Statements",
+                AttributeValue.longAttributeValue(chunks.get(index).size()),
+                "Latency ms",
+                AttributeValue.longAttributeValue(watch.elapsed(TimeUnit.MILLISECONDS))));
+      }
+    }
+
+    /**
+     * Returns the update counts in the given response, or throws an exception if one of the
+     * statements failed.
+     */
+    private static long[] toUpdateCounts(ExecuteBatchDmlResponse response) {
+      long[] results = new long[response.getResultSetsCount()];
+      for (int i = 0; i < response.getResultSetsCount(); ++i) {
+        results[i] = response.getResultSets(i).getStats().getRowCountExact();
+      }
+      // If one of the DML statements was aborted, we should throw an aborted exception.
+      // In all other cases, we should throw a BatchUpdateException.
+      if (response.getStatus().getCode() == Code.ABORTED_VALUE) {
+        throw newSpannerException(
+            ErrorCode.fromRpcStatus(response.getStatus()), response.getStatus().getMessage());
+      } else if (response.getStatus().getCode() != 0) {
+        throw newSpannerBatchUpdateException(
+            ErrorCode.fromRpcStatus(response.getStatus()),
+            response.getStatus().getMessage(),
+            results);
+      }
+      return results;
+    }
+
     private ListenableAsyncResultSet wrap(ListenableAsyncResultSet delegate) {
       return new TransactionContextAsyncResultSetImpl(delegate);
     }
@@ -609,6 +900,7 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
 
   private boolean blockNestedTxn = true;
   private final SessionImpl session;
+  @Nullable private final RetryBudget retryBudget;
   private Span span;
   private TransactionContextImpl txn;
   private volatile boolean isValid = true;
@@ -620,8 +912,17 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
   }
 
   TransactionRunnerImpl(SessionImpl session, SpannerRpc rpc, int defaultPrefetchChunks) {
+    this(session, rpc, defaultPrefetchChunks, null);
+  }
+
+  TransactionRunnerImpl(
+      SessionImpl session,
+      SpannerRpc rpc,
+      int defaultPrefetchChunks,
+      @Nullable RetryBudget retryBudget) {
     this.session = session;
     this.txn = session.newTransaction();
+    this.retryBudget = retryBudget;
   }
 
   @Override
@@ -731,7 +1032,7 @@ class TransactionRunnerImpl implements SessionTransaction, TransactionRunner {
             }
           }
         };
-    return SpannerRetryHelper.runTxWithRetriesOnAborted(retryCallable);
+    return SpannerRetryHelper.runTxWithRetriesOnAborted(retryCallable, retryBudget);
   }
 
   @Override
@@ -113,6 +113,17 @@ abstract class AbstractBaseUnitOfWork implements UnitOfWork {
       statementExecutor.invokeInterceptors(
           statement, StatementExecutionStep.EXECUTE_STATEMENT, this);
     }
+    if (statementExecutor.isExecutingStatement()) {
+      // The statement is part of an asynchronous operation that is already running on the executor
+      // of the connection. Waiting for a new task on the same executor would block forever, so the
+      // statement is executed directly. The statement timeout is applied to the operation as a
+      // whole.
+      try {
+        return callable.call();
+      } catch (Exception e) {
+        throw asSpannerException(statement, e);
+      }
+    }
     Future<T> future = statementExecutor.submit(callable);
     synchronized (this) {
       this.currentlyRunningStatementFuture = future;
@@ -133,19 +144,7 @@ abstract class AbstractBaseUnitOfWork implements UnitOfWork {
           "Statement execution timeout occurred for " + statement.getSqlWithoutComments(),
           e);
     } catch (ExecutionException e) {
-      Throwable cause = e.getCause();
-      Set<Throwable> causes = new HashSet<>();
-      while (cause != null && !causes.contains(cause)) {
-        if (cause instanceof SpannerException) {
-          throw (SpannerException) cause;
-        }
-        causes.add(cause);
-        cause = cause.getCause();
-      }
-      throw SpannerExceptionFactory.newSpannerException(
-          ErrorCode.UNKNOWN,
-          "Statement execution failed for " + statement.getSqlWithoutComments(),
-          e);
+      throw asSpannerException(statement, e);
     } catch (InterruptedException e) {
       throw SpannerExceptionFactory.newSpannerException(
           ErrorCode.CANCELLED, "Statement execution was interrupted", e);
@@ -159,4 +158,24 @@ abstract class AbstractBaseUnitOfWork implements UnitOfWork {
     }
     return res;
   }
+
+  /**
+   * Returns the first {@link SpannerException} in the causal chain of the given exception, or a
+   * {@link SpannerException} with {@link ErrorCode#UNKNOWN} if there is none.
+   */
+  private static SpannerException asSpannerException(ParsedStatement statement, Exception e) {
+    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+    Set<Throwable> causes = new HashSet<>();
+    while (cause != null && !causes.contains(cause)) {
+      if (cause instanceof SpannerException) {
+        return (SpannerException) cause;
+      }
+      causes.add(cause);
+      cause = cause.getCause();
+    }
+    return SpannerExceptionFactory.newSpannerException(
+        ErrorCode.UNKNOWN,
+        "Statement execution failed for " + statement.getSqlWithoutComments(),
+        e);
+  }
 }
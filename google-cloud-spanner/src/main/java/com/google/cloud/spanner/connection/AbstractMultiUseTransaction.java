@@ -16,6 +16,7 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.cloud.spanner.AsyncResultSet;
 import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.ReadContext;
@@ -73,6 +74,15 @@ abstract class AbstractMultiUseTransaction extends AbstractBaseUnitOfWork {
         });
   }
 
+  @Override
+  public AsyncResultSet executeQueryAsync(ParsedStatement statement, QueryOption... options) {
+    Preconditions.checkArgument(statement.isQuery(), "Statement is not a query");
+    checkValidTransaction();
+    getStatementExecutor()
+        .invokeInterceptors(statement, StatementExecutionStep.EXECUTE_STATEMENT, this);
+    return getReadContext().executeQueryAsync(statement.getStatement(), options);
+  }
+
   ResultSet internalExecuteQuery(
       final ParsedStatement statement, AnalyzeMode analyzeMode, QueryOption... options) {
     if (analyzeMode == AnalyzeMode.NONE) {
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Enum used to define the hash function that is used by a {@link ChecksumResultSet} to calculate
+ * the checksum of the rows that have been consumed in a read/write transaction. The checksum is
+ * only compared with the checksum of the same query during an internal retry of the transaction, so
+ * it does not need to be cryptographically secure.
+ */
+enum ChecksumAlgorithm {
+  /** SHA-256. This is the default. */
+  SHA256(Hashing.sha256()),
+  /** 128-bit MurmurHash3, which is several times faster than SHA-256. */
+  MURMUR3_128(Hashing.murmur3_128());
+
+  private final HashFunction hashFunction;
+
+  private ChecksumAlgorithm(HashFunction hashFunction) {
+    this.hashFunction = hashFunction;
+  }
+
+  HashFunction getHashFunction() {
+    return hashFunction;
+  }
+}
@@ -34,7 +34,6 @@ import com.google.common.hash.Funnel;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
 import com.google.common.hash.PrimitiveSink;
 import java.util.Objects;
 import java.util.concurrent.Callable;
@@ -54,13 +53,15 @@ import java.util.concurrent.Callable;
  * values of the rows that have been consumed. A retry will succeed if the query returns the same
  * results for the already consumed rows.
  *
- * <p>The checksum of a {@link ResultSet} is the SHA256 checksum of the current row together with
- * the previous checksum value of the result set. The calculation of the checksum is executed in a
- * separate {@link Thread} to allow the checksum calculation to lag behind the actual consumption of
- * rows, and catch up again if the client slows down the consumption of rows, for example while
- * waiting for more data from Cloud Spanner. If the checksum calculation queue contains more than
- * {@link ChecksumExecutor#MAX_IN_CHECKSUM_QUEUE} items that have not yet been calculated, calls to
- * {@link ResultSet#next()} will slow down in order to allow the calculation to catch up.
+ * <p>The checksum of a {@link ResultSet} is the hash of the current row together with the previous
+ * checksum value of the result set. The hash function is determined by the {@link
+ * ChecksumAlgorithm} of the connection, and is SHA256 by default. The calculation of the checksum
+ * is executed in a separate {@link Thread} to allow the checksum calculation to lag behind the
+ * actual consumption of rows, and catch up again if the client slows down the consumption of rows,
+ * for example while waiting for more data from Cloud Spanner. If the checksum calculation queue
+ * contains more than {@link ChecksumExecutor#MAX_IN_CHECKSUM_QUEUE} items that have not yet been
+ * calculated, calls to {@link ResultSet#next()} will slow down in order to allow the calculation to
+ * catch up.
  */
 @VisibleForTesting
 class ChecksumResultSet extends ReplaceableForwardingResultSet implements RetriableStatement {
@@ -69,13 +70,15 @@ class ChecksumResultSet extends ReplaceableForwardingResultSet implements Retria
   private final ParsedStatement statement;
   private final AnalyzeMode analyzeMode;
   private final QueryOption[] options;
-  private final ChecksumResultSet.ChecksumCalculator checksumCalculator = new ChecksumCalculator();
+  private final ChecksumAlgorithm checksumAlgorithm;
+  private final ChecksumResultSet.ChecksumCalculator checksumCalculator;
 
   ChecksumResultSet(
       ReadWriteTransaction transaction,
       ResultSet delegate,
       ParsedStatement statement,
       AnalyzeMode analyzeMode,
+      ChecksumAlgorithm checksumAlgorithm,
       QueryOption... options) {
     super(delegate);
     Preconditions.checkNotNull(transaction);
@@ -87,6 +90,8 @@ class ChecksumResultSet extends ReplaceableForwardingResultSet implements Retria
     this.statement = statement;
     this.analyzeMode = analyzeMode;
     this.options = options;
+    this.checksumAlgorithm = Preconditions.checkNotNull(checksumAlgorithm);
+    this.checksumCalculator = new ChecksumCalculator(checksumAlgorithm);
   }
 
   /** Simple {@link Callable} for calling {@link ResultSet#next()} */
@@ -130,7 +135,8 @@ class ChecksumResultSet extends ReplaceableForwardingResultSet implements Retria
   @Override
   public void retry(AbortedException aborted) throws AbortedException {
     // Execute the same query and consume the result set to the same point as the original.
-    ChecksumResultSet.ChecksumCalculator newChecksumCalculator = new ChecksumCalculator();
+    ChecksumResultSet.ChecksumCalculator newChecksumCalculator =
+        new ChecksumCalculator(checksumAlgorithm);
     ResultSet resultSet = null;
     long counter = 0L;
     try {
@@ -183,12 +189,17 @@ class ChecksumResultSet extends ReplaceableForwardingResultSet implements Retria
   }
 
   /** Calculates and keeps the current checksum of a {@link ChecksumResultSet} */
-  private static final class ChecksumCalculator {
-    private static final HashFunction SHA256_FUNCTION = Hashing.sha256();
+  @VisibleForTesting
+  static final class ChecksumCalculator {
+    private final HashFunction hashFunction;
     private HashCode currentChecksum;
 
-    private void calculateNextChecksum(Struct row) {
-      Hasher hasher = SHA256_FUNCTION.newHasher();
+    ChecksumCalculator(ChecksumAlgorithm algorithm) {
+      this.hashFunction = algorithm.getHashFunction();
+    }
+
+    void calculateNextChecksum(Struct row) {
+      Hasher hasher = hashFunction.newHasher();
       if (currentChecksum != null) {
         hasher.putBytes(currentChecksum.asBytes());
       }
@@ -196,7 +207,7 @@ class ChecksumResultSet extends ReplaceableForwardingResultSet implements Retria
       currentChecksum = hasher.hash();
     }
 
-    private HashCode getChecksum() {
+    HashCode getChecksum() {
       return currentChecksum;
     }
   }
@@ -306,8 +317,8 @@ class ChecksumResultSet extends ReplaceableForwardingResultSet implements Retria
     }
 
     private <T> void funnelValue(Code type, T value, PrimitiveSink into) {
-      // Include the type name in case the type of a column has changed.
-      into.putUnencodedChars(type.name());
+      // Include the type in case the type of a column has changed.
+      into.putInt(type.ordinal());
       if (value == null) {
         if (type == Code.BYTES || type == Code.STRING) {
           // Put length -1 to distinguish from the string value 'null'.
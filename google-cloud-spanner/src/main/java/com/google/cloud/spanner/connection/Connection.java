@@ -16,10 +16,12 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.api.core.ApiFuture;
 import com.google.api.core.InternalApi;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.AbortedDueToConcurrentModificationException;
 import com.google.cloud.spanner.AbortedException;
+import com.google.cloud.spanner.AsyncResultSet;
 import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.Mutation;
 import com.google.cloud.spanner.Options.QueryOption;
@@ -450,6 +452,17 @@ public interface Connection extends AutoCloseable {
    */
   void commit();
 
+  /**
+   * Commits the current transaction of this connection asynchronously. The connection behaves as if
+   * the transaction has ended directly after calling this method, and any subsequent statement will
+   * be executed in a new transaction. The commit itself is executed in order with all other
+   * statements on this connection. See {@link #commit()} for more information.
+   *
+   * @return an {@link ApiFuture} that is done when the commit has finished. The future will fail
+   *     with a {@link SpannerException} if the commit failed.
+   */
+  ApiFuture<Void> commitAsync();
+
   /**
    * Rollbacks the current transaction of this connection. All mutations or DDL statements that have
    * been buffered during the current transaction will be removed from the buffer.
@@ -481,6 +494,15 @@ public interface Connection extends AutoCloseable {
    */
   void rollback();
 
+  /**
+   * Rollbacks the current transaction of this connection asynchronously. The connection behaves as
+   * if the transaction has ended directly after calling this method. See {@link #rollback()} for
+   * more information.
+   *
+   * @return an {@link ApiFuture} that is done when the rollback has finished.
+   */
+  ApiFuture<Void> rollbackAsync();
+
   /**
    * @return <code>true</code> if this connection has a transaction (that has not necessarily
    *     started). This method will only return false when the {@link Connection} is in autocommit
@@ -577,6 +599,15 @@ public interface Connection extends AutoCloseable {
    */
   long[] runBatch();
 
+  /**
+   * Sends all buffered DML or DDL statements of the current batch to the database asynchronously
+   * and ends the current batch. See {@link #runBatch()} for more information.
+   *
+   * @return an {@link ApiFuture} containing the update counts of the batch. The future will fail
+   *     with a {@link SpannerException} for the first statement that could not be executed.
+   */
+  ApiFuture<long[]> runBatchAsync();
+
   /**
    * Clears all buffered statements in the current batch and ends the batch.
    *
@@ -590,6 +621,51 @@ public interface Connection extends AutoCloseable {
   /** @return <code>true</code> if a DML batch is active on this connection. */
   boolean isDmlBatchActive();
 
+  /**
+   * Sets whether DML statements that are executed in autocommit mode should automatically be
+   * batched. When enabled, consecutive DML statements that are executed using {@link
+   * #executeUpdate(Statement)} or {@link #execute(Statement)} in autocommit mode are buffered
+   * locally and return immediately with an update count of -1. The buffered statements are sent to
+   * Spanner as one batch in one read/write transaction when:
+   *
+   * <ul>
+   *   <li>any other statement or batch of statements is executed on the connection,
+   *   <li>{@link #flushAutoBatchDml()} is called,
+   *   <li>auto batching is turned off, or
+   *   <li>the connection is closed.
+   * </ul>
+   *
+   * This replaces a separate round trip and commit for each DML statement with one round trip and
+   * one commit for the whole batch. If a statement in the batch fails, none of the statements in
+   * the batch are applied, and a {@link SpannerBatchUpdateException} that identifies the statement
+   * that failed is thrown by the method call that flushed the batch.
+   *
+   * <p>Statements are only batched automatically when the connection is in read/write autocommit
+   * mode with {@link AutocommitDmlMode#TRANSACTIONAL}, and no explicit batch is active. Default is
+   * false.
+   *
+   * @param autoBatchDml whether DML statements in autocommit mode should automatically be batched.
+   */
+  void setAutoBatchDml(boolean autoBatchDml);
+
+  /**
+   * @return <code>true</code> if DML statements in autocommit mode are automatically batched. See
+   *     {@link #setAutoBatchDml(boolean)}.
+   */
+  boolean isAutoBatchDml();
+
+  /**
+   * Sends all DML statements that have been buffered by automatic DML batching to Spanner and waits
+   * for these to be committed. Returns immediately if there are no buffered statements. See {@link
+   * #setAutoBatchDml(boolean)}.
+   *
+   * @return the update counts of the buffered statements, or an empty array if no statements were
+   *     buffered.
+   * @throws SpannerBatchUpdateException if one of the statements failed. None of the buffered
+   *     statements will have been applied to the database.
+   */
+  long[] flushAutoBatchDml();
+
   /**
    * Executes the given statement if allowed in the current {@link TransactionMode} and connection
    * state. The returned value depends on the type of statement:
@@ -619,6 +695,24 @@ public interface Connection extends AutoCloseable {
    */
   ResultSet executeQuery(Statement query, QueryOption... options);
 
+  /**
+   * Executes the given statement asynchronously as a query and returns the result as an {@link
+   * AsyncResultSet}. This method does not block, and the query is executed in order with all other
+   * statements on this connection. If the statement does not contain a valid query, the method will
+   * throw a {@link SpannerException}.
+   *
+   * <p>The rows of the {@link AsyncResultSet} can be consumed with a callback by calling {@link
+   * AsyncResultSet#setCallback(java.util.concurrent.Executor,
+   * com.google.cloud.spanner.AsyncResultSet.ReadyCallback)}, or by calling one of the methods that
+   * return an {@link ApiFuture}, such as {@link AsyncResultSet#toListAsync(
+   * com.google.common.base.Function, java.util.concurrent.Executor)}.
+   *
+   * @param query The query statement to execute
+   * @param options the options to configure the query
+   * @return an {@link AsyncResultSet} with the results of the query
+   */
+  AsyncResultSet executeQueryAsync(Statement query, QueryOption... options);
+
   /**
    * Analyzes a query and returns query plan and/or query execution statistics information.
    *
@@ -655,6 +749,18 @@ public interface Connection extends AutoCloseable {
    */
   long executeUpdate(Statement update);
 
+  /**
+   * Executes the given statement asynchronously as a DML statement. This method does not block, and
+   * the statement is executed in order with all other statements on this connection. If the
+   * statement does not contain a valid DML statement, the method will throw a {@link
+   * SpannerException}.
+   *
+   * @param update The update statement to execute
+   * @return an {@link ApiFuture} containing the number of records that were
+   *     inserted/updated/deleted by this statement
+   */
+  ApiFuture<Long> executeUpdateAsync(Statement update);
+
   /**
    * Executes a list of DML statements in a single request. The statements will be executed in order
    * and the semantics is the same as if each statement is executed by {@link
@@ -677,6 +783,16 @@ public interface Connection extends AutoCloseable {
    */
   long[] executeBatchUpdate(Iterable<Statement> updates);
 
+  /**
+   * Executes a list of DML statements asynchronously in a single request. This method does not
+   * block, and the batch is executed in order with all other statements on this connection. See
+   * {@link #executeBatchUpdate(Iterable)} for more information.
+   *
+   * @param updates The update statements that will be executed as one batch.
+   * @return an {@link ApiFuture} containing the update counts per statement.
+   */
+  ApiFuture<long[]> executeBatchUpdateAsync(Iterable<Statement> updates);
+
   /**
    * Writes the specified mutation directly to the database and commits the change. The value is
    * readable after the successful completion of this method. Writing multiple mutations to a
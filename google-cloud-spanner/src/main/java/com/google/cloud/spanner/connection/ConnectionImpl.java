@@ -16,14 +16,21 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.api.core.ApiAsyncFunction;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.AsyncResultSet;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ForwardingResultSet;
 import com.google.cloud.spanner.Mutation;
 import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.ReadContext.QueryAnalyzeMode;
 import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
 import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.SpannerBatchUpdateException;
 import com.google.cloud.spanner.SpannerException;
 import com.google.cloud.spanner.SpannerExceptionFactory;
 import com.google.cloud.spanner.Statement;
@@ -35,15 +42,25 @@ import com.google.cloud.spanner.connection.StatementParser.StatementType;
 import com.google.cloud.spanner.connection.UnitOfWork.UnitOfWorkState;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.spanner.v1.ExecuteSqlRequest.QueryOptions;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.threeten.bp.Instant;
 
 /** Implementation for {@link Connection}, the generic Spanner connection API (not JDBC). */
@@ -175,6 +192,16 @@ class ConnectionImpl implements Connection {
   private boolean readOnly;
 
   private UnitOfWork currentUnitOfWork = null;
+  /**
+   * The {@link UnitOfWork}s that have been ended by an asynchronous statement, commit, rollback or
+   * batch that has not yet finished. These units of work may still report themselves as active, but
+   * no new statements may be added to them.
+   */
+  private final Set<UnitOfWork> asyncEndedUnitsOfWork =
+      Collections.newSetFromMap(new ConcurrentHashMap<UnitOfWork, Boolean>());
+  /** The asynchronous operations on this connection that have not yet finished. */
+  private final Set<ApiFuture<?>> pendingAsyncOperations =
+      Collections.newSetFromMap(new ConcurrentHashMap<ApiFuture<?>, Boolean>());
   /**
    * The {@link ConnectionImpl#inTransaction} field is only used in autocommit mode to indicate that
    * the user has explicitly started a transaction.
@@ -190,6 +217,18 @@ class ConnectionImpl implements Connection {
   private UnitOfWorkType unitOfWorkType;
   private final Stack<UnitOfWork> transactionStack = new Stack<>();
   private boolean retryAbortsInternally;
+  private boolean autoBatchDml;
+  /**
+   * The DML statements that have been buffered by automatic DML batching in autocommit mode. This
+   * is <code>null</code> if no statements have been buffered.
+   */
+  private DmlBatch autoDmlBatch;
+  /**
+   * The cache for the results of stale reads in autocommit mode. This is <code>null</code> if the
+   * cache has not been enabled for this connection.
+   */
+  private final StaleReadResultCache staleReadCache;
+
   private final List<TransactionRetryListener> transactionRetryListeners = new ArrayList<>();
   private AutocommitDmlMode autocommitDmlMode = AutocommitDmlMode.TRANSACTIONAL;
   private TimestampBound readOnlyStaleness = TimestampBound.strong();
@@ -198,17 +237,21 @@ class ConnectionImpl implements Connection {
   /** Create a connection and register it in the SpannerPool. */
   ConnectionImpl(ConnectionOptions options) {
     Preconditions.checkNotNull(options);
+    Stopwatch watch = Stopwatch.createStarted();
     this.statementExecutor = new StatementExecutor(options.getStatementExecutionInterceptors());
     this.spannerPool = SpannerPool.INSTANCE;
     this.options = options;
     this.spanner = spannerPool.getSpanner(options, this);
     this.dbClient = spanner.getDatabaseClient(options.getDatabaseId());
     this.retryAbortsInternally = options.isRetryAbortsInternally();
+    this.autoBatchDml = options.isAutoBatchDml();
+    this.staleReadCache = createStaleReadCache(options);
     this.readOnly = options.isReadOnly();
     this.autocommit = options.isAutocommit();
     this.queryOptions = this.queryOptions.toBuilder().mergeFrom(options.getQueryOptions()).build();
     this.ddlClient = createDdlClient();
     setDefaultTransactionOptions();
+    spannerPool.recordConnectionOpened(watch.elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
   }
 
   /** Constructor only for test purposes. */
@@ -229,11 +272,23 @@ class ConnectionImpl implements Connection {
     this.spanner = spannerPool.getSpanner(options, this);
     this.ddlClient = ddlClient;
     this.dbClient = dbClient;
+    this.autoBatchDml = options.isAutoBatchDml();
+    this.staleReadCache = createStaleReadCache(options);
     setReadOnly(options.isReadOnly());
     setAutocommit(options.isAutocommit());
     setDefaultTransactionOptions();
   }
 
+  private static StaleReadResultCache createStaleReadCache(ConnectionOptions options) {
+    if (options.getStaleReadCacheMaxBytes() > 0L) {
+      return new StaleReadResultCache(
+          options.getStaleReadCacheMaxBytes(),
+          options.getStaleReadCacheTtlMillis(),
+          TimeUnit.MILLISECONDS);
+    }
+    return null;
+  }
+
   private DdlClient createDdlClient() {
     return DdlClient.newBuilder()
         .setDatabaseAdminClient(spanner.getDatabaseAdminClient())
@@ -246,18 +301,27 @@ class ConnectionImpl implements Connection {
   public void close() {
     if (!isClosed()) {
       try {
-        if (isTransactionStarted()) {
-          try {
-            rollback();
-          } catch (Exception e) {
-            // Ignore as we are closing the connection.
+        // Statements that have been buffered by automatic DML batching have already been reported
+        // as executed to the application, and must therefore be sent to Spanner.
+        internalFlushAutoBatchDml();
+      } finally {
+        try {
+          if (isTransactionStarted()) {
+            try {
+              rollback();
+            } catch (Exception e) {
+              // Ignore as we are closing the connection.
+            }
+          }
+          statementExecutor.shutdownNow();
+          if (staleReadCache != null) {
+            staleReadCache.invalidateAll();
           }
+          spannerPool.removeConnection(options, this);
+          leakedException = null;
+        } finally {
+          this.closed = true;
         }
-        statementExecutor.shutdownNow();
-        spannerPool.removeConnection(options, this);
-        leakedException = null;
-      } finally {
-        this.closed = true;
       }
     }
   }
@@ -442,6 +506,9 @@ class ConnectionImpl implements Connection {
     if (this.currentUnitOfWork != null) {
       currentUnitOfWork.cancel();
     }
+    for (ApiFuture<?> operation : pendingAsyncOperations) {
+      operation.cancel(true);
+    }
   }
 
   @Override
@@ -497,6 +564,124 @@ class ConnectionImpl implements Connection {
     this.retryAbortsInternally = retryAbortsInternally;
   }
 
+  @Override
+  public void setAutoBatchDml(boolean autoBatchDml) {
+    ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
+    if (!autoBatchDml) {
+      internalFlushAutoBatchDml();
+    }
+    this.autoBatchDml = autoBatchDml;
+  }
+
+  @Override
+  public boolean isAutoBatchDml() {
+    ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
+    return this.autoBatchDml;
+  }
+
+  @Override
+  public long[] flushAutoBatchDml() {
+    ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
+    return internalFlushAutoBatchDml();
+  }
+
+  /**
+   * Returns true if the given DML statement should be buffered by automatic DML batching instead of
+   * being executed directly.
+   */
+  private boolean shouldAutoBatchDml() {
+    return autoBatchDml
+        && internalIsAutocommit()
+        && !internalIsInTransaction()
+        && !isBatchActive()
+        && !isReadOnly()
+        && autocommitDmlMode == AutocommitDmlMode.TRANSACTIONAL;
+  }
+
+  /**
+   * Sends the DML statements that have been buffered by automatic DML batching to Spanner. A
+   * failure is reported as a {@link SpannerBatchUpdateException} that contains the index and the
+   * SQL string of the statement that failed, as the statements are executed after the calls to
+   * {@link #executeUpdate(Statement)} for the statements have returned.
+   */
+  private long[] internalFlushAutoBatchDml() {
+    DmlBatch batch = takeAutoDmlBatch();
+    return batch == null ? new long[0] : runAutoDmlBatch(batch);
+  }
+
+  /**
+   * Removes the DML statements that have been buffered by automatic DML batching from this
+   * connection and returns them, or returns null if there are no buffered statements. The caller
+   * must run the returned batch with {@link #runAutoDmlBatch(DmlBatch)} before the statement that
+   * caused the flush is executed.
+   */
+  @Nullable
+  private DmlBatch takeAutoDmlBatch() {
+    DmlBatch batch = autoDmlBatch;
+    autoDmlBatch = null;
+    return batch;
+  }
+
+  private static long[] runAutoDmlBatch(DmlBatch batch) {
+    try {
+      return batch.runBatch();
+    } catch (SpannerBatchUpdateException e) {
+      List<ParsedStatement> statements = batch.getStatements();
+      int failedIndex = e.getUpdateCounts().length;
+      String failedStatement =
+          failedIndex < statements.size()
+              ? statements.get(failedIndex).getSqlWithoutComments()
+              : "<unknown>";
+      throw SpannerExceptionFactory.newSpannerBatchUpdateException(
+          e.getErrorCode(),
+          String.format(
+              "Automatically batched DML statement %d of %d failed and none of the statements in the batch were applied. Statement: %s. Error: %s",
+              failedIndex + 1, statements.size(), failedStatement, e.getMessage()),
+          e.getUpdateCounts(),
+          e);
+    }
+  }
+
+  /**
+   * Sends the given DML statements that were buffered by automatic DML batching to Spanner on the
+   * executor of the connection, instead of blocking the thread that executes the asynchronous
+   * statement that caused the flush.
+   */
+  private ApiFuture<long[]> runAutoDmlBatchAsync(final DmlBatch batch) {
+    return statementExecutor.submitAsync(
+        new Callable<long[]>() {
+          @Override
+          public long[] call() {
+            return runAutoDmlBatch(batch);
+          }
+        },
+        statementTimeout,
+        "automatically batched DML");
+  }
+
+  /**
+   * Returns a {@link ResultSet} that only executes the given query after the given DML statements
+   * that were buffered by automatic DML batching have been sent to Spanner. The result set waits
+   * for the batch when it is consumed or closed.
+   */
+  private ResultSet afterAutoDmlBatch(DmlBatch batch, final ResultSet query) {
+    final ApiFuture<long[]> flush = runAutoDmlBatchAsync(batch);
+    return new ForwardingResultSet(
+        Suppliers.memoize(
+            new Supplier<ResultSet>() {
+              @Override
+              public ResultSet get() {
+                try {
+                  getAsyncResult(flush);
+                } catch (SpannerException e) {
+                  query.close();
+                  throw e;
+                }
+                return query;
+              }
+            }));
+  }
+
   @Override
   public void addTransactionRetryListener(TransactionRetryListener listener) {
     Preconditions.checkNotNull(listener);
@@ -537,6 +722,7 @@ class ConnectionImpl implements Connection {
     }
     return internalIsInTransaction()
         && this.currentUnitOfWork != null
+        && !this.asyncEndedUnitsOfWork.contains(this.currentUnitOfWork)
         && this.currentUnitOfWork.getState() == UnitOfWorkState.STARTED;
   }
 
@@ -618,6 +804,12 @@ class ConnectionImpl implements Connection {
     endCurrentTransaction(commit);
   }
 
+  @Override
+  public ApiFuture<Void> commitAsync() {
+    ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
+    return endCurrentTransactionAsync(commit, "COMMIT");
+  }
+
   private static final class Rollback implements EndTransactionMethod {
     @Override
     public void end(UnitOfWork t) {
@@ -633,6 +825,12 @@ class ConnectionImpl implements Connection {
     endCurrentTransaction(rollback);
   }
 
+  @Override
+  public ApiFuture<Void> rollbackAsync() {
+    ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
+    return endCurrentTransactionAsync(rollback, "ROLLBACK");
+  }
+
   private void endCurrentTransaction(EndTransactionMethod endTransactionMethod) {
     ConnectionPreconditions.checkState(!isBatchActive(), "This connection has an active batch");
     ConnectionPreconditions.checkState(isInTransaction(), "This connection has no transaction");
@@ -651,6 +849,37 @@ class ConnectionImpl implements Connection {
     }
   }
 
+  private ApiFuture<Void> endCurrentTransactionAsync(
+      final EndTransactionMethod endTransactionMethod, String description) {
+    ConnectionPreconditions.checkState(!isBatchActive(), "This connection has an active batch");
+    ConnectionPreconditions.checkState(isInTransaction(), "This connection has no transaction");
+    try {
+      if (isTransactionStarted()) {
+        final UnitOfWork transaction = getCurrentUnitOfWorkOrStartNewUnitOfWork();
+        return executeAsync(
+            transaction,
+            true,
+            new Callable<Void>() {
+              @Override
+              public Void call() {
+                endTransactionMethod.end(transaction);
+                return null;
+              }
+            },
+            description);
+      } else {
+        this.currentUnitOfWork = null;
+        return ApiFutures.immediateFuture(null);
+      }
+    } finally {
+      transactionBeginMarked = false;
+      if (isAutocommit()) {
+        inTransaction = false;
+      }
+      setDefaultTransactionOptions();
+    }
+  }
+
   @Override
   public StatementResult execute(Statement statement) {
     Preconditions.checkNotNull(statement);
@@ -717,6 +946,33 @@ class ConnectionImpl implements Connection {
         "Statement is not a query: " + parsedStatement.getSqlWithoutComments());
   }
 
+  @Override
+  public AsyncResultSet executeQueryAsync(Statement query, QueryOption... options) {
+    Preconditions.checkNotNull(query);
+    ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
+    ParsedStatement parsedStatement = parser.parse(query, this.queryOptions);
+    if (parsedStatement.isQuery()) {
+      switch (parsedStatement.getType()) {
+        case CLIENT_SIDE:
+          return ResultSets.toAsyncResultSet(
+              parsedStatement
+                  .getClientSideStatement()
+                  .execute(connectionStatementExecutor, parsedStatement.getSqlWithoutComments())
+                  .getResultSet(),
+              spanner.getAsyncExecutorProvider());
+        case QUERY:
+          return internalExecuteQueryAsync(parsedStatement, options);
+        case UPDATE:
+        case DDL:
+        case UNKNOWN:
+        default:
+      }
+    }
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.INVALID_ARGUMENT,
+        "Statement is not a query: " + parsedStatement.getSqlWithoutComments());
+  }
+
   @Override
   public long executeUpdate(Statement update) {
     Preconditions.checkNotNull(update);
@@ -738,8 +994,63 @@ class ConnectionImpl implements Connection {
         "Statement is not an update statement: " + parsedStatement.getSqlWithoutComments());
   }
 
+  @Override
+  public ApiFuture<Long> executeUpdateAsync(Statement update) {
+    Preconditions.checkNotNull(update);
+    ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
+    final ParsedStatement parsedStatement = parser.parse(update);
+    if (parsedStatement.isUpdate()) {
+      switch (parsedStatement.getType()) {
+        case UPDATE:
+          DmlBatch pendingBatch = takeAutoDmlBatch();
+          final UnitOfWork transaction = getCurrentUnitOfWorkOrStartNewUnitOfWorkWithoutFlush();
+          return executeNativeAsync(
+              transaction,
+              pendingBatch,
+              new Supplier<ApiFuture<Long>>() {
+                @Override
+                public ApiFuture<Long> get() {
+                  return transaction.executeUpdateAsync(parsedStatement);
+                }
+              });
+        case CLIENT_SIDE:
+        case QUERY:
+        case DDL:
+        case UNKNOWN:
+        default:
+      }
+    }
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.INVALID_ARGUMENT,
+        "Statement is not an update statement: " + parsedStatement.getSqlWithoutComments());
+  }
+
   @Override
   public long[] executeBatchUpdate(Iterable<Statement> updates) {
+    return internalExecuteBatchUpdate(parseUpdateStatements(updates));
+  }
+
+  @Override
+  public ApiFuture<long[]> executeBatchUpdateAsync(Iterable<Statement> updates) {
+    final List<ParsedStatement> parsedStatements = parseUpdateStatements(updates);
+    DmlBatch pendingBatch = takeAutoDmlBatch();
+    final UnitOfWork transaction = getCurrentUnitOfWorkOrStartNewUnitOfWorkWithoutFlush();
+    return executeNativeAsync(
+        transaction,
+        pendingBatch,
+        new Supplier<ApiFuture<long[]>>() {
+          @Override
+          public ApiFuture<long[]> get() {
+            return transaction.executeBatchUpdateAsync(parsedStatements);
+          }
+        });
+  }
+
+  /**
+   * Parses the given statements and throws a {@link SpannerException} if one of the statements is
+   * not an update statement.
+   */
+  private List<ParsedStatement> parseUpdateStatements(Iterable<Statement> updates) {
     Preconditions.checkNotNull(updates);
     ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
     // Check that there are only DML statements in the input.
@@ -763,7 +1074,7 @@ class ConnectionImpl implements Connection {
         }
       }
     }
-    return internalExecuteBatchUpdate(parsedStatements);
+    return parsedStatements;
   }
 
   private ResultSet internalExecuteQuery(
@@ -772,7 +1083,31 @@ class ConnectionImpl implements Connection {
       final QueryOption... options) {
     Preconditions.checkArgument(
         statement.getType() == StatementType.QUERY, "Statement must be a query");
-    UnitOfWork transaction = getCurrentUnitOfWorkOrStartNewUnitOfWork();
+    if (shouldUseStaleReadCache(analyzeMode, options)) {
+      internalFlushAutoBatchDml();
+      ResultSet cached = staleReadCache.get(statement.getStatement(), readOnlyStaleness);
+      if (cached != null) {
+        // The result was not read by a transaction on this connection, so there is no read
+        // timestamp that belongs to it.
+        this.currentUnitOfWork = null;
+        return cached;
+      }
+      UnitOfWork transaction = getCurrentUnitOfWorkOrStartNewUnitOfWork();
+      return staleReadCache.cacheResult(
+          statement.getStatement(),
+          readOnlyStaleness,
+          internalExecuteQueryUncached(transaction, statement, analyzeMode),
+          readTimestampOf(transaction));
+    }
+    return internalExecuteQueryUncached(
+        getCurrentUnitOfWorkOrStartNewUnitOfWork(), statement, analyzeMode, options);
+  }
+
+  private ResultSet internalExecuteQueryUncached(
+      final UnitOfWork transaction,
+      final ParsedStatement statement,
+      final AnalyzeMode analyzeMode,
+      final QueryOption... options) {
     try {
       return transaction.executeQuery(statement, analyzeMode, options);
     } catch (SpannerException e) {
@@ -787,9 +1122,205 @@ class ConnectionImpl implements Connection {
     }
   }
 
+  private AsyncResultSet internalExecuteQueryAsync(
+      final ParsedStatement statement, final QueryOption... options) {
+    Preconditions.checkArgument(
+        statement.getType() == StatementType.QUERY, "Statement must be a query");
+    boolean useCache = shouldUseStaleReadCache(AnalyzeMode.NONE, options);
+    final DmlBatch pendingBatch = takeAutoDmlBatch();
+    // A cached result can only be returned directly if there are no buffered DML statements that
+    // must be sent to Spanner first.
+    if (useCache && pendingBatch == null) {
+      ResultSet cached = staleReadCache.get(statement.getStatement(), readOnlyStaleness);
+      if (cached != null) {
+        this.currentUnitOfWork = null;
+        return ResultSets.toAsyncResultSet(cached, spanner.getAsyncExecutorProvider());
+      }
+    }
+    UnitOfWork transaction = getCurrentUnitOfWorkOrStartNewUnitOfWorkWithoutFlush();
+    if (!useCache && pendingBatch == null) {
+      return transaction.executeQueryAsync(statement, options);
+    }
+    // The rows of the query must be read by the stale read cache, or the query may only be sent to
+    // Spanner after the buffered DML statements. Both are only possible in autocommit mode, and the
+    // result set of the query is then consumed on the async executor of the client library.
+    ConnectionPreconditions.checkState(
+        transaction instanceof SingleUseTransaction,
+        "The query must be executed on a single use transaction");
+    ResultSet resultSet =
+        ((SingleUseTransaction) transaction).executeQueryOnConsumption(statement, options);
+    if (pendingBatch != null) {
+      resultSet = afterAutoDmlBatch(pendingBatch, resultSet);
+    }
+    if (useCache) {
+      resultSet =
+          staleReadCache.cacheResult(
+              statement.getStatement(), readOnlyStaleness, resultSet, readTimestampOf(transaction));
+    }
+    return ResultSets.toAsyncResultSet(resultSet, spanner.getAsyncExecutorProvider());
+  }
+
+  /**
+   * Returns a {@link Supplier} of the read timestamp of the given {@link UnitOfWork}. The read
+   * timestamp of a query is only known once the query has returned data.
+   */
+  private static Supplier<Timestamp> readTimestampOf(final UnitOfWork transaction) {
+    return new Supplier<Timestamp>() {
+      @Override
+      public Timestamp get() {
+        return transaction.getReadTimestampOrNull();
+      }
+    };
+  }
+
+  /**
+   * Returns true if the result of a query with the given options may be served from and added to
+   * the stale read cache of this connection. This is only the case for plain queries that are
+   * executed in autocommit mode on a read-only connection with a max staleness.
+   */
+  private boolean shouldUseStaleReadCache(AnalyzeMode analyzeMode, QueryOption... options) {
+    return staleReadCache != null
+        && analyzeMode == AnalyzeMode.NONE
+        && (options == null || options.length == 0)
+        && isReadOnly()
+        && isAutocommit()
+        && !isInTransaction()
+        && !isInBatch()
+        && StaleReadResultCache.isCacheable(readOnlyStaleness);
+  }
+
+  /**
+   * Returns the result of an asynchronous operation on this connection, and throws the error of the
+   * operation as a {@link SpannerException} if it failed.
+   */
+  static <T> T getAsyncResult(ApiFuture<T> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SpannerException) {
+        throw (SpannerException) e.getCause();
+      }
+      throw SpannerExceptionFactory.newSpannerException(e.getCause());
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    } catch (CancellationException e) {
+      throw SpannerExceptionFactory.newSpannerException(
+          ErrorCode.CANCELLED, "Statement execution was cancelled", e);
+    }
+  }
+
+  /**
+   * Executes the given operation asynchronously on the {@link StatementExecutor} of this
+   * connection. The operation is executed in order with all other statements on this connection.
+   *
+   * @param unitOfWork the unit of work that the operation is executed on.
+   * @param endsUnitOfWork whether the operation ends the unit of work. Operations on a {@link
+   *     SingleUseTransaction} always end the unit of work.
+   * @param callable the operation to execute.
+   * @param description the description of the operation that is included in timeout errors.
+   */
+  private <T> ApiFuture<T> executeAsync(
+      UnitOfWork unitOfWork, boolean endsUnitOfWork, Callable<T> callable, String description) {
+    return registerAsync(
+        unitOfWork,
+        endsUnitOfWork,
+        statementExecutor.submitAsync(callable, statementTimeout, description));
+  }
+
+  /**
+   * Executes an asynchronous statement with the asynchronous methods of the client library, so that
+   * no thread waits for the statement to be executed. Errors that are thrown when the statement is
+   * started are returned by the future, in the same way as for statements on the {@link
+   * StatementExecutor}.
+   *
+   * @param unitOfWork the unit of work that the statement is executed on.
+   * @param pendingBatch the DML statements that were buffered by automatic DML batching and that
+   *     must be sent to Spanner before the statement, or <code>null</code>. The batch is executed
+   *     on the {@link StatementExecutor}, and the statement is started when the batch has finished.
+   * @param statement starts the statement and returns its result.
+   */
+  private <T> ApiFuture<T> executeNativeAsync(
+      UnitOfWork unitOfWork,
+      @Nullable final DmlBatch pendingBatch,
+      final Supplier<ApiFuture<T>> statement) {
+    ApiFuture<T> future;
+    if (pendingBatch == null) {
+      future = startAsync(statement);
+    } else {
+      future =
+          ApiFutures.transformAsync(
+              runAutoDmlBatchAsync(pendingBatch),
+              new ApiAsyncFunction<long[], T>() {
+                @Override
+                public ApiFuture<T> apply(long[] input) {
+                  return startAsync(statement);
+                }
+              },
+              MoreExecutors.directExecutor());
+    }
+    return registerAsync(unitOfWork, false, future);
+  }
+
+  private static <T> ApiFuture<T> startAsync(Supplier<ApiFuture<T>> statement) {
+    try {
+      return statement.get();
+    } catch (RuntimeException e) {
+      return ApiFutures.immediateFailedFuture(e);
+    }
+  }
+
+  /**
+   * Registers an asynchronous operation on this connection, so that it can be cancelled, and so
+   * that the unit of work is not used for other statements while the operation is running if the
+   * operation ends the unit of work.
+   */
+  private <T> ApiFuture<T> registerAsync(
+      UnitOfWork unitOfWork, boolean endsUnitOfWork, final ApiFuture<T> future) {
+    pendingAsyncOperations.add(future);
+    future.addListener(
+        new Runnable() {
+          @Override
+          public void run() {
+            pendingAsyncOperations.remove(future);
+          }
+        },
+        MoreExecutors.directExecutor());
+    if (endsUnitOfWork || unitOfWork instanceof SingleUseTransaction) {
+      markEndedAsync(unitOfWork, future);
+    }
+    return future;
+  }
+
+  /**
+   * Marks the given {@link UnitOfWork} as ended until the given asynchronous operation has
+   * finished.
+   */
+  private void markEndedAsync(final UnitOfWork unitOfWork, ApiFuture<?> operation) {
+    asyncEndedUnitsOfWork.add(unitOfWork);
+    operation.addListener(
+        new Runnable() {
+          @Override
+          public void run() {
+            asyncEndedUnitsOfWork.remove(unitOfWork);
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+
   private long internalExecuteUpdate(final ParsedStatement update) {
     Preconditions.checkArgument(
         update.getType() == StatementType.UPDATE, "Statement must be an update");
+    if (shouldAutoBatchDml()) {
+      if (autoDmlBatch == null) {
+        autoDmlBatch =
+            DmlBatch.newBuilder()
+                .setTransaction(createNewUnitOfWork())
+                .setStatementTimeout(statementTimeout)
+                .withStatementExecutor(statementExecutor)
+                .build();
+      }
+      return autoDmlBatch.executeUpdate(update);
+    }
     UnitOfWork transaction = getCurrentUnitOfWorkOrStartNewUnitOfWork();
     try {
       return transaction.executeUpdate(update);
@@ -825,9 +1356,28 @@ class ConnectionImpl implements Connection {
    * Returns the current {@link UnitOfWork} of this connection, or creates a new one based on the
    * current transaction settings of the connection and returns that.
    */
+  @VisibleForTesting
+  StatementExecutor getStatementExecutor() {
+    return statementExecutor;
+  }
+
   @VisibleForTesting
   UnitOfWork getCurrentUnitOfWorkOrStartNewUnitOfWork() {
-    if (this.currentUnitOfWork == null || !this.currentUnitOfWork.isActive()) {
+    // Any statement that is not automatically batched should see the changes of the DML statements
+    // that were executed before it.
+    internalFlushAutoBatchDml();
+    return getCurrentUnitOfWorkOrStartNewUnitOfWorkWithoutFlush();
+  }
+
+  /**
+   * Same as {@link #getCurrentUnitOfWorkOrStartNewUnitOfWork()}, but does not flush the DML
+   * statements that have been buffered by automatic DML batching. This is used by asynchronous
+   * statements, which flush the buffered statements as part of their asynchronous operation.
+   */
+  private UnitOfWork getCurrentUnitOfWorkOrStartNewUnitOfWorkWithoutFlush() {
+    if (this.currentUnitOfWork == null
+        || !this.currentUnitOfWork.isActive()
+        || this.asyncEndedUnitsOfWork.contains(this.currentUnitOfWork)) {
       this.currentUnitOfWork = createNewUnitOfWork();
     }
     return this.currentUnitOfWork;
@@ -857,7 +1407,9 @@ class ConnectionImpl implements Connection {
           return ReadWriteTransaction.newBuilder()
               .setDatabaseClient(dbClient)
               .setRetryAbortsInternally(retryAbortsInternally)
+              .setChecksumAlgorithm(options.getChecksumAlgorithm())
               .setTransactionRetryListeners(transactionRetryListeners)
+              .setAsyncExecutorProvider(spanner.getAsyncExecutorProvider())
               .setStatementTimeout(statementTimeout)
               .withStatementExecutor(statementExecutor)
               .build();
@@ -986,6 +1538,40 @@ class ConnectionImpl implements Connection {
     }
   }
 
+  @Override
+  public ApiFuture<long[]> runBatchAsync() {
+    ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
+    ConnectionPreconditions.checkState(isBatchActive(), "This connection has no active batch");
+    final UnitOfWork batch = this.currentUnitOfWork;
+    ApiFuture<long[]> res = null;
+    try {
+      if (batch != null) {
+        res =
+            executeAsync(
+                batch,
+                true,
+                new Callable<long[]>() {
+                  @Override
+                  public long[] call() {
+                    return batch.runBatch();
+                  }
+                },
+                "RUN BATCH");
+      }
+    } finally {
+      this.batchMode = BatchMode.NONE;
+      setDefaultTransactionOptions();
+    }
+    if (res == null) {
+      return ApiFutures.immediateFuture(new long[0]);
+    }
+    // A DML batch in autocommit mode uses a single use transaction that is ended by the batch.
+    if (this.currentUnitOfWork instanceof SingleUseTransaction) {
+      markEndedAsync(this.currentUnitOfWork, res);
+    }
+    return res;
+  }
+
   @Override
   public void abortBatch() {
     ConnectionPreconditions.checkState(!isClosed(), CLOSED_ERROR_MSG);
@@ -147,11 +147,15 @@ public class ConnectionOptions {
   static final boolean DEFAULT_AUTOCOMMIT = true;
   static final boolean DEFAULT_READONLY = false;
   static final boolean DEFAULT_RETRY_ABORTS_INTERNALLY = true;
+  static final boolean DEFAULT_AUTO_BATCH_DML = false;
+  static final long DEFAULT_STALE_READ_CACHE_MAX_BYTES = 0L;
+  static final long DEFAULT_STALE_READ_CACHE_TTL_MILLIS = 10000L;
   private static final String DEFAULT_CREDENTIALS = null;
   private static final String DEFAULT_OAUTH_TOKEN = null;
   private static final String DEFAULT_NUM_CHANNELS = null;
   private static final String DEFAULT_USER_AGENT = null;
   private static final String DEFAULT_OPTIMIZER_VERSION = "";
+  static final ChecksumAlgorithm DEFAULT_CHECKSUM_ALGORITHM = ChecksumAlgorithm.SHA256;
 
   private static final String PLAIN_TEXT_PROTOCOL = "http:";
   private static final String HOST_PROTOCOL = "https:";
@@ -176,6 +180,14 @@ public class ConnectionOptions {
   private static final String USER_AGENT_PROPERTY_NAME = "userAgent";
   /** Query optimizer version to use for a connection. */
   private static final String OPTIMIZER_VERSION_PROPERTY_NAME = "optimizerVersion";
+  /** Name of the 'checksumAlgorithm' connection property. */
+  public static final String CHECKSUM_ALGORITHM_PROPERTY_NAME = "checksumAlgorithm";
+  /** Name of the 'autoBatchDml' connection property. */
+  public static final String AUTO_BATCH_DML_PROPERTY_NAME = "autoBatchDml";
+  /** Name of the 'staleReadCacheMaxBytes' connection property. */
+  public static final String STALE_READ_CACHE_MAX_BYTES_PROPERTY_NAME = "staleReadCacheMaxBytes";
+  /** Name of the 'staleReadCacheTtlMillis' connection property. */
+  public static final String STALE_READ_CACHE_TTL_MILLIS_PROPERTY_NAME = "staleReadCacheTtlMillis";
 
   /** All valid connection properties. */
   public static final Set<ConnectionProperty> VALID_PROPERTIES =
@@ -194,7 +206,14 @@ public class ConnectionOptions {
                   ConnectionProperty.createBooleanProperty(
                       USE_PLAIN_TEXT_PROPERTY_NAME, "", DEFAULT_USE_PLAIN_TEXT),
                   ConnectionProperty.createStringProperty(USER_AGENT_PROPERTY_NAME, ""),
-                  ConnectionProperty.createStringProperty(OPTIMIZER_VERSION_PROPERTY_NAME, ""))));
+                  ConnectionProperty.createStringProperty(OPTIMIZER_VERSION_PROPERTY_NAME, ""),
+                  ConnectionProperty.createStringProperty(CHECKSUM_ALGORITHM_PROPERTY_NAME, ""),
+                  ConnectionProperty.createBooleanProperty(
+                      AUTO_BATCH_DML_PROPERTY_NAME, "", DEFAULT_AUTO_BATCH_DML),
+                  ConnectionProperty.createStringProperty(
+                      STALE_READ_CACHE_MAX_BYTES_PROPERTY_NAME, ""),
+                  ConnectionProperty.createStringProperty(
+                      STALE_READ_CACHE_TTL_MILLIS_PROPERTY_NAME, ""))));
 
   private static final Set<ConnectionProperty> INTERNAL_PROPERTIES =
       Collections.unmodifiableSet(
@@ -294,6 +313,18 @@ public class ConnectionOptions {
      *   <li>retryAbortsInternally (boolean): Sets the initial retryAbortsInternally mode for the
      *       connection. Default is true.
      *   <li>optimizerVersion (string): Sets the query optimizer version to use for the connection.
+     *   <li>checksumAlgorithm (string): Sets the hash function that is used to checksum the results
+     *       of queries in read/write transactions, so an aborted transaction can be retried
+     *       internally. Valid values are SHA256 and MURMUR3_128. Default is SHA256.
+     *   <li>autoBatchDml (boolean): Sets the initial autoBatchDml mode for the connection. See
+     *       {@link Connection#setAutoBatchDml(boolean)}. Default is false.
+     *   <li>staleReadCacheMaxBytes (long): Sets the maximum estimated size in bytes of the results
+     *       of queries that a read-only connection in autocommit mode caches when it uses a max
+     *       staleness. Default is 0, which disables the cache.
+     *   <li>staleReadCacheTtlMillis (long): Sets the maximum time in milliseconds that a result
+     *       stays in the stale read cache. A cached result is never returned once its read
+     *       timestamp is older than the max staleness of the connection, even if this time has not
+     *       yet passed. Default is 10000.
      * </ul>
      *
      * @param uri The URI of the Spanner database to connect to.
@@ -399,6 +430,10 @@ public class ConnectionOptions {
   private final boolean autocommit;
   private final boolean readOnly;
   private final boolean retryAbortsInternally;
+  private final ChecksumAlgorithm checksumAlgorithm;
+  private final boolean autoBatchDml;
+  private final long staleReadCacheMaxBytes;
+  private final long staleReadCacheTtlMillis;
   private final List<StatementExecutionInterceptor> statementExecutionInterceptors;
 
   private ConnectionOptions(Builder builder) {
@@ -470,6 +505,10 @@ public class ConnectionOptions {
     this.autocommit = parseAutocommit(this.uri);
     this.readOnly = parseReadOnly(this.uri);
     this.retryAbortsInternally = parseRetryAbortsInternally(this.uri);
+    this.checksumAlgorithm = parseChecksumAlgorithm(this.uri);
+    this.autoBatchDml = parseAutoBatchDml(this.uri);
+    this.staleReadCacheMaxBytes = parseStaleReadCacheMaxBytes(this.uri);
+    this.staleReadCacheTtlMillis = parseStaleReadCacheTtlMillis(this.uri);
     this.statementExecutionInterceptors =
         Collections.unmodifiableList(builder.statementExecutionInterceptors);
   }
@@ -503,6 +542,63 @@ public class ConnectionOptions {
     return value != null ? Boolean.valueOf(value) : DEFAULT_RETRY_ABORTS_INTERNALLY;
   }
 
+  @VisibleForTesting
+  static boolean parseAutoBatchDml(String uri) {
+    String value = parseUriProperty(uri, AUTO_BATCH_DML_PROPERTY_NAME);
+    return value != null ? Boolean.valueOf(value) : DEFAULT_AUTO_BATCH_DML;
+  }
+
+  @VisibleForTesting
+  static long parseStaleReadCacheMaxBytes(String uri) {
+    return parseNonNegativeLong(
+        uri, STALE_READ_CACHE_MAX_BYTES_PROPERTY_NAME, DEFAULT_STALE_READ_CACHE_MAX_BYTES);
+  }
+
+  @VisibleForTesting
+  static long parseStaleReadCacheTtlMillis(String uri) {
+    long ttl =
+        parseNonNegativeLong(
+            uri, STALE_READ_CACHE_TTL_MILLIS_PROPERTY_NAME, DEFAULT_STALE_READ_CACHE_TTL_MILLIS);
+    if (ttl == 0L) {
+      throw SpannerExceptionFactory.newSpannerException(
+          ErrorCode.INVALID_ARGUMENT,
+          "Invalid " + STALE_READ_CACHE_TTL_MILLIS_PROPERTY_NAME + " value specified: 0");
+    }
+    return ttl;
+  }
+
+  private static long parseNonNegativeLong(String uri, String property, long defaultValue) {
+    String value = parseUriProperty(uri, property);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      long result = Long.parseLong(value);
+      if (result >= 0L) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      throw SpannerExceptionFactory.newSpannerException(
+          ErrorCode.INVALID_ARGUMENT, "Invalid " + property + " value specified: " + value, e);
+    }
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.INVALID_ARGUMENT, "Invalid " + property + " value specified: " + value);
+  }
+
+  @VisibleForTesting
+  static ChecksumAlgorithm parseChecksumAlgorithm(String uri) {
+    String value = parseUriProperty(uri, CHECKSUM_ALGORITHM_PROPERTY_NAME);
+    if (value == null) {
+      return DEFAULT_CHECKSUM_ALGORITHM;
+    }
+    try {
+      return ChecksumAlgorithm.valueOf(value.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw SpannerExceptionFactory.newSpannerException(
+          ErrorCode.INVALID_ARGUMENT, "Invalid checksumAlgorithm value specified: " + value, e);
+    }
+  }
+
   @VisibleForTesting
   static String parseCredentials(String uri) {
     String value = parseUriProperty(uri, CREDENTIALS_PROPERTY_NAME);
@@ -657,6 +753,27 @@ public class ConnectionOptions {
     return retryAbortsInternally;
   }
 
+  /** The initial autoBatchDml value for connections created by this {@link ConnectionOptions} */
+  public boolean isAutoBatchDml() {
+    return autoBatchDml;
+  }
+
+  /**
+   * The maximum estimated size in bytes of the stale read cache of connections created by this
+   * {@link ConnectionOptions}. 0 means that the cache is disabled.
+   */
+  public long getStaleReadCacheMaxBytes() {
+    return staleReadCacheMaxBytes;
+  }
+
+  /**
+   * The time in milliseconds that a result stays in the stale read cache of connections created by
+   * this {@link ConnectionOptions}.
+   */
+  public long getStaleReadCacheTtlMillis() {
+    return staleReadCacheTtlMillis;
+  }
+
   /** Use http instead of https. Only valid for (local) test servers. */
   boolean isUsePlainText() {
     return usePlainText;
@@ -670,6 +787,14 @@ public class ConnectionOptions {
     return userAgent;
   }
 
+  /**
+   * The hash function that connections created by this {@link ConnectionOptions} use to checksum
+   * the results of queries in read/write transactions.
+   */
+  ChecksumAlgorithm getChecksumAlgorithm() {
+    return checksumAlgorithm;
+  }
+
   /** The {@link QueryOptions} to use for the connection. */
   QueryOptions getQueryOptions() {
     return queryOptions;
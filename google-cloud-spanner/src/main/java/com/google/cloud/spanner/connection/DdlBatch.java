@@ -16,8 +16,10 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.api.core.ApiFuture;
 import com.google.api.gax.longrunning.OperationFuture;
 import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.AsyncResultSet;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.Mutation;
@@ -142,6 +144,12 @@ class DdlBatch extends AbstractBaseUnitOfWork {
         ErrorCode.FAILED_PRECONDITION, "Executing queries is not allowed for DDL batches.");
   }
 
+  @Override
+  public AsyncResultSet executeQueryAsync(ParsedStatement statement, QueryOption... options) {
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.FAILED_PRECONDITION, "Executing queries is not allowed for DDL batches.");
+  }
+
   @Override
   public Timestamp getReadTimestamp() {
     throw SpannerExceptionFactory.newSpannerException(
@@ -183,12 +191,24 @@ class DdlBatch extends AbstractBaseUnitOfWork {
         ErrorCode.FAILED_PRECONDITION, "Executing updates is not allowed for DDL batches.");
   }
 
+  @Override
+  public ApiFuture<Long> executeUpdateAsync(ParsedStatement update) {
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.FAILED_PRECONDITION, "Executing updates is not allowed for DDL batches.");
+  }
+
   @Override
   public long[] executeBatchUpdate(Iterable<ParsedStatement> updates) {
     throw SpannerExceptionFactory.newSpannerException(
         ErrorCode.FAILED_PRECONDITION, "Executing batch updates is not allowed for DDL batches.");
   }
 
+  @Override
+  public ApiFuture<long[]> executeBatchUpdateAsync(Iterable<ParsedStatement> updates) {
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.FAILED_PRECONDITION, "Executing batch updates is not allowed for DDL batches.");
+  }
+
   @Override
   public void write(Mutation mutation) {
     throw SpannerExceptionFactory.newSpannerException(
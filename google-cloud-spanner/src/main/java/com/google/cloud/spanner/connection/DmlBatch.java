@@ -16,7 +16,10 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.AsyncResultSet;
 import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.Mutation;
 import com.google.cloud.spanner.Options.QueryOption;
@@ -27,6 +30,7 @@ import com.google.cloud.spanner.connection.StatementParser.ParsedStatement;
 import com.google.cloud.spanner.connection.StatementParser.StatementType;
 import com.google.common.base.Preconditions;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -93,6 +97,12 @@ class DmlBatch extends AbstractBaseUnitOfWork {
         ErrorCode.FAILED_PRECONDITION, "Executing queries is not allowed for DML batches.");
   }
 
+  @Override
+  public AsyncResultSet executeQueryAsync(ParsedStatement statement, QueryOption... options) {
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.FAILED_PRECONDITION, "Executing queries is not allowed for DML batches.");
+  }
+
   @Override
   public Timestamp getReadTimestamp() {
     throw SpannerExceptionFactory.newSpannerException(
@@ -135,12 +145,24 @@ class DmlBatch extends AbstractBaseUnitOfWork {
     return -1L;
   }
 
+  /** Buffers the statement locally. This does not need to wait for anything. */
+  @Override
+  public ApiFuture<Long> executeUpdateAsync(ParsedStatement update) {
+    return ApiFutures.immediateFuture(executeUpdate(update));
+  }
+
   @Override
   public long[] executeBatchUpdate(Iterable<ParsedStatement> updates) {
     throw SpannerExceptionFactory.newSpannerException(
         ErrorCode.FAILED_PRECONDITION, "Executing batch updates is not allowed for DML batches.");
   }
 
+  @Override
+  public ApiFuture<long[]> executeBatchUpdateAsync(Iterable<ParsedStatement> updates) {
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.FAILED_PRECONDITION, "Executing batch updates is not allowed for DML batches.");
+  }
+
   @Override
   public void write(Mutation mutation) {
     throw SpannerExceptionFactory.newSpannerException(
@@ -153,6 +175,11 @@ class DmlBatch extends AbstractBaseUnitOfWork {
         ErrorCode.FAILED_PRECONDITION, "Writing mutations is not allowed for DML batches.");
   }
 
+  /** Returns the statements that have been buffered in this batch. */
+  List<ParsedStatement> getStatements() {
+    return Collections.unmodifiableList(statements);
+  }
+
   @Override
   public long[] runBatch() {
     ConnectionPreconditions.checkState(
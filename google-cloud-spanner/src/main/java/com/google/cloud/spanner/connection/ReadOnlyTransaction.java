@@ -16,6 +16,7 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.ErrorCode;
@@ -142,12 +143,25 @@ class ReadOnlyTransaction extends AbstractMultiUseTransaction {
         "Update statements are not allowed for read-only transactions");
   }
 
+  @Override
+  public ApiFuture<Long> executeUpdateAsync(ParsedStatement update) {
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.FAILED_PRECONDITION,
+        "Update statements are not allowed for read-only transactions");
+  }
+
   @Override
   public long[] executeBatchUpdate(Iterable<ParsedStatement> updates) {
     throw SpannerExceptionFactory.newSpannerException(
         ErrorCode.FAILED_PRECONDITION, "Batch updates are not allowed for read-only transactions.");
   }
 
+  @Override
+  public ApiFuture<long[]> executeBatchUpdateAsync(Iterable<ParsedStatement> updates) {
+    throw SpannerExceptionFactory.newSpannerException(
+        ErrorCode.FAILED_PRECONDITION, "Batch updates are not allowed for read-only transactions.");
+  }
+
   @Override
   public void write(Mutation mutation) {
     throw SpannerExceptionFactory.newSpannerException(
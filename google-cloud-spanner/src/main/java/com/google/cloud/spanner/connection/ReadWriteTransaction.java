@@ -18,14 +18,23 @@ package com.google.cloud.spanner.connection;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.api.core.ApiAsyncFunction;
+import com.google.api.core.ApiFunction;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.ListenableFutureToApiFuture;
+import com.google.api.gax.core.ExecutorProvider;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.AbortedDueToConcurrentModificationException;
 import com.google.cloud.spanner.AbortedException;
+import com.google.cloud.spanner.AsyncResultSet;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.Mutation;
 import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
 import com.google.cloud.spanner.SpannerException;
 import com.google.cloud.spanner.SpannerExceptionFactory;
 import com.google.cloud.spanner.Statement;
@@ -35,13 +44,27 @@ import com.google.cloud.spanner.connection.StatementParser.ParsedStatement;
 import com.google.cloud.spanner.connection.TransactionRetryListener.RetryResult;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 
 /**
  * Transaction that is used when a {@link Connection} is normal read/write mode (i.e. not autocommit
@@ -62,20 +85,35 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
   private final DatabaseClient dbClient;
   private TransactionManager txManager;
   private final boolean retryAbortsInternally;
+  private final ChecksumAlgorithm checksumAlgorithm;
   private int transactionRetryAttempts;
   private int successfulRetries;
   private final List<TransactionRetryListener> transactionRetryListeners;
   private volatile TransactionContext txContext;
   private volatile UnitOfWorkState state = UnitOfWorkState.STARTED;
   private boolean timedOutOrCancelled = false;
+  private final ExecutorProvider asyncExecutorProvider;
+  /**
+   * The statements that must be replayed if the transaction is aborted. Asynchronous statements
+   * register themselves from the thread that completes them, so all access to this list must be
+   * synchronized on the list.
+   */
   private final List<RetriableStatement> statements = new ArrayList<>();
+  /** Serializes the retries of statements that are aborted at the same time. */
+  private final Object retryLock = new Object();
+  /** The asynchronous statements that have not yet finished. These must finish before commit. */
+  private final Set<ApiFuture<?>> pendingAsyncStatements =
+      Collections.newSetFromMap(new ConcurrentHashMap<ApiFuture<?>, Boolean>());
+
   private final List<Mutation> mutations = new ArrayList<>();
   private Timestamp transactionStarted;
 
   static class Builder extends AbstractMultiUseTransaction.Builder<Builder, ReadWriteTransaction> {
     private DatabaseClient dbClient;
     private Boolean retryAbortsInternally;
+    private ChecksumAlgorithm checksumAlgorithm = ConnectionOptions.DEFAULT_CHECKSUM_ALGORITHM;
     private List<TransactionRetryListener> transactionRetryListeners;
+    private ExecutorProvider asyncExecutorProvider;
 
     private Builder() {}
 
@@ -90,12 +128,28 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
       return this;
     }
 
+    Builder setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+      Preconditions.checkNotNull(checksumAlgorithm);
+      this.checksumAlgorithm = checksumAlgorithm;
+      return this;
+    }
+
     Builder setTransactionRetryListeners(List<TransactionRetryListener> listeners) {
       Preconditions.checkNotNull(listeners);
       this.transactionRetryListeners = listeners;
       return this;
     }
 
+    /**
+     * Sets the {@link ExecutorProvider} that is used to consume the results of asynchronous queries
+     * that must be checked during a retry. Asynchronous queries use the default executor of {@link
+     * ResultSets#toAsyncResultSet(ResultSet)} if this is not set or <code>null</code>.
+     */
+    Builder setAsyncExecutorProvider(@Nullable ExecutorProvider executorProvider) {
+      this.asyncExecutorProvider = executorProvider;
+      return this;
+    }
+
     @Override
     ReadWriteTransaction build() {
       Preconditions.checkState(dbClient != null, "No DatabaseClient client specified");
@@ -116,7 +170,9 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
     this.transactionId = ID_GENERATOR.incrementAndGet();
     this.dbClient = builder.dbClient;
     this.retryAbortsInternally = builder.retryAbortsInternally;
+    this.checksumAlgorithm = builder.checksumAlgorithm;
     this.transactionRetryListeners = builder.transactionRetryListeners;
+    this.asyncExecutorProvider = builder.asyncExecutorProvider;
     this.txManager = dbClient.transactionManager();
   }
 
@@ -156,6 +212,29 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
 
   @Override
   void checkValidTransaction() {
+    checkValidState();
+    beginIfNecessary();
+    if (txManager.getState()
+        != com.google.cloud.spanner.TransactionManager.TransactionState.STARTED) {
+      throw SpannerExceptionFactory.newSpannerException(
+          ErrorCode.FAILED_PRECONDITION,
+          String.format("Invalid transaction state: %s", txManager.getState()));
+    }
+  }
+
+  /**
+   * Begins the underlying transaction if that has not yet been done. Asynchronous statements can
+   * begin the transaction from a different thread than the statement executor.
+   */
+  private synchronized void beginIfNecessary() {
+    if (txManager.getState() == null) {
+      transactionStarted = Timestamp.now();
+      txContext = txManager.begin();
+    }
+  }
+
+  /** Checks that new statements may be executed on this transaction. */
+  private void checkValidState() {
     ConnectionPreconditions.checkState(
         state == UnitOfWorkState.STARTED,
         "This transaction has status "
@@ -168,16 +247,30 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
         "The last statement of this transaction timed out or was cancelled. "
             + "The transaction is no longer usable. "
             + "Rollback the transaction and start a new one.");
-    if (txManager.getState() == null) {
-      transactionStarted = Timestamp.now();
-      txContext = txManager.begin();
-    }
-    if (txManager.getState()
-        != com.google.cloud.spanner.TransactionManager.TransactionState.STARTED) {
-      throw SpannerExceptionFactory.newSpannerException(
-          ErrorCode.FAILED_PRECONDITION,
-          String.format("Invalid transaction state: %s", txManager.getState()));
+  }
+
+  /**
+   * Checks that this transaction is valid and begins it if that has not yet been done. Beginning a
+   * transaction waits for a round-trip to Spanner, and is therefore done on the {@link
+   * StatementExecutor} of the connection. All following statements of the transaction can be
+   * executed without blocking a thread.
+   */
+  private ApiFuture<Void> checkValidTransactionAsync() {
+    checkValidState();
+    if (txManager.getState() != null) {
+      checkValidTransaction();
+      return ApiFutures.immediateFuture(null);
     }
+    return new ListenableFutureToApiFuture<>(
+        getStatementExecutor()
+            .submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() {
+                    checkValidTransaction();
+                    return null;
+                  }
+                }));
   }
 
   @Override
@@ -301,8 +394,11 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
                                   update,
                                   StatementExecutionStep.EXECUTE_STATEMENT,
                                   ReadWriteTransaction.this);
-                          long updateCount = txContext.executeUpdate(update.getStatement());
-                          createAndAddRetriableUpdate(update, updateCount);
+                          TransactionContext context = txContext;
+                          long updateCount = context.executeUpdate(update.getStatement());
+                          if (!createAndAddRetriableUpdate(context, update, updateCount)) {
+                            throw newRetriedWhileExecutingException();
+                          }
                           return updateCount;
                         } catch (AbortedException e) {
                           throw e;
@@ -375,8 +471,12 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
                                   EXECUTE_BATCH_UPDATE_STATEMENT,
                                   StatementExecutionStep.EXECUTE_STATEMENT,
                                   ReadWriteTransaction.this);
-                          long[] updateCounts = txContext.batchUpdate(updateStatements);
-                          createAndAddRetriableBatchUpdate(updateStatements, updateCounts);
+                          TransactionContext context = txContext;
+                          long[] updateCounts = context.batchUpdate(updateStatements);
+                          if (!createAndAddRetriableBatchUpdate(
+                              context, updateStatements, updateCounts)) {
+                            throw newRetriedWhileExecutingException();
+                          }
                           return updateCounts;
                         } catch (AbortedException e) {
                           throw e;
@@ -407,6 +507,252 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
     }
   }
 
+  @Override
+  public AsyncResultSet executeQueryAsync(
+      final ParsedStatement statement, final QueryOption... options) {
+    if (!retryAbortsInternally) {
+      return super.executeQueryAsync(statement, options);
+    }
+    Preconditions.checkArgument(statement.isQuery(), "Statement is not a query");
+    checkValidTransaction();
+    getStatementExecutor()
+        .invokeInterceptors(statement, StatementExecutionStep.EXECUTE_STATEMENT, this);
+    // The query is only sent to Spanner when the rows are consumed. The rows are consumed through a
+    // ChecksumResultSet so that the query can be checked if the transaction is retried.
+    ResultSet resultSet =
+        createAndAddRetryResultSet(
+            internalExecuteQuery(statement, AnalyzeMode.NONE, options),
+            statement,
+            AnalyzeMode.NONE,
+            options);
+    return asyncExecutorProvider == null
+        ? ResultSets.toAsyncResultSet(resultSet)
+        : ResultSets.toAsyncResultSet(resultSet, asyncExecutorProvider);
+  }
+
+  @Override
+  public ApiFuture<Long> executeUpdateAsync(final ParsedStatement update) {
+    Preconditions.checkNotNull(update);
+    Preconditions.checkArgument(update.isUpdate(), "The statement is not an update statement");
+    return executeStatementAsync(
+        update,
+        new AsyncStatement<Long>() {
+          @Override
+          ApiFuture<Long> execute(TransactionContext context) {
+            return context.executeUpdateAsync(update.getStatement());
+          }
+
+          @Override
+          boolean registerResult(TransactionContext context, Long updateCount) {
+            return createAndAddRetriableUpdate(context, update, updateCount);
+          }
+
+          @Override
+          void registerFailure(SpannerException e) {
+            createAndAddFailedUpdate(e, update);
+          }
+        });
+  }
+
+  @Override
+  public ApiFuture<long[]> executeBatchUpdateAsync(Iterable<ParsedStatement> updates) {
+    Preconditions.checkNotNull(updates);
+    final List<Statement> updateStatements = new LinkedList<>();
+    for (ParsedStatement update : updates) {
+      Preconditions.checkArgument(
+          update.isUpdate(),
+          "Statement is not an update statement: " + update.getSqlWithoutComments());
+      updateStatements.add(update.getStatement());
+    }
+    return executeStatementAsync(
+        EXECUTE_BATCH_UPDATE_STATEMENT,
+        new AsyncStatement<long[]>() {
+          @Override
+          ApiFuture<long[]> execute(TransactionContext context) {
+            return context.batchUpdateAsync(updateStatements);
+          }
+
+          @Override
+          boolean registerResult(TransactionContext context, long[] updateCounts) {
+            return createAndAddRetriableBatchUpdate(context, updateStatements, updateCounts);
+          }
+
+          @Override
+          void registerFailure(SpannerException e) {
+            createAndAddFailedBatchUpdate(e, updateStatements);
+          }
+        });
+  }
+
+  /**
+   * A statement that is executed with one of the asynchronous methods of {@link
+   * TransactionContext}, together with the registration of its result for a retry of the
+   * transaction.
+   */
+  private abstract static class AsyncStatement<T> {
+    abstract ApiFuture<T> execute(TransactionContext context);
+
+    /**
+     * Registers the result of the statement so it can be checked during a retry. Returns <code>
+     * false</code> if the statement was executed on a transaction that has since been retried.
+     */
+    abstract boolean registerResult(TransactionContext context, T result);
+
+    abstract void registerFailure(SpannerException e);
+  }
+
+  /**
+   * Executes a statement without blocking a thread while the statement is being executed by
+   * Spanner. The statement is not ordered with the statements on the {@link StatementExecutor} of
+   * the connection, and {@link #commit()} waits for it to finish.
+   */
+  private <T> ApiFuture<T> executeStatementAsync(
+      final ParsedStatement statement, final AsyncStatement<T> asyncStatement) {
+    ApiFuture<T> attempt =
+        ApiFutures.transformAsync(
+            checkValidTransactionAsync(),
+            new ApiAsyncFunction<Void, T>() {
+              @Override
+              public ApiFuture<T> apply(Void input) {
+                getStatementExecutor()
+                    .invokeInterceptors(
+                        statement,
+                        StatementExecutionStep.EXECUTE_STATEMENT,
+                        ReadWriteTransaction.this);
+                return executeAttemptAsync(asyncStatement);
+              }
+            },
+            MoreExecutors.directExecutor());
+    final ApiFuture<T> res =
+        ApiFutures.catching(
+            getStatementExecutor()
+                .withTimeout(attempt, getStatementTimeout(), statement.getSqlWithoutComments()),
+            SpannerException.class,
+            new ApiFunction<SpannerException, T>() {
+              @Override
+              public T apply(SpannerException e) {
+                handlePossibleInvalidatingException(e);
+                throw e;
+              }
+            });
+    pendingAsyncStatements.add(res);
+    res.addListener(
+        new Runnable() {
+          @Override
+          public void run() {
+            pendingAsyncStatements.remove(res);
+          }
+        },
+        MoreExecutors.directExecutor());
+    return res;
+  }
+
+  /**
+   * Executes one attempt of an asynchronous statement on the current transaction. If retries are
+   * enabled and the transaction is aborted, the transaction is retried and the statement is
+   * executed again.
+   */
+  private <T> ApiFuture<T> executeAttemptAsync(final AsyncStatement<T> asyncStatement) {
+    final TransactionContext context = txContext;
+    ApiFuture<T> attempt = asyncStatement.execute(context);
+    if (!retryAbortsInternally) {
+      return attempt;
+    }
+    final SettableFuture<T> res = SettableFuture.create();
+    ApiFutures.addCallback(
+        attempt,
+        new ApiFutureCallback<T>() {
+          @Override
+          public void onSuccess(T result) {
+            if (asyncStatement.registerResult(context, result)) {
+              res.set(result);
+            } else {
+              res.setFuture(
+                  retryAsync(context, newRetriedWhileExecutingException(), asyncStatement));
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            if (t instanceof AbortedException) {
+              res.setFuture(retryAsync(context, (AbortedException) t, asyncStatement));
+              return;
+            }
+            if (t instanceof SpannerException) {
+              asyncStatement.registerFailure((SpannerException) t);
+            }
+            res.setException(t);
+          }
+        },
+        MoreExecutors.directExecutor());
+    return new ListenableFutureToApiFuture<>(res);
+  }
+
+  /**
+   * Retries the transaction after an asynchronous statement was aborted, and then executes the
+   * statement again. A retry waits for a backoff and replays all statements of the transaction, and
+   * is therefore executed on the parallel executor of the connection instead of on the thread that
+   * completed the statement.
+   */
+  private <T> ListenableFuture<T> retryAsync(
+      final TransactionContext abortedContext,
+      final AbortedException aborted,
+      final AsyncStatement<T> asyncStatement) {
+    ListenableFutureTask<T> task =
+        ListenableFutureTask.create(
+            new Callable<T>() {
+              @Override
+              public T call() {
+                handleAborted(abortedContext, aborted);
+                return runWithRetry(
+                    new Callable<T>() {
+                      @Override
+                      public T call() {
+                        TransactionContext context = txContext;
+                        T result;
+                        try {
+                          result = ConnectionImpl.getAsyncResult(asyncStatement.execute(context));
+                        } catch (AbortedException e) {
+                          throw e;
+                        } catch (SpannerException e) {
+                          asyncStatement.registerFailure(e);
+                          throw e;
+                        }
+                        if (!asyncStatement.registerResult(context, result)) {
+                          throw newRetriedWhileExecutingException();
+                        }
+                        return result;
+                      }
+                    });
+              }
+            });
+    getStatementExecutor().getParallelExecutor().execute(task);
+    return task;
+  }
+
+  /**
+   * Returns the exception that is used to execute a statement again if the transaction was retried
+   * by a different statement while the statement was being executed.
+   */
+  private static AbortedException newRetriedWhileExecutingException() {
+    return (AbortedException)
+        SpannerExceptionFactory.newSpannerException(
+            ErrorCode.ABORTED, "The transaction was retried while the statement was executed");
+  }
+
+  /** Waits for all asynchronous statements of this transaction to finish. */
+  private void waitForPendingAsyncStatements() {
+    for (ApiFuture<?> statement : new ArrayList<>(pendingAsyncStatements)) {
+      try {
+        statement.get();
+      } catch (ExecutionException | CancellationException e) {
+        // The error has been returned to the application by the statement itself.
+      } catch (InterruptedException e) {
+        throw SpannerExceptionFactory.propagateInterrupt(e);
+      }
+    }
+  }
+
   @Override
   public void write(Mutation mutation) {
     Preconditions.checkNotNull(mutation);
@@ -448,6 +794,7 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
 
   @Override
   public void commit() {
+    waitForPendingAsyncStatements();
     checkValidTransaction();
     try {
       if (retryAbortsInternally) {
@@ -508,11 +855,12 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
    */
   <T> T runWithRetry(Callable<T> callable) throws SpannerException {
     while (true) {
+      TransactionContext context = txContext;
       try {
         return callable.call();
       } catch (final AbortedException aborted) {
         if (retryAbortsInternally) {
-          handleAborted(aborted);
+          handleAborted(context, aborted);
         } else {
           throw aborted;
         }
@@ -553,16 +901,25 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
     }
   }
 
-  private void createAndAddRetriableUpdate(ParsedStatement update, long updateCount) {
+  /**
+   * Registers the update as an update that should return the same update count during a retry.
+   * Returns <code>false</code> if the update was executed on a transaction that has since been
+   * retried, in which case the update must be executed again.
+   */
+  private boolean createAndAddRetriableUpdate(
+      TransactionContext context, ParsedStatement update, long updateCount) {
     if (retryAbortsInternally) {
-      addRetryStatement(new RetriableUpdate(this, update, updateCount));
+      return addRetryStatement(context, new RetriableUpdate(this, update, updateCount));
     }
+    return true;
   }
 
-  private void createAndAddRetriableBatchUpdate(Iterable<Statement> updates, long[] updateCounts) {
+  private boolean createAndAddRetriableBatchUpdate(
+      TransactionContext context, Iterable<Statement> updates, long[] updateCounts) {
     if (retryAbortsInternally) {
-      addRetryStatement(new RetriableBatchUpdate(this, updates, updateCounts));
+      return addRetryStatement(context, new RetriableBatchUpdate(this, updates, updateCounts));
     }
+    return true;
   }
 
   /** Registers the statement as an update that should return an error during a retry. */
@@ -585,15 +942,50 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
   private void addRetryStatement(RetriableStatement statement) {
     Preconditions.checkState(
         retryAbortsInternally, "retryAbortsInternally is not enabled for this transaction");
-    statements.add(statement);
+    synchronized (statements) {
+      statements.add(statement);
+    }
+  }
+
+  /**
+   * Adds a statement that was executed on the given transaction to the list of statements that
+   * should be retried. Returns <code>false</code> and does not add the statement if the transaction
+   * has been retried by another statement after the given transaction was used, as the new
+   * transaction does not include the effects of the statement.
+   */
+  private boolean addRetryStatement(TransactionContext context, RetriableStatement statement) {
+    Preconditions.checkState(
+        retryAbortsInternally, "retryAbortsInternally is not enabled for this transaction");
+    synchronized (statements) {
+      if (context != txContext) {
+        return false;
+      }
+      statements.add(statement);
+      return true;
+    }
   }
 
   /**
    * Handles an aborted exception by checking whether the transaction may be retried internally, and
    * if so, does the retry. If retry is not allowed, or if the retry fails, the method will throw an
    * {@link AbortedException}.
+   *
+   * <p>Asynchronous statements can be aborted at the same time as other statements. Only the first
+   * of these statements retries the transaction, the others only have to be executed again on the
+   * new transaction.
+   *
+   * @param abortedContext the transaction that the aborted statement was executed on.
    */
-  private void handleAborted(AbortedException aborted) {
+  private void handleAborted(TransactionContext abortedContext, AbortedException aborted) {
+    synchronized (retryLock) {
+      if (abortedContext != txContext) {
+        return;
+      }
+      internalHandleAborted(aborted);
+    }
+  }
+
+  private void internalHandleAborted(AbortedException aborted) {
     if (transactionRetryAttempts >= MAX_INTERNAL_RETRIES) {
       // If the same statement in transaction keeps aborting, then we need to abort here.
       throwAbortWithRetryAttemptsExceeded();
@@ -609,13 +1001,24 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
               ErrorCode.CANCELLED, "The statement was cancelled");
         }
         try {
-          txContext = txManager.resetForRetry();
+          TransactionContext context = txManager.resetForRetry();
+          // Statements that are registered after this point were executed on the new transaction,
+          // or are rejected and executed again.
+          List<RetriableStatement> replay;
+          synchronized (statements) {
+            txContext = context;
+            replay = new ArrayList<>(statements);
+          }
           // Inform listeners about the transaction retry that is about to start.
           invokeTransactionRetryListenersOnStart();
           // Then retry all transaction statements.
           transactionRetryAttempts++;
-          for (RetriableStatement statement : statements) {
-            statement.retry(aborted);
+          Stopwatch replayWatch = Stopwatch.createStarted();
+          try {
+            replayStatements(replay, aborted);
+          } finally {
+            invokeTransactionRetryListenersOnReplayFinished(
+                replayWatch.elapsed(TimeUnit.MILLISECONDS));
           }
           successfulRetries++;
           invokeTransactionRetryListenersOnFinish(RetryResult.RETRY_SUCCESSFUL);
@@ -675,6 +1078,83 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
     }
   }
 
+  /**
+   * Replays the statements of this transaction on the new transaction. Consecutive queries do not
+   * depend on each other and are replayed in parallel. DML statements are replayed in their
+   * original order, after all preceding queries have been replayed and before any following query
+   * is replayed.
+   */
+  private void replayStatements(List<RetriableStatement> replay, AbortedException aborted) {
+    List<RetriableStatement> queries = new ArrayList<>();
+    for (RetriableStatement statement : replay) {
+      if (statement instanceof ChecksumResultSet || statement instanceof FailedQuery) {
+        queries.add(statement);
+      } else {
+        replayQueries(queries, aborted);
+        queries.clear();
+        statement.retry(aborted);
+      }
+    }
+    replayQueries(queries, aborted);
+  }
+
+  /**
+   * Replays the given queries in parallel and waits for all of them to finish. If one or more of
+   * the queries fail, the error of the first of these queries is thrown.
+   */
+  private void replayQueries(List<RetriableStatement> queries, final AbortedException aborted) {
+    // Statement execution interceptors are not required to be thread-safe, and expect to be invoked
+    // in the order of the statements of the transaction. The queries are therefore replayed
+    // sequentially on the retrying thread if there are any interceptors.
+    if (queries.size() <= 1 || getStatementExecutor().hasInterceptors()) {
+      for (RetriableStatement query : queries) {
+        query.retry(aborted);
+      }
+      return;
+    }
+    List<ListenableFutureTask<Void>> tasks = new ArrayList<>(queries.size());
+    for (final RetriableStatement query : queries) {
+      tasks.add(
+          ListenableFutureTask.create(
+              new Callable<Void>() {
+                @Override
+                public Void call() {
+                  query.retry(aborted);
+                  return null;
+                }
+              }));
+    }
+    Executor executor = getStatementExecutor().getParallelExecutor();
+    for (int i = 1; i < tasks.size(); i++) {
+      executor.execute(tasks.get(i));
+    }
+    // Run all queries that have not yet been started by the executor on this thread. This ensures
+    // that the replay cannot be blocked by an executor that is busy with other statements. Running
+    // a task that has already been started by the executor is a no-op.
+    for (ListenableFutureTask<Void> task : tasks) {
+      task.run();
+    }
+    Throwable error = null;
+    for (ListenableFutureTask<Void> task : tasks) {
+      try {
+        task.get();
+      } catch (ExecutionException e) {
+        if (error == null) {
+          error = e.getCause();
+        }
+      } catch (InterruptedException e) {
+        for (ListenableFutureTask<Void> t : tasks) {
+          t.cancel(true);
+        }
+        throw SpannerExceptionFactory.propagateInterrupt(e);
+      }
+    }
+    if (error != null) {
+      Throwables.throwIfUnchecked(error);
+      throw SpannerExceptionFactory.newSpannerException(error);
+    }
+  }
+
   private void throwAbortWithRetryAttemptsExceeded() throws SpannerException {
     invokeTransactionRetryListenersOnFinish(RetryResult.RETRY_ABORTED_AND_MAX_ATTEMPTS_EXCEEDED);
     logger.fine(
@@ -699,6 +1179,16 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
     }
   }
 
+  private void invokeTransactionRetryListenersOnReplayFinished(long replayDurationMillis) {
+    for (TransactionRetryListener listener : transactionRetryListeners) {
+      if (listener instanceof TransactionRetryReplayListener) {
+        ((TransactionRetryReplayListener) listener)
+            .retryReplayFinished(
+                transactionStarted, transactionId, transactionRetryAttempts, replayDurationMillis);
+      }
+    }
+  }
+
   private void invokeTransactionRetryListenersOnFinish(RetryResult result) {
     for (TransactionRetryListener listener : transactionRetryListeners) {
       listener.retryFinished(transactionStarted, transactionId, transactionRetryAttempts, result);
@@ -723,6 +1213,7 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
     ConnectionPreconditions.checkState(
         state == UnitOfWorkState.STARTED, "This transaction has status " + state.name());
     try {
+      waitForPendingAsyncStatements();
       asyncExecuteStatement(rollbackStatement, rollbackCallable);
     } finally {
       // Whatever happens, we should always call close in order to return the underlying session to
@@ -757,6 +1248,7 @@ class ReadWriteTransaction extends AbstractMultiUseTransaction {
       ParsedStatement statement,
       AnalyzeMode analyzeMode,
       QueryOption... options) {
-    return new ChecksumResultSet(this, delegate, statement, analyzeMode, options);
+    return new ChecksumResultSet(
+        this, delegate, statement, analyzeMode, checksumAlgorithm, options);
   }
 }
@@ -16,9 +16,15 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.api.gax.longrunning.OperationFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.AbortedException;
+import com.google.cloud.spanner.AsyncResultSet;
+import com.google.cloud.spanner.AsyncRunner;
+import com.google.cloud.spanner.AsyncRunner.AsyncWork;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.Mutation;
@@ -37,6 +43,7 @@ import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
 import com.google.cloud.spanner.connection.StatementParser.ParsedStatement;
 import com.google.cloud.spanner.connection.StatementParser.StatementType;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.spanner.admin.database.v1.UpdateDatabaseDdlMetadata;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -69,8 +76,13 @@ class SingleUseTransaction extends AbstractBaseUnitOfWork {
   private Timestamp readTimestamp = null;
   private volatile TransactionManager txManager;
   private TransactionRunner writeTransaction;
+  /** The read-only transaction of an asynchronous query, which knows its read timestamp. */
+  private volatile ReadOnlyTransaction asyncReadTransaction;
+  /** The runner of an asynchronous update, which knows its commit timestamp. */
+  private volatile AsyncRunner asyncWriteTransaction;
+
   private boolean used = false;
-  private UnitOfWorkState state = UnitOfWorkState.STARTED;
+  private volatile UnitOfWorkState state = UnitOfWorkState.STARTED;
 
   static class Builder extends AbstractBaseUnitOfWork.Builder<Builder, SingleUseTransaction> {
     private DdlClient ddlClient;
@@ -204,41 +216,89 @@ class SingleUseTransaction extends AbstractBaseUnitOfWork {
     }
   }
 
+  /**
+   * Executes a query asynchronously on a single-use read-only transaction. The query is sent to
+   * Spanner when the returned {@link AsyncResultSet} is consumed.
+   */
+  @Override
+  public AsyncResultSet executeQueryAsync(ParsedStatement statement, QueryOption... options) {
+    return startAsyncQuery(statement).executeQueryAsync(statement.getStatement(), options);
+  }
+
+  /**
+   * Returns a {@link ResultSet} for the given query that only sends the query to Spanner when the
+   * result set is consumed, on the thread that consumes it. This is used for asynchronous queries
+   * whose rows must also be read by the connection itself, as the rows of an {@link AsyncResultSet}
+   * can only be read by the application.
+   */
+  ResultSet executeQueryOnConsumption(ParsedStatement statement, QueryOption... options) {
+    return startAsyncQuery(statement).executeQuery(statement.getStatement(), options);
+  }
+
+  private ReadOnlyTransaction startAsyncQuery(ParsedStatement statement) {
+    Preconditions.checkNotNull(statement);
+    Preconditions.checkArgument(statement.isQuery(), "Statement is not a query");
+    checkAndMarkUsed();
+    getStatementExecutor()
+        .invokeInterceptors(statement, StatementExecutionStep.EXECUTE_STATEMENT, this);
+    // A single-use read-only transaction releases its session when the result set has been
+    // consumed or closed.
+    asyncReadTransaction = dbClient.singleUseReadOnlyTransaction(readOnlyStaleness);
+    state = UnitOfWorkState.COMMITTED;
+    return asyncReadTransaction;
+  }
+
   @Override
   public Timestamp getReadTimestamp() {
+    Timestamp timestamp = getReadTimestampOrNull();
     ConnectionPreconditions.checkState(
-        readTimestamp != null, "There is no read timestamp available for this transaction.");
-    return readTimestamp;
+        timestamp != null, "There is no read timestamp available for this transaction.");
+    return timestamp;
   }
 
   @Override
   public Timestamp getReadTimestampOrNull() {
+    if (readTimestamp == null && asyncReadTransaction != null) {
+      try {
+        // The read timestamp is only known when the asynchronous query has returned data.
+        return asyncReadTransaction.getReadTimestamp();
+      } catch (SpannerException | IllegalStateException e) {
+        return null;
+      }
+    }
     return readTimestamp;
   }
 
   private boolean hasCommitTimestamp() {
     return writeTransaction != null
+        || (asyncWriteTransaction != null && asyncWriteTransaction.getCommitTimestamp().isDone())
         || (txManager != null
             && txManager.getState()
                 == com.google.cloud.spanner.TransactionManager.TransactionState.COMMITTED);
   }
 
+  private Timestamp internalGetCommitTimestamp() {
+    if (writeTransaction != null) {
+      return writeTransaction.getCommitTimestamp();
+    }
+    if (asyncWriteTransaction != null) {
+      return ConnectionImpl.getAsyncResult(asyncWriteTransaction.getCommitTimestamp());
+    }
+    return txManager.getCommitTimestamp();
+  }
+
   @Override
   public Timestamp getCommitTimestamp() {
     ConnectionPreconditions.checkState(
         hasCommitTimestamp(), "There is no commit timestamp available for this transaction.");
-    return writeTransaction != null
-        ? writeTransaction.getCommitTimestamp()
-        : txManager.getCommitTimestamp();
+    return internalGetCommitTimestamp();
   }
 
   @Override
   public Timestamp getCommitTimestampOrNull() {
     if (hasCommitTimestamp()) {
       try {
-        return writeTransaction != null
-            ? writeTransaction.getCommitTimestamp()
-            : txManager.getCommitTimestamp();
+        return internalGetCommitTimestamp();
       } catch (SpannerException e) {
         // ignore
       }
@@ -302,6 +362,74 @@ class SingleUseTransaction extends AbstractBaseUnitOfWork {
     return res;
   }
 
+  /**
+   * Executes an update statement asynchronously. A transactional update uses {@link
+   * AsyncRunner#runAsync(AsyncWork, java.util.concurrent.Executor)}, which also retries the
+   * transaction if it is aborted. The {@link AsyncRunner} of the session pool waits for the
+   * transaction on the executor that it is given, which is why the parallel executor of the
+   * connection is used instead of the thread that executes the statement.
+   */
+  @Override
+  public ApiFuture<Long> executeUpdateAsync(final ParsedStatement update) {
+    Preconditions.checkNotNull(update);
+    Preconditions.checkArgument(update.isUpdate(), "Statement is not an update statement");
+    ConnectionPreconditions.checkState(
+        !isReadOnly(), "Update statements are not allowed in read-only mode");
+    checkAndMarkUsed();
+    getStatementExecutor()
+        .invokeInterceptors(update, StatementExecutionStep.EXECUTE_STATEMENT, this);
+
+    ApiFuture<Long> res;
+    switch (autocommitDmlMode) {
+      case TRANSACTIONAL:
+        res =
+            runAsync(
+                new AsyncWork<Long>() {
+                  @Override
+                  public ApiFuture<Long> doWorkAsync(TransactionContext txn) {
+                    return txn.executeUpdateAsync(update.getStatement());
+                  }
+                });
+        break;
+      case PARTITIONED_NON_ATOMIC:
+        res = dbClient.executePartitionedUpdateAsync(update.getStatement());
+        break;
+      default:
+        throw SpannerExceptionFactory.newSpannerException(
+            ErrorCode.FAILED_PRECONDITION, "Unknown dml mode: " + autocommitDmlMode);
+    }
+    return getStatementExecutor()
+        .withTimeout(setStateWhenDone(res), getStatementTimeout(), update.getSqlWithoutComments());
+  }
+
+  private <T> ApiFuture<T> runAsync(AsyncWork<T> work) {
+    asyncWriteTransaction = dbClient.runAsync();
+    return asyncWriteTransaction.runAsync(work, getStatementExecutor().getParallelExecutor());
+  }
+
+  /** Sets the state of this transaction when the given asynchronous update has finished. */
+  private <T> ApiFuture<T> setStateWhenDone(ApiFuture<T> update) {
+    ApiFutures.addCallback(
+        update,
+        new ApiFutureCallback<T>() {
+          @Override
+          public void onFailure(Throwable t) {
+            // A batch update exception does not cause a rollback.
+            state =
+                t instanceof SpannerBatchUpdateException
+                    ? UnitOfWorkState.COMMITTED
+                    : UnitOfWorkState.COMMIT_FAILED;
+          }
+
+          @Override
+          public void onSuccess(T result) {
+            state = UnitOfWorkState.COMMITTED;
+          }
+        },
+        MoreExecutors.directExecutor());
+    return update;
+  }
+
   /** Execute an update statement as a partitioned DML statement. */
   private long executeAsyncPartitionedUpdate(final ParsedStatement update) {
     Callable<Long> callable =
@@ -346,7 +474,7 @@ class SingleUseTransaction extends AbstractBaseUnitOfWork {
               ErrorCode.FAILED_PRECONDITION, "Unknown dml mode: " + autocommitDmlMode);
       }
     } catch (SpannerBatchUpdateException e) {
-      // Batch update exceptions does not cause a rollback.
+      // A batch update exception does not cause a rollback.
       state = UnitOfWorkState.COMMITTED;
       throw e;
     } catch (Throwable e) {
@@ -357,6 +485,46 @@ class SingleUseTransaction extends AbstractBaseUnitOfWork {
     return res;
   }
 
+  @Override
+  public ApiFuture<long[]> executeBatchUpdateAsync(Iterable<ParsedStatement> updates) {
+    Preconditions.checkNotNull(updates);
+    final List<Statement> statements = new LinkedList<>();
+    for (ParsedStatement update : updates) {
+      Preconditions.checkArgument(
+          update.isUpdate(),
+          "Statement is not an update statement: " + update.getSqlWithoutComments());
+      statements.add(update.getStatement());
+    }
+    ConnectionPreconditions.checkState(
+        !isReadOnly(), "Batch update statements are not allowed in read-only mode");
+    checkAndMarkUsed();
+    getStatementExecutor()
+        .invokeInterceptors(
+            executeBatchUpdateStatement, StatementExecutionStep.EXECUTE_STATEMENT, this);
+
+    switch (autocommitDmlMode) {
+      case TRANSACTIONAL:
+        return getStatementExecutor()
+            .withTimeout(
+                setStateWhenDone(
+                    runAsync(
+                        new AsyncWork<long[]>() {
+                          @Override
+                          public ApiFuture<long[]> doWorkAsync(TransactionContext txn) {
+                            return txn.batchUpdateAsync(statements);
+                          }
+                        })),
+                getStatementTimeout(),
+                "batch update");
+      case PARTITIONED_NON_ATOMIC:
+        throw SpannerExceptionFactory.newSpannerException(
+            ErrorCode.FAILED_PRECONDITION, "Batch updates are not allowed in " + autocommitDmlMode);
+      default:
+        throw SpannerExceptionFactory.newSpannerException(
+            ErrorCode.FAILED_PRECONDITION, "Unknown dml mode: " + autocommitDmlMode);
+    }
+  }
+
   /** Base class for executing DML updates (both single statements and batches). */
   private abstract class AbstractUpdateCallable<T> implements Callable<T> {
     abstract T executeUpdate(TransactionContext txContext);
@@ -17,6 +17,7 @@
 package com.google.cloud.spanner.connection;
 
 import com.google.api.core.ApiFunction;
+import com.google.api.core.SettableApiFuture;
 import com.google.auth.Credentials;
 import com.google.cloud.NoCredentials;
 import com.google.cloud.spanner.ErrorCode;
@@ -28,17 +29,31 @@ import com.google.cloud.spanner.SpannerOptions;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.grpc.ManagedChannelBuilder;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import io.opencensus.metrics.Metrics;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.concurrent.GuardedBy;
@@ -51,6 +66,11 @@ import javax.annotation.concurrent.GuardedBy;
  * have been opened by connections during the lifetime of the JVM, which connections are still
  * opened and closed, and which {@link Spanner} objects could be closed.
  *
+ * <p>Each {@link Spanner} instance is created by the first connection that needs it, without
+ * holding a lock on the pool. Other connections for the same {@link SpannerPoolKey} wait for that
+ * {@link Spanner} instance to be created, while connections for other keys can be opened in
+ * parallel.
+ *
  * <p>Call the method {@link SpannerPool#closeSpannerPool()} at the end of your application to
  * gracefully shutdown all instances in the pool.
  */
@@ -59,6 +79,15 @@ public class SpannerPool {
   private static final String CONNECTION_API_CLIENT_LIB_TOKEN = "sp-jdbc";
   private static final Logger logger = Logger.getLogger(SpannerPool.class.getName());
 
+  private static final ImmutableList<LabelKey> NO_LABEL_KEYS = ImmutableList.of();
+  private static final ImmutableList<LabelValue> NO_LABEL_VALUES = ImmutableList.of();
+  private static final String COUNT = "1";
+  private static final String MILLISECOND = "ms";
+  private static final String CONNECTION_OPEN_TIME =
+      "cloud.google.com/java/spanner/connection_open_time";
+  private static final String NUM_OPENED_CONNECTIONS =
+      "cloud.google.com/java/spanner/num_opened_connections";
+
   /**
    * Closes the default {@link SpannerPool} and all {@link Spanner} instances that have been opened
    * by connections and that are still open. Call this method at the end of your application to
@@ -77,8 +106,13 @@ public class SpannerPool {
    */
   private static final long DEFAULT_CLOSE_SPANNER_AFTER_MILLISECONDS_UNUSED = 60000L;
 
-  static final SpannerPool INSTANCE =
-      new SpannerPool(DEFAULT_CLOSE_SPANNER_AFTER_MILLISECONDS_UNUSED);
+  static final SpannerPool INSTANCE = createDefaultInstance();
+
+  private static SpannerPool createDefaultInstance() {
+    SpannerPool pool = new SpannerPool(DEFAULT_CLOSE_SPANNER_AFTER_MILLISECONDS_UNUSED);
+    pool.register(Metrics.getMetricRegistry());
+    return pool;
+  }
 
   @VisibleForTesting
   enum CheckAndCloseSpannersMode {
@@ -184,8 +218,13 @@ public class SpannerPool {
    */
   private ScheduledExecutorService closerService;
 
-  @GuardedBy("this")
-  private final Map<SpannerPoolKey, Spanner> spanners = new HashMap<>();
+  /**
+   * The {@link Spanner} instances in this pool. The value is a future that is completed by the
+   * connection that first needed the {@link Spanner} instance. The creation of a {@link Spanner}
+   * instance can take some time, and is therefore not done while holding the lock on this pool.
+   */
+  private final ConcurrentMap<SpannerPoolKey, SettableApiFuture<Spanner>> spanners =
+      new ConcurrentHashMap<>();
 
   @GuardedBy("this")
   private final Map<SpannerPoolKey, List<ConnectionImpl>> connections = new HashMap<>();
@@ -206,6 +245,9 @@ public class SpannerPool {
   @GuardedBy("this")
   private final Map<SpannerPoolKey, Long> lastConnectionClosedAt = new HashMap<>();
 
+  private final AtomicLong openedConnections = new AtomicLong();
+  private final AtomicLong connectionOpenTimeNanos = new AtomicLong();
+
   @VisibleForTesting
   SpannerPool() {
     this(0L);
@@ -232,17 +274,20 @@ public class SpannerPool {
     Preconditions.checkNotNull(options);
     Preconditions.checkNotNull(connection);
     SpannerPoolKey key = SpannerPoolKey.of(options);
-    Spanner spanner;
+    SettableApiFuture<Spanner> spannerFuture;
+    boolean create = false;
     synchronized (this) {
       if (!initialized) {
         initialize();
       }
-      if (spanners.get(key) != null) {
-        spanner = spanners.get(key);
-      } else {
-        spanner = createSpanner(key);
-        spanners.put(key, spanner);
+      spannerFuture = spanners.get(key);
+      if (spannerFuture == null) {
+        spannerFuture = SettableApiFuture.create();
+        spanners.put(key, spannerFuture);
+        create = true;
       }
+      // Register the connection before the Spanner instance has been created, so the instance
+      // cannot be closed by the closer service while it is being created.
       List<ConnectionImpl> registeredConnectionsForSpanner = connections.get(key);
       if (registeredConnectionsForSpanner == null) {
         registeredConnectionsForSpanner = new ArrayList<>();
@@ -250,10 +295,94 @@ public class SpannerPool {
       }
       registeredConnectionsForSpanner.add(connection);
       lastConnectionClosedAt.remove(key);
-      return spanner;
+    }
+    if (create) {
+      try {
+        spannerFuture.set(createSpanner(key));
+      } catch (Throwable t) {
+        synchronized (this) {
+          spanners.remove(key, spannerFuture);
+        }
+        spannerFuture.setException(t);
+      }
+    }
+    try {
+      return Uninterruptibles.getUninterruptibly(spannerFuture);
+    } catch (ExecutionException e) {
+      unregisterConnection(key, connection);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw SpannerExceptionFactory.newSpannerException(e.getCause());
     }
   }
 
+  private synchronized void unregisterConnection(SpannerPoolKey key, ConnectionImpl connection) {
+    List<ConnectionImpl> registeredConnections = connections.get(key);
+    if (registeredConnections != null) {
+      registeredConnections.remove(connection);
+      if (registeredConnections.isEmpty()) {
+        connections.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Records the time that it took to open a {@link Connection}, including the time that was needed
+   * to get a {@link Spanner} instance from this pool.
+   */
+  void recordConnectionOpened(long elapsed, TimeUnit unit) {
+    openedConnections.incrementAndGet();
+    connectionOpenTimeNanos.addAndGet(unit.toNanos(elapsed));
+  }
+
+  /** Returns the number of connections that have been opened using this pool. */
+  long getOpenedConnections() {
+    return openedConnections.get();
+  }
+
+  /** Returns the total time that was needed to open the connections that use this pool. */
+  long getConnectionOpenTime(TimeUnit unit) {
+    return unit.convert(connectionOpenTimeNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Registers the connection open metrics of this pool with the given {@link MetricRegistry}. */
+  void register(MetricRegistry metricRegistry) {
+    DerivedLongCumulative openTimeMetric =
+        metricRegistry.addDerivedLongCumulative(
+            CONNECTION_OPEN_TIME,
+            MetricOptions.builder()
+                .setDescription("The total time that was needed to open connections.")
+                .setUnit(MILLISECOND)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative openedConnectionsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_OPENED_CONNECTIONS,
+            MetricOptions.builder()
+                .setDescription("The number of connections that have been opened.")
+                .setUnit(COUNT)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+
+    openTimeMetric.createTimeSeries(
+        NO_LABEL_VALUES,
+        this,
+        new ToLongFunction<SpannerPool>() {
+          @Override
+          public long applyAsLong(SpannerPool pool) {
+            return pool.getConnectionOpenTime(TimeUnit.MILLISECONDS);
+          }
+        });
+    openedConnectionsMetric.createTimeSeries(
+        NO_LABEL_VALUES,
+        this,
+        new ToLongFunction<SpannerPool>() {
+          @Override
+          public long applyAsLong(SpannerPool pool) {
+            return pool.getOpenedConnections();
+          }
+        });
+  }
+
   private void initialize() {
     shutdownThread = new Thread(new CloseSpannerRunnable(), "SpannerPool shutdown hook");
     Runtime.getRuntime().addShutdownHook(shutdownThread);
@@ -355,7 +484,7 @@ public class SpannerPool {
   void checkAndCloseSpanners(CheckAndCloseSpannersMode mode) {
     List<SpannerPoolKey> keysStillInUse = new ArrayList<>();
     synchronized (this) {
-      for (Entry<SpannerPoolKey, Spanner> entry : spanners.entrySet()) {
+      for (Entry<SpannerPoolKey, SettableApiFuture<Spanner>> entry : spanners.entrySet()) {
         if (!lastConnectionClosedAt.containsKey(entry.getKey())) {
           keysStillInUse.add(entry.getKey());
         }
@@ -407,6 +536,7 @@ public class SpannerPool {
   @VisibleForTesting
   void closeUnusedSpanners(long closeSpannerAfterMillisecondsUnused) {
     List<SpannerPoolKey> keysToBeRemoved = new ArrayList<>();
+    List<SettableApiFuture<Spanner>> spannersToBeClosed = new ArrayList<>();
     synchronized (this) {
       for (Entry<SpannerPoolKey, Long> entry : lastConnectionClosedAt.entrySet()) {
         Long closedAt = entry.getValue();
@@ -415,22 +545,37 @@ public class SpannerPool {
         if (closedAt != null
             && ((System.currentTimeMillis() - closedAt.longValue()))
                 > closeSpannerAfterMillisecondsUnused) {
-          Spanner spanner = spanners.get(entry.getKey());
-          if (spanner != null) {
-            try {
-              spanner.close();
-            } finally {
-              // Even if the close operation failed, we should remove the spanner object as it is no
-              // longer valid.
-              spanners.remove(entry.getKey());
-              keysToBeRemoved.add(entry.getKey());
-            }
+          SettableApiFuture<Spanner> spannerFuture = spanners.get(entry.getKey());
+          // A Spanner instance that is still being created is in use by the connection that is
+          // creating it.
+          if (spannerFuture != null && spannerFuture.isDone()) {
+            keysToBeRemoved.add(entry.getKey());
           }
         }
       }
       for (SpannerPoolKey key : keysToBeRemoved) {
         lastConnectionClosedAt.remove(key);
+        // Even if the close operation fails, we should remove the spanner object as it is no longer
+        // valid.
+        spannersToBeClosed.add(spanners.remove(key));
       }
     }
+    // Close the Spanner instances outside the lock, so connections to other databases can be
+    // opened while the instances are closing.
+    SpannerException closeException = null;
+    for (SettableApiFuture<Spanner> spannerFuture : spannersToBeClosed) {
+      try {
+        Uninterruptibles.getUninterruptibly(spannerFuture).close();
+      } catch (ExecutionException e) {
+        // The Spanner instance was never created.
+      } catch (SpannerException e) {
+        if (closeException == null) {
+          closeException = e;
+        }
+      }
+    }
+    if (closeException != null) {
+      throw closeException;
+    }
   }
 }
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.NanoClock;
+import com.google.cloud.ByteArray;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ForwardingResultSet;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.TimestampBound;
+import com.google.cloud.spanner.TimestampBound.Mode;
+import com.google.cloud.spanner.Type;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import io.opencensus.metrics.Metrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache for the results of queries that are executed by a read-only {@link Connection} in
+ * autocommit mode with a {@link TimestampBound.Mode#MAX_STALENESS} read-only staleness. The results
+ * are keyed by the {@link Statement}, including its parameters, and the read-only staleness of the
+ * connection.
+ *
+ * <p>A result is only added to the cache when the query has been consumed completely, and the
+ * cached rows are returned as a {@link ResultSet} that is created by {@link
+ * ResultSets#forRows(Type, Iterable)}. The cache is bounded by the estimated size of the cached
+ * rows, and a result is removed from the cache after a fixed time. Each result is cached together
+ * with the read timestamp of the transaction that read it, and a cached result is never returned
+ * once that read timestamp is further in the past than the max staleness of the query. A result
+ * that is returned from the cache therefore always satisfies the read-only staleness of the
+ * connection.
+ *
+ * <p>Results of queries with an {@link TimestampBound.Mode#EXACT_STALENESS} are not cached, as a
+ * cached result would only be valid for the exact read timestamp that it was read at.
+ */
+class StaleReadResultCache {
+  private static final ImmutableList<LabelKey> NO_LABEL_KEYS = ImmutableList.of();
+  private static final ImmutableList<LabelValue> NO_LABEL_VALUES = ImmutableList.of();
+  private static final String COUNT = "1";
+  private static final String BYTE = "By";
+  private static final String NUM_CACHE_HITS = "cloud.google.com/java/spanner/num_stale_read_hits";
+  private static final String NUM_CACHE_MISSES =
+      "cloud.google.com/java/spanner/num_stale_read_misses";
+  private static final String CACHED_BYTES = "cloud.google.com/java/spanner/stale_read_cache_bytes";
+
+  /** The number of cache hits of all caches in this JVM. */
+  private static final AtomicLong TOTAL_HITS = new AtomicLong();
+  /** The number of cache misses of all caches in this JVM. */
+  private static final AtomicLong TOTAL_MISSES = new AtomicLong();
+  /** The estimated size of all results that are cached in this JVM. */
+  private static final AtomicLong TOTAL_CACHED_BYTES = new AtomicLong();
+
+  static {
+    register(Metrics.getMetricRegistry());
+  }
+
+  /** Estimated overhead per value in a row. */
+  private static final int VALUE_OVERHEAD = 16;
+
+  @VisibleForTesting
+  static final class Key {
+    private final Statement statement;
+    private final TimestampBound staleness;
+
+    private Key(Statement statement, TimestampBound staleness) {
+      this.statement = statement;
+      this.staleness = staleness;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equals(this.statement, other.statement)
+          && Objects.equals(this.staleness, other.staleness);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(statement, staleness);
+    }
+  }
+
+  private static final class CachedResult {
+    private final Type type;
+    private final ImmutableList<Struct> rows;
+    private final int size;
+    private final Timestamp readTimestamp;
+
+    private CachedResult(Type type, ImmutableList<Struct> rows, int size, Timestamp readTimestamp) {
+      this.type = type;
+      this.rows = rows;
+      this.size = size;
+      this.readTimestamp = readTimestamp;
+    }
+  }
+
+  private final Cache<Key, CachedResult> cache;
+  private final long maxSizeBytes;
+  private final ApiClock clock;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  StaleReadResultCache(long maxSizeBytes, long ttl, TimeUnit unit) {
+    this(maxSizeBytes, ttl, unit, NanoClock.getDefaultClock());
+  }
+
+  @VisibleForTesting
+  StaleReadResultCache(long maxSizeBytes, long ttl, TimeUnit unit, final ApiClock clock) {
+    Preconditions.checkArgument(maxSizeBytes > 0L, "maxSizeBytes must be > 0");
+    Preconditions.checkArgument(ttl > 0L, "ttl must be > 0");
+    // A single result may not be larger than the max size of an int, as the Guava cache uses int
+    // weights.
+    this.maxSizeBytes = Math.min(maxSizeBytes, Integer.MAX_VALUE);
+    this.clock = Preconditions.checkNotNull(clock);
+    this.cache =
+        CacheBuilder.newBuilder()
+            // Use one segment, so a single result can use the entire cache.
+            .concurrencyLevel(1)
+            .maximumWeight(maxSizeBytes)
+            .weigher(
+                new Weigher<Key, CachedResult>() {
+                  @Override
+                  public int weigh(Key key, CachedResult result) {
+                    return result.size;
+                  }
+                })
+            .expireAfterWrite(ttl, unit)
+            .ticker(
+                new Ticker() {
+                  @Override
+                  public long read() {
+                    return clock.nanoTime();
+                  }
+                })
+            .removalListener(
+                new RemovalListener<Key, CachedResult>() {
+                  @Override
+                  public void onRemoval(RemovalNotification<Key, CachedResult> notification) {
+                    TOTAL_CACHED_BYTES.addAndGet(-notification.getValue().size);
+                  }
+                })
+            .build();
+  }
+
+  /**
+   * Returns true if queries that are executed with the given staleness may be served from a cache.
+   */
+  static boolean isCacheable(TimestampBound staleness) {
+    return staleness.getMode() == Mode.MAX_STALENESS
+        && staleness.getMaxStaleness(TimeUnit.NANOSECONDS) > 0L;
+  }
+
+  /**
+   * Returns the cached result of the given statement and staleness as a {@link ResultSet}, or
+   * <code>null</code> if there is no cached result. A cached result whose read timestamp is older
+   * than the max staleness of the query is not returned, as the result would otherwise be staler
+   * than the query allows.
+   */
+  ResultSet get(Statement statement, TimestampBound staleness) {
+    Key key = new Key(statement, staleness);
+    CachedResult result = cache.getIfPresent(key);
+    if (result != null && isTooStale(result.readTimestamp, staleness)) {
+      cache.invalidate(key);
+      result = null;
+    }
+    if (result == null) {
+      misses.incrementAndGet();
+      TOTAL_MISSES.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    TOTAL_HITS.incrementAndGet();
+    return ResultSets.forRows(result.type, result.rows);
+  }
+
+  /**
+   * Returns true if a result that was read at the given read timestamp is older than the max
+   * staleness of the given {@link TimestampBound}.
+   */
+  private boolean isTooStale(Timestamp readTimestamp, TimestampBound staleness) {
+    long nowNanos = TimeUnit.MILLISECONDS.toNanos(clock.millisTime());
+    long readNanos =
+        TimeUnit.SECONDS.toNanos(readTimestamp.getSeconds()) + readTimestamp.getNanos();
+    return nowNanos - readNanos > staleness.getMaxStaleness(TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns a {@link ResultSet} that adds the rows of the given {@link ResultSet} to this cache
+   * when all rows have been consumed. The rows are cached together with the read timestamp that is
+   * returned by the given {@link Supplier} at that moment. The rows are not cached if the {@link
+   * ResultSet} is closed before all rows have been consumed, if the rows are larger than this
+   * cache, or if there is no read timestamp.
+   */
+  ResultSet cacheResult(
+      Statement statement,
+      TimestampBound staleness,
+      ResultSet resultSet,
+      Supplier<Timestamp> readTimestamp) {
+    return new CachingResultSet(new Key(statement, staleness), resultSet, readTimestamp);
+  }
+
+  /** Removes all results from this cache. */
+  void invalidateAll() {
+    cache.invalidateAll();
+    cache.cleanUp();
+  }
+
+  long getHitCount() {
+    return hits.get();
+  }
+
+  long getMissCount() {
+    return misses.get();
+  }
+
+  /** Returns the ratio of lookups that returned a cached result, or 1.0 if there were none. */
+  double getHitRatio() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0L ? 1.0d : (double) hitCount / total;
+  }
+
+  /** Returns the estimated size of the results in this cache. */
+  long getSizeBytes() {
+    cache.cleanUp();
+    long size = 0L;
+    for (CachedResult result : cache.asMap().values()) {
+      size += result.size;
+    }
+    return size;
+  }
+
+  @VisibleForTesting
+  long size() {
+    cache.cleanUp();
+    return cache.size();
+  }
+
+  private final class CachingResultSet extends ForwardingResultSet {
+    private final Key key;
+    private final Supplier<Timestamp> readTimestamp;
+    private List<Struct> rows = new ArrayList<>();
+    private long size;
+
+    private CachingResultSet(Key key, ResultSet delegate, Supplier<Timestamp> readTimestamp) {
+      super(delegate);
+      this.key = key;
+      this.readTimestamp = Preconditions.checkNotNull(readTimestamp);
+    }
+
+    @Override
+    public boolean next() {
+      boolean hasNext = super.next();
+      if (rows != null) {
+        if (hasNext) {
+          Struct row = getCurrentRowAsStruct();
+          size += estimateSize(row);
+          rows.add(row);
+          if (size > maxSizeBytes) {
+            // The result is too large to be cached.
+            rows = null;
+          }
+        } else {
+          Timestamp timestamp = readTimestamp.get();
+          // The staleness of a result cannot be determined without its read timestamp.
+          if (timestamp != null) {
+            Type type = getType();
+            TOTAL_CACHED_BYTES.addAndGet(size);
+            cache.put(
+                key, new CachedResult(type, ImmutableList.copyOf(rows), (int) size, timestamp));
+          }
+          rows = null;
+        }
+      }
+      return hasNext;
+    }
+
+    @Override
+    public void close() {
+      rows = null;
+      super.close();
+    }
+  }
+
+  /** Returns the estimated number of bytes that is needed to keep the given row in memory. */
+  @VisibleForTesting
+  static long estimateSize(Struct row) {
+    long size = VALUE_OVERHEAD;
+    for (int i = 0; i < row.getColumnCount(); i++) {
+      size += VALUE_OVERHEAD;
+      if (!row.isNull(i)) {
+        size += estimateValueSize(row, i, row.getColumnType(i));
+      }
+    }
+    return size;
+  }
+
+  private static long estimateValueSize(Struct row, int index, Type type) {
+    switch (type.getCode()) {
+      case BOOL:
+        return 1L;
+      case INT64:
+      case FLOAT64:
+        return 8L;
+      case DATE:
+      case TIMESTAMP:
+        return 16L;
+      case STRING:
+        return 2L * row.getString(index).length();
+      case BYTES:
+        return row.getBytes(index).length();
+      case ARRAY:
+        return estimateArraySize(row, index, type.getArrayElementType());
+      case STRUCT:
+        return estimateSize(row.getStruct(index));
+      default:
+        throw new IllegalArgumentException("Unknown type: " + type);
+    }
+  }
+
+  private static long estimateArraySize(Struct row, int index, Type elementType) {
+    switch (elementType.getCode()) {
+      case BOOL:
+        return row.getBooleanList(index).size() * (1L + VALUE_OVERHEAD);
+      case INT64:
+        return row.getLongList(index).size() * (8L + VALUE_OVERHEAD);
+      case FLOAT64:
+        return row.getDoubleList(index).size() * (8L + VALUE_OVERHEAD);
+      case DATE:
+        return row.getDateList(index).size() * (16L + VALUE_OVERHEAD);
+      case TIMESTAMP:
+        return row.getTimestampList(index).size() * (16L + VALUE_OVERHEAD);
+      case STRING:
+        long stringSize = 0L;
+        for (String value : row.getStringList(index)) {
+          stringSize += VALUE_OVERHEAD + (value == null ? 0L : 2L * value.length());
+        }
+        return stringSize;
+      case BYTES:
+        long bytesSize = 0L;
+        for (ByteArray value : row.getBytesList(index)) {
+          bytesSize += VALUE_OVERHEAD + (value == null ? 0L : value.length());
+        }
+        return bytesSize;
+      case STRUCT:
+        long structSize = 0L;
+        for (Struct value : row.getStructList(index)) {
+          structSize += value == null ? VALUE_OVERHEAD : estimateSize(value);
+        }
+        return structSize;
+      default:
+        throw new IllegalArgumentException("Unknown type: " + elementType);
+    }
+  }
+
+  /** Registers the counters of all caches with the given {@link MetricRegistry}. */
+  @VisibleForTesting
+  static void register(MetricRegistry metricRegistry) {
+    DerivedLongCumulative hitsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_CACHE_HITS,
+            MetricOptions.builder()
+                .setDescription(
+                    "The number of stale read queries on connections that were served from a cache.")
+                .setUnit(COUNT)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative missesMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_CACHE_MISSES,
+            MetricOptions.builder()
+                .setDescription(
+                    "The number of stale read queries on connections that could not be served from a cache.")
+                .setUnit(COUNT)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+    DerivedLongGauge cachedBytesMetric =
+        metricRegistry.addDerivedLongGauge(
+            CACHED_BYTES,
+            MetricOptions.builder()
+                .setDescription(
+                    "The estimated size of the stale read query results that are cached by connections.")
+                .setUnit(BYTE)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+
+    ToLongFunction<AtomicLong> value =
+        new ToLongFunction<AtomicLong>() {
+          @Override
+          public long applyAsLong(AtomicLong counter) {
+            return counter.get();
+          }
+        };
+    hitsMetric.createTimeSeries(NO_LABEL_VALUES, TOTAL_HITS, value);
+    missesMetric.createTimeSeries(NO_LABEL_VALUES, TOTAL_MISSES, value);
+    cachedBytesMetric.createTimeSeries(NO_LABEL_VALUES, TOTAL_CACHED_BYTES, value);
+  }
+}
@@ -16,27 +16,38 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureToListenableFuture;
+import com.google.api.core.ListenableFutureToApiFuture;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.SpannerExceptionFactory;
 import com.google.cloud.spanner.connection.ReadOnlyStalenessUtil.DurationValueGetter;
 import com.google.cloud.spanner.connection.StatementParser.ParsedStatement;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.common.util.concurrent.MoreExecutors;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * {@link StatementExecutor} is responsible for executing statements on a {@link Connection}.
  * Statements are executed using a separate executor to allow timeouts and cancellation of
- * statements.
+ * statements. The executor is a serial executor on the {@link StatementExecutorPool} that is shared
+ * by all connections, so the statements of one connection are executed in order without the need
+ * for a dedicated thread per connection.
  */
 class StatementExecutor {
 
@@ -118,23 +129,52 @@ class StatementExecutor {
   }
 
   /**
-   * Use a {@link ThreadFactory} that produces daemon threads and sets recognizable name on the
-   * threads.
+   * The {@link StatementExecutor} that is executing a statement on the current thread, or <code>
+   * null</code> if the current thread is not executing a statement.
    */
-  private static final ThreadFactory THREAD_FACTORY =
-      new ThreadFactoryBuilder()
-          .setDaemon(true)
-          .setNameFormat("connection-executor-%d")
-          .setThreadFactory(MoreExecutors.platformThreadFactory())
-          .build();
-
-  /** Creates an {@link ExecutorService} for a {@link StatementExecutor}. */
-  private static ExecutorService createExecutorService() {
-    return new ThreadPoolExecutor(
-        1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), THREAD_FACTORY);
+  private static final ThreadLocal<StatementExecutor> CURRENT_EXECUTOR = new ThreadLocal<>();
+
+  /**
+   * A statement that is being executed by a thread of the {@link StatementExecutorPool}. A
+   * statement that is abandoned by {@link StatementExecutor#recreate()} keeps its thread until it
+   * returns, and the pool starts an overflow thread to replace that thread in the meantime.
+   */
+  private static final class RunningStatement {
+    private final StatementExecutorPool pool;
+    private boolean finished;
+    private boolean overflowThreadStarted;
+
+    private RunningStatement(StatementExecutorPool pool) {
+      this.pool = pool;
+    }
+
+    synchronized void abandon() {
+      if (!finished && !overflowThreadStarted) {
+        overflowThreadStarted = pool.startOverflowThread();
+      }
+    }
+
+    synchronized void finish() {
+      finished = true;
+      if (overflowThreadStarted) {
+        overflowThreadStarted = false;
+        pool.stopOverflowThread();
+      }
+    }
   }
 
-  private ExecutorService executor = createExecutorService();
+  private final StatementExecutorPool pool;
+
+  private volatile Executor executor;
+
+  /** The statement that the current serial executor is executing, if any. */
+  private final AtomicReference<RunningStatement> runningStatement = new AtomicReference<>();
+
+  /** The statements that have been submitted to this executor and that have not yet finished. */
+  private final Set<ListenableFuture<?>> pendingStatements =
+      Collections.newSetFromMap(new ConcurrentHashMap<ListenableFuture<?>, Boolean>());
+
+  private volatile boolean shutdown;
 
   /**
    * Interceptors that should be invoked before or after a statement is executed can be registered
@@ -144,35 +184,151 @@ class StatementExecutor {
 
   @VisibleForTesting
   StatementExecutor() {
-    this.interceptors = Collections.emptyList();
+    this(Collections.<StatementExecutionInterceptor>emptyList());
   }
 
   StatementExecutor(List<StatementExecutionInterceptor> interceptors) {
+    this(StatementExecutorPool.INSTANCE, interceptors);
+  }
+
+  @VisibleForTesting
+  StatementExecutor(StatementExecutorPool pool, List<StatementExecutionInterceptor> interceptors) {
+    this.pool = Preconditions.checkNotNull(pool);
+    this.executor = pool.newSerialExecutor();
     this.interceptors = Collections.unmodifiableList(interceptors);
   }
 
   /**
-   * Recreates this {@link StatementExecutor} and its {@link ExecutorService}. This can be necessary
-   * if a statement times out or is cancelled, and it cannot be guaranteed that the statement
-   * execution can be terminated. In order to prevent the single threaded {@link ExecutorService} to
-   * continue to block on the timed out/cancelled statement, a new {@link ExecutorService} is
-   * created.
+   * Recreates the serial executor of this {@link StatementExecutor}. This can be necessary if a
+   * statement times out or is cancelled, and it cannot be guaranteed that the statement execution
+   * can be terminated. In order to prevent the following statements from waiting for the timed
+   * out/cancelled statement, a new serial executor is created. This does not create a new thread
+   * for the connection, but the pool replaces the thread of the abandoned statement with an
+   * overflow thread until the statement returns, so other connections are not starved by it.
    */
   void recreate() {
-    executor.shutdown();
-    executor = createExecutorService();
+    RunningStatement abandoned = runningStatement.getAndSet(null);
+    if (abandoned != null) {
+      abandoned.abandon();
+    }
+    executor = pool.newSerialExecutor();
   }
 
   /**
    * Shutdown this executor now and do not wait for any statement that is being executed to finish.
+   * Statements that have not yet started are cancelled, and statements that are being executed are
+   * interrupted.
    */
-  List<Runnable> shutdownNow() {
-    return executor.shutdownNow();
+  void shutdownNow() {
+    shutdown = true;
+    for (ListenableFuture<?> statement : pendingStatements) {
+      statement.cancel(true);
+    }
   }
 
   /** Execute a statement on this {@link StatementExecutor}. */
-  <T> Future<T> submit(Callable<T> callable) {
-    return executor.submit(callable);
+  <T> ListenableFuture<T> submit(final Callable<T> callable) {
+    if (shutdown) {
+      throw new RejectedExecutionException("This StatementExecutor has been shut down");
+    }
+    final ListenableFutureTask<T> task =
+        ListenableFutureTask.create(
+            new Callable<T>() {
+              @Override
+              public T call() throws Exception {
+                RunningStatement statement = new RunningStatement(pool);
+                runningStatement.set(statement);
+                CURRENT_EXECUTOR.set(StatementExecutor.this);
+                try {
+                  return callable.call();
+                } finally {
+                  CURRENT_EXECUTOR.remove();
+                  runningStatement.compareAndSet(statement, null);
+                  statement.finish();
+                }
+              }
+            });
+    pendingStatements.add(task);
+    task.addListener(
+        new Runnable() {
+          @Override
+          public void run() {
+            pendingStatements.remove(task);
+          }
+        },
+        MoreExecutors.directExecutor());
+    executor.execute(task);
+    return task;
+  }
+
+  /**
+   * Execute an asynchronous operation on this {@link StatementExecutor}. The operation is executed
+   * in order with all other statements that are submitted to this executor, and the given {@link
+   * StatementTimeout} is applied to the operation as a whole. Statements that are executed by the
+   * operation itself run directly on the thread of the operation (see {@link
+   * #isExecutingStatement()}).
+   */
+  <T> ApiFuture<T> submitAsync(
+      Callable<T> callable, StatementTimeout timeout, final String description) {
+    return withTimeout(submit(callable), timeout, description);
+  }
+
+  /**
+   * Applies the given {@link StatementTimeout} to an asynchronous operation that does not run on
+   * this {@link StatementExecutor}, such as an asynchronous statement of the client library. The
+   * returned future fails with {@link ErrorCode#DEADLINE_EXCEEDED} and cancels the operation if the
+   * operation has not finished before the timeout.
+   */
+  <T> ApiFuture<T> withTimeout(
+      ApiFuture<T> operation, StatementTimeout timeout, String description) {
+    return withTimeout(new ApiFutureToListenableFuture<>(operation), timeout, description);
+  }
+
+  private <T> ApiFuture<T> withTimeout(
+      ListenableFuture<T> future, StatementTimeout timeout, final String description) {
+    if (timeout.hasTimeout()) {
+      TimeUnit unit = timeout.getAppropriateTimeUnit();
+      future =
+          Futures.catching(
+              Futures.withTimeout(
+                  future, timeout.getTimeoutValue(unit), unit, pool.getTimeoutScheduler()),
+              TimeoutException.class,
+              new Function<TimeoutException, T>() {
+                @Override
+                public T apply(TimeoutException input) {
+                  throw SpannerExceptionFactory.newSpannerException(
+                      ErrorCode.DEADLINE_EXCEEDED,
+                      "Statement execution timeout occurred for " + description,
+                      input);
+                }
+              },
+              MoreExecutors.directExecutor());
+    }
+    return new ListenableFutureToApiFuture<>(future);
+  }
+
+  /**
+   * Returns an {@link Executor} that can be used by a statement to execute independent parts of the
+   * statement in parallel. Tasks that are submitted to this executor are not ordered with the
+   * statements of this {@link StatementExecutor}.
+   */
+  Executor getParallelExecutor() {
+    return pool.getExecutor();
+  }
+
+  /**
+   * Returns <code>true</code> if the current thread is executing a statement or asynchronous
+   * operation of this {@link StatementExecutor}. Statements that are executed by such a thread
+   * should be executed directly, as submitting them to this executor and waiting for the result
+   * would block the executor.
+   */
+  boolean isExecutingStatement() {
+    return CURRENT_EXECUTOR.get() == this;
+  }
+
+  /** Returns <code>true</code> if any interceptors have been registered for this executor. */
+  boolean hasInterceptors() {
+    return !interceptors.isEmpty();
   }
 
   /**
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import io.opencensus.metrics.Metrics;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Bounded thread pool that is shared by the {@link StatementExecutor}s of all {@link Connection}s.
+ * Each {@link StatementExecutor} uses a serial executor on this pool, which guarantees that the
+ * statements of one connection are executed in order, while the number of threads is bounded by the
+ * pool instead of the number of connections.
+ *
+ * <p>The maximum number of threads in the pool can be set with the system property {@value
+ * #PROPERTY_MAX_THREADS}.
+ *
+ * <p>As the threads are shared, a statement that does not return blocks a thread for all
+ * connections, and not only for the connection that executed it. If all threads are blocked, the
+ * statements of all connections wait in the queue of the pool. A statement that times out or is
+ * cancelled while it cannot be interrupted is therefore abandoned by its {@link StatementExecutor}
+ * (see {@link StatementExecutor#recreate()}), and the pool starts an overflow thread that replaces
+ * the thread of the abandoned statement until that statement returns. The number of overflow
+ * threads is bounded by the maximum number of threads of the pool. Statements that are not
+ * abandoned, for example because the connection has no statement timeout, are not replaced and can
+ * still starve the pool. The queue depth and overflow threads of the pool are exported as metrics.
+ */
+class StatementExecutorPool {
+  static final String PROPERTY_MAX_THREADS =
+      "com.google.cloud.spanner.connection.maxStatementExecutorThreads";
+  static final int DEFAULT_MAX_THREADS = 100;
+
+  private static final ImmutableList<LabelKey> NO_LABEL_KEYS = ImmutableList.of();
+  private static final ImmutableList<LabelValue> NO_LABEL_VALUES = ImmutableList.of();
+  private static final String COUNT = "1";
+  private static final String MILLISECOND = "ms";
+  private static final String STATEMENT_QUEUE_TIME =
+      "cloud.google.com/java/spanner/connection_statement_queue_time";
+  private static final String NUM_EXECUTED_STATEMENTS =
+      "cloud.google.com/java/spanner/num_connection_statements";
+  private static final String STATEMENT_QUEUE_DEPTH =
+      "cloud.google.com/java/spanner/connection_statement_queue_depth";
+  private static final String OVERFLOW_THREADS =
+      "cloud.google.com/java/spanner/connection_statement_overflow_threads";
+
+  /**
+   * Use a {@link ThreadFactory} that produces daemon threads and sets recognizable name on the
+   * threads.
+   */
+  private static final ThreadFactory THREAD_FACTORY =
+      new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("connection-executor-%d")
+          .setThreadFactory(MoreExecutors.platformThreadFactory())
+          .build();
+
+  /** The pool that is used by all connections. */
+  static final StatementExecutorPool INSTANCE = createDefaultInstance();
+
+  private static StatementExecutorPool createDefaultInstance() {
+    StatementExecutorPool pool =
+        new StatementExecutorPool(Integer.getInteger(PROPERTY_MAX_THREADS, DEFAULT_MAX_THREADS));
+    pool.register(Metrics.getMetricRegistry());
+    return pool;
+  }
+
+  private final int maxThreads;
+  private final ThreadPoolExecutor executor;
+  /** Shared timer that is used to apply statement timeouts to asynchronous statements. */
+  private final ScheduledExecutorService timeoutScheduler;
+
+  private final AtomicLong queuedStatements = new AtomicLong();
+  private final AtomicLong executedStatements = new AtomicLong();
+  private final AtomicLong queueTimeNanos = new AtomicLong();
+
+  /** The number of threads that replace a thread that is held by an abandoned statement. */
+  @GuardedBy("this")
+  private int overflowThreads;
+
+  @VisibleForTesting
+  StatementExecutorPool(int maxThreads) {
+    Preconditions.checkArgument(maxThreads > 0, "maxThreads must be > 0");
+    this.maxThreads = maxThreads;
+    this.executor =
+        new ThreadPoolExecutor(
+            maxThreads,
+            maxThreads,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            THREAD_FACTORY);
+    this.executor.allowCoreThreadTimeOut(true);
+    this.timeoutScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("connection-timeout-%d")
+                .setThreadFactory(MoreExecutors.platformThreadFactory())
+                .build());
+  }
+
+  /**
+   * Creates a new serial {@link Executor} on this pool. Tasks that are submitted to the returned
+   * executor are executed one at a time and in the order in which they were submitted.
+   */
+  Executor newSerialExecutor() {
+    final Executor serialExecutor = MoreExecutors.newSequentialExecutor(executor);
+    return new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        final long queuedAt = System.nanoTime();
+        queuedStatements.incrementAndGet();
+        serialExecutor.execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                queuedStatements.decrementAndGet();
+                executedStatements.incrementAndGet();
+                queueTimeNanos.addAndGet(System.nanoTime() - queuedAt);
+                command.run();
+              }
+            });
+      }
+    };
+  }
+
+  /** Returns the executor of this pool for tasks that do not need to be executed in order. */
+  Executor getExecutor() {
+    return executor;
+  }
+
+  ScheduledExecutorService getTimeoutScheduler() {
+    return timeoutScheduler;
+  }
+
+  /**
+   * Starts an overflow thread that replaces the thread of a statement that has been abandoned, so
+   * that the statement does not reduce the number of threads for other statements. Returns <code>
+   * false</code> if no thread was started because the maximum number of overflow threads has been
+   * reached. Each thread that was started must be stopped with {@link #stopOverflowThread()} when
+   * the abandoned statement returns.
+   */
+  synchronized boolean startOverflowThread() {
+    if (overflowThreads >= maxThreads) {
+      return false;
+    }
+    overflowThreads++;
+    // The maximum size must be increased before the core size. Increasing the core size starts a
+    // new thread if statements are waiting in the queue.
+    executor.setMaximumPoolSize(maxThreads + overflowThreads);
+    executor.setCorePoolSize(maxThreads + overflowThreads);
+    return true;
+  }
+
+  /** Stops an overflow thread that was started by {@link #startOverflowThread()}. */
+  synchronized void stopOverflowThread() {
+    Preconditions.checkState(overflowThreads > 0, "There are no overflow threads");
+    overflowThreads--;
+    // The core size must be decreased before the maximum size. Threads above the new size stop when
+    // they have finished their current statement.
+    executor.setCorePoolSize(maxThreads + overflowThreads);
+    executor.setMaximumPoolSize(maxThreads + overflowThreads);
+  }
+
+  /** Returns the number of overflow threads that replace threads of abandoned statements. */
+  synchronized int getOverflowThreads() {
+    return overflowThreads;
+  }
+
+  /**
+   * Returns the number of statements that are waiting for a thread or for a preceding statement.
+   */
+  long getQueuedStatements() {
+    return queuedStatements.get();
+  }
+
+  /** Returns the number of statements that have been started on this pool. */
+  long getExecutedStatements() {
+    return executedStatements.get();
+  }
+
+  /** Returns the total time that statements have waited before they were started. */
+  long getQueueTime(TimeUnit unit) {
+    return unit.convert(queueTimeNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the number of threads that are currently in the pool. */
+  int getPoolSize() {
+    return executor.getPoolSize();
+  }
+
+  /** Registers the counters of this pool with the given {@link MetricRegistry}. */
+  void register(MetricRegistry metricRegistry) {
+    DerivedLongCumulative queueTimeMetric =
+        metricRegistry.addDerivedLongCumulative(
+            STATEMENT_QUEUE_TIME,
+            MetricOptions.builder()
+                .setDescription(
+                    "The total time that statements on connections have waited before they were executed.")
+                .setUnit(MILLISECOND)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+    DerivedLongCumulative executedStatementsMetric =
+        metricRegistry.addDerivedLongCumulative(
+            NUM_EXECUTED_STATEMENTS,
+            MetricOptions.builder()
+                .setDescription("The number of statements that have been executed on connections.")
+                .setUnit(COUNT)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+    DerivedLongGauge queueDepthMetric =
+        metricRegistry.addDerivedLongGauge(
+            STATEMENT_QUEUE_DEPTH,
+            MetricOptions.builder()
+                .setDescription(
+                    "The number of statements on connections that are waiting to be executed.")
+                .setUnit(COUNT)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+
+    DerivedLongGauge overflowThreadsMetric =
+        metricRegistry.addDerivedLongGauge(
+            OVERFLOW_THREADS,
+            MetricOptions.builder()
+                .setDescription(
+                    "The number of threads that replace threads of timed out or cancelled statements on connections that have not yet returned.")
+                .setUnit(COUNT)
+                .setLabelKeys(NO_LABEL_KEYS)
+                .build());
+
+    queueTimeMetric.createTimeSeries(
+        NO_LABEL_VALUES,
+        this,
+        new ToLongFunction<StatementExecutorPool>() {
+          @Override
+          public long applyAsLong(StatementExecutorPool pool) {
+            return pool.getQueueTime(TimeUnit.MILLISECONDS);
+          }
+        });
+    executedStatementsMetric.createTimeSeries(
+        NO_LABEL_VALUES,
+        this,
+        new ToLongFunction<StatementExecutorPool>() {
+          @Override
+          public long applyAsLong(StatementExecutorPool pool) {
+            return pool.getExecutedStatements();
+          }
+        });
+    queueDepthMetric.createTimeSeries(
+        NO_LABEL_VALUES,
+        this,
+        new ToLongFunction<StatementExecutorPool>() {
+          @Override
+          public long applyAsLong(StatementExecutorPool pool) {
+            return pool.getQueuedStatements();
+          }
+        });
+    overflowThreadsMetric.createTimeSeries(
+        NO_LABEL_VALUES,
+        this,
+        new ToLongFunction<StatementExecutorPool>() {
+          @Override
+          public long applyAsLong(StatementExecutorPool pool) {
+            return pool.getOverflowThreads();
+          }
+        });
+  }
+}
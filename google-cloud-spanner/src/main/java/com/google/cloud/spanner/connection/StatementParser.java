@@ -23,9 +23,17 @@ import com.google.cloud.spanner.Statement;
 import com.google.cloud.spanner.connection.ClientSideStatementImpl.CompileException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.spanner.v1.ExecuteSqlRequest.QueryOptions;
-import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
 
@@ -37,6 +45,10 @@ import java.util.Set;
  * called. The parser does not validate the validity of statements, except for {@link
  * ClientSideStatement}s. This means that an invalid DML statement could be accepted by the {@link
  * StatementParser} and sent to Spanner, and Spanner will then reject it with some error message.
+ *
+ * <p>Statements are classified based on their first keyword, and only the client-side statements
+ * that can start with that keyword are matched against their regular expressions. The result of
+ * parsing a SQL string is cached, so a SQL string that is executed repeatedly is only parsed once.
  */
 @InternalApi
 public class StatementParser {
@@ -212,19 +224,124 @@ public class StatementParser {
     }
   }
 
+  /**
+   * The classification of a SQL string. This is what the parser caches, as it does not depend on
+   * the parameter values or query options of a specific {@link Statement}.
+   */
+  static final class StatementClassification {
+    private final StatementType type;
+    private final ClientSideStatementImpl clientSideStatement;
+    private final String sqlWithoutComments;
+
+    private StatementClassification(
+        StatementType type,
+        ClientSideStatementImpl clientSideStatement,
+        String sqlWithoutComments) {
+      this.type = Preconditions.checkNotNull(type);
+      this.clientSideStatement = clientSideStatement;
+      this.sqlWithoutComments = Preconditions.checkNotNull(sqlWithoutComments);
+    }
+
+    /**
+     * Returns a {@link ParsedStatement} with this classification for the given {@link Statement},
+     * which must have the SQL string that was classified.
+     */
+    private ParsedStatement bind(Statement statement, QueryOptions defaultQueryOptions) {
+      switch (type) {
+        case CLIENT_SIDE:
+          return ParsedStatement.clientSideStatement(
+              clientSideStatement, statement, sqlWithoutComments);
+        case QUERY:
+          return ParsedStatement.query(statement, sqlWithoutComments, defaultQueryOptions);
+        case UPDATE:
+          return ParsedStatement.update(statement, sqlWithoutComments);
+        case DDL:
+          return ParsedStatement.ddl(statement, sqlWithoutComments);
+        case UNKNOWN:
+        default:
+          return ParsedStatement.unknown(statement, sqlWithoutComments);
+      }
+    }
+  }
+
+  /**
+   * The maximum total length of the SQL strings in the cache of parsed statements. Each SQL string
+   * is counted twice, as the cache also contains the SQL string without comments.
+   */
+  @VisibleForTesting static final long MAX_CACHE_WEIGHT = 10_000_000L;
+
   private static final Set<String> ddlStatements = ImmutableSet.of("CREATE", "DROP", "ALTER");
   private static final Set<String> selectStatements = ImmutableSet.of("SELECT", "WITH");
   private static final Set<String> dmlStatements = ImmutableSet.of("INSERT", "UPDATE", "DELETE");
-  private final Set<ClientSideStatementImpl> statements;
+  private static final ImmutableMap<String, StatementType> keywords =
+      ImmutableMap.<String, StatementType>builder()
+          .put("SELECT", StatementType.QUERY)
+          .put("WITH", StatementType.QUERY)
+          .put("INSERT", StatementType.UPDATE)
+          .put("UPDATE", StatementType.UPDATE)
+          .put("DELETE", StatementType.UPDATE)
+          .put("CREATE", StatementType.DDL)
+          .put("DROP", StatementType.DDL)
+          .put("ALTER", StatementType.DDL)
+          .build();
+
+  /** The client-side statements indexed by the (upper case) keywords they can start with. */
+  private final ImmutableListMultimap<String, ClientSideStatementImpl> statementsByKeyword;
+  /** The client-side statements without example statements, which can start with any keyword. */
+  private final ImmutableList<ClientSideStatementImpl> statementsWithoutKeyword;
+
+  private final Cache<String, StatementClassification> cache;
 
   /** Private constructor for singleton instance. */
   private StatementParser() {
+    this(MAX_CACHE_WEIGHT);
+  }
+
+  @VisibleForTesting
+  StatementParser(long maxCacheWeight) {
+    Set<ClientSideStatementImpl> statements;
     try {
-      statements =
-          Collections.unmodifiableSet(ClientSideStatements.INSTANCE.getCompiledStatements());
+      statements = ClientSideStatements.INSTANCE.getCompiledStatements();
     } catch (CompileException e) {
       throw new RuntimeException(e);
     }
+    ImmutableListMultimap.Builder<String, ClientSideStatementImpl> byKeyword =
+        ImmutableListMultimap.builder();
+    ImmutableList.Builder<ClientSideStatementImpl> withoutKeyword = ImmutableList.builder();
+    for (ClientSideStatementImpl statement : statements) {
+      // All client-side statements start with one of a fixed set of keywords. These are taken from
+      // the example statements, which must cover all possible keywords of the statement.
+      List<String> examples = statement.getExampleStatements();
+      if (examples.isEmpty()) {
+        withoutKeyword.add(statement);
+      }
+      Set<String> statementKeywords = new HashSet<>();
+      for (String example : examples) {
+        statementKeywords.add(firstKeyword(example.trim()));
+      }
+      for (String keyword : statementKeywords) {
+        byKeyword.put(keyword, statement);
+      }
+    }
+    this.statementsByKeyword = byKeyword.build();
+    this.statementsWithoutKeyword = withoutKeyword.build();
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxCacheWeight)
+            .weigher(
+                new Weigher<String, StatementClassification>() {
+                  @Override
+                  public int weigh(String sql, StatementClassification classification) {
+                    return sql.length() + classification.sqlWithoutComments.length();
+                  }
+                })
+            .recordStats()
+            .build();
+  }
+
+  @VisibleForTesting
+  Cache<String, StatementClassification> getCache() {
+    return cache;
   }
 
   /**
@@ -239,18 +356,43 @@ public class StatementParser {
   }
 
   ParsedStatement parse(Statement statement, QueryOptions defaultQueryOptions) {
-    String sql = removeCommentsAndTrim(statement.getSql());
-    ClientSideStatementImpl client = parseClientSideStatement(sql);
+    StatementClassification classification = cache.getIfPresent(statement.getSql());
+    if (classification == null) {
+      classification = classify(statement.getSql());
+      cache.put(statement.getSql(), classification);
+    }
+    return classification.bind(statement, defaultQueryOptions);
+  }
+
+  private StatementClassification classify(String originalSql) {
+    String sql = removeCommentsAndTrim(originalSql);
+    String keyword = firstKeyword(sql);
+    ClientSideStatementImpl client = parseClientSideStatement(sql, keyword);
     if (client != null) {
-      return ParsedStatement.clientSideStatement(client, statement, sql);
-    } else if (isQuery(sql)) {
-      return ParsedStatement.query(statement, sql, defaultQueryOptions);
-    } else if (isUpdateStatement(sql)) {
-      return ParsedStatement.update(statement, sql);
-    } else if (isDdlStatement(sql)) {
-      return ParsedStatement.ddl(statement, sql);
-    }
-    return ParsedStatement.unknown(statement, sql);
+      return new StatementClassification(StatementType.CLIENT_SIDE, client, sql);
+    }
+    StatementType type = keywords.get(keyword);
+    if (type == null && sql.startsWith("@") && isQuery(sql)) {
+      type = StatementType.QUERY;
+    }
+    return new StatementClassification(type == null ? StatementType.UNKNOWN : type, null, sql);
+  }
+
+  /**
+   * Returns the first keyword of the given SQL string in upper case. The keyword is everything up
+   * to the first whitespace character.
+   */
+  private static String firstKeyword(String sql) {
+    int end = 0;
+    while (end < sql.length() && !isWhitespace(sql.charAt(end))) {
+      end++;
+    }
+    return sql.substring(0, end).toUpperCase(Locale.ENGLISH);
+  }
+
+  /** Returns true if the given character matches the regular expression \s. */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
   }
 
   /**
@@ -265,7 +407,16 @@ public class StatementParser {
    */
   @VisibleForTesting
   ClientSideStatementImpl parseClientSideStatement(String sql) {
-    for (ClientSideStatementImpl css : statements) {
+    return parseClientSideStatement(sql, firstKeyword(sql.trim()));
+  }
+
+  private ClientSideStatementImpl parseClientSideStatement(String sql, String keyword) {
+    for (ClientSideStatementImpl css : statementsByKeyword.get(keyword)) {
+      if (css.matches(sql)) {
+        return css;
+      }
+    }
+    for (ClientSideStatementImpl css : statementsWithoutKeyword) {
       if (css.matches(sql)) {
         return css;
       }
@@ -318,17 +469,9 @@ public class StatementParser {
     return statementStartsWith(sql, dmlStatements);
   }
 
-  private boolean statementStartsWith(String sql, Iterable<String> checkStatements) {
+  private boolean statementStartsWith(String sql, Set<String> checkStatements) {
     Preconditions.checkNotNull(sql);
-    String[] tokens = sql.split("\\s+", 2);
-    if (tokens.length > 0) {
-      for (String check : checkStatements) {
-        if (tokens[0].equalsIgnoreCase(check)) {
-          return true;
-        }
-      }
-    }
-    return false;
+    return checkStatements.contains(firstKeyword(sql));
   }
 
   /**
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import com.google.api.core.InternalApi;
+import com.google.cloud.Timestamp;
+
+/**
+ * A {@link TransactionRetryListener} that is also notified when the statements of a transaction
+ * have been replayed during an internal retry. A {@link Connection} checks whether a registered
+ * {@link TransactionRetryListener} implements this interface, and only calls {@link
+ * #retryReplayFinished(Timestamp, long, int, long)} on listeners that do.
+ */
+@InternalApi
+public interface TransactionRetryReplayListener extends TransactionRetryListener {
+  /**
+   * This method is called when the statements of the transaction have been replayed during a retry.
+   * The statements are replayed after {@link #retryStarting(Timestamp, long, int)} has been called,
+   * and this method is called before {@link #retryFinished(Timestamp, long, int, RetryResult)}.
+   * This method is also called if the replay failed.
+   *
+   * @param transactionStarted The start date/time of the transaction that is retrying.
+   * @param transactionId An internally assigned ID of the transaction (unique during the lifetime
+   *     of the JVM) that can be used to identify the transaction for logging purposes.
+   * @param retryAttempt The number of retry attempts the current transaction has executed,
+   *     <strong>including</strong> the current retry attempt.
+   * @param replayDurationMillis The time in milliseconds that it took to replay the statements.
+   */
+  void retryReplayFinished(
+      Timestamp transactionStarted,
+      long transactionId,
+      int retryAttempt,
+      long replayDurationMillis);
+}
@@ -16,8 +16,10 @@
 
 package com.google.cloud.spanner.connection;
 
+import com.google.api.core.ApiFuture;
 import com.google.api.core.InternalApi;
 import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.AsyncResultSet;
 import com.google.cloud.spanner.Mutation;
 import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.ReadContext;
@@ -114,6 +116,18 @@ interface UnitOfWork {
   ResultSet executeQuery(
       ParsedStatement statement, AnalyzeMode analyzeMode, QueryOption... options);
 
+  /**
+   * Executes a query asynchronously using the asynchronous API of the underlying {@link
+   * ReadContext}. Neither the calling thread nor the {@link StatementExecutor} of the connection
+   * waits for the query.
+   *
+   * @param statement The statement to execute.
+   * @param options the options to configure the query.
+   * @return an {@link AsyncResultSet} with the results of the query.
+   * @throws SpannerException if the query is not allowed on this {@link UnitOfWork}.
+   */
+  AsyncResultSet executeQueryAsync(ParsedStatement statement, QueryOption... options);
+
   /**
    * @return the read timestamp of this transaction. Will throw a {@link SpannerException} if there
    *     is no read timestamp.
@@ -150,6 +164,16 @@ interface UnitOfWork {
    */
   long executeUpdate(ParsedStatement update);
 
+  /**
+   * Execute a DML statement on Spanner asynchronously using the asynchronous API of the underlying
+   * {@link TransactionContext}. Neither the calling thread nor the {@link StatementExecutor} of the
+   * connection waits for the statement.
+   *
+   * @param update The DML statement to execute.
+   * @return the number of records that were inserted/updated/deleted by this statement.
+   */
+  ApiFuture<Long> executeUpdateAsync(ParsedStatement update);
+
   /**
    * Execute a batch of DML statements on Spanner.
    *
@@ -160,6 +184,17 @@ interface UnitOfWork {
    */
   long[] executeBatchUpdate(Iterable<ParsedStatement> updates);
 
+  /**
+   * Execute a batch of DML statements on Spanner asynchronously. See {@link
+   * #executeUpdateAsync(ParsedStatement)}.
+   *
+   * @param updates The DML statements to execute.
+   * @return an array containing the number of records that were inserted/updated/deleted per
+   *     statement.
+   * @see TransactionContext#batchUpdateAsync(Iterable)
+   */
+  ApiFuture<long[]> executeBatchUpdateAsync(Iterable<ParsedStatement> updates);
+
   /**
    * Writes a {@link Mutation} to Spanner. For {@link ReadWriteTransaction}s, this means buffering
    * the {@link Mutation} locally and writing the {@link Mutation} to Spanner upon {@link
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.spi.v1;
+
+import static com.google.cloud.spanner.spi.v1.MetricRegistryConstants.CHANNEL_LABEL_KEYS;
+import static com.google.cloud.spanner.spi.v1.MetricRegistryConstants.CLIENT_ID;
+import static com.google.cloud.spanner.spi.v1.MetricRegistryConstants.COUNT;
+import static com.google.cloud.spanner.spi.v1.MetricRegistryConstants.NUM_ACTIVE_CHANNELS;
+import static com.google.cloud.spanner.spi.v1.MetricRegistryConstants.NUM_ACTIVE_CHANNELS_DESCRIPTION;
+import static com.google.cloud.spanner.spi.v1.MetricRegistryConstants.NUM_IN_FLIGHT_CALLS;
+import static com.google.cloud.spanner.spi.v1.MetricRegistryConstants.NUM_IN_FLIGHT_CALLS_DESCRIPTION;
+
+import com.google.api.core.ApiFuture;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the number of outstanding calls and the recent latency of each gRPC channel in a
+ * channel pool, and selects the least loaded channel for calls that are not bound to a specific
+ * channel.
+ *
+ * <p>The tracker can also scale the number of channels that are in use between a minimum and a
+ * maximum. The underlying channel pool is created with the maximum number of channels, but only the
+ * first {@link #getActiveChannels()} channels are selected for new calls. An additional channel is
+ * activated when the average number of outstanding calls per active channel exceeds the scale-up
+ * threshold, and the last channel is deactivated again when the remaining channels could handle the
+ * load with ample headroom for a while. A deactivated channel is not shut down. It is no longer
+ * selected for new calls, but it keeps its connection until the channel enters idle mode or the
+ * server closes the connection.
+ */
+class ChannelLoadTracker {
+  private static final AtomicInteger CLIENT_COUNTER = new AtomicInteger();
+
+  /**
+   * The weight of a new latency sample in the moving average of a channel. A weight of 1/8 means
+   * that the average reflects roughly the last 8 calls on the channel.
+   */
+  private static final int LATENCY_SMOOTHING_SHIFT = 3;
+
+  /** The time that the load must stay low before a channel is deactivated. */
+  @VisibleForTesting static final long SCALE_DOWN_DELAY_NANOS = TimeUnit.MINUTES.toNanos(1L);
+
+  /** A call that is outstanding on a channel. */
+  final class Call {
+    private final int channel;
+    private final long startNanos;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private Call(int channel) {
+      this.channel = channel;
+      this.startNanos = ticker.read();
+      inFlight[channel].incrementAndGet();
+      maybeResize(totalInFlight.incrementAndGet(), startNanos);
+    }
+
+    /** Marks the call as finished. Calling this method more than once has no effect. */
+    void finish() {
+      if (finished.compareAndSet(false, true)) {
+        inFlight[channel].decrementAndGet();
+        totalInFlight.decrementAndGet();
+        recordLatency(channel, TimeUnit.NANOSECONDS.toMicros(ticker.read() - startNanos));
+      }
+    }
+  }
+
+  private final Ticker ticker;
+  private final int minChannels;
+  private final int scaleUpThreshold;
+  private final AtomicInteger[] inFlight;
+  private final AtomicLong[] latencyMicros;
+  private final AtomicInteger totalInFlight = new AtomicInteger();
+  private final AtomicInteger activeChannels;
+  private final AtomicLong lowLoadSinceNanos = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicInteger nextStart = new AtomicInteger();
+  private final String clientId = "rpc-" + CLIENT_COUNTER.incrementAndGet();
+  private final List<List<LabelValue>> registeredLabelValues = new ArrayList<>();
+  private DerivedLongGauge inFlightMetric;
+  private DerivedLongGauge activeChannelsMetric;
+
+  /** Creates a tracker for a channel pool with a fixed number of channels. */
+  ChannelLoadTracker(int numChannels) {
+    this(numChannels, numChannels, Integer.MAX_VALUE, Ticker.systemTicker());
+  }
+
+  /**
+   * Creates a tracker for a channel pool with maxChannels channels, of which between minChannels
+   * and maxChannels are used depending on the load.
+   *
+   * @param scaleUpThreshold the average number of outstanding calls per active channel above which
+   *     an additional channel is activated
+   */
+  ChannelLoadTracker(int minChannels, int maxChannels, int scaleUpThreshold) {
+    this(minChannels, maxChannels, scaleUpThreshold, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  ChannelLoadTracker(int minChannels, int maxChannels, int scaleUpThreshold, Ticker ticker) {
+    Preconditions.checkArgument(minChannels > 0, "minChannels must be greater than zero");
+    Preconditions.checkArgument(
+        maxChannels >= minChannels, "maxChannels must be greater than or equal to minChannels");
+    Preconditions.checkArgument(scaleUpThreshold > 0, "scaleUpThreshold must be greater than zero");
+    this.ticker = ticker;
+    this.minChannels = minChannels;
+    this.scaleUpThreshold = scaleUpThreshold;
+    this.activeChannels = new AtomicInteger(minChannels);
+    this.inFlight = new AtomicInteger[maxChannels];
+    this.latencyMicros = new AtomicLong[maxChannels];
+    for (int i = 0; i < maxChannels; i++) {
+      inFlight[i] = new AtomicInteger();
+      latencyMicros[i] = new AtomicLong();
+    }
+  }
+
+  /** Returns the total number of channels in the pool, including channels that are not active. */
+  int getNumChannels() {
+    return inFlight.length;
+  }
+
+  /** Returns the number of channels that are currently used for new calls. */
+  int getActiveChannels() {
+    return activeChannels.get();
+  }
+
+  /**
+   * Returns the index of the active channel that the given channel affinity maps to. Changing the
+   * number of active channels redistributes the affinities over the new set of active channels.
+   */
+  int channelForAffinity(int affinity) {
+    return Math.abs(affinity % activeChannels.get());
+  }
+
+  int getInFlight(int channel) {
+    return inFlight[channel].get();
+  }
+
+  long getLatencyMicros(int channel) {
+    return latencyMicros[channel].get();
+  }
+
+  /**
+   * Returns the index of the channel with the lowest load. The load of a channel is its number of
+   * outstanding calls weighted by its recent average latency, so that a channel with a slow
+   * connection receives fewer calls than a fast channel with the same number of outstanding calls.
+   * Ties are broken by rotating the start of the search.
+   */
+  int selectLeastLoaded() {
+    int numChannels = activeChannels.get();
+    int start = Math.abs(nextStart.getAndIncrement() % numChannels);
+    int best = start;
+    long bestLoad = Long.MAX_VALUE;
+    for (int i = 0; i < numChannels; i++) {
+      int channel = (start + i) % numChannels;
+      long load = (inFlight[channel].get() + 1L) * Math.max(1L, latencyMicros[channel].get());
+      if (load < bestLoad) {
+        best = channel;
+        bestLoad = load;
+      }
+    }
+    return best;
+  }
+
+  /** Registers the start of a call on the given channel. */
+  Call start(int channel) {
+    return new Call(channel);
+  }
+
+  /** Tracks the given future as an outstanding call on the given channel until it is done. */
+  <T> ApiFuture<T> track(int channel, ApiFuture<T> future) {
+    final Call call = start(channel);
+    future.addListener(
+        new Runnable() {
+          @Override
+          public void run() {
+            call.finish();
+          }
+        },
+        MoreExecutors.directExecutor());
+    return future;
+  }
+
+  /**
+   * Activates an additional channel if the average load per active channel is above the scale-up
+   * threshold, and deactivates the last active channel if the load has been low enough to be
+   * handled by one channel less for at least {@link #SCALE_DOWN_DELAY_NANOS}.
+   */
+  private void maybeResize(int total, long nowNanos) {
+    int active = activeChannels.get();
+    if (total > (long) active * scaleUpThreshold) {
+      lowLoadSinceNanos.set(Long.MAX_VALUE);
+      if (active < inFlight.length) {
+        activeChannels.compareAndSet(active, active + 1);
+      }
+    } else if (active > minChannels && total <= (long) (active - 1) * scaleUpThreshold / 2) {
+      long lowSince = lowLoadSinceNanos.get();
+      if (lowSince == Long.MAX_VALUE) {
+        lowLoadSinceNanos.compareAndSet(lowSince, nowNanos);
+      } else if (nowNanos - lowSince >= SCALE_DOWN_DELAY_NANOS
+          && activeChannels.compareAndSet(active, active - 1)) {
+        lowLoadSinceNanos.compareAndSet(lowSince, Long.MAX_VALUE);
+      }
+    } else {
+      lowLoadSinceNanos.set(Long.MAX_VALUE);
+    }
+  }
+
+  private void recordLatency(int channel, long micros) {
+    AtomicLong average = latencyMicros[channel];
+    while (true) {
+      long current = average.get();
+      long updated =
+          current == 0L ? micros : current + ((micros - current) >> LATENCY_SMOOTHING_SHIFT);
+      if (average.compareAndSet(current, updated)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Exports the number of outstanding calls of each channel and the number of active channels as
+   * gauges.
+   */
+  synchronized void registerMetrics(MetricRegistry registry) {
+    activeChannelsMetric =
+        registry.addDerivedLongGauge(
+            NUM_ACTIVE_CHANNELS,
+            MetricOptions.builder()
+                .setDescription(NUM_ACTIVE_CHANNELS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(ImmutableList.of(CLIENT_ID))
+                .build());
+    activeChannelsMetric.createTimeSeries(
+        ImmutableList.of(LabelValue.create(clientId)),
+        activeChannels,
+        new ToLongFunction<AtomicInteger>() {
+          @Override
+          public long applyAsLong(AtomicInteger value) {
+            return value.get();
+          }
+        });
+    inFlightMetric =
+        registry.addDerivedLongGauge(
+            NUM_IN_FLIGHT_CALLS,
+            MetricOptions.builder()
+                .setDescription(NUM_IN_FLIGHT_CALLS_DESCRIPTION)
+                .setUnit(COUNT)
+                .setLabelKeys(CHANNEL_LABEL_KEYS)
+                .build());
+    for (int i = 0; i < inFlight.length; i++) {
+      List<LabelValue> labelValues =
+          ImmutableList.of(LabelValue.create(clientId), LabelValue.create(String.valueOf(i)));
+      inFlightMetric.createTimeSeries(
+          labelValues,
+          inFlight[i],
+          new ToLongFunction<AtomicInteger>() {
+            @Override
+            public long applyAsLong(AtomicInteger value) {
+              return value.get();
+            }
+          });
+      registeredLabelValues.add(labelValues);
+    }
+  }
+
+  /** Removes the gauges that were registered by {@link #registerMetrics(MetricRegistry)}. */
+  synchronized void unregisterMetrics() {
+    if (inFlightMetric != null) {
+      for (List<LabelValue> labelValues : registeredLabelValues) {
+        inFlightMetric.removeTimeSeries(labelValues);
+      }
+      registeredLabelValues.clear();
+      inFlightMetric = null;
+    }
+    if (activeChannelsMetric != null) {
+      activeChannelsMetric.removeTimeSeries(ImmutableList.of(LabelValue.create(clientId)));
+      activeChannelsMetric = null;
+    }
+  }
+}
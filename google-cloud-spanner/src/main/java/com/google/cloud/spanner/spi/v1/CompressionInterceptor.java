@@ -0,0 +1,248 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.spi.v1;
+
+import com.google.cloud.spanner.CompressionPolicy;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ForwardingClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import io.opencensus.metrics.Metrics;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Compresses request messages according to a {@link CompressionPolicy}. The compressor of the
+ * policy is set on all calls of the methods of the policy, and compression is then enabled or
+ * disabled for each message based on its serialized size.
+ *
+ * <p>The number of compressed and uncompressed requests, the size of compressed requests before and
+ * after compression and the CPU time spent on sending compressed requests are published through an
+ * OpenCensus {@link MetricRegistry}. The compression ratio of a method is the number of wire bytes
+ * divided by the number of uncompressed bytes.
+ */
+class CompressionInterceptor implements ClientInterceptor {
+  @VisibleForTesting
+  static final String NUM_COMPRESSED_REQUESTS =
+      "cloud.google.com/java/spanner/num_compressed_requests";
+
+  @VisibleForTesting
+  static final String NUM_UNCOMPRESSED_REQUESTS =
+      "cloud.google.com/java/spanner/num_uncompressed_requests";
+
+  @VisibleForTesting
+  static final String COMPRESSED_REQUEST_BYTES =
+      "cloud.google.com/java/spanner/compressed_request_bytes";
+
+  @VisibleForTesting
+  static final String COMPRESSED_REQUEST_WIRE_BYTES =
+      "cloud.google.com/java/spanner/compressed_request_wire_bytes";
+
+  @VisibleForTesting
+  static final String COMPRESSION_CPU_TIME = "cloud.google.com/java/spanner/compression_cpu_time";
+
+  private static final String COUNT = "1";
+  private static final String BYTE = "By";
+  private static final String MICROSECOND = "us";
+
+  private static final ImmutableList<LabelKey> LABEL_KEYS =
+      ImmutableList.of(
+          LabelKey.create("library_version", "Library version"),
+          LabelKey.create("method", "Spanner RPC method"));
+
+  /** The compression metrics of all clients with the same library version. */
+  static final class CompressionMetrics {
+    @GuardedBy("CompressionMetrics.class")
+    private static final Map<String, CompressionMetrics> DEFAULT_INSTANCES = new HashMap<>();
+
+    private final LabelValue libraryVersion;
+    private final CounterFamily compressedRequests;
+    private final CounterFamily uncompressedRequests;
+    private final CounterFamily compressedRequestBytes;
+    private final CounterFamily compressedRequestWireBytes;
+    private final CounterFamily compressionCpuTime;
+
+    static synchronized CompressionMetrics getDefault(String libraryVersion) {
+      CompressionMetrics metrics = DEFAULT_INSTANCES.get(libraryVersion);
+      if (metrics == null) {
+        metrics = new CompressionMetrics(Metrics.getMetricRegistry(), libraryVersion);
+        DEFAULT_INSTANCES.put(libraryVersion, metrics);
+      }
+      return metrics;
+    }
+
+    @VisibleForTesting
+    CompressionMetrics(MetricRegistry registry, String libraryVersion) {
+      this.libraryVersion = LabelValue.create(libraryVersion);
+      this.compressedRequests =
+          family(registry, NUM_COMPRESSED_REQUESTS, "The number of compressed requests.", COUNT);
+      this.uncompressedRequests =
+          family(
+              registry,
+              NUM_UNCOMPRESSED_REQUESTS,
+              "The number of requests that were not compressed by the compression policy.",
+              COUNT);
+      this.compressedRequestBytes =
+          family(
+              registry,
+              COMPRESSED_REQUEST_BYTES,
+              "The size of compressed requests before compression.",
+              BYTE);
+      this.compressedRequestWireBytes =
+          family(
+              registry,
+              COMPRESSED_REQUEST_WIRE_BYTES,
+              "The size of compressed requests after compression.",
+              BYTE);
+      this.compressionCpuTime =
+          family(
+              registry,
+              COMPRESSION_CPU_TIME,
+              "The CPU time spent on serializing and compressing compressed requests.",
+              MICROSECOND);
+    }
+
+    private static CounterFamily family(
+        MetricRegistry registry, String name, String description, String unit) {
+      return new CounterFamily(
+          registry.addDerivedLongCumulative(
+              name,
+              MetricOptions.builder()
+                  .setDescription(description)
+                  .setUnit(unit)
+                  .setLabelKeys(LABEL_KEYS)
+                  .build()));
+    }
+
+    private List<LabelValue> labels(String methodName) {
+      return ImmutableList.of(libraryVersion, LabelValue.create(methodName));
+    }
+
+    @VisibleForTesting
+    long getValue(String metric, String methodName) {
+      List<LabelValue> labelValues = labels(methodName);
+      switch (metric) {
+        case NUM_COMPRESSED_REQUESTS:
+          return compressedRequests.value(labelValues);
+        case NUM_UNCOMPRESSED_REQUESTS:
+          return uncompressedRequests.value(labelValues);
+        case COMPRESSED_REQUEST_BYTES:
+          return compressedRequestBytes.value(labelValues);
+        case COMPRESSED_REQUEST_WIRE_BYTES:
+          return compressedRequestWireBytes.value(labelValues);
+        case COMPRESSION_CPU_TIME:
+          return compressionCpuTime.value(labelValues);
+        default:
+          throw new IllegalArgumentException("Unknown metric: " + metric);
+      }
+    }
+  }
+
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+  private final CompressionPolicy policy;
+  private final CompressionMetrics metrics;
+
+  CompressionInterceptor(CompressionPolicy policy, CompressionMetrics metrics) {
+    this.policy = Preconditions.checkNotNull(policy);
+    this.metrics = Preconditions.checkNotNull(metrics);
+  }
+
+  /** Returns the CPU time of the current thread, or the wall time if that is not supported. */
+  private static long currentThreadCpuNanos() {
+    if (THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+      return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    }
+    return System.nanoTime();
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    String fullMethodName = method.getFullMethodName();
+    final String methodName = fullMethodName.substring(fullMethodName.lastIndexOf('/') + 1);
+    if (!policy.appliesTo(methodName)) {
+      return next.newCall(method, callOptions);
+    }
+    final List<LabelValue> labels = metrics.labels(methodName);
+    // Only messages that are compressed are recorded by the tracer. The flag is set before each
+    // message is sent, and the tracer is notified of a message before the next one is sent.
+    final AtomicBoolean compressing = new AtomicBoolean();
+    ClientStreamTracer.Factory tracerFactory =
+        new ClientStreamTracer.Factory() {
+          @Override
+          public ClientStreamTracer newClientStreamTracer(
+              ClientStreamTracer.StreamInfo info, Metadata headers) {
+            return new ClientStreamTracer() {
+              @Override
+              public void outboundMessageSent(
+                  int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+                if (compressing.get() && optionalWireSize >= 0L && optionalUncompressedSize >= 0L) {
+                  metrics.compressedRequestBytes.get(labels).addAndGet(optionalUncompressedSize);
+                  metrics.compressedRequestWireBytes.get(labels).addAndGet(optionalWireSize);
+                }
+              }
+            };
+          }
+        };
+    return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+        next.newCall(
+            method,
+            callOptions
+                .withCompression(policy.getCompressorName())
+                .withStreamTracerFactory(tracerFactory))) {
+      @Override
+      public void sendMessage(ReqT message) {
+        boolean compress =
+            message instanceof MessageLite
+                && policy.shouldCompress(methodName, ((MessageLite) message).getSerializedSize());
+        compressing.set(compress);
+        setMessageCompression(compress);
+        if (compress) {
+          metrics.compressedRequests.get(labels).incrementAndGet();
+          long startNanos = currentThreadCpuNanos();
+          super.sendMessage(message);
+          metrics
+              .compressionCpuTime
+              .get(labels)
+              .addAndGet(TimeUnit.NANOSECONDS.toMicros(currentThreadCpuNanos() - startNanos));
+        } else {
+          metrics.uncompressedRequests.get(labels).incrementAndGet();
+          super.sendMessage(message);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.spi.v1;
+
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.LabelValue;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of counters that share a cumulative metric and differ in their label values. The time
+ * series for a set of label values is created when its counter is used for the first time.
+ */
+final class CounterFamily {
+  private static final ToLongFunction<AtomicLong> ATOMIC_LONG_VALUE =
+      new ToLongFunction<AtomicLong>() {
+        @Override
+        public long applyAsLong(AtomicLong value) {
+          return value.get();
+        }
+      };
+
+  private final DerivedLongCumulative metric;
+  private final ConcurrentMap<List<LabelValue>, AtomicLong> counters = new ConcurrentHashMap<>();
+
+  CounterFamily(DerivedLongCumulative metric) {
+    this.metric = metric;
+  }
+
+  /** Returns the counter for the given label values. */
+  AtomicLong get(List<LabelValue> labelValues) {
+    AtomicLong counter = counters.get(labelValues);
+    if (counter == null) {
+      AtomicLong newCounter = new AtomicLong();
+      counter = counters.putIfAbsent(labelValues, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+        metric.createTimeSeries(labelValues, counter, ATOMIC_LONG_VALUE);
+      }
+    }
+    return counter;
+  }
+
+  /** Returns the current value of the counter for the given label values. */
+  long value(List<LabelValue> labelValues) {
+    AtomicLong counter = counters.get(labelValues);
+    return counter == null ? 0L : counter.get();
+  }
+}
@@ -18,12 +18,15 @@ package com.google.cloud.spanner.spi.v1;
 
 import static com.google.cloud.spanner.SpannerExceptionFactory.newSpannerException;
 
+import com.google.api.core.ApiClock;
 import com.google.api.core.ApiFuture;
 import com.google.api.core.InternalApi;
 import com.google.api.core.NanoClock;
 import com.google.api.gax.core.CredentialsProvider;
 import com.google.api.gax.core.ExecutorProvider;
+import com.google.api.gax.core.FixedExecutorProvider;
 import com.google.api.gax.core.GaxProperties;
+import com.google.api.gax.core.InstantiatingExecutorProvider;
 import com.google.api.gax.grpc.GaxGrpcProperties;
 import com.google.api.gax.grpc.GrpcCallContext;
 import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
@@ -42,6 +45,7 @@ import com.google.api.gax.rpc.ServerStream;
 import com.google.api.gax.rpc.StatusCode;
 import com.google.api.gax.rpc.StreamController;
 import com.google.api.gax.rpc.TransportChannelProvider;
+import com.google.api.gax.rpc.Watchdog;
 import com.google.api.gax.rpc.WatchdogProvider;
 import com.google.api.pathtemplate.PathTemplate;
 import com.google.cloud.RetryHelper;
@@ -134,74 +138,129 @@ import com.google.spanner.v1.ResultSet;
 import com.google.spanner.v1.RollbackRequest;
 import com.google.spanner.v1.Session;
 import com.google.spanner.v1.Transaction;
+import com.google.spanner.v1.TransactionSelector;
 import io.grpc.CallCredentials;
 import io.grpc.Context;
+import io.opencensus.metrics.Metrics;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import org.threeten.bp.Duration;
 
 /** Implementation of Cloud Spanner remote calls using Gapic libraries. */
 @InternalApi
 public class GapicSpannerRpc implements SpannerRpc {
   /**
-   * {@link ExecutorProvider} that keeps track of the executors that are created and shuts these
-   * down when the {@link SpannerRpc} is closed.
+   * {@link ExecutorProvider} that lazily creates one bounded executor that is shared by all gRPC
+   * channels, the stream watchdog and the Gapic clients of a {@link SpannerRpc}. The executor is
+   * shut down when the {@link SpannerRpc} is closed. Idle threads of the executor are allowed to
+   * time out.
    */
   private static final class ManagedInstantiatingExecutorProvider implements ExecutorProvider {
     // 4 Gapic clients * 4 channels per client.
     private static final int DEFAULT_MIN_THREAD_COUNT = 16;
-    private final List<ScheduledExecutorService> executors = new LinkedList<>();
+    private static final long KEEP_ALIVE_SECONDS = 60L;
     private final ThreadFactory threadFactory;
 
+    @GuardedBy("this")
+    private ScheduledThreadPoolExecutor executor;
+
     private ManagedInstantiatingExecutorProvider(ThreadFactory threadFactory) {
       this.threadFactory = threadFactory;
     }
 
     @Override
     public boolean shouldAutoClose() {
-      return false;
+      return true;
     }
 
     @Override
-    public ScheduledExecutorService getExecutor() {
-      int numCpus = Runtime.getRuntime().availableProcessors();
-      int numThreads = Math.max(DEFAULT_MIN_THREAD_COUNT, numCpus);
-      ScheduledExecutorService executor =
-          new ScheduledThreadPoolExecutor(numThreads, threadFactory);
-      synchronized (this) {
-        executors.add(executor);
+    public synchronized ScheduledExecutorService getExecutor() {
+      if (executor == null) {
+        int numCpus = Runtime.getRuntime().availableProcessors();
+        int numThreads = Math.max(DEFAULT_MIN_THREAD_COUNT, numCpus);
+        executor = new ScheduledThreadPoolExecutor(numThreads, threadFactory);
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
       }
       return executor;
     }
+  }
 
-    /** Shuts down all executors that have been created by this {@link ExecutorProvider}. */
-    private synchronized void shutdown() {
-      for (ScheduledExecutorService executor : executors) {
-        executor.shutdown();
-      }
+  /**
+   * {@link WatchdogProvider} that keeps track of the {@link Watchdog}s that are created. The
+   * watchdogs are not closed by the Gapic clients, as closing a watchdog waits for the termination
+   * of its executor, which is shared with the rest of the {@link SpannerRpc} and possibly with
+   * other {@link SpannerRpc}s. The watchdogs are instead stopped when the {@link SpannerRpc} is
+   * closed.
+   */
+  private static final class ManagedWatchdogProvider implements WatchdogProvider {
+    private final WatchdogProvider delegate;
+    private final List<Watchdog> watchdogs;
+
+    private ManagedWatchdogProvider(WatchdogProvider delegate, List<Watchdog> watchdogs) {
+      this.delegate = delegate;
+      this.watchdogs = watchdogs;
+    }
+
+    @Override
+    public boolean needsClock() {
+      return delegate.needsClock();
     }
 
-    private void awaitTermination() throws InterruptedException {
-      for (ScheduledExecutorService executor : executors) {
-        executor.awaitTermination(10L, TimeUnit.SECONDS);
+    @Override
+    public WatchdogProvider withClock(ApiClock clock) {
+      return new ManagedWatchdogProvider(delegate.withClock(clock), watchdogs);
+    }
+
+    @Override
+    public boolean needsCheckInterval() {
+      return delegate.needsCheckInterval();
+    }
+
+    @Override
+    public WatchdogProvider withCheckInterval(Duration checkInterval) {
+      return new ManagedWatchdogProvider(delegate.withCheckInterval(checkInterval), watchdogs);
+    }
+
+    @Override
+    public boolean needsExecutor() {
+      return delegate.needsExecutor();
+    }
+
+    @Override
+    public WatchdogProvider withExecutor(ScheduledExecutorService executor) {
+      return new ManagedWatchdogProvider(delegate.withExecutor(executor), watchdogs);
+    }
+
+    @Override
+    public Watchdog getWatchdog() {
+      Watchdog watchdog = delegate.getWatchdog();
+      if (watchdog != null) {
+        watchdogs.add(watchdog);
       }
+      return watchdog;
+    }
+
+    @Override
+    public boolean shouldAutoClose() {
+      return false;
     }
   }
 
@@ -219,7 +278,9 @@ public class GapicSpannerRpc implements SpannerRpc {
   private static final int DEFAULT_PERIOD_SECONDS = 10;
   private static final int GRPC_KEEPALIVE_SECONDS = 2 * 60;
 
-  private final ManagedInstantiatingExecutorProvider executorProvider;
+  private final ExecutorProvider executorProvider;
+  private final ScheduledExecutorService transportExecutor;
+  private final List<Watchdog> watchdogs = new CopyOnWriteArrayList<>();
   private boolean rpcIsClosed;
   private final SpannerStub spannerStub;
   private final SpannerStub partitionedDmlStub;
@@ -239,7 +300,8 @@ public class GapicSpannerRpc implements SpannerRpc {
   private final Duration checkInterval =
       systemProperty(PROPERTY_PERIOD_SECONDS, DEFAULT_PERIOD_SECONDS);
 
-  private final ScheduledExecutorService spannerWatchdog;
+  @Nullable private final ChannelLoadTracker channelLoadTracker;
+  private final boolean loadAwareChannelSelection;
 
   private final boolean throttleAdministrativeRequests;
   private static final double ADMINISTRATIVE_REQUESTS_RATE_LIMIT = 1.0D;
@@ -287,13 +349,17 @@ public class GapicSpannerRpc implements SpannerRpc {
     this.callCredentialsProvider = options.getCallCredentialsProvider();
     this.compressorName = options.getCompressorName();
 
-    // Create a managed executor provider.
+    // Use the executor provider of SpannerOptions, or create a managed executor provider if none
+    // has been set. All channels, the stream watchdog and the Gapic clients share one executor.
     this.executorProvider =
-        new ManagedInstantiatingExecutorProvider(
-            new ThreadFactoryBuilder()
-                .setDaemon(true)
-                .setNameFormat("Cloud-Spanner-TransportChannel-%d")
-                .build());
+        options.getTransportExecutorProvider() == null
+            ? new ManagedInstantiatingExecutorProvider(
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("Cloud-Spanner-TransportChannel-%d")
+                    .build())
+            : options.getTransportExecutorProvider();
+    this.transportExecutor = executorProvider.getExecutor();
     // First check if SpannerOptions provides a TransportChannerProvider. Create one
     // with information gathered from SpannerOptions if none is provided
     TransportChannelProvider channelProvider =
@@ -304,8 +370,8 @@ public class GapicSpannerRpc implements SpannerRpc {
                 .setEndpoint(options.getEndpoint())
                 .setMaxInboundMessageSize(MAX_MESSAGE_SIZE)
                 .setMaxInboundMetadataSize(MAX_METADATA_SIZE)
-                .setPoolSize(options.getNumChannels())
-                .setExecutor(executorProvider.getExecutor())
+                .setPoolSize(options.getMaxNumChannels())
+                .setExecutor(transportExecutor)
 
                 // Set a keepalive time of 120 seconds to help long running
                 // commit GRPC calls succeed
@@ -318,24 +384,36 @@ public class GapicSpannerRpc implements SpannerRpc {
                             MoreObjects.firstNonNull(
                                 options.getInterceptorProvider(),
                                 SpannerInterceptorProvider.createDefault()))
-                        .withEncoding(compressorName))
+                        .withEncoding(compressorName)
+                        .withCompressionPolicy(
+                            options.getCompressionPolicy(),
+                            GaxProperties.getLibraryVersion(options.getClass()))
+                        .withMetrics(GaxProperties.getLibraryVersion(options.getClass())))
                 .setHeaderProvider(mergedHeaderProvider)
                 .build());
 
+    this.loadAwareChannelSelection = options.isLoadAwareChannelSelection();
+    if (loadAwareChannelSelection || options.getMaxNumChannels() > options.getNumChannels()) {
+      this.channelLoadTracker =
+          new ChannelLoadTracker(
+              options.getNumChannels(),
+              options.getMaxNumChannels(),
+              options.getMaxInFlightCallsPerChannel());
+      this.channelLoadTracker.registerMetrics(Metrics.getMetricRegistry());
+    } else {
+      this.channelLoadTracker = null;
+    }
+
     CredentialsProvider credentialsProvider =
         GrpcTransportOptions.setUpCredentialsProvider(options);
 
-    spannerWatchdog =
-        Executors.newSingleThreadScheduledExecutor(
-            new ThreadFactoryBuilder()
-                .setDaemon(true)
-                .setNameFormat("Cloud-Spanner-WatchdogProvider-%d")
-                .build());
     WatchdogProvider watchdogProvider =
-        InstantiatingWatchdogProvider.create()
-            .withExecutor(spannerWatchdog)
-            .withCheckInterval(checkInterval)
-            .withClock(NanoClock.getDefaultClock());
+        new ManagedWatchdogProvider(
+            InstantiatingWatchdogProvider.create()
+                .withExecutor(transportExecutor)
+                .withCheckInterval(checkInterval)
+                .withClock(NanoClock.getDefaultClock()),
+            watchdogs);
 
     try {
       this.spannerStub =
@@ -346,6 +424,9 @@ public class GapicSpannerRpc implements SpannerRpc {
                   .setTransportChannelProvider(channelProvider)
                   .setCredentialsProvider(credentialsProvider)
                   .setStreamWatchdogProvider(watchdogProvider)
+                  .setExecutorProvider(
+                      backgroundExecutorProvider(
+                          options.getSpannerStubSettings().getExecutorProvider()))
                   .build());
       partitionedDmlRetrySettings =
           options
@@ -363,6 +444,8 @@ public class GapicSpannerRpc implements SpannerRpc {
           .setTransportChannelProvider(channelProvider)
           .setCredentialsProvider(credentialsProvider)
           .setStreamWatchdogProvider(watchdogProvider)
+          .setExecutorProvider(
+              backgroundExecutorProvider(options.getSpannerStubSettings().getExecutorProvider()))
           .executeSqlSettings()
           .setRetrySettings(partitionedDmlRetrySettings);
       // The stream watchdog will by default only check for a timeout every 10 seconds, so if the
@@ -390,6 +473,9 @@ public class GapicSpannerRpc implements SpannerRpc {
                   .setTransportChannelProvider(channelProvider)
                   .setCredentialsProvider(credentialsProvider)
                   .setStreamWatchdogProvider(watchdogProvider)
+                  .setExecutorProvider(
+                      backgroundExecutorProvider(
+                          options.getInstanceAdminStubSettings().getExecutorProvider()))
                   .build());
 
       this.databaseAdminStubSettings =
@@ -399,6 +485,9 @@ public class GapicSpannerRpc implements SpannerRpc {
               .setTransportChannelProvider(channelProvider)
               .setCredentialsProvider(credentialsProvider)
               .setStreamWatchdogProvider(watchdogProvider)
+              .setExecutorProvider(
+                  backgroundExecutorProvider(
+                      options.getDatabaseAdminStubSettings().getExecutorProvider()))
               .build();
       this.databaseAdminStub = GrpcDatabaseAdminStub.create(this.databaseAdminStubSettings);
     } catch (Exception e) {
@@ -406,6 +495,17 @@ public class GapicSpannerRpc implements SpannerRpc {
     }
   }
 
+  /**
+   * Returns an {@link ExecutorProvider} for the background work of a Gapic client that uses the
+   * shared transport executor, unless a custom executor provider has been set for the client.
+   */
+  private ExecutorProvider backgroundExecutorProvider(ExecutorProvider configured) {
+    if (configured instanceof InstantiatingExecutorProvider) {
+      return FixedExecutorProvider.create(transportExecutor);
+    }
+    return configured;
+  }
+
   private static final class OperationFutureRetryAlgorithm<ResultT, MetadataT>
       implements ResultRetryAlgorithm<OperationFuture<ResultT, MetadataT>> {
     private static final ImmutableList<StatusCode.Code> RETRYABLE_CODES =
@@ -1021,8 +1121,9 @@ public class GapicSpannerRpc implements SpannerRpc {
       requestBuilder.setSessionTemplate(session);
     }
     BatchCreateSessionsRequest request = requestBuilder.build();
-    GrpcCallContext context = newCallContext(options, databaseName);
-    return get(spannerStub.batchCreateSessionsCallable().futureCall(request, context))
+    GrpcCallContext context = newCallContext(options, databaseName, true);
+    return get(track(
+            context, spannerStub.batchCreateSessionsCallable().futureCall(request, context)))
         .getSessionList();
   }
 
@@ -1037,8 +1138,8 @@ public class GapicSpannerRpc implements SpannerRpc {
       requestBuilder.setSession(session);
     }
     CreateSessionRequest request = requestBuilder.build();
-    GrpcCallContext context = newCallContext(options, databaseName);
-    return get(spannerStub.createSessionCallable().futureCall(request, context));
+    GrpcCallContext context = newCallContext(options, databaseName, true);
+    return get(track(context, spannerStub.createSessionCallable().futureCall(request, context)));
   }
 
   @Override
@@ -1050,15 +1151,17 @@ public class GapicSpannerRpc implements SpannerRpc {
   @Override
   public ApiFuture<Empty> asyncDeleteSession(String sessionName, @Nullable Map<Option, ?> options) {
     DeleteSessionRequest request = DeleteSessionRequest.newBuilder().setName(sessionName).build();
-    GrpcCallContext context = newCallContext(options, sessionName);
-    return spannerStub.deleteSessionCallable().futureCall(request, context);
+    GrpcCallContext context = newCallContext(options, sessionName, true);
+    return track(context, spannerStub.deleteSessionCallable().futureCall(request, context));
   }
 
   @Override
   public StreamingCall read(
       ReadRequest request, ResultStreamConsumer consumer, @Nullable Map<Option, ?> options) {
-    GrpcCallContext context = newCallContext(options, request.getSession());
-    SpannerResponseObserver responseObserver = new SpannerResponseObserver(consumer);
+    GrpcCallContext context =
+        newCallContext(options, request.getSession(), isSingleUse(request.getTransaction()));
+    SpannerResponseObserver responseObserver =
+        new SpannerResponseObserver(consumer, startCall(context));
     spannerStub.streamingReadCallable().call(request, responseObserver, context);
     final StreamController controller = responseObserver.getController();
     return new StreamingCall() {
@@ -1084,8 +1187,9 @@ public class GapicSpannerRpc implements SpannerRpc {
   @Override
   public ApiFuture<ResultSet> executeQueryAsync(
       ExecuteSqlRequest request, @Nullable Map<Option, ?> options) {
-    GrpcCallContext context = newCallContext(options, request.getSession());
-    return spannerStub.executeSqlCallable().futureCall(request, context);
+    GrpcCallContext context =
+        newCallContext(options, request.getSession(), isSingleUse(request.getTransaction()));
+    return track(context, spannerStub.executeSqlCallable().futureCall(request, context));
   }
 
   @Override
@@ -1111,8 +1215,10 @@ public class GapicSpannerRpc implements SpannerRpc {
   @Override
   public StreamingCall executeQuery(
       ExecuteSqlRequest request, ResultStreamConsumer consumer, @Nullable Map<Option, ?> options) {
-    GrpcCallContext context = newCallContext(options, request.getSession());
-    SpannerResponseObserver responseObserver = new SpannerResponseObserver(consumer);
+    GrpcCallContext context =
+        newCallContext(options, request.getSession(), isSingleUse(request.getTransaction()));
+    SpannerResponseObserver responseObserver =
+        new SpannerResponseObserver(consumer, startCall(context));
     spannerStub.executeStreamingSqlCallable().call(request, responseObserver, context);
     final StreamController controller = responseObserver.getController();
     return new StreamingCall() {
@@ -1140,14 +1246,14 @@ public class GapicSpannerRpc implements SpannerRpc {
   public ApiFuture<ExecuteBatchDmlResponse> executeBatchDmlAsync(
       ExecuteBatchDmlRequest request, @Nullable Map<Option, ?> options) {
     GrpcCallContext context = newCallContext(options, request.getSession());
-    return spannerStub.executeBatchDmlCallable().futureCall(request, context);
+    return track(context, spannerStub.executeBatchDmlCallable().futureCall(request, context));
   }
 
   @Override
   public ApiFuture<Transaction> beginTransactionAsync(
       BeginTransactionRequest request, @Nullable Map<Option, ?> options) {
     GrpcCallContext context = newCallContext(options, request.getSession());
-    return spannerStub.beginTransactionCallable().futureCall(request, context);
+    return track(context, spannerStub.beginTransactionCallable().futureCall(request, context));
   }
 
   @Override
@@ -1160,7 +1266,7 @@ public class GapicSpannerRpc implements SpannerRpc {
   public ApiFuture<CommitResponse> commitAsync(
       CommitRequest commitRequest, @Nullable Map<Option, ?> options) {
     GrpcCallContext context = newCallContext(options, commitRequest.getSession());
-    return spannerStub.commitCallable().futureCall(commitRequest, context);
+    return track(context, spannerStub.commitCallable().futureCall(commitRequest, context));
   }
 
   @Override
@@ -1172,7 +1278,7 @@ public class GapicSpannerRpc implements SpannerRpc {
   @Override
   public ApiFuture<Empty> rollbackAsync(RollbackRequest request, @Nullable Map<Option, ?> options) {
     GrpcCallContext context = newCallContext(options, request.getSession());
-    return spannerStub.rollbackCallable().futureCall(request, context);
+    return track(context, spannerStub.rollbackCallable().futureCall(request, context));
   }
 
   @Override
@@ -1285,11 +1391,65 @@ public class GapicSpannerRpc implements SpannerRpc {
     }
   }
 
+  /**
+   * Returns <code>true</code> if the given {@link TransactionSelector} does not refer to a
+   * transaction that is also used by other calls.
+   */
+  private static boolean isSingleUse(TransactionSelector selector) {
+    return selector.getSelectorCase() == TransactionSelector.SelectorCase.SELECTOR_NOT_SET
+        || selector.hasSingleUse();
+  }
+
+  /**
+   * Creates a call context. If load-aware channel selection is enabled and the call is not bound to
+   * the channel of its session, the least loaded channel is selected for the call.
+   */
+  private GrpcCallContext newCallContext(
+      @Nullable Map<Option, ?> options, String resource, boolean loadBalanced) {
+    GrpcCallContext context = newCallContext(options, resource);
+    if (loadBalanced && loadAwareChannelSelection) {
+      context = context.withChannelAffinity(channelLoadTracker.selectLeastLoaded());
+    }
+    return context;
+  }
+
+  /** Registers the start of a call on the channel of the given context, if load tracking is on. */
+  @Nullable
+  private ChannelLoadTracker.Call startCall(GrpcCallContext context) {
+    if (channelLoadTracker == null || context.getChannelAffinity() == null) {
+      return null;
+    }
+    return channelLoadTracker.start(context.getChannelAffinity());
+  }
+
+  /** Tracks the given future as an outstanding call on the channel of the given context. */
+  private <T> ApiFuture<T> track(GrpcCallContext context, ApiFuture<T> future) {
+    if (channelLoadTracker != null && context.getChannelAffinity() != null) {
+      channelLoadTracker.track(context.getChannelAffinity(), future);
+    }
+    return future;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  ChannelLoadTracker getChannelLoadTracker() {
+    return channelLoadTracker;
+  }
+
   @VisibleForTesting
   GrpcCallContext newCallContext(@Nullable Map<Option, ?> options, String resource) {
     GrpcCallContext context = GrpcCallContext.createDefault();
     if (options != null) {
-      context = context.withChannelAffinity(Option.CHANNEL_HINT.getLong(options).intValue());
+      int affinity = Option.CHANNEL_HINT.getLong(options).intValue();
+      if (channelLoadTracker != null) {
+        // Spread the channel hints over the channels that are currently active.
+        affinity = channelLoadTracker.channelForAffinity(affinity);
+      }
+      context = context.withChannelAffinity(affinity);
+    } else if (channelLoadTracker != null) {
+      // Calls without a channel hint would otherwise be spread over all channels in the pool,
+      // including the channels that are currently not active.
+      context = context.withChannelAffinity(channelLoadTracker.selectLeastLoaded());
     }
     context = context.withExtraHeaders(metadataProvider.newExtraHeaders(resource, projectName));
     if (callCredentialsProvider != null) {
@@ -1309,16 +1469,24 @@ public class GapicSpannerRpc implements SpannerRpc {
     this.partitionedDmlStub.close();
     this.instanceAdminStub.close();
     this.databaseAdminStub.close();
-    this.spannerWatchdog.shutdown();
-    this.executorProvider.shutdown();
+    for (Watchdog watchdog : this.watchdogs) {
+      watchdog.shutdown();
+    }
+    if (this.executorProvider.shouldAutoClose()) {
+      this.transportExecutor.shutdown();
+    }
+    if (this.channelLoadTracker != null) {
+      this.channelLoadTracker.unregisterMetrics();
+    }
 
     try {
       this.spannerStub.awaitTermination(10L, TimeUnit.SECONDS);
       this.partitionedDmlStub.awaitTermination(10L, TimeUnit.SECONDS);
       this.instanceAdminStub.awaitTermination(10L, TimeUnit.SECONDS);
       this.databaseAdminStub.awaitTermination(10L, TimeUnit.SECONDS);
-      this.spannerWatchdog.awaitTermination(10L, TimeUnit.SECONDS);
-      this.executorProvider.awaitTermination();
+      if (this.executorProvider.shouldAutoClose()) {
+        this.transportExecutor.awaitTermination(10L, TimeUnit.SECONDS);
+      }
     } catch (InterruptedException e) {
       throw SpannerExceptionFactory.propagateInterrupt(e);
     }
@@ -1336,9 +1504,12 @@ public class GapicSpannerRpc implements SpannerRpc {
   private static class SpannerResponseObserver implements ResponseObserver<PartialResultSet> {
     private StreamController controller;
     private final ResultStreamConsumer consumer;
+    @Nullable private final ChannelLoadTracker.Call call;
 
-    public SpannerResponseObserver(ResultStreamConsumer consumer) {
+    public SpannerResponseObserver(
+        ResultStreamConsumer consumer, @Nullable ChannelLoadTracker.Call call) {
       this.consumer = consumer;
+      this.call = call;
     }
 
     @Override
@@ -1357,14 +1528,22 @@ public class GapicSpannerRpc implements SpannerRpc {
 
     @Override
     public void onError(Throwable t) {
+      finishCall();
       consumer.onError(newSpannerException(t));
     }
 
     @Override
     public void onComplete() {
+      finishCall();
       consumer.onCompleted();
     }
 
+    private void finishCall() {
+      if (call != null) {
+        call.finish();
+      }
+    }
+
     StreamController getController() {
       return Preconditions.checkNotNull(this.controller);
     }
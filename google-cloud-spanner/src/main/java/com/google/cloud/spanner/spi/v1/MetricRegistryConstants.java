@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.spi.v1;
+
+import com.google.common.collect.ImmutableList;
+import io.opencensus.metrics.LabelKey;
+
+/** A helper class that holds OpenCensus's related constants for the gRPC transport. */
+class MetricRegistryConstants {
+
+  // The label keys are used to uniquely identify timeseries.
+  static final LabelKey CLIENT_ID = LabelKey.create("client_id", "Id of the Spanner RPC client");
+  private static final LabelKey CHANNEL_ID =
+      LabelKey.create("channel_id", "Index of the gRPC channel in the channel pool");
+
+  static final ImmutableList<LabelKey> CHANNEL_LABEL_KEYS = ImmutableList.of(CLIENT_ID, CHANNEL_ID);
+
+  /** Unit to represent counts. */
+  static final String COUNT = "1";
+
+  // The Metric name and description
+  static final String NUM_IN_FLIGHT_CALLS = "cloud.google.com/java/spanner/num_in_flight_calls";
+  static final String NUM_ACTIVE_CHANNELS = "cloud.google.com/java/spanner/num_active_channels";
+
+  static final String NUM_IN_FLIGHT_CALLS_DESCRIPTION =
+      "The number of outstanding calls on a gRPC channel.";
+  static final String NUM_ACTIVE_CHANNELS_DESCRIPTION =
+      "The number of gRPC channels that are used for new calls.";
+}
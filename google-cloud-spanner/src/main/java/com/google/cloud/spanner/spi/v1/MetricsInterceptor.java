@@ -0,0 +1,350 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.spi.v1;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import io.opencensus.metrics.Metrics;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Records client-side metrics for each Spanner RPC: the number of calls per status code, the
+ * latency, the time to the first response of streaming calls and the number of request and response
+ * bytes on the wire, as reported by the transport. The metrics are published through an OpenCensus
+ * {@link MetricRegistry} and are labeled with the database and instance of the call, the client
+ * library version and the RPC method.
+ *
+ * <p>Latency distributions are published as one cumulative count per latency bucket, as the {@link
+ * MetricRegistry} does not support distributions.
+ */
+class MetricsInterceptor implements ClientInterceptor {
+  @VisibleForTesting static final String RPC_COUNT = "cloud.google.com/java/spanner/rpc_count";
+
+  @VisibleForTesting static final String RPC_LATENCY = "cloud.google.com/java/spanner/rpc_latency";
+
+  @VisibleForTesting
+  static final String RPC_LATENCY_BUCKETS = "cloud.google.com/java/spanner/rpc_latency_buckets";
+
+  @VisibleForTesting
+  static final String RPC_FIRST_RESPONSE_LATENCY_BUCKETS =
+      "cloud.google.com/java/spanner/rpc_first_response_latency_buckets";
+
+  @VisibleForTesting
+  static final String RPC_REQUEST_BYTES = "cloud.google.com/java/spanner/rpc_request_bytes";
+
+  @VisibleForTesting
+  static final String RPC_RESPONSE_BYTES = "cloud.google.com/java/spanner/rpc_response_bytes";
+
+  private static final String COUNT = "1";
+  private static final String MILLISECOND = "ms";
+  private static final String BYTE = "By";
+
+  /** The upper bounds in milliseconds of the latency buckets. */
+  @VisibleForTesting
+  static final long[] LATENCY_BUCKET_BOUNDS = {
+    1L, 2L, 5L, 10L, 20L, 50L, 100L, 200L, 500L, 1000L, 2000L, 5000L, 10000L
+  };
+
+  private static final LabelValue OVERFLOW_BUCKET = LabelValue.create("+Inf");
+
+  private static final LabelKey DATABASE = LabelKey.create("database", "Target database");
+  private static final LabelKey INSTANCE_ID =
+      LabelKey.create("instance_id", "Name of the instance");
+  private static final LabelKey LIBRARY_VERSION =
+      LabelKey.create("library_version", "Library version");
+  private static final LabelKey METHOD = LabelKey.create("method", "Spanner RPC method");
+  private static final LabelKey STATUS = LabelKey.create("status", "gRPC status code of the RPC");
+  private static final LabelKey LATENCY_BUCKET =
+      LabelKey.create("latency_bucket", "Upper bound in milliseconds of the latency bucket");
+
+  private static final ImmutableList<LabelKey> LABEL_KEYS =
+      ImmutableList.of(DATABASE, INSTANCE_ID, LIBRARY_VERSION, METHOD);
+  private static final ImmutableList<LabelKey> LABEL_KEYS_WITH_STATUS =
+      ImmutableList.of(DATABASE, INSTANCE_ID, LIBRARY_VERSION, METHOD, STATUS);
+  private static final ImmutableList<LabelKey> LABEL_KEYS_WITH_BUCKET =
+      ImmutableList.of(DATABASE, INSTANCE_ID, LIBRARY_VERSION, METHOD, LATENCY_BUCKET);
+
+  private static final Metadata.Key<String> RESOURCE_PREFIX_KEY =
+      Metadata.Key.of("google-cloud-resource-prefix", Metadata.ASCII_STRING_MARSHALLER);
+  private static final Pattern RESOURCE_PATTERN =
+      Pattern.compile("^(projects/[^/]*/instances/[^/]*)(?:/databases/([^/]*))?.*");
+  private static final LabelValue UNSET_LABEL = LabelValue.create(null);
+  private static final ImmutableList<LabelValue> UNSET_RESOURCE_LABELS =
+      ImmutableList.of(UNSET_LABEL, UNSET_LABEL);
+  private static final ClientStreamTracer NOOP_TRACER = new ClientStreamTracer() {};
+
+  @GuardedBy("MetricsInterceptor.class")
+  private static final Map<String, MetricsInterceptor> DEFAULT_INSTANCES = new HashMap<>();
+
+  private final Ticker ticker;
+  private final LabelValue libraryVersion;
+  private final CounterFamily rpcCount;
+  private final CounterFamily rpcLatency;
+  private final CounterFamily rpcLatencyBuckets;
+  private final CounterFamily rpcFirstResponseLatencyBuckets;
+  private final CounterFamily rpcRequestBytes;
+  private final CounterFamily rpcResponseBytes;
+
+  /**
+   * The database and instance labels per resource prefix. A client only uses a few different
+   * resource prefixes, so the resource prefix of a call is only parsed the first time it is seen.
+   */
+  private final ConcurrentMap<String, List<LabelValue>> resourceLabels = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the interceptor that publishes its metrics through the default {@link MetricRegistry}.
+   * All Spanner clients with the same library version share one interceptor, so that clients for
+   * the same database add up to the same time series.
+   */
+  static synchronized MetricsInterceptor getDefault(String libraryVersion) {
+    MetricsInterceptor interceptor = DEFAULT_INSTANCES.get(libraryVersion);
+    if (interceptor == null) {
+      interceptor =
+          new MetricsInterceptor(
+              Metrics.getMetricRegistry(), libraryVersion, Ticker.systemTicker());
+      DEFAULT_INSTANCES.put(libraryVersion, interceptor);
+    }
+    return interceptor;
+  }
+
+  @VisibleForTesting
+  MetricsInterceptor(MetricRegistry registry, String libraryVersion, Ticker ticker) {
+    this.ticker = ticker;
+    this.libraryVersion = LabelValue.create(libraryVersion);
+    this.rpcCount =
+        new CounterFamily(
+            registry.addDerivedLongCumulative(
+                RPC_COUNT,
+                options(
+                    "The number of Spanner RPCs per status code.", COUNT, LABEL_KEYS_WITH_STATUS)));
+    this.rpcLatency =
+        new CounterFamily(
+            registry.addDerivedLongCumulative(
+                RPC_LATENCY,
+                options(
+                    "The total client-side latency of Spanner RPCs.", MILLISECOND, LABEL_KEYS)));
+    this.rpcLatencyBuckets =
+        new CounterFamily(
+            registry.addDerivedLongCumulative(
+                RPC_LATENCY_BUCKETS,
+                options(
+                    "The number of Spanner RPCs per client-side latency bucket.",
+                    COUNT,
+                    LABEL_KEYS_WITH_BUCKET)));
+    this.rpcFirstResponseLatencyBuckets =
+        new CounterFamily(
+            registry.addDerivedLongCumulative(
+                RPC_FIRST_RESPONSE_LATENCY_BUCKETS,
+                options(
+                    "The number of streaming Spanner RPCs per time-to-first-response bucket.",
+                    COUNT,
+                    LABEL_KEYS_WITH_BUCKET)));
+    this.rpcRequestBytes =
+        new CounterFamily(
+            registry.addDerivedLongCumulative(
+                RPC_REQUEST_BYTES,
+                options("The number of bytes sent in Spanner RPC requests.", BYTE, LABEL_KEYS)));
+    this.rpcResponseBytes =
+        new CounterFamily(
+            registry.addDerivedLongCumulative(
+                RPC_RESPONSE_BYTES,
+                options(
+                    "The number of bytes received in Spanner RPC responses.", BYTE, LABEL_KEYS)));
+  }
+
+  private static MetricOptions options(String description, String unit, List<LabelKey> keys) {
+    return MetricOptions.builder()
+        .setDescription(description)
+        .setUnit(unit)
+        .setLabelKeys(keys)
+        .build();
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      final MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    final WireSizeCounter wireSizeCounter = new WireSizeCounter();
+    return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+        next.newCall(method, callOptions.withStreamTracerFactory(wireSizeCounter))) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        final List<LabelValue> labels = labelValues(method, headers.get(RESOURCE_PREFIX_KEY));
+        final long startNanos = ticker.read();
+        final boolean streaming = method.getType() == MethodType.SERVER_STREAMING;
+        // The stream of the call is created by super.start(...), so the counters are set before
+        // the stream tracer receives any sizes.
+        wireSizeCounter.requestBytes = rpcRequestBytes.get(labels);
+        wireSizeCounter.responseBytes = rpcResponseBytes.get(labels);
+        super.start(
+            new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+                responseListener) {
+              private boolean receivedResponse;
+
+              @Override
+              public void onMessage(RespT message) {
+                if (streaming && !receivedResponse) {
+                  receivedResponse = true;
+                  rpcFirstResponseLatencyBuckets
+                      .get(withBucket(labels, elapsedMillis(startNanos)))
+                      .incrementAndGet();
+                }
+                super.onMessage(message);
+              }
+
+              @Override
+              public void onClose(Status status, Metadata trailers) {
+                long latency = elapsedMillis(startNanos);
+                rpcCount
+                    .get(withLabel(labels, LabelValue.create(status.getCode().name())))
+                    .incrementAndGet();
+                rpcLatency.get(labels).addAndGet(latency);
+                rpcLatencyBuckets.get(withBucket(labels, latency)).incrementAndGet();
+                super.onClose(status, trailers);
+              }
+            },
+            headers);
+      }
+    };
+  }
+
+  /**
+   * Adds the number of bytes that the transport sends and receives for a call to the byte counters
+   * of the call. The sizes are reported by the transport for each message, so the messages do not
+   * need to be serialized again to determine their size.
+   */
+  private static final class WireSizeCounter extends ClientStreamTracer.Factory {
+    private volatile AtomicLong requestBytes;
+    private volatile AtomicLong responseBytes;
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(
+        ClientStreamTracer.StreamInfo info, Metadata headers) {
+      final AtomicLong requestBytes = this.requestBytes;
+      final AtomicLong responseBytes = this.responseBytes;
+      if (requestBytes == null || responseBytes == null) {
+        return NOOP_TRACER;
+      }
+      return new ClientStreamTracer() {
+        @Override
+        public void outboundWireSize(long bytes) {
+          requestBytes.addAndGet(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+          responseBytes.addAndGet(bytes);
+        }
+      };
+    }
+  }
+
+  private long elapsedMillis(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(ticker.read() - startNanos);
+  }
+
+  private List<LabelValue> labelValues(MethodDescriptor<?, ?> method, String resource) {
+    List<LabelValue> databaseAndInstance = UNSET_RESOURCE_LABELS;
+    if (resource != null) {
+      databaseAndInstance = resourceLabels.get(resource);
+      if (databaseAndInstance == null) {
+        databaseAndInstance = parseResourceLabels(resource);
+        resourceLabels.putIfAbsent(resource, databaseAndInstance);
+      }
+    }
+    String fullMethodName = method.getFullMethodName();
+    return ImmutableList.<LabelValue>builder()
+        .addAll(databaseAndInstance)
+        .add(libraryVersion)
+        .add(LabelValue.create(fullMethodName.substring(fullMethodName.lastIndexOf('/') + 1)))
+        .build();
+  }
+
+  /** Returns the database and instance labels for the given resource prefix. */
+  private static List<LabelValue> parseResourceLabels(String resource) {
+    Matcher matcher = RESOURCE_PATTERN.matcher(resource);
+    if (!matcher.matches()) {
+      return UNSET_RESOURCE_LABELS;
+    }
+    LabelValue instance = LabelValue.create(matcher.group(1));
+    LabelValue database =
+        matcher.group(2) == null ? UNSET_LABEL : LabelValue.create(matcher.group(2));
+    return ImmutableList.of(database, instance);
+  }
+
+  private static List<LabelValue> withLabel(List<LabelValue> labelValues, LabelValue value) {
+    return ImmutableList.<LabelValue>builder().addAll(labelValues).add(value).build();
+  }
+
+  private static List<LabelValue> withBucket(List<LabelValue> labelValues, long latencyMillis) {
+    return withLabel(labelValues, bucketLabel(latencyMillis));
+  }
+
+  @VisibleForTesting
+  static LabelValue bucketLabel(long latencyMillis) {
+    for (long bound : LATENCY_BUCKET_BOUNDS) {
+      if (latencyMillis <= bound) {
+        return LabelValue.create(String.valueOf(bound));
+      }
+    }
+    return OVERFLOW_BUCKET;
+  }
+
+  @VisibleForTesting
+  long getValue(String metric, List<LabelValue> labelValues) {
+    switch (metric) {
+      case RPC_COUNT:
+        return rpcCount.value(labelValues);
+      case RPC_LATENCY:
+        return rpcLatency.value(labelValues);
+      case RPC_LATENCY_BUCKETS:
+        return rpcLatencyBuckets.value(labelValues);
+      case RPC_FIRST_RESPONSE_LATENCY_BUCKETS:
+        return rpcFirstResponseLatencyBuckets.value(labelValues);
+      case RPC_REQUEST_BYTES:
+        return rpcRequestBytes.value(labelValues);
+      case RPC_RESPONSE_BYTES:
+        return rpcResponseBytes.value(labelValues);
+      default:
+        throw new IllegalArgumentException("Unknown metric: " + metric);
+    }
+  }
+}
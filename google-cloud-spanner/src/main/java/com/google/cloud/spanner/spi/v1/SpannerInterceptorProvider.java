@@ -17,11 +17,13 @@ package com.google.cloud.spanner.spi.v1;
 
 import com.google.api.core.InternalApi;
 import com.google.api.gax.grpc.GrpcInterceptorProvider;
+import com.google.cloud.spanner.CompressionPolicy;
 import com.google.common.collect.ImmutableList;
 import io.grpc.ClientInterceptor;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 
 /**
  * For internal use only. An interceptor provider that provides a list of grpc interceptors for
@@ -65,6 +67,20 @@ public class SpannerInterceptorProvider implements GrpcInterceptorProvider {
     return this;
   }
 
+  SpannerInterceptorProvider withCompressionPolicy(
+      @Nullable CompressionPolicy policy, String libraryVersion) {
+    if (policy != null) {
+      return with(
+          new CompressionInterceptor(
+              policy, CompressionInterceptor.CompressionMetrics.getDefault(libraryVersion)));
+    }
+    return this;
+  }
+
+  SpannerInterceptorProvider withMetrics(String libraryVersion) {
+    return with(MetricsInterceptor.getDefault(libraryVersion));
+  }
+
   @Override
   public List<ClientInterceptor> getInterceptors() {
     return clientInterceptors;
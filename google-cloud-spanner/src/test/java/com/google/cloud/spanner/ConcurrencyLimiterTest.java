@@ -0,0 +1,314 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.spanner.ConcurrencyLimiter.Operation;
+import com.google.cloud.spanner.ConcurrencyLimiter.Permit;
+import com.google.common.base.Stopwatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.threeten.bp.Duration;
+
+@RunWith(JUnit4.class)
+public class ConcurrencyLimiterTest {
+
+  /**
+   * Acquires a permit on a separate thread, as permits are re-entrant for the thread that already
+   * holds one.
+   */
+  private static Permit acquireOnOtherThread(
+      final ConcurrencyLimiter limiter, final Operation operation) throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      return executor
+          .submit(
+              new Callable<Permit>() {
+                @Override
+                public Permit call() {
+                  return limiter.acquire(operation);
+                }
+              })
+          .get(5L, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testLimitIncreasesWhileUsed() throws Exception {
+    ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(
+            ConcurrencyLimiterOptions.newBuilder().setInitialLimit(2).setMaxLimit(4).build());
+    for (int i = 0; i < 10; i++) {
+      Permit first = limiter.acquire(Operation.READ);
+      Permit second = acquireOnOtherThread(limiter, Operation.READ);
+      first.release(null);
+      second.release(null);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(4);
+
+    // A single operation at a time does not use the limit, and does not increase it.
+    limiter =
+        new ConcurrencyLimiter(ConcurrencyLimiterOptions.newBuilder().setInitialLimit(4).build());
+    for (int i = 0; i < 10; i++) {
+      limiter.acquire(Operation.READ).release(null);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(4);
+    assertThat(limiter.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testResourceExhaustedLowersLimit() {
+    ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(
+            ConcurrencyLimiterOptions.newBuilder()
+                .setInitialLimit(10)
+                .setMinLimit(2)
+                .setBackoffRatio(0.5D)
+                .build());
+    SpannerException resourceExhausted =
+        SpannerExceptionFactory.newSpannerException(ErrorCode.RESOURCE_EXHAUSTED, "overloaded");
+    limiter.acquire(Operation.WRITE).release(resourceExhausted);
+    assertThat(limiter.getLimit()).isEqualTo(5);
+    limiter.acquire(Operation.WRITE).release(resourceExhausted);
+    limiter.acquire(Operation.WRITE).release(resourceExhausted);
+    assertThat(limiter.getLimit()).isEqualTo(2);
+
+    // Other errors do not change the limit.
+    limiter
+        .acquire(Operation.WRITE)
+        .release(SpannerExceptionFactory.newSpannerException(ErrorCode.NOT_FOUND, "not found"));
+    assertThat(limiter.getLimit()).isEqualTo(2);
+  }
+
+  @Test
+  public void testLatencySpikeLowersLimit() throws InterruptedException {
+    ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(
+            ConcurrencyLimiterOptions.newBuilder()
+                .setInitialLimit(10)
+                .setBackoffRatio(0.5D)
+                .build());
+    for (int i = 0; i < ConcurrencyLimiter.MIN_LATENCY_SAMPLES; i++) {
+      limiter.acquire(Operation.READ).release(null);
+    }
+    // A slow transaction is not compared with the latency of reads.
+    Permit transaction = limiter.acquire(Operation.TRANSACTION);
+    Thread.sleep(20L);
+    transaction.release(null);
+    assertThat(limiter.getLimit()).isEqualTo(10);
+
+    Permit read = limiter.acquire(Operation.READ);
+    Thread.sleep(20L);
+    read.release(null);
+    assertThat(limiter.getLimit()).isEqualTo(5);
+
+    // A cancelled operation does not change the limit.
+    Permit query = limiter.acquire(Operation.READ);
+    Thread.sleep(20L);
+    query.cancel();
+    assertThat(limiter.getLimit()).isEqualTo(5);
+    assertThat(limiter.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testQueueTimeout() throws Exception {
+    ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(
+            ConcurrencyLimiterOptions.newBuilder()
+                .setInitialLimit(1)
+                .setMaxQueueTime(Duration.ofMillis(10L))
+                .build());
+    Permit permit = acquireOnOtherThread(limiter, Operation.READ);
+    try {
+      limiter.acquire(Operation.READ);
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.RESOURCE_EXHAUSTED);
+    }
+    assertThat(limiter.getTimeouts()).isEqualTo(1L);
+    assertThat(limiter.getQueueDepth()).isEqualTo(0);
+    permit.release(null);
+    limiter.acquire(Operation.READ).release(null);
+    assertThat(limiter.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testQueueTimeoutDoesNotLowerLimit() throws Exception {
+    final ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(
+            ConcurrencyLimiterOptions.newBuilder()
+                .setInitialLimit(2)
+                .setBackoffRatio(0.5D)
+                .setMaxQueueTime(Duration.ofMillis(10L))
+                .build());
+    Permit first = limiter.acquire(Operation.TRANSACTION);
+    Permit second = acquireOnOtherThread(limiter, Operation.TRANSACTION);
+    // A queue timeout on another thread that is propagated to a transaction on this thread, and
+    // possibly wrapped, is not counted as an overloaded backend.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    SpannerException timeout;
+    try {
+      timeout =
+          executor
+              .submit(
+                  new Callable<SpannerException>() {
+                    @Override
+                    public SpannerException call() {
+                      try {
+                        limiter.acquire(Operation.READ);
+                        return null;
+                      } catch (SpannerException e) {
+                        return e;
+                      }
+                    }
+                  })
+              .get(5L, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(timeout).isInstanceOf(ConcurrencyLimiter.QueueTimeoutException.class);
+    assertThat(timeout.getErrorCode()).isEqualTo(ErrorCode.RESOURCE_EXHAUSTED);
+    first.release(timeout);
+    second.release(
+        SpannerExceptionFactory.newSpannerException(
+            ErrorCode.RESOURCE_EXHAUSTED, timeout.getMessage(), timeout));
+    assertThat(limiter.getLimit()).isEqualTo(2);
+    assertThat(limiter.getTimeouts()).isEqualTo(1L);
+    assertThat(limiter.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testNestedAcquireOnSameThreadDoesNotWait() throws Exception {
+    final ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(
+            ConcurrencyLimiterOptions.newBuilder()
+                .setInitialLimit(1)
+                .setMaxLimit(1)
+                .setMaxQueueTime(Duration.ofMillis(10L))
+                .build());
+    Permit transaction = limiter.acquire(Operation.TRANSACTION);
+    // Simulates a query loop with a single-row read for each row inside a transaction.
+    Permit query = limiter.acquire(Operation.QUERY);
+    for (int i = 0; i < 5; i++) {
+      limiter.acquire(Operation.READ).release(null);
+    }
+    assertThat(limiter.getInFlight()).isEqualTo(1);
+    assertThat(limiter.getTimeouts()).isEqualTo(0L);
+
+    // Another thread still has to wait for the limit.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<ErrorCode> other =
+          executor.submit(
+              new Callable<ErrorCode>() {
+                @Override
+                public ErrorCode call() {
+                  try {
+                    limiter.acquire(Operation.READ).release(null);
+                    return null;
+                  } catch (SpannerException e) {
+                    return e.getErrorCode();
+                  }
+                }
+              });
+      assertThat(other.get(5L, TimeUnit.SECONDS)).isEqualTo(ErrorCode.RESOURCE_EXHAUSTED);
+      assertThat(limiter.getTimeouts()).isEqualTo(1L);
+
+      // The thread is no longer a holder once all its permits have been released, and has to wait
+      // for a permit that is held by another thread.
+      query.release(null);
+      transaction.release(null);
+      assertThat(limiter.getInFlight()).isEqualTo(0);
+      Permit permit = acquireOnOtherThread(limiter, Operation.READ);
+      try {
+        limiter.acquire(Operation.READ);
+        fail("missing expected exception");
+      } catch (SpannerException e) {
+        assertThat(e.getErrorCode()).isEqualTo(ErrorCode.RESOURCE_EXHAUSTED);
+      }
+      permit.release(null);
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(limiter.getLimit()).isEqualTo(1);
+    assertThat(limiter.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testQueuedOperationStartsWhenPermitIsReleased() throws Exception {
+    final ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(ConcurrencyLimiterOptions.newBuilder().setInitialLimit(1).build());
+    Permit permit = limiter.acquire(Operation.READ);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> queued =
+          executor.submit(
+              new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                  limiter.acquire(Operation.READ).release(null);
+                  return true;
+                }
+              });
+      Stopwatch watch = Stopwatch.createStarted();
+      while (limiter.getQueueDepth() == 0 && watch.elapsed(TimeUnit.SECONDS) < 5L) {
+        Thread.sleep(1L);
+      }
+      assertThat(limiter.getQueueDepth()).isEqualTo(1);
+      assertThat(queued.isDone()).isFalse();
+      permit.release(null);
+      assertThat(queued.get(5L, TimeUnit.SECONDS)).isTrue();
+      assertThat(limiter.getQueueDepth()).isEqualTo(0);
+      assertThat(limiter.getInFlight()).isEqualTo(0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testOptions() {
+    ConcurrencyLimiterOptions options = ConcurrencyLimiterOptions.newBuilder().build();
+    assertThat(options.getInitialLimit()).isEqualTo(20);
+    assertThat(options.getMinLimit()).isEqualTo(1);
+    assertThat(options.getMaxLimit()).isEqualTo(400);
+    assertThat(options.getBackoffRatio()).isEqualTo(0.9D);
+    assertThat(options.getLatencyTolerance()).isEqualTo(2.0D);
+    assertThat(options.getMaxQueueTime()).isEqualTo(Duration.ofSeconds(10L));
+    try {
+      ConcurrencyLimiterOptions.newBuilder().setBackoffRatio(1.0D);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // ignore, this is the expected exception.
+    }
+    try {
+      ConcurrencyLimiterOptions.newBuilder().setInitialLimit(10).setMaxLimit(5).build();
+      fail("missing expected exception");
+    } catch (IllegalStateException e) {
+      // ignore, this is the expected exception.
+    }
+  }
+}
@@ -20,11 +20,13 @@ import static com.google.cloud.spanner.MockSpannerTestUtil.SELECT1;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 
+import com.google.api.core.ApiFunction;
 import com.google.api.core.ApiFuture;
 import com.google.api.core.ApiFutures;
 import com.google.api.gax.grpc.testing.LocalChannelProvider;
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.cloud.NoCredentials;
+import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.AsyncResultSet.CallbackResponse;
 import com.google.cloud.spanner.AsyncResultSet.ReadyCallback;
 import com.google.cloud.spanner.AsyncRunner.AsyncWork;
@@ -32,9 +34,12 @@ import com.google.cloud.spanner.MockSpannerServiceImpl.SimulatedExecutionTime;
 import com.google.cloud.spanner.MockSpannerServiceImpl.StatementResult;
 import com.google.cloud.spanner.ReadContext.QueryAnalyzeMode;
 import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
+import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.protobuf.AbstractMessage;
+import com.google.spanner.v1.ExecuteBatchDmlRequest;
 import com.google.spanner.v1.ExecuteSqlRequest;
 import com.google.spanner.v1.ExecuteSqlRequest.QueryMode;
 import com.google.spanner.v1.ExecuteSqlRequest.QueryOptions;
@@ -45,10 +50,13 @@ import io.grpc.inprocess.InProcessServerBuilder;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -415,6 +423,197 @@ public class DatabaseClientImplTest {
         });
   }
 
+  @Test
+  public void readWriteTransactionWithRetryBudget() {
+    Spanner spanner =
+        this.spanner
+            .getOptions()
+            .toBuilder()
+            .setRetryBudgetOptions(RetryBudgetOptions.newBuilder().setMaxTokens(4).build())
+            .build()
+            .getService();
+    try {
+      DatabaseClientImpl client =
+          (DatabaseClientImpl)
+              spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+      TransactionCallable<Long> callable =
+          new TransactionCallable<Long>() {
+            @Override
+            public Long run(TransactionContext transaction) throws Exception {
+              return transaction.executeUpdate(UPDATE_STATEMENT);
+            }
+          };
+      mockSpanner.setAbortProbability(1.0D);
+      try {
+        client.readWriteTransaction().run(callable);
+        fail("missing expected exception");
+      } catch (AbortedException e) {
+        assertThat(e.getMessage()).contains("retry budget");
+      } finally {
+        mockSpanner.setAbortProbability(0.0D);
+      }
+      // The first aborted attempt was retried, the second exhausted the budget.
+      assertThat(client.retryBudget.getAbortedAttempts()).isEqualTo(2L);
+      assertThat(client.retryBudget.getRetries()).isEqualTo(1L);
+      assertThat(client.retryBudget.getBudgetExhausted()).isEqualTo(1L);
+
+      assertThat(client.readWriteTransaction().run(callable)).isEqualTo(UPDATE_COUNT);
+      assertThat(client.retryBudget.getTokens()).isWithin(0.001D).of(2.1D);
+    } finally {
+      spanner.close();
+    }
+  }
+
+  @Test
+  public void queriesWithConcurrencyLimiter() {
+    Spanner spanner =
+        this.spanner
+            .getOptions()
+            .toBuilder()
+            .setConcurrencyLimiterOptions(
+                ConcurrencyLimiterOptions.newBuilder()
+                    .setInitialLimit(4)
+                    .setMinLimit(1)
+                    .setMaxLimit(8)
+                    .setBackoffRatio(0.5D)
+                    // Only the simulated latency spike should be considered slow.
+                    .setLatencyTolerance(10.0D)
+                    .build())
+            .build()
+            .getService();
+    try {
+      DatabaseClientImpl client =
+          (DatabaseClientImpl)
+              spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+      ConcurrencyLimiter limiter = client.concurrencyLimiter;
+      for (int i = 0; i < 2 * ConcurrencyLimiter.MIN_LATENCY_SAMPLES; i++) {
+        try (ResultSet rs = client.singleUse().executeQuery(SELECT1)) {
+          while (rs.next()) {}
+        }
+      }
+      // The limit is only raised while at least half of it is being used.
+      assertThat(limiter.getLimit()).isEqualTo(4);
+      assertThat(limiter.getInFlight()).isEqualTo(0);
+
+      // A latency spike lowers the limit.
+      mockSpanner.setExecuteStreamingSqlExecutionTime(
+          SimulatedExecutionTime.ofMinimumAndRandomTime(500, 0));
+      try (ResultSet rs = client.singleUse().executeQuery(SELECT1)) {
+        while (rs.next()) {}
+      }
+      assertThat(limiter.getLimit()).isEqualTo(2);
+
+      // RESOURCE_EXHAUSTED lowers the limit to the minimum.
+      mockSpanner.setExecuteStreamingSqlExecutionTime(
+          SimulatedExecutionTime.ofException(Status.RESOURCE_EXHAUSTED.asRuntimeException()));
+      try (ResultSet rs = client.singleUse().executeQuery(SELECT1)) {
+        rs.next();
+        fail("missing expected exception");
+      } catch (SpannerException e) {
+        assertThat(e.getErrorCode()).isEqualTo(ErrorCode.RESOURCE_EXHAUSTED);
+      }
+      assertThat(limiter.getLimit()).isEqualTo(1);
+      assertThat(limiter.getInFlight()).isEqualTo(0);
+    } finally {
+      mockSpanner.setExecuteStreamingSqlExecutionTime(SimulatedExecutionTime.none());
+      spanner.close();
+    }
+  }
+
+  @Test
+  public void concurrencyLimiterQueueTimeout() throws Exception {
+    Spanner spanner =
+        this.spanner
+            .getOptions()
+            .toBuilder()
+            .setConcurrencyLimiterOptions(
+                ConcurrencyLimiterOptions.newBuilder()
+                    .setInitialLimit(1)
+                    .setMaxLimit(1)
+                    .setMaxQueueTime(Duration.ofMillis(50L))
+                    .build())
+            .build()
+            .getService();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final DatabaseClientImpl client =
+          (DatabaseClientImpl)
+              spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+      mockSpanner.freeze();
+      Future<Timestamp> write =
+          executor.submit(
+              new Callable<Timestamp>() {
+                @Override
+                public Timestamp call() {
+                  return client.write(Arrays.asList(Mutation.delete("FOO", KeySet.all())));
+                }
+              });
+      Stopwatch watch = Stopwatch.createStarted();
+      while (client.concurrencyLimiter.getInFlight() == 0 && watch.elapsed(TimeUnit.SECONDS) < 5) {
+        Thread.sleep(1L);
+      }
+      try {
+        client.singleUse().readRow("FOO", Key.of(), Arrays.asList("BAR"));
+        fail("missing expected exception");
+      } catch (SpannerException e) {
+        assertThat(e.getErrorCode()).isEqualTo(ErrorCode.RESOURCE_EXHAUSTED);
+      }
+      assertThat(client.concurrencyLimiter.getTimeouts()).isEqualTo(1L);
+      mockSpanner.unfreeze();
+      assertThat(write.get(10L, TimeUnit.SECONDS)).isNotNull();
+      assertThat(client.concurrencyLimiter.getInFlight()).isEqualTo(0);
+    } finally {
+      mockSpanner.unfreeze();
+      executor.shutdown();
+      spanner.close();
+    }
+  }
+
+  @Test
+  public void concurrencyLimiterNestedOperation() {
+    Spanner spanner =
+        this.spanner
+            .getOptions()
+            .toBuilder()
+            .setConcurrencyLimiterOptions(
+                ConcurrencyLimiterOptions.newBuilder()
+                    .setInitialLimit(1)
+                    .setMaxLimit(1)
+                    .setMaxQueueTime(Duration.ofMillis(50L))
+                    .build())
+            .build()
+            .getService();
+    try {
+      final DatabaseClientImpl client =
+          (DatabaseClientImpl)
+              spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+      // A query that is executed inside a transaction on the same thread uses the permit of the
+      // transaction instead of waiting for a permit of its own.
+      Long count =
+          client
+              .readWriteTransaction()
+              .allowNestedTransaction()
+              .run(
+                  new TransactionCallable<Long>() {
+                    @Override
+                    public Long run(TransactionContext transaction) {
+                      try (ResultSet rs = client.singleUse().executeQuery(SELECT1)) {
+                        while (rs.next()) {
+                          assertThat(client.concurrencyLimiter.getInFlight()).isEqualTo(1);
+                        }
+                      }
+                      return transaction.executeUpdate(UPDATE_STATEMENT);
+                    }
+                  });
+      assertThat(count).isEqualTo(UPDATE_COUNT);
+      assertThat(client.concurrencyLimiter.getTimeouts()).isEqualTo(0L);
+      assertThat(client.concurrencyLimiter.getLimit()).isEqualTo(1);
+      assertThat(client.concurrencyLimiter.getInFlight()).isEqualTo(0);
+    } finally {
+      spanner.close();
+    }
+  }
+
   @Test
   public void readWriteTransactionIsNonBlocking() {
     mockSpanner.freeze();
@@ -435,6 +634,244 @@ public class DatabaseClientImplTest {
         });
   }
 
+  @Test
+  public void readWriteTransactionPipelinedUpdates() {
+    mockSpanner.setExecuteBatchDmlExecutionTime(
+        SimulatedExecutionTime.ofMinimumAndRandomTime(100, 0));
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    List<Long> updateCounts =
+        client
+            .readWriteTransaction()
+            .run(
+                new TransactionCallable<List<Long>>() {
+                  @Override
+                  public List<Long> run(TransactionContext transaction) throws Exception {
+                    List<ApiFuture<Long>> futures = new ArrayList<>();
+                    for (int i = 0; i < 10; i++) {
+                      futures.add(transaction.executeUpdatePipelinedAsync(UPDATE_STATEMENT));
+                    }
+                    return ApiFutures.allAsList(futures).get();
+                  }
+                });
+    assertThat(updateCounts).hasSize(10);
+    assertThat(updateCounts).containsExactlyElementsIn(Collections.nCopies(10, UPDATE_COUNT));
+    // The first statement is sent directly, all others are sent as one batch.
+    List<ExecuteBatchDmlRequest> requests = new ArrayList<>();
+    for (AbstractMessage request : mockSpanner.getRequests()) {
+      if (request instanceof ExecuteBatchDmlRequest) {
+        requests.add((ExecuteBatchDmlRequest) request);
+      }
+    }
+    assertThat(requests).hasSize(2);
+    assertThat(requests.get(0).getStatementsCount()).isEqualTo(1);
+    assertThat(requests.get(1).getStatementsCount()).isEqualTo(9);
+    assertThat(requests.get(1).getSeqno()).isGreaterThan(requests.get(0).getSeqno());
+  }
+
+  @Test
+  public void readWriteTransactionPipelinedUpdatesWithInvalidStatement() {
+    mockSpanner.setExecuteBatchDmlExecutionTime(
+        SimulatedExecutionTime.ofMinimumAndRandomTime(100, 0));
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    client
+        .readWriteTransaction()
+        .run(
+            new TransactionCallable<Void>() {
+              @Override
+              public Void run(TransactionContext transaction) throws Exception {
+                ApiFuture<Long> first = transaction.executeUpdatePipelinedAsync(UPDATE_STATEMENT);
+                ApiFuture<Long> invalid =
+                    transaction.executeUpdatePipelinedAsync(INVALID_UPDATE_STATEMENT);
+                ApiFuture<Long> last = transaction.executeUpdatePipelinedAsync(UPDATE_STATEMENT);
+                assertThat(first.get()).isEqualTo(UPDATE_COUNT);
+                try {
+                  invalid.get();
+                  fail("missing expected exception");
+                } catch (ExecutionException e) {
+                  assertThat(e.getCause()).isInstanceOf(SpannerException.class);
+                  SpannerException se = (SpannerException) e.getCause();
+                  assertThat(se.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+                }
+                // The failure of the invalid statement should not affect the last statement.
+                assertThat(last.get()).isEqualTo(UPDATE_COUNT);
+                // A normal update should wait for the pipeline to finish.
+                assertThat(transaction.executeUpdate(UPDATE_STATEMENT)).isEqualTo(UPDATE_COUNT);
+                return null;
+              }
+            });
+    assertThat(mockSpanner.countRequestsOfType(ExecuteBatchDmlRequest.class)).isEqualTo(3);
+  }
+
+  @Test
+  public void readWriteTransactionBatchUpdateInChunks() throws Exception {
+    try (Spanner spanner =
+        this.spanner.getOptions().toBuilder().setBatchDmlChunkSize(3).build().getService()) {
+      DatabaseClient client =
+          spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+      long[] updateCounts =
+          client
+              .readWriteTransaction()
+              .run(
+                  new TransactionCallable<long[]>() {
+                    @Override
+                    public long[] run(TransactionContext transaction) throws Exception {
+                      return transaction.batchUpdate(Collections.nCopies(7, UPDATE_STATEMENT));
+                    }
+                  });
+      assertThat(updateCounts).asList().containsExactlyElementsIn(Collections.nCopies(7, 1L));
+      assertThat(mockSpanner.countRequestsOfType(ExecuteBatchDmlRequest.class)).isEqualTo(3);
+
+      int requestsBefore = mockSpanner.getRequests().size();
+      long[] asyncUpdateCounts =
+          client
+              .readWriteTransaction()
+              .run(
+                  new TransactionCallable<long[]>() {
+                    @Override
+                    public long[] run(TransactionContext transaction) throws Exception {
+                      return transaction
+                          .batchUpdateAsync(Collections.nCopies(6, UPDATE_STATEMENT))
+                          .get();
+                    }
+                  });
+      assertThat(asyncUpdateCounts).asList().containsExactlyElementsIn(Collections.nCopies(6, 1L));
+      List<Long> seqNos = new ArrayList<>();
+      List<AbstractMessage> requests = mockSpanner.getRequests();
+      for (AbstractMessage request : requests.subList(requestsBefore, requests.size())) {
+        if (request instanceof ExecuteBatchDmlRequest) {
+          assertThat(((ExecuteBatchDmlRequest) request).getStatementsCount()).isEqualTo(3);
+          seqNos.add(((ExecuteBatchDmlRequest) request).getSeqno());
+        }
+      }
+      assertThat(seqNos).hasSize(2);
+      assertThat(seqNos).isInStrictOrder();
+    }
+  }
+
+  @Test
+  public void readWriteTransactionBatchUpdateInChunksWithInvalidStatement() {
+    try (Spanner spanner =
+        this.spanner.getOptions().toBuilder().setBatchDmlChunkSize(2).build().getService()) {
+      DatabaseClient client =
+          spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+      for (final boolean async : new boolean[] {false, true}) {
+        int requestsBefore = mockSpanner.countRequestsOfType(ExecuteBatchDmlRequest.class);
+        try {
+          client
+              .readWriteTransaction()
+              .run(
+                  new TransactionCallable<long[]>() {
+                    @Override
+                    public long[] run(TransactionContext transaction) throws Exception {
+                      List<Statement> statements =
+                          Arrays.asList(
+                              UPDATE_STATEMENT,
+                              UPDATE_STATEMENT,
+                              UPDATE_STATEMENT,
+                              INVALID_UPDATE_STATEMENT,
+                              UPDATE_STATEMENT);
+                      if (async) {
+                        try {
+                          return transaction.batchUpdateAsync(statements).get();
+                        } catch (ExecutionException e) {
+                          throw (SpannerException) e.getCause();
+                        }
+                      }
+                      return transaction.batchUpdate(statements);
+                    }
+                  });
+          fail("missing expected exception");
+        } catch (SpannerBatchUpdateException e) {
+          assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+          assertThat(e.getUpdateCounts()).asList().containsExactly(1L, 1L, 1L);
+        }
+        // Execution stops at the failed statement, so the last chunk is never sent.
+        assertThat(mockSpanner.countRequestsOfType(ExecuteBatchDmlRequest.class))
+            .isEqualTo(requestsBefore + 2);
+      }
+    }
+  }
+
+  @Test
+  public void readWriteTransactionPipelinedUpdateCallbackRunsQuery() {
+    mockSpanner.setExecuteBatchDmlExecutionTime(
+        SimulatedExecutionTime.ofMinimumAndRandomTime(50, 0));
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    Long count =
+        client
+            .readWriteTransaction()
+            .run(
+                new TransactionCallable<Long>() {
+                  @Override
+                  public Long run(final TransactionContext transaction) throws Exception {
+                    ApiFuture<Long> update =
+                        transaction.executeUpdatePipelinedAsync(UPDATE_STATEMENT);
+                    // The callback runs on the thread that receives the result of the pipelined
+                    // update, and must not wait for the pipeline on that thread.
+                    return ApiFutures.transform(
+                            update,
+                            new ApiFunction<Long, Long>() {
+                              @Override
+                              public Long apply(Long input) {
+                                try (ResultSet rs = transaction.executeQuery(SELECT1)) {
+                                  assertThat(rs.next()).isTrue();
+                                  return input + rs.getLong(0);
+                                }
+                              }
+                            },
+                            MoreExecutors.directExecutor())
+                        .get(10L, TimeUnit.SECONDS);
+                  }
+                });
+    assertThat(count).isEqualTo(UPDATE_COUNT + 1L);
+  }
+
+  @Test
+  public void readWriteTransactionAsyncStatementsDoNotWaitForPipeline() {
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    client
+        .readWriteTransaction()
+        .run(
+            new TransactionCallable<Void>() {
+              @Override
+              public Void run(TransactionContext transaction) throws Exception {
+                mockSpanner.freeze();
+                ApiFuture<Long> pipelined =
+                    transaction.executeUpdatePipelinedAsync(UPDATE_STATEMENT);
+                // These calls must return while the pipelined update is still running.
+                ApiFuture<Long> update = transaction.executeUpdateAsync(UPDATE_STATEMENT);
+                ApiFuture<long[]> batch =
+                    transaction.batchUpdateAsync(Arrays.asList(UPDATE_STATEMENT));
+                AsyncResultSet rs = transaction.executeQueryAsync(SELECT1);
+                assertThat(pipelined.isDone()).isFalse();
+                assertThat(update.isDone()).isFalse();
+                assertThat(batch.isDone()).isFalse();
+                mockSpanner.unfreeze();
+
+                assertThat(pipelined.get()).isEqualTo(UPDATE_COUNT);
+                assertThat(update.get()).isEqualTo(UPDATE_COUNT);
+                assertThat(batch.get()).asList().containsExactly(UPDATE_COUNT);
+                assertThat(
+                        rs.toListAsync(
+                                new Function<StructReader, Long>() {
+                                  @Override
+                                  public Long apply(StructReader input) {
+                                    return input.getLong(0);
+                                  }
+                                },
+                                MoreExecutors.directExecutor())
+                            .get())
+                    .containsExactly(1L);
+                rs.close();
+                return null;
+              }
+            });
+  }
+
   @Test
   public void runAsync() throws Exception {
     DatabaseClient client =
@@ -628,6 +1065,88 @@ public class DatabaseClientImplTest {
     client.executePartitionedUpdate(INVALID_UPDATE_STATEMENT);
   }
 
+  @Test
+  public void testExecutePartitionedDmlAsync() throws Exception {
+    DatabaseClientImpl client =
+        (DatabaseClientImpl)
+            spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    long finished = client.partitionedDmlMetrics.getFinishedStatements();
+    ApiFuture<Long> updateCount = client.executePartitionedUpdateAsync(UPDATE_STATEMENT);
+    assertThat(updateCount.get()).isEqualTo(UPDATE_COUNT);
+    assertThat(client.partitionedDmlMetrics.getFinishedStatements()).isEqualTo(finished + 1);
+    assertThat(client.partitionedDmlMetrics.getActiveStatements()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testExecutePartitionedDmlsAsync() throws Exception {
+    mockSpanner.setExecuteStreamingSqlExecutionTime(
+        SimulatedExecutionTime.ofMinimumAndRandomTime(10, 0));
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    List<ApiFuture<Long>> updateCounts =
+        client.executePartitionedUpdatesAsync(
+            Arrays.asList(
+                UPDATE_STATEMENT,
+                UPDATE_STATEMENT,
+                INVALID_UPDATE_STATEMENT,
+                UPDATE_STATEMENT,
+                UPDATE_STATEMENT),
+            2);
+    assertThat(updateCounts).hasSize(5);
+    for (int i = 0; i < updateCounts.size(); i++) {
+      if (i == 2) {
+        try {
+          updateCounts.get(i).get();
+          fail("missing expected exception");
+        } catch (ExecutionException e) {
+          assertThat(e.getCause()).isInstanceOf(SpannerException.class);
+          assertThat(((SpannerException) e.getCause()).getErrorCode())
+              .isEqualTo(ErrorCode.INVALID_ARGUMENT);
+        }
+      } else {
+        assertThat(updateCounts.get(i).get()).isEqualTo(UPDATE_COUNT);
+      }
+    }
+  }
+
+  @Test
+  public void testExecutePartitionedDmlsAsyncOnSession() throws Exception {
+    DatabaseClientImpl client =
+        (DatabaseClientImpl)
+            spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    Session session = client.pool.getReadSession();
+    List<ApiFuture<Long>> updateCounts =
+        session.executePartitionedUpdatesAsync(
+            Arrays.asList(UPDATE_STATEMENT, INVALID_UPDATE_STATEMENT, UPDATE_STATEMENT), 2);
+    assertThat(updateCounts.get(0).get()).isEqualTo(UPDATE_COUNT);
+    try {
+      updateCounts.get(1).get();
+      fail("missing expected exception");
+    } catch (ExecutionException e) {
+      assertThat(((SpannerException) e.getCause()).getErrorCode())
+          .isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    }
+    assertThat(updateCounts.get(2).get()).isEqualTo(UPDATE_COUNT);
+    // The session is returned to the pool when all statements have finished.
+    Stopwatch watch = Stopwatch.createStarted();
+    while (client.pool.getNumberOfSessionsInUse() > 0 && watch.elapsed(TimeUnit.SECONDS) < 5L) {
+      Thread.sleep(1L);
+    }
+    assertThat(client.pool.getNumberOfSessionsInUse()).isEqualTo(0);
+  }
+
+  @Test
+  public void testExecutePartitionedDmlsAsyncInvalidConcurrency() {
+    DatabaseClient client =
+        spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+    try {
+      client.executePartitionedUpdatesAsync(Arrays.asList(UPDATE_STATEMENT), 0);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   @Test
   public void testPartitionedDmlDoesNotTimeout() {
     mockSpanner.setExecuteSqlExecutionTime(SimulatedExecutionTime.ofMinimumAndRandomTime(10, 0));
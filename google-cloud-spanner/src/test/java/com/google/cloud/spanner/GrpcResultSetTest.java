@@ -702,6 +702,94 @@ public class GrpcResultSetTest {
     assertThat(resultSet.getLong(0)).isEqualTo(Long.MAX_VALUE);
   }
 
+  @Test
+  public void valuesAreDecodedWhenAccessed() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(
+                makeMetadata(
+                    Type.struct(
+                        Type.StructField.of("s", Type.string()),
+                        Type.StructField.of("i", Type.int64()))))
+            .addValues(Value.string("a").toProto())
+            .addValues(com.google.protobuf.Value.newBuilder().setStringValue("not a number"))
+            .build());
+    consumer.onCompleted();
+
+    // The invalid INT64 value is only detected when the column is read.
+    assertThat(resultSet.next()).isTrue();
+    assertThat(resultSet.getString(0)).isEqualTo("a");
+    try {
+      resultSet.getLong(1);
+      fail("Expected exception");
+    } catch (SpannerException ex) {
+      assertThat(ex.getErrorCode()).isEqualTo(ErrorCode.INTERNAL);
+    }
+  }
+
+  @Test
+  public void invalidTimestampAndDateAreDetectedWhenAccessed() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(
+                makeMetadata(
+                    Type.struct(
+                        Type.StructField.of("ts", Type.timestamp()),
+                        Type.StructField.of("d", Type.date()))))
+            .addValues(com.google.protobuf.Value.newBuilder().setStringValue("not a timestamp"))
+            .addValues(com.google.protobuf.Value.newBuilder().setStringValue("2020-13-45"))
+            .build());
+    consumer.onCompleted();
+
+    assertThat(resultSet.next()).isTrue();
+    try {
+      resultSet.getTimestamp(0);
+      fail("Expected exception");
+    } catch (SpannerException ex) {
+      assertThat(ex.getErrorCode()).isEqualTo(ErrorCode.INTERNAL);
+    }
+    try {
+      resultSet.getDate(1);
+      fail("Expected exception");
+    } catch (SpannerException ex) {
+      assertThat(ex.getErrorCode()).isEqualTo(ErrorCode.INTERNAL);
+    }
+  }
+
+  @Test
+  public void invalidFloat64IsDetectedByNext() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(Type.struct(Type.StructField.of("f", Type.float64()))))
+            .addValues(com.google.protobuf.Value.newBuilder().setStringValue("1.5"))
+            .build());
+    consumer.onCompleted();
+
+    try {
+      resultSet.next();
+      fail("Expected exception");
+    } catch (SpannerException ex) {
+      assertThat(ex.getErrorCode()).isEqualTo(ErrorCode.INTERNAL);
+    }
+  }
+
+  @Test
+  public void invalidValueKind() {
+    consumer.onPartialResultSet(
+        PartialResultSet.newBuilder()
+            .setMetadata(makeMetadata(Type.struct(Type.StructField.of("b", Type.bool()))))
+            .addValues(Value.string("true").toProto())
+            .build());
+    consumer.onCompleted();
+
+    try {
+      resultSet.next();
+      fail("Expected exception");
+    } catch (SpannerException ex) {
+      assertThat(ex.getErrorCode()).isEqualTo(ErrorCode.INTERNAL);
+    }
+  }
+
   @Test
   public void getDate() {
     consumer.onPartialResultSet(
@@ -1606,19 +1606,17 @@ public class MockSpannerServiceImpl extends SpannerImplBase implements MockGrpcS
   }
 
   private void setReadTimestamp(TransactionOptions options, Transaction.Builder builder) {
-    if (options.getReadOnly().getStrong()) {
+    // A max staleness read is executed at the current timestamp, which is the most recent timestamp
+    // that satisfies the bound.
+    if (options.getReadOnly().getStrong() || options.getReadOnly().hasMaxStaleness()) {
       builder.setReadTimestamp(getCurrentGoogleTimestamp());
     } else if (options.getReadOnly().hasReadTimestamp()) {
       builder.setReadTimestamp(options.getReadOnly().getReadTimestamp());
     } else if (options.getReadOnly().hasMinReadTimestamp()) {
       builder.setReadTimestamp(options.getReadOnly().getMinReadTimestamp());
-    } else if (options.getReadOnly().hasExactStaleness()
-        || options.getReadOnly().hasMaxStaleness()) {
+    } else if (options.getReadOnly().hasExactStaleness()) {
       Timestamp timestamp = getCurrentGoogleTimestamp();
-      Duration staleness =
-          options.getReadOnly().hasExactStaleness()
-              ? options.getReadOnly().getExactStaleness()
-              : options.getReadOnly().getMaxStaleness();
+      Duration staleness = options.getReadOnly().getExactStaleness();
       long seconds = timestamp.getSeconds() - staleness.getSeconds();
       int nanos = timestamp.getNanos() - staleness.getNanos();
       if (nanos < 0) {
@@ -28,6 +28,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.testing.EqualsTester;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.hamcrest.Matcher;
 import org.hamcrest.MatcherAssert;
@@ -458,6 +459,288 @@ public class MutationTest {
                 .build()));
   }
 
+  @Test
+  public void compactInsert() {
+    Mutation m =
+        Mutation.newCompactInsertBuilder("T1", "C1", "C2")
+            .set("C1")
+            .to(true)
+            .set("C2")
+            .to(1234)
+            .endRow()
+            .set("C2")
+            .to(5678)
+            .set("c1")
+            .to((Boolean) null)
+            .endRow()
+            .build();
+    assertThat(m.getTable()).isEqualTo("T1");
+    assertThat(m.getOperation()).isEqualTo(Mutation.Op.INSERT);
+    assertThat(m.isCompact()).isTrue();
+    assertThat(m.getRowCount()).isEqualTo(2);
+    assertThat(m.getColumns()).containsExactly("C1", "C2").inOrder();
+    assertThat(m.toString()).isEqualTo("insert(T1{C1,C2}[2 rows])");
+
+    List<com.google.spanner.v1.Mutation> proto = new ArrayList<>();
+    Mutation.toProto(Collections.singleton(m), proto);
+    assertThat(proto.size()).isEqualTo(1);
+    MatcherAssert.assertThat(
+        proto.get(0),
+        matchesProto(
+            "insert { table: 'T1' columns: 'C1' columns: 'C2'"
+                + " values { values { bool_value: true } values { string_value: '1234' } }"
+                + " values { values { null_value: NULL_VALUE } values { string_value: '5678' } }"
+                + " }"));
+  }
+
+  @Test
+  public void compactValuesNotAvailable() {
+    Mutation m = Mutation.newCompactUpdateBuilder("T1", "C1").set("C1").to("V").endRow().build();
+    try {
+      m.getValues();
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("compact");
+    }
+    try {
+      m.asMap();
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("compact");
+    }
+  }
+
+  @Test
+  public void compactDuplicateColumn() {
+    try {
+      Mutation.newCompactInsertBuilder("T1", "C1", "c1");
+      fail("Expected exception");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("Duplicate column");
+    }
+    Mutation.CompactWriteBuilder builder =
+        Mutation.newCompactInsertBuilder("T1", "C1").set("C1").to("V");
+    try {
+      builder.set("C1");
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("Duplicate column");
+    }
+  }
+
+  @Test
+  public void compactUnknownColumn() {
+    try {
+      Mutation.newCompactInsertBuilder("T1", "C1").set("C2");
+      fail("Expected exception");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("Unknown column");
+    }
+  }
+
+  @Test
+  public void compactIncompleteRow() {
+    Mutation.CompactWriteBuilder builder =
+        Mutation.newCompactInsertBuilder("T1", "C1", "C2").set("C1").to("V");
+    try {
+      builder.endRow();
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("Missing value for column C2");
+    }
+    try {
+      builder.build();
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("Incomplete row");
+    }
+    builder.set("C2");
+    try {
+      builder.endRow();
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("Incomplete binding for column C2");
+    }
+  }
+
+  @Test
+  public void compactBuildResetsBuilder() {
+    Mutation.CompactWriteBuilder builder = Mutation.newCompactReplaceBuilder("T1", "C1");
+    Mutation m1 = builder.set("C1").to("V1").endRow().build();
+    assertThat(builder.getRowCount()).isEqualTo(0);
+    assertThat(builder.getEncodedSize()).isEqualTo(0);
+    Mutation m2 = builder.set("C1").to("V2").endRow().build();
+    assertThat(m1.getRowCount()).isEqualTo(1);
+    assertThat(m2.getRowCount()).isEqualTo(1);
+    assertThat(m1).isNotEqualTo(m2);
+  }
+
+  @Test
+  public void compactLargeBatch() {
+    Mutation.CompactWriteBuilder builder =
+        Mutation.newCompactInsertOrUpdateBuilder("T", "ID", "NAME");
+    for (int i = 0; i < 10000; i++) {
+      builder.set("ID").to(i).set("NAME").to("Name " + i).endRow();
+    }
+    Mutation m = builder.build();
+    assertThat(m.getRowCount()).isEqualTo(10000);
+
+    List<com.google.spanner.v1.Mutation> proto = new ArrayList<>();
+    Mutation.toProto(Collections.singleton(m), proto);
+    com.google.spanner.v1.Mutation.Write write = proto.get(0).getInsertOrUpdate();
+    assertThat(write.getValuesCount()).isEqualTo(10000);
+    for (int i = 0; i < 10000; i++) {
+      assertThat(write.getValues(i).getValues(0).getStringValue()).isEqualTo(String.valueOf(i));
+      assertThat(write.getValues(i).getValues(1).getStringValue()).isEqualTo("Name " + i);
+    }
+  }
+
+  @Test
+  public void toProtoCoalescingCompactAndRegular() {
+    List<Mutation> mutations =
+        Arrays.asList(
+            Mutation.newInsertBuilder("T").set("C").to("V1").build(),
+            Mutation.newCompactInsertBuilder("T", "C")
+                .set("C")
+                .to("V2")
+                .endRow()
+                .set("C")
+                .to("V3")
+                .endRow()
+                .build(),
+            Mutation.newInsertBuilder("T").set("C").to("V4").build(),
+            Mutation.newCompactUpdateBuilder("T", "C").set("C").to("V5").endRow().build());
+
+    List<com.google.spanner.v1.Mutation> proto = new ArrayList<>();
+    Mutation.toProto(mutations, proto);
+
+    assertThat(proto.size()).isEqualTo(2);
+    MatcherAssert.assertThat(
+        proto.get(0),
+        matchesProto(
+            "insert { table: 'T' columns: 'C' values { values { string_value: 'V1' } }"
+                + " values { values { string_value: 'V2' } }"
+                + " values { values { string_value: 'V3' } }"
+                + " values { values { string_value: 'V4' } } }"));
+    MatcherAssert.assertThat(
+        proto.get(1),
+        matchesProto(
+            "update { table: 'T' columns: 'C' values { values { string_value: 'V5' } } }"));
+  }
+
+  @Test
+  public void compactScalarTypesMatchRegularMutation() {
+    Timestamp timestamp = Timestamp.parseTimestamp("2020-07-01T10:00:00.123456Z");
+    Date date = Date.fromYearMonthDay(2020, 7, 1);
+    ByteArray bytes = ByteArray.copyFrom("bytes");
+    Mutation regular =
+        Mutation.newInsertBuilder("T")
+            .set("bool")
+            .to(true)
+            .set("boolNull")
+            .to((Boolean) null)
+            .set("int")
+            .to(Long.MIN_VALUE)
+            .set("intNull")
+            .to((Long) null)
+            .set("float")
+            .to(Double.NaN)
+            .set("floatNull")
+            .to((Double) null)
+            .set("string")
+            .to("\u00e9t\u00e9")
+            .set("stringNull")
+            .to((String) null)
+            .set("bytes")
+            .to(bytes)
+            .set("bytesNull")
+            .to((ByteArray) null)
+            .set("timestamp")
+            .to(timestamp)
+            .set("commitTimestamp")
+            .to(Value.COMMIT_TIMESTAMP)
+            .set("timestampNull")
+            .to((Timestamp) null)
+            .set("date")
+            .to(date)
+            .set("dateNull")
+            .to((Date) null)
+            .set("intArr")
+            .toInt64Array(new long[] {1L, 2L})
+            .build();
+    Mutation compact =
+        Mutation.newCompactInsertBuilder(
+                "T",
+                "bool",
+                "boolNull",
+                "int",
+                "intNull",
+                "float",
+                "floatNull",
+                "string",
+                "stringNull",
+                "bytes",
+                "bytesNull",
+                "timestamp",
+                "commitTimestamp",
+                "timestampNull",
+                "date",
+                "dateNull",
+                "intArr")
+            .set("bool")
+            .to(true)
+            .set("boolNull")
+            .to((Boolean) null)
+            .set("int")
+            .to(Long.MIN_VALUE)
+            .set("intNull")
+            .to((Long) null)
+            .set("float")
+            .to(Double.NaN)
+            .set("floatNull")
+            .to((Double) null)
+            .set("string")
+            .to("\u00e9t\u00e9")
+            .set("stringNull")
+            .to((String) null)
+            .set("bytes")
+            .to(bytes)
+            .set("bytesNull")
+            .to((ByteArray) null)
+            .set("timestamp")
+            .to(timestamp)
+            .set("commitTimestamp")
+            .to(Value.COMMIT_TIMESTAMP)
+            .set("timestampNull")
+            .to((Timestamp) null)
+            .set("date")
+            .to(date)
+            .set("dateNull")
+            .to((Date) null)
+            .set("intArr")
+            .toInt64Array(new long[] {1L, 2L})
+            .endRow()
+            .build();
+
+    List<com.google.spanner.v1.Mutation> regularProto = new ArrayList<>();
+    Mutation.toProto(Collections.singleton(regular), regularProto);
+    List<com.google.spanner.v1.Mutation> compactProto = new ArrayList<>();
+    Mutation.toProto(Collections.singleton(compact), compactProto);
+    assertThat(compactProto).isEqualTo(regularProto);
+  }
+
+  @Test
+  public void compactJavaSerialization() {
+    reserializeAndAssert(
+        Mutation.newCompactInsertBuilder("test", "C1", "C2")
+            .set("C1")
+            .to("V1")
+            .set("C2")
+            .toInt64Array(new long[] {1L, 2L})
+            .endRow()
+            .build());
+  }
+
   private Mutation.WriteBuilder appendAllTypes(Mutation.WriteBuilder builder) {
     return builder
         .set("bool")
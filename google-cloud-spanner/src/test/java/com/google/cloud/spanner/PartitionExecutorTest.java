@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.spanner.PartitionExecutor.PartitionConsumer;
+import com.google.cloud.spanner.PartitionExecutor.PartitionConsumerFactory;
+import com.google.cloud.spanner.PartitionExecutor.PartitionStats;
+import com.google.cloud.spanner.PartitionExecutor.RowCallback;
+import com.google.cloud.spanner.PartitionExecutor.RowStream;
+import com.google.common.base.Stopwatch;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+@RunWith(JUnit4.class)
+public class PartitionExecutorTest {
+  private static final Type TYPE = Type.struct(Type.StructField.of("ID", Type.int64()));
+  private static final int PARTITIONS = 10;
+  private static final int ROWS_PER_PARTITION = 100;
+
+  private BatchReadOnlyTransaction transaction;
+  private List<Partition> partitions;
+
+  @Before
+  public void setUp() {
+    transaction = mock(BatchReadOnlyTransaction.class);
+    partitions = new ArrayList<>();
+    for (int p = 0; p < PARTITIONS; p++) {
+      Partition partition = createPartition(p);
+      partitions.add(partition);
+      final List<Struct> rows = new ArrayList<>();
+      for (int r = 0; r < ROWS_PER_PARTITION; r++) {
+        rows.add(Struct.newBuilder().set("ID").to(p * ROWS_PER_PARTITION + r).build());
+      }
+      when(transaction.execute(partition))
+          .thenAnswer(
+              new Answer<ResultSet>() {
+                @Override
+                public ResultSet answer(InvocationOnMock invocation) {
+                  return ResultSets.forRows(TYPE, rows);
+                }
+              });
+    }
+  }
+
+  private static Partition createPartition(int index) {
+    return Partition.createQueryPartition(
+        ByteString.copyFromUtf8("partition-" + index),
+        PartitionOptions.getDefaultInstance(),
+        Statement.of("SELECT ID FROM FOO"),
+        Options.fromQueryOptions());
+  }
+
+  @Test
+  public void testExecuteWithConsumers() {
+    final Map<Partition, AtomicLong> sums = new ConcurrentHashMap<>();
+    final Map<Partition, PartitionStats> completed = new ConcurrentHashMap<>();
+    List<PartitionStats> stats =
+        PartitionExecutor.newBuilder(transaction)
+            .setParallelism(4)
+            .build()
+            .execute(
+                partitions,
+                new PartitionConsumerFactory() {
+                  @Override
+                  public PartitionConsumer create(final Partition partition) {
+                    final AtomicLong sum = new AtomicLong();
+                    sums.put(partition, sum);
+                    return new PartitionConsumer() {
+                      @Override
+                      public void onRow(Struct row) {
+                        sum.addAndGet(row.getLong(0));
+                      }
+
+                      @Override
+                      public void onComplete(PartitionStats stats) {
+                        completed.put(partition, stats);
+                      }
+                    };
+                  }
+                });
+    assertThat(stats).hasSize(PARTITIONS);
+    assertThat(completed).hasSize(PARTITIONS);
+    for (int p = 0; p < PARTITIONS; p++) {
+      assertThat(stats.get(p).getPartition()).isEqualTo(partitions.get(p));
+      assertThat(stats.get(p).getRowCount()).isEqualTo(ROWS_PER_PARTITION);
+      assertThat(stats.get(p).getAttempts()).isEqualTo(1);
+      long first = p * ROWS_PER_PARTITION;
+      long last = first + ROWS_PER_PARTITION - 1;
+      assertThat(sums.get(partitions.get(p)).get())
+          .isEqualTo((first + last) * ROWS_PER_PARTITION / 2);
+    }
+  }
+
+  @Test
+  public void testExecuteMerged() {
+    List<Long> ids = new ArrayList<>();
+    try (RowStream stream =
+        PartitionExecutor.newBuilder(transaction)
+            .setParallelism(3)
+            .setMaxBufferedRows(5)
+            .build()
+            .executeMerged(partitions)) {
+      while (stream.next()) {
+        ids.add(stream.getCurrentRow().getLong(0));
+      }
+      assertThat(stream.getStats()).hasSize(PARTITIONS);
+    }
+    assertThat(ids).hasSize(PARTITIONS * ROWS_PER_PARTITION);
+    Collections.sort(ids);
+    for (int i = 0; i < ids.size(); i++) {
+      assertThat(ids.get(i)).isEqualTo((long) i);
+    }
+  }
+
+  @Test
+  public void testExecuteMergedWithoutPartitions() {
+    try (RowStream stream =
+        PartitionExecutor.newBuilder(transaction)
+            .build()
+            .executeMerged(Collections.<Partition>emptyList())) {
+      assertThat(stream.next()).isFalse();
+    }
+  }
+
+  @Test
+  public void testExecuteUnordered() {
+    final Map<Partition, AtomicLong> counts = new ConcurrentHashMap<>();
+    List<PartitionStats> stats =
+        PartitionExecutor.newBuilder(transaction)
+            .setParallelism(4)
+            .setMaxBufferedRows(1)
+            .build()
+            .executeUnordered(
+                partitions,
+                new RowCallback() {
+                  @Override
+                  public void onRow(Partition partition, Struct row) {
+                    assertThat(row.getLong(0) / ROWS_PER_PARTITION)
+                        .isEqualTo((long) partitions.indexOf(partition));
+                    if (!counts.containsKey(partition)) {
+                      counts.put(partition, new AtomicLong());
+                    }
+                    counts.get(partition).incrementAndGet();
+                  }
+                });
+    assertThat(stats).hasSize(PARTITIONS);
+    for (Partition partition : partitions) {
+      assertThat(counts.get(partition).get()).isEqualTo(ROWS_PER_PARTITION);
+    }
+  }
+
+  @Test
+  public void testRetryPartitionBeforeFirstRow() {
+    final Partition partition = partitions.get(0);
+    final AtomicLong attempts = new AtomicLong();
+    when(transaction.execute(partition))
+        .thenAnswer(
+            new Answer<ResultSet>() {
+              @Override
+              public ResultSet answer(InvocationOnMock invocation) {
+                if (attempts.incrementAndGet() == 1L) {
+                  throw SpannerExceptionFactory.newSpannerException(
+                      ErrorCode.UNAVAILABLE, "try again");
+                }
+                return ResultSets.forRows(
+                    TYPE, Collections.singletonList(Struct.newBuilder().set("ID").to(1L).build()));
+              }
+            });
+    List<PartitionStats> stats =
+        PartitionExecutor.newBuilder(transaction)
+            .build()
+            .executeUnordered(
+                Collections.singletonList(partition),
+                new RowCallback() {
+                  @Override
+                  public void onRow(Partition partition, Struct row) {}
+                });
+    assertThat(stats).hasSize(1);
+    assertThat(stats.get(0).getAttempts()).isEqualTo(2);
+    assertThat(stats.get(0).getRowCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void testNonRetryableErrorIsPropagated() {
+    when(transaction.execute(partitions.get(PARTITIONS - 1)))
+        .thenThrow(
+            SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "invalid"));
+    try (RowStream stream =
+        PartitionExecutor.newBuilder(transaction)
+            .setParallelism(2)
+            .setMaxBufferedRows(2)
+            .build()
+            .executeMerged(partitions)) {
+      while (stream.next()) {}
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    }
+    try {
+      PartitionExecutor.newBuilder(transaction)
+          .build()
+          .execute(
+              partitions,
+              new PartitionConsumerFactory() {
+                @Override
+                public PartitionConsumer create(Partition partition) {
+                  return new PartitionConsumer() {
+                    @Override
+                    public void onRow(Struct row) {}
+
+                    @Override
+                    public void onComplete(PartitionStats stats) {}
+                  };
+                }
+              });
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    }
+  }
+
+  @Test
+  public void testFailureOfLastPartitionCancelsSlowFirstPartition() {
+    when(transaction.execute(partitions.get(PARTITIONS - 1)))
+        .thenThrow(
+            SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "invalid"));
+    final Partition slowPartition = partitions.get(0);
+    final CountDownLatch neverReleased = new CountDownLatch(1);
+    Stopwatch watch = Stopwatch.createStarted();
+    try {
+      PartitionExecutor.newBuilder(transaction)
+          .setParallelism(PARTITIONS)
+          .build()
+          .execute(
+              partitions,
+              new PartitionConsumerFactory() {
+                @Override
+                public PartitionConsumer create(final Partition partition) {
+                  return new PartitionConsumer() {
+                    @Override
+                    public void onRow(Struct row) {
+                      if (partition.equals(slowPartition)) {
+                        try {
+                          neverReleased.await(30L, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                          throw SpannerExceptionFactory.propagateInterrupt(e);
+                        }
+                      }
+                    }
+
+                    @Override
+                    public void onComplete(PartitionStats stats) {}
+                  };
+                }
+              });
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    }
+    assertThat(watch.elapsed(TimeUnit.SECONDS)).isLessThan(30L);
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.PartitionExecutor.PartitionConsumer;
+import com.google.cloud.spanner.PartitionExecutor.PartitionConsumerFactory;
+import com.google.cloud.spanner.PartitionExecutor.PartitionStats;
+import com.google.common.base.Charsets;
+import com.google.common.io.FileWriteMode;
+import com.google.common.io.Files;
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PartitionJournalTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final BatchTransactionId TRANSACTION_ID =
+      new BatchTransactionId(
+          "projects/p/instances/i/databases/d/sessions/s",
+          ByteString.copyFromUtf8("txn"),
+          Timestamp.ofTimeMicroseconds(1000L));
+
+  private File file;
+  private List<Partition> partitions;
+
+  @Before
+  public void setUp() {
+    file = new File(folder.getRoot(), "export.journal");
+    partitions = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      partitions.add(
+          Partition.createQueryPartition(
+              ByteString.copyFromUtf8("partition-" + i),
+              PartitionOptions.getDefaultInstance(),
+              Statement.of("SELECT * FROM FOO"),
+              Options.fromQueryOptions()));
+    }
+  }
+
+  @Test
+  public void testCreateAndResume() throws IOException {
+    try (PartitionJournal journal = PartitionJournal.create(file, TRANSACTION_ID, partitions)) {
+      assertThat(journal.getUnfinishedPartitions()).isEqualTo(partitions);
+      journal.markCompleted(partitions.get(1), 10L);
+      journal.markCompleted(partitions.get(3), 20L);
+      // Marking a partition twice is a no-op.
+      journal.markCompleted(partitions.get(3), 20L);
+      assertThat(journal.isCompleted(partitions.get(1))).isTrue();
+      assertThat(journal.isCompleted(partitions.get(2))).isFalse();
+    }
+    try (PartitionJournal journal = PartitionJournal.open(file)) {
+      assertThat(journal.getBatchTransactionId()).isEqualTo(TRANSACTION_ID);
+      assertThat(journal.getPartitions()).isEqualTo(partitions);
+      assertThat(journal.getUnfinishedPartitions())
+          .containsExactly(partitions.get(0), partitions.get(2), partitions.get(4))
+          .inOrder();
+      assertThat(journal.getCompletedRowCount()).isEqualTo(30L);
+      journal.markCompleted(partitions.get(0), 5L);
+    }
+    try (PartitionJournal journal = PartitionJournal.open(file)) {
+      assertThat(journal.getUnfinishedPartitions())
+          .containsExactly(partitions.get(2), partitions.get(4))
+          .inOrder();
+      assertThat(journal.getCompletedRowCount()).isEqualTo(35L);
+    }
+  }
+
+  @Test
+  public void testCreateFailsIfFileExists() throws IOException {
+    PartitionJournal.create(file, TRANSACTION_ID, partitions).close();
+    try {
+      PartitionJournal.create(file, TRANSACTION_ID, partitions);
+      fail("missing expected exception");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("already exists");
+    }
+  }
+
+  @Test
+  public void testOpenIgnoresIncompleteLastRecord() throws IOException {
+    try (PartitionJournal journal = PartitionJournal.create(file, TRANSACTION_ID, partitions)) {
+      journal.markCompleted(partitions.get(0), 1L);
+    }
+    Files.asCharSink(file, Charsets.UTF_8, FileWriteMode.APPEND).write("C 1");
+    try (PartitionJournal journal = PartitionJournal.open(file)) {
+      assertThat(journal.getUnfinishedPartitions()).hasSize(4);
+      assertThat(journal.isCompleted(partitions.get(1))).isFalse();
+      journal.markCompleted(partitions.get(2), 1L);
+    }
+    // The incomplete record should have been removed, so that the journal can be opened again.
+    try (PartitionJournal journal = PartitionJournal.open(file)) {
+      assertThat(journal.getUnfinishedPartitions()).hasSize(3);
+      assertThat(journal.isCompleted(partitions.get(1))).isFalse();
+      assertThat(journal.isCompleted(partitions.get(2))).isTrue();
+    }
+  }
+
+  @Test
+  public void testOpenFailsForIncompleteHeader() throws IOException {
+    PartitionJournal.create(file, TRANSACTION_ID, partitions).close();
+    byte[] content = Files.toByteArray(file);
+    // Remove the last partition record, both completely and partially.
+    int lastRecordStart = content.length - 1;
+    while (content[lastRecordStart - 1] != '\n') {
+      lastRecordStart--;
+    }
+    for (int length : new int[] {lastRecordStart, lastRecordStart + 10}) {
+      Files.write(Arrays.copyOf(content, length), file);
+      try {
+        PartitionJournal.open(file);
+        fail("missing expected exception");
+      } catch (IOException e) {
+        // expected
+      }
+      // The file must not have been truncated.
+      assertThat(file.length()).isEqualTo((long) length);
+    }
+  }
+
+  @Test
+  public void testUnknownPartition() throws IOException {
+    try (PartitionJournal journal =
+        PartitionJournal.create(file, TRANSACTION_ID, partitions.subList(0, 2))) {
+      try {
+        journal.markCompleted(partitions.get(4), 1L);
+        fail("missing expected exception");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testJournaledConsumers() throws IOException {
+    Type type = Type.struct(Type.StructField.of("ID", Type.int64()));
+    BatchReadOnlyTransaction transaction = mock(BatchReadOnlyTransaction.class);
+    for (Partition partition : partitions) {
+      when(transaction.execute(partition))
+          .thenReturn(
+              ResultSets.forRows(
+                  type, Collections.singletonList(Struct.newBuilder().set("ID").to(1L).build())));
+    }
+    final AtomicLong rows = new AtomicLong();
+    try (PartitionJournal journal = PartitionJournal.create(file, TRANSACTION_ID, partitions)) {
+      journal.setMaxUnsyncedRecords(2);
+      PartitionExecutor.newBuilder(transaction)
+          .setParallelism(2)
+          .build()
+          .execute(
+              journal.getUnfinishedPartitions(),
+              journal.journaled(
+                  new PartitionConsumerFactory() {
+                    @Override
+                    public PartitionConsumer create(Partition partition) {
+                      return new PartitionConsumer() {
+                        @Override
+                        public void onRow(Struct row) {
+                          rows.incrementAndGet();
+                        }
+
+                        @Override
+                        public void onComplete(PartitionStats stats) {}
+                      };
+                    }
+                  }));
+      assertThat(journal.getUnfinishedPartitions()).isEmpty();
+    }
+    assertThat(rows.get()).isEqualTo(5L);
+    try (PartitionJournal journal = PartitionJournal.open(file)) {
+      assertThat(journal.getUnfinishedPartitions()).isEmpty();
+      assertThat(journal.getCompletedRowCount()).isEqualTo(5L);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.spanner.PartitionExecutor.RowCallback;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+@RunWith(JUnit4.class)
+public class PartitionedRowsTest {
+  private static final Type TYPE = Type.struct(Type.StructField.of("ID", Type.int64()));
+  private static final int PARTITIONS = 7;
+  private static final int ROWS_PER_PARTITION = 3;
+
+  private BatchReadOnlyTransaction transaction;
+  private List<Partition> partitions;
+
+  @Before
+  public void setUp() {
+    transaction = mock(BatchReadOnlyTransaction.class);
+    partitions = new ArrayList<>();
+    for (int p = 0; p < PARTITIONS; p++) {
+      Partition partition =
+          Partition.createQueryPartition(
+              ByteString.copyFromUtf8("partition-" + p),
+              PartitionOptions.getDefaultInstance(),
+              Statement.of("SELECT ID FROM FOO"),
+              Options.fromQueryOptions());
+      partitions.add(partition);
+      final List<Struct> rows = new ArrayList<>();
+      for (int r = 0; r < ROWS_PER_PARTITION; r++) {
+        rows.add(Struct.newBuilder().set("ID").to(p * ROWS_PER_PARTITION + r).build());
+      }
+      when(transaction.execute(partition))
+          .thenAnswer(
+              new Answer<ResultSet>() {
+                @Override
+                public ResultSet answer(InvocationOnMock invocation) {
+                  return ResultSets.forRows(TYPE, rows);
+                }
+              });
+    }
+  }
+
+  @Test
+  public void testIterateSequentially() {
+    long expected = 0L;
+    for (Struct row : PartitionedRows.of(transaction, partitions)) {
+      assertThat(row.getLong(0)).isEqualTo(expected++);
+    }
+    assertThat(expected).isEqualTo(PARTITIONS * ROWS_PER_PARTITION);
+  }
+
+  @Test
+  public void testIteratorIsLazy() {
+    Iterator<Struct> iterator = PartitionedRows.of(transaction, partitions).iterator();
+    assertThat(iterator.next().getLong(0)).isEqualTo(0L);
+    verify(transaction, never()).execute(partitions.get(1));
+  }
+
+  @Test
+  public void testSplit() {
+    PartitionedRows rows = PartitionedRows.of(transaction, partitions);
+    List<PartitionedRows> parts = rows.split();
+    assertThat(parts).hasSize(2);
+    assertThat(parts.get(0).getPartitions()).isEqualTo(partitions.subList(0, 3));
+    assertThat(parts.get(1).getPartitions()).isEqualTo(partitions.subList(3, PARTITIONS));
+
+    PartitionedRows single = PartitionedRows.of(transaction, partitions.subList(0, 1));
+    assertThat(single.split()).containsExactly(single);
+  }
+
+  @Test
+  public void testForEachParallel() {
+    final ConcurrentLinkedQueue<Long> ids = new ConcurrentLinkedQueue<>();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      PartitionedRows.of(transaction, partitions)
+          .forEachParallel(
+              pool,
+              new RowCallback() {
+                @Override
+                public void onRow(Partition partition, Struct row) {
+                  ids.add(row.getLong(0));
+                }
+              });
+    } finally {
+      pool.shutdown();
+    }
+    List<Long> sorted = new ArrayList<>(ids);
+    Collections.sort(sorted);
+    ImmutableList.Builder<Long> expected = ImmutableList.builder();
+    for (long i = 0; i < PARTITIONS * ROWS_PER_PARTITION; i++) {
+      expected.add(i);
+    }
+    assertThat(sorted).isEqualTo(expected.build());
+  }
+}
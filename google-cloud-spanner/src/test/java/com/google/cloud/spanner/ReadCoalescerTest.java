@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.spi.v1.SpannerRpc;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.spanner.v1.PartialResultSet;
+import com.google.spanner.v1.ResultSetMetadata;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+@RunWith(JUnit4.class)
+public class ReadCoalescerTest {
+  private static final Struct ROW = Struct.newBuilder().set("COL1").to(1L).build();
+  private static final TimestampBound STALE =
+      TimestampBound.ofExactStaleness(15L, TimeUnit.SECONDS);
+
+  /** Creates read contexts whose single-row reads block until the given latch is released. */
+  private static ReadHedger.ReadContextFactory blockingContexts(
+      final CountDownLatch release, final AtomicInteger created) {
+    return new ReadHedger.ReadContextFactory() {
+      @Override
+      public ReadContext create() {
+        created.incrementAndGet();
+        ReadContext context = mock(ReadContext.class);
+        when(context.readRow(anyString(), any(Key.class), any(Iterable.class)))
+            .thenAnswer(
+                new Answer<Struct>() {
+                  @Override
+                  public Struct answer(InvocationOnMock invocation) throws Throwable {
+                    release.await();
+                    return ROW;
+                  }
+                });
+        return context;
+      }
+    };
+  }
+
+  @Test
+  public void testIsCoalescable() {
+    assertThat(ReadCoalescer.isCoalescable(TimestampBound.strong())).isFalse();
+    assertThat(ReadCoalescer.isCoalescable(STALE)).isTrue();
+    assertThat(ReadCoalescer.isCoalescable(TimestampBound.ofMaxStaleness(10L, TimeUnit.SECONDS)))
+        .isTrue();
+  }
+
+  @Test
+  public void testCoalesceIdenticalReads() throws Exception {
+    final ReadCoalescer coalescer = new ReadCoalescer();
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger created = new AtomicInteger();
+    final int numReads = 8;
+    ListeningExecutorService executor =
+        MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(numReads));
+    try {
+      List<ListenableFuture<Struct>> results = new ArrayList<>(numReads);
+      for (int i = 0; i < numReads; i++) {
+        results.add(
+            executor.submit(
+                new Callable<Struct>() {
+                  @Override
+                  public Struct call() {
+                    try (ReadContext context =
+                        coalescer.wrap(STALE, blockingContexts(release, created))) {
+                      return context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"));
+                    }
+                  }
+                }));
+      }
+      while (coalescer.getCoalescedReads() < numReads - 1) {
+        Thread.sleep(1L);
+      }
+      release.countDown();
+      for (Struct row : Futures.allAsList(results).get()) {
+        assertThat(row).isEqualTo(ROW);
+      }
+      assertThat(created.get()).isEqualTo(1);
+      assertThat(coalescer.getSharedReads()).isEqualTo(1L);
+      assertThat(coalescer.getCoalescedReads()).isEqualTo(numReads - 1L);
+      assertThat(coalescer.getInFlightReads()).isEqualTo(0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Returns a row of a result set whose columns have not been decoded yet. */
+  private static Struct undecodedRow(int columns) {
+    AbstractResultSet.GrpcStreamIterator stream = new AbstractResultSet.GrpcStreamIterator(10);
+    stream.setCall(mock(SpannerRpc.StreamingCall.class));
+    List<Type.StructField> fields = new ArrayList<>(columns);
+    PartialResultSet.Builder partialResultSet = PartialResultSet.newBuilder();
+    for (int i = 0; i < columns; i++) {
+      fields.add(Type.StructField.of("COL" + i, Type.timestamp()));
+      partialResultSet.addValues(
+          com.google.protobuf.Value.newBuilder()
+              .setStringValue(String.format("2020-07-01T10:00:%02d.123456Z", i)));
+    }
+    partialResultSet.setMetadata(
+        ResultSetMetadata.newBuilder().setRowType(Type.struct(fields).toProto().getStructType()));
+    stream.consumer().onPartialResultSet(partialResultSet.build());
+    stream.consumer().onCompleted();
+    try (ResultSet resultSet =
+        new AbstractResultSet.GrpcResultSet(stream, mock(AbstractResultSet.Listener.class))) {
+      assertThat(resultSet.next()).isTrue();
+      return resultSet.getCurrentRowAsStruct();
+    }
+  }
+
+  @Test
+  public void testCoalescedRowCanBeReadConcurrently() throws Exception {
+    final int numColumns = 32;
+    final Struct row = undecodedRow(numColumns);
+    final ReadCoalescer coalescer = new ReadCoalescer();
+    final CountDownLatch release = new CountDownLatch(1);
+    final int numReads = 8;
+    final ReadHedger.ReadContextFactory contexts =
+        new ReadHedger.ReadContextFactory() {
+          @Override
+          public ReadContext create() {
+            ReadContext context = mock(ReadContext.class);
+            when(context.readRow(anyString(), any(Key.class), any(Iterable.class)))
+                .thenAnswer(
+                    new Answer<Struct>() {
+                      @Override
+                      public Struct answer(InvocationOnMock invocation) throws Throwable {
+                        release.await();
+                        return row;
+                      }
+                    });
+            return context;
+          }
+        };
+    ListeningExecutorService executor =
+        MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(numReads));
+    try {
+      List<ListenableFuture<List<Timestamp>>> results = new ArrayList<>(numReads);
+      for (int i = 0; i < numReads; i++) {
+        results.add(
+            executor.submit(
+                new Callable<List<Timestamp>>() {
+                  @Override
+                  public List<Timestamp> call() {
+                    Struct coalesced;
+                    try (ReadContext context = coalescer.wrap(STALE, contexts)) {
+                      coalesced = context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"));
+                    }
+                    List<Timestamp> values = new ArrayList<>(numColumns);
+                    for (int col = 0; col < numColumns; col++) {
+                      values.add(coalesced.getTimestamp(col));
+                    }
+                    return values;
+                  }
+                }));
+      }
+      while (coalescer.getCoalescedReads() < numReads - 1) {
+        Thread.sleep(1L);
+      }
+      release.countDown();
+      List<Timestamp> expected = new ArrayList<>(numColumns);
+      for (int col = 0; col < numColumns; col++) {
+        expected.add(Timestamp.parseTimestamp(String.format("2020-07-01T10:00:%02d.123456Z", col)));
+      }
+      for (List<Timestamp> values : Futures.allAsList(results).get()) {
+        assertThat(values).isEqualTo(expected);
+      }
+      assertThat(coalescer.getSharedReads()).isEqualTo(1L);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testDifferentReadsAreNotCoalesced() {
+    ReadCoalescer coalescer = new ReadCoalescer();
+    CountDownLatch release = new CountDownLatch(0);
+    AtomicInteger created = new AtomicInteger();
+    try (ReadContext context = coalescer.wrap(STALE, blockingContexts(release, created))) {
+      assertThat(context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"))).isEqualTo(ROW);
+    }
+    try (ReadContext context = coalescer.wrap(STALE, blockingContexts(release, created))) {
+      assertThat(context.readRow("FOO", Key.of(2L), Arrays.asList("COL1"))).isEqualTo(ROW);
+    }
+    assertThat(created.get()).isEqualTo(2);
+    assertThat(coalescer.getSharedReads()).isEqualTo(2L);
+    assertThat(coalescer.getCoalescedReads()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testSingleUse() {
+    ReadCoalescer coalescer = new ReadCoalescer();
+    AtomicInteger created = new AtomicInteger();
+    try (ReadContext context =
+        coalescer.wrap(STALE, blockingContexts(new CountDownLatch(0), created))) {
+      context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"));
+      try {
+        context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"));
+        fail("missing expected exception");
+      } catch (IllegalStateException e) {
+        // ignore, this is the expected exception.
+      }
+    }
+  }
+
+  @Test
+  public void testUnusedContextDoesNotCreateDelegate() {
+    ReadCoalescer coalescer = new ReadCoalescer();
+    AtomicInteger created = new AtomicInteger();
+    coalescer.wrap(STALE, blockingContexts(new CountDownLatch(0), created)).close();
+    assertThat(created.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testErrorIsPropagated() {
+    ReadCoalescer coalescer = new ReadCoalescer();
+    ReadContext context =
+        coalescer.wrap(
+            STALE,
+            new ReadHedger.ReadContextFactory() {
+              @Override
+              public ReadContext create() {
+                ReadContext context = mock(ReadContext.class);
+                when(context.readRow(anyString(), any(Key.class), any(Iterable.class)))
+                    .thenThrow(
+                        SpannerExceptionFactory.newSpannerException(
+                            ErrorCode.NOT_FOUND, "Table not found"));
+                return context;
+              }
+            });
+    try {
+      context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"));
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.NOT_FOUND);
+    }
+    assertThat(coalescer.getInFlightReads()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.threeten.bp.Duration;
+
+@RunWith(JUnit4.class)
+public class ReadHedgerTest {
+  private static final Struct ROW = Struct.newBuilder().set("COL1").to(1L).build();
+
+  /** A single-row result set that blocks until it is closed or the given time has passed. */
+  private static final class SlowResultSet extends ForwardingResultSet {
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final long delayMillis;
+    private boolean consumed;
+
+    private SlowResultSet(long delayMillis) {
+      super(ResultSets.forRows(ROW.getType(), Arrays.asList(ROW)));
+      this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public boolean next() {
+      if (!consumed) {
+        consumed = true;
+        try {
+          if (closed.await(delayMillis, TimeUnit.MILLISECONDS)) {
+            throw SpannerExceptionFactory.newSpannerException(ErrorCode.CANCELLED, "cancelled");
+          }
+        } catch (InterruptedException e) {
+          throw SpannerExceptionFactory.propagateInterrupt(e);
+        }
+      }
+      return super.next();
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+      super.close();
+    }
+
+    private boolean isClosed() {
+      return closed.getCount() == 0L;
+    }
+  }
+
+  private ReadHedger hedger;
+
+  @After
+  public void tearDown() {
+    if (hedger != null) {
+      hedger.shutdown();
+    }
+  }
+
+  private static ReadContext contextReturning(final ResultSet resultSet) {
+    ReadContext context = mock(ReadContext.class);
+    when(context.read(anyString(), any(KeySet.class), any(Iterable.class))).thenReturn(resultSet);
+    return context;
+  }
+
+  private static ReadHedger.ReadContextFactory factoryReturning(
+      final ReadContext context, final AtomicInteger created) {
+    return new ReadHedger.ReadContextFactory() {
+      @Override
+      public ReadContext create() {
+        created.incrementAndGet();
+        return context;
+      }
+    };
+  }
+
+  @Test
+  public void testNoHedgeForFastRead() {
+    hedger =
+        new ReadHedger(
+            HedgingOptions.newBuilder()
+                .setDelay(Duration.ofMinutes(1L))
+                .setMaxHedgeRatio(1.0D)
+                .build());
+    AtomicInteger created = new AtomicInteger();
+    ReadContext context =
+        hedger.wrap(
+            contextReturning(new SlowResultSet(0L)),
+            factoryReturning(contextReturning(new SlowResultSet(0L)), created));
+
+    assertThat(context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"))).isEqualTo(ROW);
+    assertThat(created.get()).isEqualTo(0);
+    assertThat(hedger.getHedgeCount()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testHedgeForSlowRead() {
+    hedger =
+        new ReadHedger(
+            HedgingOptions.newBuilder()
+                .setDelay(Duration.ofMillis(1L))
+                .setMaxHedgeRatio(1.0D)
+                .build());
+    AtomicInteger created = new AtomicInteger();
+    SlowResultSet primary = new SlowResultSet(TimeUnit.MINUTES.toMillis(10L));
+    ReadContext context =
+        hedger.wrap(
+            contextReturning(primary),
+            factoryReturning(contextReturning(new SlowResultSet(0L)), created));
+
+    assertThat(context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"))).isEqualTo(ROW);
+    assertThat(created.get()).isEqualTo(1);
+    assertThat(hedger.getHedgeCount()).isEqualTo(1L);
+    // The primary read is cancelled when the hedged read returns first.
+    assertThat(primary.isClosed()).isTrue();
+  }
+
+  @Test
+  public void testHedgeBudget() {
+    hedger =
+        new ReadHedger(
+            HedgingOptions.newBuilder()
+                .setDelay(Duration.ofMillis(1L))
+                .setMaxHedgeRatio(0.5D)
+                .build());
+    AtomicInteger created = new AtomicInteger();
+    ReadContext context =
+        hedger.wrap(
+            contextReturning(new SlowResultSet(50L)),
+            factoryReturning(contextReturning(new SlowResultSet(50L)), created));
+
+    // The first read has only earned half a hedge.
+    assertThat(context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"))).isEqualTo(ROW);
+    assertThat(hedger.getHedgeCount()).isEqualTo(0L);
+    assertThat(created.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testHedgeContextIsClosedWhenReadFailsToStart() {
+    hedger =
+        new ReadHedger(
+            HedgingOptions.newBuilder()
+                .setDelay(Duration.ofMillis(1L))
+                .setMaxHedgeRatio(1.0D)
+                .build());
+    ReadContext hedgeContext = mock(ReadContext.class);
+    when(hedgeContext.read(anyString(), any(KeySet.class), any(Iterable.class)))
+        .thenThrow(
+            SpannerExceptionFactory.newSpannerException(ErrorCode.UNAVAILABLE, "unavailable"));
+    AtomicInteger created = new AtomicInteger();
+    ReadContext context =
+        hedger.wrap(
+            contextReturning(new SlowResultSet(200L)), factoryReturning(hedgeContext, created));
+
+    // The primary read returns the row, even though the hedged read failed.
+    assertThat(context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"))).isEqualTo(ROW);
+    assertThat(created.get()).isEqualTo(1);
+    verify(hedgeContext, timeout(5000L)).close();
+  }
+
+  @Test
+  public void testPrimaryFailure() {
+    hedger =
+        new ReadHedger(
+            HedgingOptions.newBuilder()
+                .setDelay(Duration.ofMinutes(1L))
+                .setMaxHedgeRatio(1.0D)
+                .build());
+    ReadContext primary = mock(ReadContext.class);
+    when(primary.read(anyString(), any(KeySet.class), any(Iterable.class)))
+        .thenAnswer(
+            new Answer<ResultSet>() {
+              @Override
+              public ResultSet answer(InvocationOnMock invocation) {
+                throw SpannerExceptionFactory.newSpannerException(
+                    ErrorCode.NOT_FOUND, "Table not found");
+              }
+            });
+    AtomicInteger created = new AtomicInteger();
+    ReadContext context =
+        hedger.wrap(primary, factoryReturning(contextReturning(new SlowResultSet(0L)), created));
+    try {
+      context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"));
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.NOT_FOUND);
+    }
+    assertThat(created.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDelayPercentile() {
+    hedger = new ReadHedger(HedgingOptions.newBuilder().setDelayPercentile(90.0D).build());
+    // No hedging until enough latencies have been observed.
+    assertThat(hedger.getDelayNanos()).isEqualTo(-1L);
+    for (int i = 1; i < ReadHedger.MIN_LATENCY_SAMPLES; i++) {
+      hedger.recordLatency(i);
+      assertThat(hedger.getDelayNanos()).isEqualTo(-1L);
+    }
+    hedger.recordLatency(ReadHedger.MIN_LATENCY_SAMPLES);
+    // The 90th percentile of 1..16 is 15.
+    assertThat(hedger.getDelayNanos()).isEqualTo(15L);
+  }
+
+  @Test
+  public void testLatencyIsMeasuredFromStartOfRead() {
+    final AtomicLong nanos = new AtomicLong();
+    final List<Long> recorded = Collections.synchronizedList(new ArrayList<Long>());
+    hedger =
+        new ReadHedger(
+            HedgingOptions.newBuilder()
+                .setDelay(Duration.ofMillis(1L))
+                .setMaxHedgeRatio(1.0D)
+                .build(),
+            new Ticker() {
+              @Override
+              public long read() {
+                return nanos.get();
+              }
+            }) {
+          @Override
+          void recordLatency(long latencyNanos) {
+            recorded.add(latencyNanos);
+            super.recordLatency(latencyNanos);
+          }
+        };
+    final ReadContext hedgeContext = contextReturning(new SlowResultSet(0L));
+    ReadContext context =
+        hedger.wrap(
+            contextReturning(new SlowResultSet(TimeUnit.MINUTES.toMillis(10L))),
+            new ReadHedger.ReadContextFactory() {
+              @Override
+              public ReadContext create() {
+                // Simulate that the primary read has been running for 100ms when it is hedged.
+                nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100L));
+                return hedgeContext;
+              }
+            });
+
+    assertThat(context.readRow("FOO", Key.of(1L), Arrays.asList("COL1"))).isEqualTo(ROW);
+    // The hedged attempt returned immediately, but the read as a whole took 100ms.
+    assertThat(recorded).containsExactly(TimeUnit.MILLISECONDS.toNanos(100L));
+  }
+}
@@ -27,6 +27,7 @@ import com.google.common.primitives.Booleans;
 import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Longs;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -327,4 +328,18 @@ public class ResultSetsTest {
       assertNotNull(ex.getMessage());
     }
   }
+
+  @Test
+  public void testResultSetToIterator() {
+    ResultSet resultSet =
+        ResultSets.forRows(
+            Type.struct(Type.StructField.of("ID", Type.int64())),
+            Arrays.asList(
+                Struct.newBuilder().set("ID").to(1L).build(),
+                Struct.newBuilder().set("ID").to(2L).build()));
+    Iterator<Struct> iterator = ResultSets.toIterator(resultSet);
+    assertThat(iterator.next().getLong(0)).isEqualTo(1L);
+    assertThat(iterator.next().getLong(0)).isEqualTo(2L);
+    assertThat(iterator.hasNext()).isFalse();
+  }
 }
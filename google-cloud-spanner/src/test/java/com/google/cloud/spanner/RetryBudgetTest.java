@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.threeten.bp.Duration;
+
+@RunWith(JUnit4.class)
+public class RetryBudgetTest {
+
+  @Test
+  public void testRetriesUntilHalfOfTheTokensAreUsed() {
+    RetryBudget budget = new RetryBudget(RetryBudgetOptions.newBuilder().setMaxTokens(10).build());
+    for (int i = 0; i < 4; i++) {
+      assertThat(budget.tryRetry()).isTrue();
+    }
+    // The fifth retry would leave exactly half of the tokens.
+    assertThat(budget.tryRetry()).isFalse();
+    assertThat(budget.tryRetry()).isFalse();
+    assertThat(budget.getAbortedAttempts()).isEqualTo(6L);
+    assertThat(budget.getRetries()).isEqualTo(4L);
+    assertThat(budget.getBudgetExhausted()).isEqualTo(2L);
+    assertThat(budget.getTokens()).isEqualTo(4.0D);
+  }
+
+  @Test
+  public void testCommitsRefillTheBudget() {
+    RetryBudget budget =
+        new RetryBudget(
+            RetryBudgetOptions.newBuilder().setMaxTokens(4).setTokenRatio(0.5D).build());
+    assertThat(budget.tryRetry()).isTrue();
+    assertThat(budget.tryRetry()).isFalse();
+    assertThat(budget.getTokens()).isEqualTo(2.0D);
+
+    budget.recordSuccess();
+    budget.recordSuccess();
+    assertThat(budget.getTokens()).isEqualTo(3.0D);
+    assertThat(budget.tryRetry()).isFalse();
+    budget.recordSuccess();
+    budget.recordSuccess();
+    budget.recordSuccess();
+    assertThat(budget.tryRetry()).isTrue();
+
+    // The budget never exceeds the maximum number of tokens.
+    for (int i = 0; i < 100; i++) {
+      budget.recordSuccess();
+    }
+    assertThat(budget.getTokens()).isEqualTo(4.0D);
+  }
+
+  @Test
+  public void testBackoffScalesWithAbortRate() {
+    RetryBudget budget =
+        new RetryBudget(RetryBudgetOptions.newBuilder().setMaxBackoffMultiplier(3.0D).build());
+    Duration delay = Duration.ofMillis(100L);
+    assertThat(budget.getAbortRate()).isEqualTo(0.0D);
+    assertThat(budget.backoff(delay)).isEqualTo(delay);
+
+    for (int i = 0; i < 20; i++) {
+      budget.tryRetry();
+    }
+    double abortRate = budget.getAbortRate();
+    assertThat(abortRate).isGreaterThan(0.5D);
+    long maxNanos = (long) (delay.toNanos() * (1.0D + 2.0D * abortRate));
+    for (int i = 0; i < 100; i++) {
+      Duration backoff = budget.backoff(delay);
+      assertThat(backoff.toNanos()).isAtLeast(delay.toNanos());
+      assertThat(backoff.toNanos()).isAtMost(maxNanos);
+    }
+
+    for (int i = 0; i < 100; i++) {
+      budget.recordSuccess();
+    }
+    assertThat(budget.getAbortRate()).isLessThan(abortRate / 10.0D);
+  }
+
+  @Test
+  public void testOptions() {
+    RetryBudgetOptions options = RetryBudgetOptions.newBuilder().build();
+    assertThat(options.getMaxTokens()).isEqualTo(100);
+    assertThat(options.getTokenRatio()).isEqualTo(0.1D);
+    assertThat(options.getMaxBackoffMultiplier()).isEqualTo(4.0D);
+    try {
+      RetryBudgetOptions.newBuilder().setTokenRatio(0.0D);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // ignore, this is the expected exception.
+    }
+    try {
+      RetryBudgetOptions.newBuilder().setMaxTokens(1);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // ignore, this is the expected exception.
+    }
+  }
+}
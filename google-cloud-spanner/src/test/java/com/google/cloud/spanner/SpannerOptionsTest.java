@@ -21,6 +21,8 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.fail;
 
+import com.google.api.gax.core.ExecutorProvider;
+import com.google.api.gax.core.FixedExecutorProvider;
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.api.gax.rpc.ServerStreamingCallSettings;
 import com.google.api.gax.rpc.UnaryCallSettings;
@@ -36,6 +38,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -536,4 +540,162 @@ public class SpannerOptionsTest {
       // ignore, this is the expected exception.
     }
   }
+
+  @Test
+  public void testBatchDmlChunkSize() {
+    assertThat(SpannerOptions.newBuilder().setProjectId("p").build().getBatchDmlChunkSize())
+        .isEqualTo(0);
+    assertThat(
+            SpannerOptions.newBuilder()
+                .setProjectId("p")
+                .setBatchDmlChunkSize(100)
+                .build()
+                .getBatchDmlChunkSize())
+        .isEqualTo(100);
+    try {
+      SpannerOptions.newBuilder().setBatchDmlChunkSize(-1);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // ignore, this is the expected exception.
+    }
+  }
+
+  @Test
+  public void testLoadAwareChannelSelection() {
+    assertThat(SpannerOptions.newBuilder().setProjectId("p").build().isLoadAwareChannelSelection())
+        .isFalse();
+    SpannerOptions options =
+        SpannerOptions.newBuilder().setProjectId("p").setLoadAwareChannelSelection(true).build();
+    assertThat(options.isLoadAwareChannelSelection()).isTrue();
+    assertThat(options.toBuilder().build().isLoadAwareChannelSelection()).isTrue();
+  }
+
+  @Test
+  public void testMaxNumChannels() {
+    SpannerOptions options = SpannerOptions.newBuilder().setProjectId("p").build();
+    assertThat(options.getMaxNumChannels()).isEqualTo(options.getNumChannels());
+    assertThat(options.getMaxInFlightCallsPerChannel()).isEqualTo(50);
+
+    options =
+        SpannerOptions.newBuilder()
+            .setProjectId("p")
+            .setNumChannels(2)
+            .setMaxNumChannels(8)
+            .setMaxInFlightCallsPerChannel(20)
+            .build();
+    assertThat(options.getMaxNumChannels()).isEqualTo(8);
+    assertThat(options.getMaxInFlightCallsPerChannel()).isEqualTo(20);
+    assertThat(options.toBuilder().build().getMaxNumChannels()).isEqualTo(8);
+
+    // The maximum can not be lower than the number of channels.
+    options =
+        SpannerOptions.newBuilder()
+            .setProjectId("p")
+            .setNumChannels(4)
+            .setMaxNumChannels(2)
+            .build();
+    assertThat(options.getMaxNumChannels()).isEqualTo(4);
+    try {
+      SpannerOptions.newBuilder().setProjectId("p").setMaxNumChannels(1000).build();
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // ignore, this is the expected exception.
+    }
+  }
+
+  @Test
+  public void testHedgingOptions() {
+    assertThat(SpannerOptions.newBuilder().setProjectId("p").build().getHedgingOptions()).isNull();
+    HedgingOptions hedgingOptions =
+        HedgingOptions.newBuilder().setDelay(Duration.ofMillis(10L)).setMaxHedgeRatio(0.1D).build();
+    SpannerOptions options =
+        SpannerOptions.newBuilder().setProjectId("p").setHedgingOptions(hedgingOptions).build();
+    assertThat(options.getHedgingOptions()).isEqualTo(hedgingOptions);
+    assertThat(options.toBuilder().build().getHedgingOptions()).isEqualTo(hedgingOptions);
+    assertThat(HedgingOptions.newBuilder().build().getDelay()).isNull();
+    assertThat(HedgingOptions.newBuilder().build().getDelayPercentile()).isEqualTo(95.0D);
+    try {
+      HedgingOptions.newBuilder().setDelayPercentile(100.0D);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // ignore, this is the expected exception.
+    }
+    try {
+      HedgingOptions.newBuilder().setMaxHedgeRatio(0.0D);
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // ignore, this is the expected exception.
+    }
+  }
+
+  @Test
+  public void testCoalesceStaleReads() {
+    assertThat(SpannerOptions.newBuilder().setProjectId("p").build().isCoalesceStaleReads())
+        .isFalse();
+    SpannerOptions options =
+        SpannerOptions.newBuilder().setProjectId("p").setCoalesceStaleReads(true).build();
+    assertThat(options.isCoalesceStaleReads()).isTrue();
+    assertThat(options.toBuilder().build().isCoalesceStaleReads()).isTrue();
+  }
+
+  @Test
+  public void testCompressionPolicy() {
+    assertThat(SpannerOptions.newBuilder().setProjectId("p").build().getCompressionPolicy())
+        .isNull();
+    CompressionPolicy policy =
+        CompressionPolicy.newBuilder().setMinMessageSize(1024).setMethods("Commit").build();
+    SpannerOptions options =
+        SpannerOptions.newBuilder().setProjectId("p").setCompressionPolicy(policy).build();
+    assertThat(options.getCompressionPolicy()).isEqualTo(policy);
+    assertThat(options.toBuilder().build().getCompressionPolicy()).isEqualTo(policy);
+    try {
+      CompressionPolicy.newBuilder().setCompressorName("foo");
+      fail("missing expected exception");
+    } catch (IllegalArgumentException e) {
+      // ignore, this is the expected exception.
+    }
+  }
+
+  @Test
+  public void testRetryBudgetOptions() {
+    assertThat(SpannerOptions.newBuilder().setProjectId("p").build().getRetryBudgetOptions())
+        .isNull();
+    RetryBudgetOptions budget = RetryBudgetOptions.newBuilder().setMaxTokens(10).build();
+    SpannerOptions options =
+        SpannerOptions.newBuilder().setProjectId("p").setRetryBudgetOptions(budget).build();
+    assertThat(options.getRetryBudgetOptions()).isEqualTo(budget);
+    assertThat(options.toBuilder().build().getRetryBudgetOptions()).isEqualTo(budget);
+  }
+
+  @Test
+  public void testConcurrencyLimiterOptions() {
+    assertThat(SpannerOptions.newBuilder().setProjectId("p").build().getConcurrencyLimiterOptions())
+        .isNull();
+    ConcurrencyLimiterOptions limiter =
+        ConcurrencyLimiterOptions.newBuilder().setInitialLimit(5).build();
+    SpannerOptions options =
+        SpannerOptions.newBuilder().setProjectId("p").setConcurrencyLimiterOptions(limiter).build();
+    assertThat(options.getConcurrencyLimiterOptions()).isEqualTo(limiter);
+    assertThat(options.toBuilder().build().getConcurrencyLimiterOptions()).isEqualTo(limiter);
+  }
+
+  @Test
+  public void testTransportExecutorProvider() {
+    assertThat(SpannerOptions.newBuilder().setProjectId("p").build().getTransportExecutorProvider())
+        .isNull();
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ExecutorProvider provider = FixedExecutorProvider.create(executor);
+      SpannerOptions options =
+          SpannerOptions.newBuilder()
+              .setProjectId("p")
+              .setTransportExecutorProvider(provider)
+              .build();
+      assertThat(options.getTransportExecutorProvider()).isSameInstanceAs(provider);
+      assertThat(options.toBuilder().build().getTransportExecutorProvider())
+          .isSameInstanceAs(provider);
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
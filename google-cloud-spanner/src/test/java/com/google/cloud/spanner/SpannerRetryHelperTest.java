@@ -171,6 +171,49 @@ public class SpannerRetryHelperTest {
     assertThat(SpannerRetryHelper.runTxWithRetriesOnAborted(callable)).isEqualTo(2);
   }
 
+  @Test
+  public void retryBudgetExhausted() {
+    RetryBudget budget = new RetryBudget(RetryBudgetOptions.newBuilder().setMaxTokens(6).build());
+    final AtomicInteger attempts = new AtomicInteger();
+    Callable<Integer> callable =
+        new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            attempts.incrementAndGet();
+            throw abortedWithRetryInfo((int) TimeUnit.MILLISECONDS.toNanos(1));
+          }
+        };
+    try {
+      SpannerRetryHelper.runTxWithRetriesOnAborted(callable, budget);
+      fail("missing expected exception");
+    } catch (AbortedException e) {
+      assertThat(e.getMessage()).contains("retry budget");
+    }
+    // The budget allows two retries before less than half of the tokens would be left.
+    assertThat(attempts.get()).isEqualTo(3);
+    assertThat(budget.getRetries()).isEqualTo(2L);
+    assertThat(budget.getBudgetExhausted()).isEqualTo(1L);
+  }
+
+  @Test
+  public void retryBudgetRefilledByCommits() {
+    RetryBudget budget = new RetryBudget(RetryBudgetOptions.newBuilder().setMaxTokens(6).build());
+    final AtomicInteger attempts = new AtomicInteger();
+    Callable<Integer> callable =
+        new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            if (attempts.getAndIncrement() == 0) {
+              throw abortedWithRetryInfo((int) TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return 1 + 1;
+          }
+        };
+    assertThat(SpannerRetryHelper.runTxWithRetriesOnAborted(callable, budget)).isEqualTo(2);
+    assertThat(budget.getRetries()).isEqualTo(1L);
+    assertThat(budget.getTokens()).isWithin(0.001D).of(5.1D);
+  }
+
   @Test(expected = IllegalStateException.class)
   public void retryOnAbortedAndThenPropagateUnchecked() {
     final AtomicInteger attempts = new AtomicInteger();
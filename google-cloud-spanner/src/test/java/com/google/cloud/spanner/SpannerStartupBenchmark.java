@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.gax.core.FixedExecutorProvider;
+import com.google.api.gax.rpc.TransportChannelProvider;
+import com.google.cloud.NoCredentials;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the startup time and thread footprint of one or more {@link Spanner} instances.
+ * Run these benchmarks from the command line like this: <code>
+ * mvn clean test -DskipTests -Pbenchmark -Dbenchmark.name=SpannerStartupBenchmark
+ * </code>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, warmups = 0)
+@Measurement(batchSize = 1, iterations = 1, timeUnit = TimeUnit.MILLISECONDS)
+@Warmup(batchSize = 0, iterations = 0)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SpannerStartupBenchmark {
+  private static final String TEST_PROJECT = "my-project";
+  private static final String TEST_INSTANCE = "my-instance";
+  private static final String TEST_DATABASE = "my-database";
+
+  @State(Scope.Thread)
+  @AuxCounters(org.openjdk.jmh.annotations.AuxCounters.Type.EVENTS)
+  public static class MockServer {
+    private StandardBenchmarkMockServer mockServer;
+    private TransportChannelProvider channelProvider;
+    private ScheduledThreadPoolExecutor sharedExecutor;
+    private final List<Spanner> spanners = new ArrayList<>();
+    private int baseThreadCount;
+
+    /** The number of {@link Spanner} instances that are started by the benchmark. */
+    @Param({"1", "4"})
+    int numInstances;
+
+    /**
+     * Whether all {@link Spanner} instances should use one shared transport executor instead of the
+     * default executor that is created for each instance.
+     */
+    @Param({"false", "true"})
+    boolean sharedTransportExecutor;
+
+    /** AuxCounter for the number of threads that were started by the {@link Spanner} instances. */
+    public int numThreads;
+
+    @Setup(Level.Invocation)
+    public void setup() throws Exception {
+      mockServer = new StandardBenchmarkMockServer();
+      channelProvider = mockServer.start();
+      if (sharedTransportExecutor) {
+        sharedExecutor =
+            new ScheduledThreadPoolExecutor(
+                16,
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("benchmark-transport-%d")
+                    .build());
+      }
+      baseThreadCount = Thread.activeCount();
+    }
+
+    SpannerOptions createOptions() {
+      SpannerOptions.Builder builder =
+          SpannerOptions.newBuilder()
+              .setProjectId(TEST_PROJECT)
+              .setChannelProvider(channelProvider)
+              .setCredentials(NoCredentials.getInstance());
+      if (sharedExecutor != null) {
+        builder.setTransportExecutorProvider(FixedExecutorProvider.create(sharedExecutor));
+      }
+      return builder.build();
+    }
+
+    @TearDown(Level.Invocation)
+    public void teardown() throws Exception {
+      for (Spanner spanner : spanners) {
+        spanner.close();
+      }
+      spanners.clear();
+      if (sharedExecutor != null) {
+        sharedExecutor.shutdown();
+        sharedExecutor.awaitTermination(10L, TimeUnit.SECONDS);
+      }
+      mockServer.shutdown();
+    }
+  }
+
+  /**
+   * Measures the time needed to start the {@link Spanner} instances, initialize their session pools
+   * and execute the first query on each of them, and counts the threads that have been started.
+   */
+  @Benchmark
+  public void startup(final MockServer server) throws Exception {
+    for (int i = 0; i < server.numInstances; i++) {
+      Spanner spanner = server.createOptions().getService();
+      server.spanners.add(spanner);
+      DatabaseClientImpl client =
+          (DatabaseClientImpl)
+              spanner.getDatabaseClient(DatabaseId.of(TEST_PROJECT, TEST_INSTANCE, TEST_DATABASE));
+      // Wait until the session pool has initialized.
+      while (client.pool.getNumberOfSessionsInPool()
+          < spanner.getOptions().getSessionPoolOptions().getMinSessions()) {
+        Thread.sleep(1L);
+      }
+      try (ResultSet rs = client.singleUse().executeQuery(StandardBenchmarkMockServer.SELECT1)) {
+        assertThat(rs.next()).isTrue();
+      }
+    }
+    server.numThreads = Thread.activeCount() - server.baseThreadCount;
+  }
+}
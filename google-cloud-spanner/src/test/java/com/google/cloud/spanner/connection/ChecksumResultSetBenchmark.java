@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.connection.ChecksumResultSet.ChecksumCalculator;
+import com.google.common.hash.HashCode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the throughput of the checksum calculation of a {@link ChecksumResultSet} with the
+ * different {@link ChecksumAlgorithm}s. Run these benchmarks from the command line like this:
+ * <code>
+ * mvn clean test -DskipTests -Pbenchmark -Dbenchmark.name=ChecksumResultSetBenchmark
+ * </code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1, warmups = 0)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChecksumResultSetBenchmark {
+  private static final int NUM_ROWS = 1000;
+
+  @State(Scope.Thread)
+  public static class Rows {
+    /** The name of the {@link ChecksumAlgorithm} to use. */
+    @Param({"SHA256", "MURMUR3_128"})
+    String algorithmName;
+
+    private ChecksumAlgorithm algorithm;
+
+    /** The length of the STRING and BYTES values in each row. */
+    @Param({"16", "1024"})
+    int valueLength;
+
+    private final List<Struct> rows = new ArrayList<>(NUM_ROWS);
+
+    @Setup(Level.Trial)
+    public void setup() {
+      algorithm = ChecksumAlgorithm.valueOf(algorithmName);
+      Random random = new Random(1L);
+      for (int i = 0; i < NUM_ROWS; i++) {
+        byte[] bytes = new byte[valueLength];
+        random.nextBytes(bytes);
+        StringBuilder string = new StringBuilder(valueLength);
+        for (int c = 0; c < valueLength; c++) {
+          string.append((char) ('a' + random.nextInt(26)));
+        }
+        rows.add(
+            Struct.newBuilder()
+                .set("ID")
+                .to(random.nextLong())
+                .set("NAME")
+                .to(string.toString())
+                .set("DATA")
+                .to(ByteArray.copyFrom(bytes))
+                .set("PRICE")
+                .to(random.nextDouble())
+                .set("ACTIVE")
+                .to(random.nextBoolean())
+                .set("CREATED")
+                .to(Timestamp.ofTimeMicroseconds(random.nextInt(Integer.MAX_VALUE)))
+                .set("BIRTHDAY")
+                .to(Date.fromYearMonthDay(2000, 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                .set("TAGS")
+                .toInt64Array(new long[] {random.nextLong(), random.nextLong()})
+                .build());
+      }
+    }
+  }
+
+  /** Calculates the checksum of a result set of {@link #NUM_ROWS} rows. */
+  @Benchmark
+  public HashCode checksumRows(Rows rows) {
+    ChecksumCalculator calculator = new ChecksumCalculator(rows.algorithm);
+    for (Struct row : rows.rows) {
+      calculator.calculateNextChecksum(row);
+    }
+    return calculator.getChecksum();
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.spanner.AsyncResultSet;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.MockSpannerServiceImpl.SimulatedExecutionTime;
+import com.google.cloud.spanner.MockSpannerServiceImpl.StatementResult;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.StructReader;
+import com.google.cloud.spanner.connection.ITAbstractSpannerTest.ITConnection;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.AbstractMessage;
+import com.google.spanner.v1.CommitRequest;
+import io.grpc.Status;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ConnectionAsyncApiTest extends AbstractMockServerTest {
+  private static final Function<StructReader, Long> TO_COUNT =
+      new Function<StructReader, Long>() {
+        @Override
+        public Long apply(StructReader input) {
+          return input.getLong("C");
+        }
+      };
+
+  @Test
+  public void testExecuteQueryAsync() throws Exception {
+    try (ITConnection connection = createConnection()) {
+      connection.setAutocommit(true);
+      try (AsyncResultSet rs = connection.executeQueryAsync(SELECT_COUNT_STATEMENT)) {
+        ApiFuture<ImmutableList<Long>> counts =
+            rs.toListAsync(TO_COUNT, MoreExecutors.directExecutor());
+        assertThat(counts.get()).containsExactly(COUNT_BEFORE_INSERT);
+      }
+    }
+  }
+
+  @Test
+  public void testExecuteUpdateAsyncDoesNotBlock() throws Exception {
+    try (ITConnection connection = createConnection()) {
+      connection.setAutocommit(true);
+      mockSpanner.freeze();
+      ApiFuture<Long> first = connection.executeUpdateAsync(INSERT_STATEMENT);
+      // A second statement in autocommit mode must use a new single use transaction, even though
+      // the first statement has not yet finished.
+      ApiFuture<Long> second = connection.executeUpdateAsync(INSERT_STATEMENT);
+      assertThat(first.isDone()).isFalse();
+      assertThat(second.isDone()).isFalse();
+      mockSpanner.unfreeze();
+      assertThat(first.get()).isEqualTo(UPDATE_COUNT);
+      assertThat(second.get()).isEqualTo(UPDATE_COUNT);
+      assertThat(countCommitRequests()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void testTransactionAsync() throws Exception {
+    try (ITConnection connection = createConnection()) {
+      ApiFuture<Long> update = connection.executeUpdateAsync(INSERT_STATEMENT);
+      ApiFuture<long[]> batch =
+          connection.executeBatchUpdateAsync(Arrays.asList(INSERT_STATEMENT, INSERT_STATEMENT));
+      ApiFuture<Void> commit = connection.commitAsync();
+      assertThat(connection.isTransactionStarted()).isFalse();
+      // This update starts a new transaction.
+      ApiFuture<Long> nextUpdate = connection.executeUpdateAsync(INSERT_STATEMENT);
+      assertThat(connection.isTransactionStarted()).isTrue();
+      ApiFuture<Void> rollback = connection.rollbackAsync();
+
+      assertThat(update.get()).isEqualTo(UPDATE_COUNT);
+      assertThat(batch.get()).asList().containsExactly(1L, 1L);
+      commit.get();
+      assertThat(nextUpdate.get()).isEqualTo(UPDATE_COUNT);
+      rollback.get();
+      assertThat(countCommitRequests()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testExecuteUpdateAsyncInTransactionDoesNotUseStatementExecutor() throws Exception {
+    try (ITConnection connection = createConnection()) {
+      // Begin the transaction.
+      connection.executeUpdate(INSERT_STATEMENT);
+      mockSpanner.freeze();
+      ApiFuture<Long> first = connection.executeUpdateAsync(INSERT_STATEMENT);
+      ApiFuture<long[]> second =
+          connection.executeBatchUpdateAsync(Arrays.asList(INSERT_STATEMENT, INSERT_STATEMENT));
+      // The statements wait for Spanner without occupying the executor of the connection.
+      Future<Boolean> executed =
+          ((ConnectionImpl) connection)
+              .getStatementExecutor()
+              .submit(
+                  new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                      return true;
+                    }
+                  });
+      assertThat(executed.get(10L, TimeUnit.SECONDS)).isTrue();
+      assertThat(first.isDone()).isFalse();
+      assertThat(second.isDone()).isFalse();
+      mockSpanner.unfreeze();
+      assertThat(first.get()).isEqualTo(UPDATE_COUNT);
+      assertThat(second.get()).asList().containsExactly(1L, 1L);
+      connection.commit();
+      assertThat(countCommitRequests()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testRunBatchAsync() throws Exception {
+    try (ITConnection connection = createConnection()) {
+      connection.setAutocommit(true);
+      connection.startBatchDml();
+      connection.executeUpdate(INSERT_STATEMENT);
+      connection.executeUpdate(INSERT_STATEMENT);
+      ApiFuture<long[]> batch = connection.runBatchAsync();
+      ApiFuture<Long> update = connection.executeUpdateAsync(INSERT_STATEMENT);
+      assertThat(batch.get()).asList().containsExactly(1L, 1L);
+      assertThat(update.get()).isEqualTo(UPDATE_COUNT);
+      assertThat(countCommitRequests()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void testStatementTimeoutAsync() throws Exception {
+    try (ITConnection connection = createConnection()) {
+      connection.setAutocommit(true);
+      connection.setStatementTimeout(50L, TimeUnit.MILLISECONDS);
+      mockSpanner.setExecuteSqlExecutionTime(SimulatedExecutionTime.ofMinimumAndRandomTime(500, 0));
+      ApiFuture<Long> update = connection.executeUpdateAsync(INSERT_STATEMENT);
+      try {
+        update.get();
+        fail("missing expected exception");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).isInstanceOf(SpannerException.class);
+        assertThat(((SpannerException) e.getCause()).getErrorCode())
+            .isEqualTo(ErrorCode.DEADLINE_EXCEEDED);
+      }
+      // The timed out statement is cancelled, and does not block the next statement on the
+      // connection.
+      connection.clearStatementTimeout();
+      mockSpanner.setExecuteSqlExecutionTime(SimulatedExecutionTime.none());
+      assertThat(connection.executeUpdateAsync(INSERT_STATEMENT).get()).isEqualTo(UPDATE_COUNT);
+    }
+  }
+
+  @Test
+  public void testExecuteQueryAsyncWithUpdateStatement() {
+    try (ITConnection connection = createConnection()) {
+      connection.executeQueryAsync(INSERT_STATEMENT);
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    }
+  }
+
+  @Test
+  public void testExecuteQueryAsyncFails() throws Exception {
+    Statement invalid = Statement.of("SELECT * FROM NON_EXISTING_TABLE");
+    mockSpanner.putStatementResult(
+        StatementResult.exception(
+            invalid, Status.NOT_FOUND.withDescription("Table not found").asRuntimeException()));
+    try (ITConnection connection = createConnection()) {
+      connection.setAutocommit(true);
+      try (AsyncResultSet rs = connection.executeQueryAsync(invalid)) {
+        rs.toListAsync(TO_COUNT, MoreExecutors.directExecutor()).get();
+        fail("missing expected exception");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).isInstanceOf(SpannerException.class);
+        assertThat(((SpannerException) e.getCause()).getErrorCode()).isEqualTo(ErrorCode.NOT_FOUND);
+      }
+    }
+  }
+
+  private int countCommitRequests() {
+    int count = 0;
+    for (AbstractMessage request : mockSpanner.getRequests()) {
+      if (request instanceof CommitRequest) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
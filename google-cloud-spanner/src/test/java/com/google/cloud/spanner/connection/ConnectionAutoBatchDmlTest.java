@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.MockSpannerServiceImpl.StatementResult;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerBatchUpdateException;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.connection.ITAbstractSpannerTest.ITConnection;
+import com.google.protobuf.AbstractMessage;
+import com.google.spanner.v1.CommitRequest;
+import com.google.spanner.v1.ExecuteBatchDmlRequest;
+import com.google.spanner.v1.ExecuteSqlRequest;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ConnectionAutoBatchDmlTest extends AbstractMockServerTest {
+  private static final Statement UPDATE_STATEMENT =
+      Statement.of("UPDATE FOO SET BAR=1 WHERE BAZ=2");
+  private static final Statement INVALID_UPDATE_STATEMENT =
+      Statement.of("UPDATE NON_EXISTENT_TABLE SET BAR=1 WHERE BAZ=2");
+
+  private ITConnection createAutoBatchConnection() {
+    ITConnection connection = createConnection();
+    connection.setAutocommit(true);
+    connection.setAutoBatchDml(true);
+    return connection;
+  }
+
+  @Test
+  public void testDmlIsBatchedUntilQuery() {
+    mockSpanner.putStatementResult(StatementResult.update(UPDATE_STATEMENT, 2L));
+    try (ITConnection connection = createAutoBatchConnection()) {
+      assertThat(connection.executeUpdate(INSERT_STATEMENT)).isEqualTo(-1L);
+      assertThat(connection.executeUpdate(UPDATE_STATEMENT)).isEqualTo(-1L);
+      assertThat(connection.execute(INSERT_STATEMENT).getUpdateCount()).isEqualTo(-1L);
+      assertThat(getRequests(ExecuteBatchDmlRequest.class)).isEmpty();
+
+      // The query must see the changes of the buffered statements.
+      try (ResultSet rs = connection.executeQuery(SELECT_COUNT_STATEMENT)) {
+        assertThat(rs.next()).isTrue();
+      }
+      List<ExecuteBatchDmlRequest> batches = getRequests(ExecuteBatchDmlRequest.class);
+      assertThat(batches).hasSize(1);
+      assertThat(batches.get(0).getStatementsCount()).isEqualTo(3);
+      assertThat(getRequests(CommitRequest.class)).hasSize(1);
+      // Only the query is sent as an ExecuteSqlRequest.
+      assertThat(getRequests(ExecuteSqlRequest.class)).hasSize(1);
+    }
+  }
+
+  @Test
+  public void testFlushAutoBatchDml() {
+    mockSpanner.putStatementResult(StatementResult.update(UPDATE_STATEMENT, 2L));
+    try (ITConnection connection = createAutoBatchConnection()) {
+      assertThat(connection.flushAutoBatchDml()).isEmpty();
+      connection.executeUpdate(INSERT_STATEMENT);
+      connection.executeUpdate(UPDATE_STATEMENT);
+      assertThat(connection.flushAutoBatchDml()).asList().containsExactly(1L, 2L).inOrder();
+      assertThat(connection.flushAutoBatchDml()).isEmpty();
+      assertThat(getRequests(ExecuteBatchDmlRequest.class)).hasSize(1);
+    }
+  }
+
+  @Test
+  public void testFailedStatementIsIdentified() {
+    mockSpanner.putStatementResult(
+        StatementResult.exception(
+            INVALID_UPDATE_STATEMENT,
+            Status.NOT_FOUND.withDescription("Table not found").asRuntimeException()));
+    try (ITConnection connection = createAutoBatchConnection()) {
+      connection.executeUpdate(INSERT_STATEMENT);
+      connection.executeUpdate(INVALID_UPDATE_STATEMENT);
+      connection.executeUpdate(INSERT_STATEMENT);
+      try {
+        connection.flushAutoBatchDml();
+        fail("missing expected exception");
+      } catch (SpannerBatchUpdateException e) {
+        assertThat(e.getErrorCode()).isEqualTo(ErrorCode.NOT_FOUND);
+        assertThat(e.getMessage()).contains("statement 2 of 3");
+        assertThat(e.getMessage()).contains(INVALID_UPDATE_STATEMENT.getSql());
+        assertThat(e.getUpdateCounts()).asList().containsExactly(1L);
+        // The original error of the batch is kept as the cause.
+        assertThat(e.getCause()).isInstanceOf(SpannerBatchUpdateException.class);
+      }
+      // The batch was not committed.
+      assertThat(getRequests(CommitRequest.class)).isEmpty();
+      // The failed batch is not retried by the next statement.
+      assertThat(connection.executeUpdate(INSERT_STATEMENT)).isEqualTo(-1L);
+      assertThat(connection.flushAutoBatchDml()).asList().containsExactly(1L);
+    }
+  }
+
+  @Test
+  public void testAsyncStatementFlushesBatchWithoutBlocking() throws Exception {
+    mockSpanner.putStatementResult(StatementResult.update(UPDATE_STATEMENT, 2L));
+    try (ITConnection connection = createAutoBatchConnection()) {
+      connection.executeUpdate(INSERT_STATEMENT);
+      connection.executeUpdate(INSERT_STATEMENT);
+      mockSpanner.freeze();
+      ApiFuture<Long> updateCount;
+      try {
+        // The buffered statements are sent as part of the asynchronous operation, and not on the
+        // thread that submits the statement.
+        updateCount = connection.executeUpdateAsync(UPDATE_STATEMENT);
+        assertThat(updateCount.isDone()).isFalse();
+      } finally {
+        mockSpanner.unfreeze();
+      }
+      assertThat(updateCount.get()).isEqualTo(2L);
+      assertThat(getRequests(ExecuteBatchDmlRequest.class)).hasSize(1);
+      // The batch is sent before the statement.
+      List<AbstractMessage> requests = mockSpanner.getRequests();
+      int batchIndex = -1;
+      int updateIndex = -1;
+      for (int i = 0; i < requests.size(); i++) {
+        if (requests.get(i) instanceof ExecuteBatchDmlRequest) {
+          batchIndex = i;
+        } else if (requests.get(i) instanceof ExecuteSqlRequest
+            && ((ExecuteSqlRequest) requests.get(i)).getSql().equals(UPDATE_STATEMENT.getSql())) {
+          updateIndex = i;
+        }
+      }
+      assertThat(batchIndex).isLessThan(updateIndex);
+    }
+  }
+
+  @Test
+  public void testAsyncStatementReturnsBatchError() throws InterruptedException {
+    mockSpanner.putStatementResult(StatementResult.update(UPDATE_STATEMENT, 2L));
+    mockSpanner.putStatementResult(
+        StatementResult.exception(
+            INVALID_UPDATE_STATEMENT,
+            Status.NOT_FOUND.withDescription("Table not found").asRuntimeException()));
+    try (ITConnection connection = createAutoBatchConnection()) {
+      connection.executeUpdate(INVALID_UPDATE_STATEMENT);
+      ApiFuture<Long> updateCount = connection.executeUpdateAsync(UPDATE_STATEMENT);
+      try {
+        updateCount.get();
+        fail("missing expected exception");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).isInstanceOf(SpannerBatchUpdateException.class);
+        assertThat(e.getCause().getMessage()).contains("statement 1 of 1");
+      }
+      // The statement itself is not executed if the buffered statements fail.
+      for (ExecuteSqlRequest request : getRequests(ExecuteSqlRequest.class)) {
+        assertThat(request.getSql()).isNotEqualTo(UPDATE_STATEMENT.getSql());
+      }
+    }
+  }
+
+  @Test
+  public void testDmlIsNotBatchedInTransaction() {
+    try (ITConnection connection = createConnection()) {
+      connection.setAutoBatchDml(true);
+      assertThat(connection.executeUpdate(INSERT_STATEMENT)).isEqualTo(UPDATE_COUNT);
+      connection.commit();
+      assertThat(getRequests(ExecuteBatchDmlRequest.class)).isEmpty();
+    }
+  }
+
+  @Test
+  public void testCloseFlushesBatch() {
+    try (ITConnection connection = createAutoBatchConnection()) {
+      connection.executeUpdate(INSERT_STATEMENT);
+      connection.executeUpdate(INSERT_STATEMENT);
+    }
+    assertThat(getRequests(ExecuteBatchDmlRequest.class)).hasSize(1);
+    assertThat(getRequests(CommitRequest.class)).hasSize(1);
+  }
+
+  @Test
+  public void testDisableAutoBatchDmlFlushesBatch() {
+    try (ITConnection connection = createAutoBatchConnection()) {
+      connection.executeUpdate(INSERT_STATEMENT);
+      connection.setAutoBatchDml(false);
+      assertThat(getRequests(ExecuteBatchDmlRequest.class)).hasSize(1);
+      assertThat(connection.executeUpdate(INSERT_STATEMENT)).isEqualTo(UPDATE_COUNT);
+    }
+  }
+
+  private <T extends AbstractMessage> List<T> getRequests(Class<T> type) {
+    List<T> res = new ArrayList<>();
+    for (AbstractMessage request : mockSpanner.getRequests()) {
+      if (type.isInstance(request)) {
+        res.add(type.cast(request));
+      }
+    }
+    return res;
+  }
+}
@@ -21,6 +21,8 @@ import static org.junit.Assert.fail;
 
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.SpannerException;
 import com.google.cloud.spanner.SpannerOptions;
 import java.util.Arrays;
 import org.junit.Test;
@@ -386,4 +388,74 @@ public class ConnectionOptionsTest {
       assertThat(e.getMessage()).contains("Cannot specify both credentials and an OAuth token");
     }
   }
+
+  @Test
+  public void testParseChecksumAlgorithm() {
+    String uri =
+        "cloudspanner:/projects/test-project-123/instances/test-instance/databases/test-database";
+    assertThat(ConnectionOptions.parseChecksumAlgorithm(uri)).isEqualTo(ChecksumAlgorithm.SHA256);
+    assertThat(ConnectionOptions.parseChecksumAlgorithm(uri + "?checksumAlgorithm=murmur3_128"))
+        .isEqualTo(ChecksumAlgorithm.MURMUR3_128);
+    ConnectionOptions options =
+        ConnectionOptions.newBuilder()
+            .setUri(uri + "?checksumAlgorithm=MURMUR3_128")
+            .setCredentialsUrl(FILE_TEST_PATH)
+            .build();
+    assertThat(options.getChecksumAlgorithm()).isEqualTo(ChecksumAlgorithm.MURMUR3_128);
+    try {
+      ConnectionOptions.parseChecksumAlgorithm(uri + "?checksumAlgorithm=md5");
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    }
+  }
+
+  @Test
+  public void testParseAutoBatchDml() {
+    String uri =
+        "cloudspanner:/projects/test-project-123/instances/test-instance/databases/test-database";
+    assertThat(ConnectionOptions.parseAutoBatchDml(uri)).isFalse();
+    assertThat(ConnectionOptions.parseAutoBatchDml(uri + "?autoBatchDml=true")).isTrue();
+    assertThat(ConnectionOptions.parseAutoBatchDml(uri + "?autoBatchDml=false")).isFalse();
+    ConnectionOptions options =
+        ConnectionOptions.newBuilder()
+            .setUri(uri + "?autoBatchDml=true")
+            .setCredentialsUrl(FILE_TEST_PATH)
+            .build();
+    assertThat(options.isAutoBatchDml()).isTrue();
+  }
+
+  @Test
+  public void testParseStaleReadCache() {
+    String uri =
+        "cloudspanner:/projects/test-project-123/instances/test-instance/databases/test-database";
+    assertThat(ConnectionOptions.parseStaleReadCacheMaxBytes(uri)).isEqualTo(0L);
+    assertThat(ConnectionOptions.parseStaleReadCacheTtlMillis(uri)).isEqualTo(10000L);
+    assertThat(ConnectionOptions.parseStaleReadCacheMaxBytes(uri + "?staleReadCacheMaxBytes=1024"))
+        .isEqualTo(1024L);
+    assertThat(ConnectionOptions.parseStaleReadCacheTtlMillis(uri + "?staleReadCacheTtlMillis=50"))
+        .isEqualTo(50L);
+    for (String invalid :
+        new String[] {
+          "?staleReadCacheMaxBytes=foo",
+          "?staleReadCacheMaxBytes=-1",
+          "?staleReadCacheTtlMillis=0",
+          "?staleReadCacheTtlMillis=-1"
+        }) {
+      try {
+        ConnectionOptions.parseStaleReadCacheMaxBytes(uri + invalid);
+        ConnectionOptions.parseStaleReadCacheTtlMillis(uri + invalid);
+        fail("missing expected exception for " + invalid);
+      } catch (SpannerException e) {
+        assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+      }
+    }
+    ConnectionOptions options =
+        ConnectionOptions.newBuilder()
+            .setUri(uri + "?staleReadCacheMaxBytes=1024;staleReadCacheTtlMillis=50")
+            .setCredentialsUrl(FILE_TEST_PATH)
+            .build();
+    assertThat(options.getStaleReadCacheMaxBytes()).isEqualTo(1024L);
+    assertThat(options.getStaleReadCacheTtlMillis()).isEqualTo(50L);
+  }
 }
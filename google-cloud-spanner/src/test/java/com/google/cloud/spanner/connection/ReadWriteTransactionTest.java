@@ -25,8 +25,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.cloud.Timestamp;
@@ -47,9 +50,16 @@ import com.google.cloud.spanner.Type;
 import com.google.cloud.spanner.Type.StructField;
 import com.google.cloud.spanner.connection.StatementParser.ParsedStatement;
 import com.google.cloud.spanner.connection.StatementParser.StatementType;
+import com.google.cloud.spanner.connection.UnitOfWork.UnitOfWorkState;
 import com.google.spanner.v1.ResultSetStats;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -593,4 +603,210 @@ public class ReadWriteTransactionTest {
     rs2.next();
     assertThat(rs1.getChecksum(), is(not(equalTo(rs2.getChecksum()))));
   }
+
+  @Test
+  public void testChecksumResultSetWithMurmur3() {
+    DatabaseClient client = mock(DatabaseClient.class);
+    ReadWriteTransaction transaction =
+        ReadWriteTransaction.newBuilder()
+            .setRetryAbortsInternally(true)
+            .setChecksumAlgorithm(ChecksumAlgorithm.MURMUR3_128)
+            .setTransactionRetryListeners(Collections.<TransactionRetryListener>emptyList())
+            .setDatabaseClient(client)
+            .withStatementExecutor(new StatementExecutor())
+            .build();
+    ParsedStatement parsedStatement = mock(ParsedStatement.class);
+    Statement statement = Statement.of("SELECT * FROM FOO");
+    when(parsedStatement.getStatement()).thenReturn(statement);
+    Type type =
+        Type.struct(StructField.of("ID", Type.int64()), StructField.of("NAME", Type.string()));
+    ChecksumResultSet rs1 =
+        transaction.createChecksumResultSet(
+            ResultSets.forRows(
+                type,
+                Arrays.asList(
+                    Struct.newBuilder().set("ID").to(1l).set("NAME").to("TEST 1").build(),
+                    Struct.newBuilder().set("ID").to(2l).set("NAME").to("TEST 2").build())),
+            parsedStatement,
+            AnalyzeMode.NONE);
+    ChecksumResultSet rs2 =
+        transaction.createChecksumResultSet(
+            ResultSets.forRows(
+                type,
+                Arrays.asList(
+                    Struct.newBuilder().set("ID").to(1l).set("NAME").to("TEST 1").build(),
+                    Struct.newBuilder().set("ID").to(2l).set("NAME").to((String) null).build())),
+            parsedStatement,
+            AnalyzeMode.NONE);
+
+    assertThat(rs1.next() && rs2.next(), is(true));
+    assertThat(rs1.getChecksum().bits(), is(equalTo(128)));
+    assertThat(rs1.getChecksum(), is(equalTo(rs2.getChecksum())));
+    assertThat(rs1.next() && rs2.next(), is(true));
+    assertThat(rs1.getChecksum(), is(not(equalTo(rs2.getChecksum()))));
+  }
+
+  @Test
+  public void testRetryReplaysQueriesInParallel() {
+    final Type type = Type.struct(StructField.of("ID", Type.int64()));
+    final Statement query1 = Statement.of("SELECT ID FROM FOO WHERE ID=1");
+    final Statement query2 = Statement.of("SELECT ID FROM FOO WHERE ID=2");
+    final Statement query3 = Statement.of("SELECT ID FROM FOO WHERE ID=3");
+    final Statement update = Statement.of("UPDATE FOO SET BAR=1 WHERE ID=1");
+    final Answer<ResultSet> result =
+        new Answer<ResultSet>() {
+          @Override
+          public ResultSet answer(InvocationOnMock invocation) {
+            return ResultSets.forRows(
+                type, Arrays.asList(Struct.newBuilder().set("ID").to(1L).build()));
+          }
+        };
+    DatabaseClient client = mock(DatabaseClient.class);
+    TransactionManager txManager = mock(TransactionManager.class);
+    TransactionContext txContext1 = mock(TransactionContext.class);
+    when(client.transactionManager()).thenReturn(txManager);
+    when(txManager.begin()).thenReturn(txContext1);
+    when(txManager.getState()).thenReturn(null, TransactionState.STARTED);
+    when(txContext1.executeQuery(any(Statement.class))).thenAnswer(result);
+    when(txContext1.executeUpdate(update)).thenReturn(1L);
+
+    // The retry of the first two queries only succeeds if both are executed at the same time.
+    final CountDownLatch bothQueriesStarted = new CountDownLatch(2);
+    final List<String> replayed = Collections.synchronizedList(new ArrayList<String>());
+    TransactionContext txContext2 = mock(TransactionContext.class);
+    when(txManager.resetForRetry()).thenReturn(txContext2);
+    when(txContext2.executeQuery(any(Statement.class)))
+        .thenAnswer(
+            new Answer<ResultSet>() {
+              @Override
+              public ResultSet answer(InvocationOnMock invocation) throws Throwable {
+                Statement statement = (Statement) invocation.getArguments()[0];
+                if (!statement.equals(query3)) {
+                  bothQueriesStarted.countDown();
+                  if (!bothQueriesStarted.await(10L, TimeUnit.SECONDS)) {
+                    throw SpannerExceptionFactory.newSpannerException(
+                        ErrorCode.DEADLINE_EXCEEDED, "queries were not replayed in parallel");
+                  }
+                }
+                replayed.add(statement.getSql());
+                return result.answer(invocation);
+              }
+            });
+    when(txContext2.executeUpdate(update))
+        .thenAnswer(
+            new Answer<Long>() {
+              @Override
+              public Long answer(InvocationOnMock invocation) {
+                replayed.add(update.getSql());
+                return 1L;
+              }
+            });
+    doThrow(SpannerExceptionFactory.newSpannerException(ErrorCode.ABORTED, "commit aborted"))
+        .doNothing()
+        .when(txManager)
+        .commit();
+
+    TransactionRetryReplayListener listener = mock(TransactionRetryReplayListener.class);
+    ReadWriteTransaction subject =
+        ReadWriteTransaction.newBuilder()
+            .setRetryAbortsInternally(true)
+            .setTransactionRetryListeners(
+                Collections.<TransactionRetryListener>singletonList(listener))
+            .setDatabaseClient(client)
+            .withStatementExecutor(new StatementExecutor())
+            .build();
+    for (Statement query : Arrays.asList(query1, query2)) {
+      ResultSet rs = subject.executeQuery(createQuery(query), AnalyzeMode.NONE);
+      assertThat(rs.next(), is(true));
+    }
+    subject.executeUpdate(createUpdate(update));
+    ResultSet rs = subject.executeQuery(createQuery(query3), AnalyzeMode.NONE);
+    assertThat(rs.next(), is(true));
+    subject.commit();
+
+    assertThat(subject.getState(), is(equalTo(UnitOfWorkState.COMMITTED)));
+    // The update must be replayed after the preceding queries and before the following query.
+    assertThat(replayed.size(), is(equalTo(4)));
+    assertThat(replayed.get(2), is(equalTo(update.getSql())));
+    assertThat(replayed.get(3), is(equalTo(query3.getSql())));
+    verify(listener).retryReplayFinished(any(Timestamp.class), anyLong(), eq(1), anyLong());
+  }
+
+  @Test
+  public void testRetryInvokesInterceptorsOnRetryingThread() {
+    final Type type = Type.struct(StructField.of("ID", Type.int64()));
+    final Answer<ResultSet> result =
+        new Answer<ResultSet>() {
+          @Override
+          public ResultSet answer(InvocationOnMock invocation) {
+            return ResultSets.forRows(
+                type, Arrays.asList(Struct.newBuilder().set("ID").to(1L).build()));
+          }
+        };
+    DatabaseClient client = mock(DatabaseClient.class);
+    TransactionManager txManager = mock(TransactionManager.class);
+    TransactionContext txContext1 = mock(TransactionContext.class);
+    TransactionContext txContext2 = mock(TransactionContext.class);
+    when(client.transactionManager()).thenReturn(txManager);
+    when(txManager.begin()).thenReturn(txContext1);
+    when(txManager.resetForRetry()).thenReturn(txContext2);
+    when(txManager.getState()).thenReturn(null, TransactionState.STARTED);
+    when(txContext1.executeQuery(any(Statement.class))).thenAnswer(result);
+    when(txContext2.executeQuery(any(Statement.class))).thenAnswer(result);
+    doThrow(SpannerExceptionFactory.newSpannerException(ErrorCode.ABORTED, "commit aborted"))
+        .doNothing()
+        .when(txManager)
+        .commit();
+
+    final Set<Thread> retryThreads = Collections.synchronizedSet(new HashSet<Thread>());
+    StatementExecutionInterceptor interceptor =
+        new StatementExecutionInterceptor() {
+          @Override
+          public void intercept(
+              ParsedStatement statement, StatementExecutionStep step, UnitOfWork transaction) {
+            if (step == StatementExecutionStep.RETRY_STATEMENT
+                || step == StatementExecutionStep.RETRY_NEXT_ON_RESULT_SET) {
+              retryThreads.add(Thread.currentThread());
+            }
+          }
+        };
+    ReadWriteTransaction subject =
+        ReadWriteTransaction.newBuilder()
+            .setRetryAbortsInternally(true)
+            .setTransactionRetryListeners(Collections.<TransactionRetryListener>emptyList())
+            .setDatabaseClient(client)
+            .withStatementExecutor(
+                new StatementExecutor(
+                    Collections.<StatementExecutionInterceptor>singletonList(interceptor)))
+            .build();
+    for (int i = 0; i < 3; i++) {
+      ResultSet rs =
+          subject.executeQuery(
+              createQuery(Statement.of("SELECT ID FROM FOO WHERE ID=" + i)), AnalyzeMode.NONE);
+      assertThat(rs.next(), is(true));
+    }
+    subject.commit();
+
+    assertThat(subject.getState(), is(equalTo(UnitOfWorkState.COMMITTED)));
+    // All interceptors are invoked by the thread that executes the retry.
+    assertThat(retryThreads.size(), is(equalTo(1)));
+  }
+
+  private static ParsedStatement createQuery(Statement statement) {
+    ParsedStatement query = mock(ParsedStatement.class);
+    when(query.getType()).thenReturn(StatementType.QUERY);
+    when(query.isQuery()).thenReturn(true);
+    when(query.getStatement()).thenReturn(statement);
+    when(query.getSqlWithoutComments()).thenReturn(statement.getSql());
+    return query;
+  }
+
+  private static ParsedStatement createUpdate(Statement statement) {
+    ParsedStatement update = mock(ParsedStatement.class);
+    when(update.getType()).thenReturn(StatementType.UPDATE);
+    when(update.isUpdate()).thenReturn(true);
+    when(update.getStatement()).thenReturn(statement);
+    when(update.getSqlWithoutComments()).thenReturn(statement.getSql());
+    return update;
+  }
 }
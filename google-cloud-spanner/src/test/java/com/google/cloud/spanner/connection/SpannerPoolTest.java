@@ -19,6 +19,7 @@ package com.google.cloud.spanner.connection;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -32,10 +33,19 @@ import com.google.cloud.spanner.ErrorCode;
 import com.google.cloud.spanner.SessionPoolOptions;
 import com.google.cloud.spanner.Spanner;
 import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
 import com.google.cloud.spanner.connection.ConnectionImpl.LeakedConnectionException;
 import com.google.cloud.spanner.connection.SpannerPool.CheckAndCloseSpannersMode;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
 import java.util.logging.StreamHandler;
@@ -398,4 +408,93 @@ public class SpannerPoolTest {
       verify(spanner3).close();
     }
   }
+
+  @Test
+  public void testGetSpannerForDifferentKeysInParallel() throws Exception {
+    final CountDownLatch creatingFirstSpanner = new CountDownLatch(1);
+    final CountDownLatch releaseFirstSpanner = new CountDownLatch(1);
+    final AtomicInteger createdSpanners = new AtomicInteger();
+    final SpannerPool pool =
+        new SpannerPool() {
+          @Override
+          Spanner createSpanner(SpannerPoolKey key) {
+            // Block the creation of the first Spanner instance.
+            if (createdSpanners.incrementAndGet() == 1) {
+              creatingFirstSpanner.countDown();
+              Uninterruptibles.awaitUninterruptibly(releaseFirstSpanner);
+            }
+            return mock(Spanner.class);
+          }
+        };
+    createSubjectAndMocks();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Spanner> first =
+          executor.submit(
+              new Callable<Spanner>() {
+                @Override
+                public Spanner call() {
+                  return pool.getSpanner(options1, connection1);
+                }
+              });
+      assertThat(creatingFirstSpanner.await(10L, TimeUnit.SECONDS), is(true));
+      // A connection for the same key waits for the Spanner instance that is being created.
+      Future<Spanner> second =
+          executor.submit(
+              new Callable<Spanner>() {
+                @Override
+                public Spanner call() {
+                  return pool.getSpanner(options1, connection2);
+                }
+              });
+      // A connection for a different key is not blocked by the Spanner that is being created.
+      Spanner other = pool.getSpanner(options3, connection3);
+      assertThat(other, is(notNullValue()));
+      assertThat(first.isDone(), is(false));
+      assertThat(second.isDone(), is(false));
+
+      releaseFirstSpanner.countDown();
+      assertThat(first.get(10L, TimeUnit.SECONDS), is(equalTo(second.get(10L, TimeUnit.SECONDS))));
+      assertThat(createdSpanners.get(), is(equalTo(2)));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetSpannerAfterCreateFailed() {
+    final AtomicInteger attempts = new AtomicInteger();
+    SpannerPool pool =
+        new SpannerPool() {
+          @Override
+          Spanner createSpanner(SpannerPoolKey key) {
+            if (attempts.incrementAndGet() == 1) {
+              throw SpannerExceptionFactory.newSpannerException(
+                  ErrorCode.UNAVAILABLE, "channel creation failed");
+            }
+            return mock(Spanner.class);
+          }
+        };
+    createSubjectAndMocks();
+    try {
+      pool.getSpanner(options1, connection1);
+      fail("missing expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode(), is(equalTo(ErrorCode.UNAVAILABLE)));
+    }
+    // The failed Spanner instance is not kept in the pool.
+    assertThat(pool.getSpanner(options1, connection1), is(notNullValue()));
+    assertThat(attempts.get(), is(equalTo(2)));
+    pool.removeConnection(options1, connection1);
+    pool.checkAndCloseSpanners();
+  }
+
+  @Test
+  public void testRecordConnectionOpened() {
+    SpannerPool pool = createSubjectAndMocks();
+    pool.recordConnectionOpened(5L, TimeUnit.MILLISECONDS);
+    pool.recordConnectionOpened(2000L, TimeUnit.MICROSECONDS);
+    assertThat(pool.getOpenedConnections(), is(equalTo(2L)));
+    assertThat(pool.getConnectionOpenTime(TimeUnit.MILLISECONDS), is(equalTo(7L)));
+  }
 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.core.ApiClock;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.TimestampBound;
+import com.google.cloud.spanner.Type;
+import com.google.cloud.spanner.Type.StructField;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.protobuf.AbstractMessage;
+import com.google.spanner.v1.ExecuteSqlRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class StaleReadResultCacheTest extends AbstractMockServerTest {
+  private static final class FakeClock implements ApiClock {
+    private long millis = System.currentTimeMillis();
+
+    @Override
+    public long nanoTime() {
+      return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long millisTime() {
+      return millis;
+    }
+
+    void advance(long millis) {
+      this.millis += millis;
+    }
+
+    /** Returns a read timestamp that is the given number of milliseconds in the past. */
+    Supplier<Timestamp> readTimestamp(long millisAgo) {
+      return Suppliers.ofInstance(
+          Timestamp.ofTimeMicroseconds(TimeUnit.MILLISECONDS.toMicros(millis - millisAgo)));
+    }
+  }
+
+  private static final Statement QUERY = Statement.of("SELECT * FROM FOO");
+  private static final Type TYPE =
+      Type.struct(StructField.of("ID", Type.int64()), StructField.of("NAME", Type.string()));
+  private static final TimestampBound STALENESS =
+      TimestampBound.ofMaxStaleness(10L, TimeUnit.SECONDS);
+
+  private static List<Struct> createRows(int count) {
+    List<Struct> rows = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      rows.add(Struct.newBuilder().set("ID").to(i).set("NAME").to("name " + i).build());
+    }
+    return rows;
+  }
+
+  /** Returns a read timestamp supplier for a result that has just been read. */
+  private static Supplier<Timestamp> now() {
+    return new Supplier<Timestamp>() {
+      @Override
+      public Timestamp get() {
+        return Timestamp.now();
+      }
+    };
+  }
+
+  private static int consume(ResultSet resultSet) {
+    int count = 0;
+    while (resultSet.next()) {
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void testCacheCompletelyConsumedResult() {
+    StaleReadResultCache cache = new StaleReadResultCache(100000L, 1L, TimeUnit.MINUTES);
+    assertThat(cache.get(QUERY, STALENESS)).isNull();
+    assertThat(
+            consume(
+                cache.cacheResult(
+                    QUERY, STALENESS, ResultSets.forRows(TYPE, createRows(3)), now())))
+        .isEqualTo(3);
+
+    ResultSet cached = cache.get(QUERY, STALENESS);
+    assertThat(cached).isNotNull();
+    assertThat(cached.next()).isTrue();
+    assertThat(cached.getType()).isEqualTo(TYPE);
+    assertThat(cached.getLong("ID")).isEqualTo(0L);
+    assertThat(cached.getString("NAME")).isEqualTo("name 0");
+    assertThat(consume(cached)).isEqualTo(2);
+    assertThat(cache.getHitCount()).isEqualTo(1L);
+    assertThat(cache.getMissCount()).isEqualTo(1L);
+    assertThat(cache.getHitRatio()).isEqualTo(0.5d);
+    assertThat(cache.getSizeBytes()).isGreaterThan(0L);
+  }
+
+  @Test
+  public void testKeyIncludesParametersAndStaleness() {
+    StaleReadResultCache cache = new StaleReadResultCache(100000L, 1L, TimeUnit.MINUTES);
+    Statement query =
+        Statement.newBuilder("SELECT * FROM FOO WHERE ID=@id").bind("id").to(1L).build();
+    consume(cache.cacheResult(query, STALENESS, ResultSets.forRows(TYPE, createRows(1)), now()));
+
+    assertThat(cache.get(query, STALENESS)).isNotNull();
+    assertThat(
+            cache.get(
+                Statement.newBuilder("SELECT * FROM FOO WHERE ID=@id").bind("id").to(2L).build(),
+                STALENESS))
+        .isNull();
+    assertThat(cache.get(query, TimestampBound.ofMaxStaleness(20L, TimeUnit.SECONDS))).isNull();
+  }
+
+  @Test
+  public void testPartiallyConsumedResultIsNotCached() {
+    StaleReadResultCache cache = new StaleReadResultCache(100000L, 1L, TimeUnit.MINUTES);
+    try (ResultSet rs =
+        cache.cacheResult(QUERY, STALENESS, ResultSets.forRows(TYPE, createRows(3)), now())) {
+      assertThat(rs.next()).isTrue();
+    }
+    assertThat(cache.get(QUERY, STALENESS)).isNull();
+    assertThat(cache.size()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testResultLargerThanCacheIsNotCached() {
+    List<Struct> rows = createRows(100);
+    long size = 0L;
+    for (Struct row : rows) {
+      size += StaleReadResultCache.estimateSize(row);
+    }
+    StaleReadResultCache cache = new StaleReadResultCache(size - 1L, 1L, TimeUnit.MINUTES);
+    assertThat(consume(cache.cacheResult(QUERY, STALENESS, ResultSets.forRows(TYPE, rows), now())))
+        .isEqualTo(100);
+    assertThat(cache.get(QUERY, STALENESS)).isNull();
+    assertThat(cache.getSizeBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testResultExpires() {
+    FakeClock clock = new FakeClock();
+    StaleReadResultCache cache =
+        new StaleReadResultCache(100000L, 1000L, TimeUnit.MILLISECONDS, clock);
+    consume(
+        cache.cacheResult(
+            QUERY, STALENESS, ResultSets.forRows(TYPE, createRows(1)), clock.readTimestamp(0L)));
+    clock.advance(999L);
+    assertThat(cache.get(QUERY, STALENESS)).isNotNull();
+    clock.advance(1L);
+    assertThat(cache.get(QUERY, STALENESS)).isNull();
+    assertThat(cache.getSizeBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testResultIsNotReturnedOnceReadTimestampIsOlderThanMaxStaleness() {
+    FakeClock clock = new FakeClock();
+    StaleReadResultCache cache = new StaleReadResultCache(100000L, 1L, TimeUnit.MINUTES, clock);
+    // The result was already 4 seconds stale when it was read by Spanner.
+    consume(
+        cache.cacheResult(
+            QUERY, STALENESS, ResultSets.forRows(TYPE, createRows(1)), clock.readTimestamp(4000L)));
+    clock.advance(6000L);
+    assertThat(cache.get(QUERY, STALENESS)).isNotNull();
+    // The result is not returned once its read timestamp is more than 10 seconds in the past, even
+    // though it has only been in the cache for 6 seconds and the time to live of the cache has not
+    // yet passed.
+    clock.advance(1L);
+    assertThat(cache.get(QUERY, STALENESS)).isNull();
+    assertThat(cache.size()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testResultWithoutReadTimestampIsNotCached() {
+    StaleReadResultCache cache = new StaleReadResultCache(100000L, 1L, TimeUnit.MINUTES);
+    Supplier<Timestamp> noReadTimestamp = Suppliers.ofInstance(null);
+    assertThat(
+            consume(
+                cache.cacheResult(
+                    QUERY, STALENESS, ResultSets.forRows(TYPE, createRows(3)), noReadTimestamp)))
+        .isEqualTo(3);
+    assertThat(cache.get(QUERY, STALENESS)).isNull();
+    assertThat(cache.size()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testIsCacheable() {
+    assertThat(StaleReadResultCache.isCacheable(STALENESS)).isTrue();
+    assertThat(StaleReadResultCache.isCacheable(TimestampBound.strong())).isFalse();
+    assertThat(
+            StaleReadResultCache.isCacheable(TimestampBound.ofMaxStaleness(0L, TimeUnit.SECONDS)))
+        .isFalse();
+    // A result is only valid for exactly the timestamp that it was read at.
+    assertThat(
+            StaleReadResultCache.isCacheable(
+                TimestampBound.ofExactStaleness(10L, TimeUnit.SECONDS)))
+        .isFalse();
+  }
+
+  @Test
+  public void testConnectionUsesCacheForStaleReads() {
+    try (Connection connection = createCachingConnection()) {
+      connection.setReadOnly(true);
+      connection.setReadOnlyStaleness(STALENESS);
+      for (int i = 0; i < 3; i++) {
+        try (ResultSet rs = connection.executeQuery(SELECT_COUNT_STATEMENT)) {
+          assertThat(rs.next()).isTrue();
+          assertThat(rs.getLong(0)).isEqualTo(COUNT_BEFORE_INSERT);
+          assertThat(rs.next()).isFalse();
+        }
+      }
+      assertThat(countExecuteSqlRequests()).isEqualTo(1);
+
+      // Exact staleness and strong reads are never served from the cache.
+      connection.setReadOnlyStaleness(TimestampBound.ofExactStaleness(10L, TimeUnit.SECONDS));
+      for (int i = 0; i < 2; i++) {
+        try (ResultSet rs = connection.executeQuery(SELECT_COUNT_STATEMENT)) {
+          assertThat(consume(rs)).isEqualTo(1);
+        }
+      }
+      assertThat(countExecuteSqlRequests()).isEqualTo(3);
+
+      connection.setReadOnlyStaleness(TimestampBound.strong());
+      try (ResultSet rs = connection.executeQuery(SELECT_COUNT_STATEMENT)) {
+        assertThat(consume(rs)).isEqualTo(1);
+      }
+      assertThat(countExecuteSqlRequests()).isEqualTo(4);
+    }
+  }
+
+  @Test
+  public void testConnectionDoesNotUseCacheInTransaction() {
+    try (Connection connection = createCachingConnection()) {
+      connection.setReadOnly(true);
+      connection.setReadOnlyStaleness(STALENESS);
+      try (ResultSet rs = connection.executeQuery(SELECT_COUNT_STATEMENT)) {
+        consume(rs);
+      }
+      // A read-only transaction cannot use a max staleness.
+      connection.setReadOnlyStaleness(TimestampBound.ofExactStaleness(10L, TimeUnit.SECONDS));
+      connection.beginTransaction();
+      try (ResultSet rs = connection.executeQuery(SELECT_COUNT_STATEMENT)) {
+        consume(rs);
+      }
+      connection.commit();
+      assertThat(countExecuteSqlRequests()).isEqualTo(2);
+
+      // The result that was cached before the transaction is still returned after it.
+      connection.setReadOnlyStaleness(STALENESS);
+      try (ResultSet rs = connection.executeQuery(SELECT_COUNT_STATEMENT)) {
+        consume(rs);
+      }
+      assertThat(countExecuteSqlRequests()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void testCacheIsDisabledByDefault() {
+    try (Connection connection = createConnection()) {
+      connection.setAutocommit(true);
+      connection.setReadOnly(true);
+      connection.setReadOnlyStaleness(STALENESS);
+      for (int i = 0; i < 2; i++) {
+        try (ResultSet rs = connection.executeQuery(SELECT_COUNT_STATEMENT)) {
+          consume(rs);
+        }
+      }
+      assertThat(countExecuteSqlRequests()).isEqualTo(2);
+    }
+  }
+
+  private Connection createCachingConnection() {
+    Connection connection =
+        ConnectionOptions.newBuilder()
+            .setUri(getBaseUrl() + ";staleReadCacheMaxBytes=100000")
+            .build()
+            .getConnection();
+    connection.setAutocommit(true);
+    return connection;
+  }
+
+  private int countExecuteSqlRequests() {
+    int count = 0;
+    for (AbstractMessage request : mockSpanner.getRequests()) {
+      if (request instanceof ExecuteSqlRequest) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
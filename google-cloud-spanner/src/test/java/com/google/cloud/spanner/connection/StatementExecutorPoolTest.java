@@ -0,0 +1,267 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.connection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class StatementExecutorPoolTest {
+
+  private static StatementExecutor createExecutor(StatementExecutorPool pool) {
+    return new StatementExecutor(pool, Collections.<StatementExecutionInterceptor>emptyList());
+  }
+
+  @Test
+  public void testStatementsOfOneConnectionAreExecutedInOrder() throws Exception {
+    StatementExecutorPool pool = new StatementExecutorPool(4);
+    StatementExecutor executor = createExecutor(pool);
+    final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+    List<ListenableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final int index = i;
+      futures.add(
+          executor.submit(
+              new Callable<Void>() {
+                @Override
+                public Void call() {
+                  executed.add(index);
+                  return null;
+                }
+              }));
+    }
+    futures.get(futures.size() - 1).get(10L, TimeUnit.SECONDS);
+    assertThat(executed).hasSize(100);
+    assertThat(executed).isInOrder();
+    assertThat(pool.getPoolSize()).isAtMost(4);
+    assertThat(pool.getExecutedStatements()).isEqualTo(100L);
+  }
+
+  @Test
+  public void testPoolIsBounded() throws Exception {
+    StatementExecutorPool pool = new StatementExecutorPool(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch started = new CountDownLatch(2);
+    List<ListenableFuture<Boolean>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(
+          createExecutor(pool)
+              .submit(
+                  new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                      started.countDown();
+                      return release.await(10L, TimeUnit.SECONDS);
+                    }
+                  }));
+    }
+    assertThat(started.await(10L, TimeUnit.SECONDS)).isTrue();
+    // Five connections share two threads, so three statements must wait.
+    assertThat(pool.getPoolSize()).isEqualTo(2);
+    assertThat(pool.getQueuedStatements()).isEqualTo(3L);
+
+    Thread.sleep(5L);
+    release.countDown();
+    for (ListenableFuture<Boolean> future : futures) {
+      assertThat(future.get(10L, TimeUnit.SECONDS)).isTrue();
+    }
+    assertThat(pool.getQueuedStatements()).isEqualTo(0L);
+    assertThat(pool.getExecutedStatements()).isEqualTo(5L);
+    assertThat(pool.getQueueTime(TimeUnit.MILLISECONDS)).isAtLeast(5L);
+  }
+
+  @Test
+  public void testRecreateDoesNotWaitForBlockedStatement() throws Exception {
+    StatementExecutorPool pool = new StatementExecutorPool(2);
+    StatementExecutor executor = createExecutor(pool);
+    final CountDownLatch release = new CountDownLatch(1);
+    ListenableFuture<Boolean> blocked =
+        executor.submit(
+            new Callable<Boolean>() {
+              @Override
+              public Boolean call() throws InterruptedException {
+                // Ignore interrupts to simulate a statement that cannot be cancelled.
+                while (true) {
+                  try {
+                    return release.await(10L, TimeUnit.SECONDS);
+                  } catch (InterruptedException e) {
+                    // ignore
+                  }
+                }
+              }
+            });
+    executor.recreate();
+    ListenableFuture<Integer> next =
+        executor.submit(
+            new Callable<Integer>() {
+              @Override
+              public Integer call() {
+                return 1;
+              }
+            });
+    assertThat(next.get(10L, TimeUnit.SECONDS)).isEqualTo(1);
+    assertThat(blocked.isDone()).isFalse();
+    release.countDown();
+    assertThat(blocked.get(10L, TimeUnit.SECONDS)).isTrue();
+  }
+
+  /** Submits a statement that ignores interrupts and only returns when it is released. */
+  private static ListenableFuture<Boolean> submitBlockedStatement(
+      StatementExecutor executor, final CountDownLatch started, final CountDownLatch release) {
+    return executor.submit(
+        new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            started.countDown();
+            while (true) {
+              try {
+                return release.await(10L, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                // ignore
+              }
+            }
+          }
+        });
+  }
+
+  private static ListenableFuture<Integer> submitStatement(StatementExecutor executor) {
+    return executor.submit(
+        new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            return 1;
+          }
+        });
+  }
+
+  @Test
+  public void testAbandonedStatementIsReplacedByOverflowThread() throws Exception {
+    StatementExecutorPool pool = new StatementExecutorPool(1);
+    StatementExecutor blockedConnection = createExecutor(pool);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ListenableFuture<Boolean> blocked = submitBlockedStatement(blockedConnection, started, release);
+    assertThat(started.await(10L, TimeUnit.SECONDS)).isTrue();
+
+    // The blocked statement holds the only thread of the pool, so the statements of all other
+    // connections must wait.
+    ListenableFuture<Integer> otherConnection = submitStatement(createExecutor(pool));
+    Thread.sleep(50L);
+    assertThat(otherConnection.isDone()).isFalse();
+    assertThat(pool.getQueuedStatements()).isEqualTo(1L);
+
+    // Abandoning the blocked statement starts an overflow thread for the waiting statement.
+    blockedConnection.recreate();
+    assertThat(pool.getOverflowThreads()).isEqualTo(1);
+    assertThat(otherConnection.get(10L, TimeUnit.SECONDS)).isEqualTo(1);
+    assertThat(submitStatement(blockedConnection).get(10L, TimeUnit.SECONDS)).isEqualTo(1);
+
+    // The overflow thread is stopped when the abandoned statement returns.
+    release.countDown();
+    assertThat(blocked.get(10L, TimeUnit.SECONDS)).isTrue();
+    assertThat(pool.getOverflowThreads()).isEqualTo(0);
+  }
+
+  @Test
+  public void testOverflowThreadsAreBounded() throws Exception {
+    StatementExecutorPool pool = new StatementExecutorPool(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<ListenableFuture<Boolean>> blocked = new ArrayList<>();
+    // Each connection blocks a thread and abandons its statement. Only the first abandoned
+    // statement can be replaced, as the pool may not use more than twice its maximum size.
+    for (int i = 0; i < 2; i++) {
+      StatementExecutor executor = createExecutor(pool);
+      CountDownLatch started = new CountDownLatch(1);
+      blocked.add(submitBlockedStatement(executor, started, release));
+      assertThat(started.await(10L, TimeUnit.SECONDS)).isTrue();
+      executor.recreate();
+    }
+    assertThat(pool.getOverflowThreads()).isEqualTo(1);
+    assertThat(pool.getPoolSize()).isEqualTo(2);
+
+    ListenableFuture<Integer> waiting = submitStatement(createExecutor(pool));
+    Thread.sleep(50L);
+    assertThat(waiting.isDone()).isFalse();
+
+    release.countDown();
+    assertThat(waiting.get(10L, TimeUnit.SECONDS)).isEqualTo(1);
+    for (ListenableFuture<Boolean> future : blocked) {
+      assertThat(future.get(10L, TimeUnit.SECONDS)).isTrue();
+    }
+    assertThat(pool.getOverflowThreads()).isEqualTo(0);
+  }
+
+  @Test
+  public void testShutdownNow() throws Exception {
+    StatementExecutorPool pool = new StatementExecutorPool(1);
+    StatementExecutor executor = createExecutor(pool);
+    final CountDownLatch started = new CountDownLatch(1);
+    ListenableFuture<Void> running =
+        executor.submit(
+            new Callable<Void>() {
+              @Override
+              public Void call() throws InterruptedException {
+                started.countDown();
+                Thread.sleep(10000L);
+                return null;
+              }
+            });
+    ListenableFuture<Void> queued =
+        executor.submit(
+            new Callable<Void>() {
+              @Override
+              public Void call() {
+                return null;
+              }
+            });
+    assertThat(started.await(10L, TimeUnit.SECONDS)).isTrue();
+    executor.shutdownNow();
+    assertThat(running.isCancelled()).isTrue();
+    assertThat(queued.isCancelled()).isTrue();
+    try {
+      queued.get();
+      fail("missing expected exception");
+    } catch (CancellationException e) {
+      // ignore, this is the expected exception.
+    }
+    try {
+      executor.submit(
+          new Callable<Void>() {
+            @Override
+            public Void call() {
+              return null;
+            }
+          });
+      fail("missing expected exception");
+    } catch (RejectedExecutionException e) {
+      // ignore, this is the expected exception.
+    }
+  }
+}
@@ -27,6 +27,7 @@ import static org.junit.Assert.assertTrue;
 import com.google.cloud.spanner.Statement;
 import com.google.cloud.spanner.connection.ClientSideStatementImpl.CompileException;
 import com.google.cloud.spanner.connection.StatementParser.ParsedStatement;
+import com.google.spanner.v1.ExecuteSqlRequest.QueryOptions;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
@@ -555,6 +556,42 @@ public class StatementParserTest {
     }
   }
 
+  @Test
+  public void testParsedStatementsAreCached() {
+    StatementParser parser = new StatementParser(StatementParser.MAX_CACHE_WEIGHT);
+    String sql = "/* comment */ SELECT * FROM FOO WHERE ID=@id";
+    ParsedStatement first = parser.parse(Statement.newBuilder(sql).bind("id").to(1L).build(), null);
+    QueryOptions options = QueryOptions.newBuilder().setOptimizerVersion("1").build();
+    ParsedStatement second =
+        parser.parse(Statement.newBuilder(sql).bind("id").to(2L).build(), options);
+    assertThat(parser.getCache().stats().hitCount(), is(equalTo(1L)));
+    assertTrue(first.isQuery());
+    assertTrue(second.isQuery());
+    assertThat(second.getSqlWithoutComments(), is(equalTo("SELECT * FROM FOO WHERE ID=@id")));
+    // The cached classification is bound to the parameters and options of each statement.
+    assertThat(
+        second.getStatement(),
+        is(equalTo(Statement.newBuilder(sql).bind("id").to(2L).withQueryOptions(options).build())));
+    assertThat(first.getStatement().getQueryOptions(), is(nullValue()));
+
+    ParsedStatement commit = parser.parse(Statement.of("commit"));
+    assertThat(parser.parse(Statement.of("commit")), is(equalTo(commit)));
+    assertThat(
+        commit.getClientSideStatement(),
+        is(equalTo(parser.parse(Statement.of("COMMIT")).getClientSideStatement())));
+    assertThat(parser.getCache().stats().hitCount(), is(equalTo(2L)));
+  }
+
+  @Test
+  public void testStatementCacheIsBounded() {
+    StatementParser parser = new StatementParser(1000L);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(parser.parse(Statement.of("UPDATE FOO SET BAR=" + i + " WHERE TRUE")).isUpdate());
+    }
+    // Each entry weighs more than 50, so the cache can contain less than 20 entries.
+    assertThat(parser.getCache().size() < 20L, is(true));
+  }
+
   private Set<ClientSideStatementImpl> getAllStatements() throws CompileException {
     return ClientSideStatements.INSTANCE.getCompiledStatements();
   }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.spi.v1;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.spanner.spi.v1.ChannelLoadTracker.Call;
+import com.google.common.base.Ticker;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ChannelLoadTrackerTest {
+  private static final class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long millis) {
+      nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+  }
+
+  @Test
+  public void testChannelForAffinity() {
+    ChannelLoadTracker tracker = new ChannelLoadTracker(4);
+    assertThat(tracker.channelForAffinity(0)).isEqualTo(0);
+    assertThat(tracker.channelForAffinity(6)).isEqualTo(2);
+    assertThat(tracker.channelForAffinity(-7)).isEqualTo(3);
+    assertThat(tracker.channelForAffinity(Integer.MIN_VALUE)).isEqualTo(0);
+  }
+
+  @Test
+  public void testSelectLeastLoadedSpreadsIdleChannels() {
+    ChannelLoadTracker tracker = new ChannelLoadTracker(4);
+    Set<Integer> selected = new HashSet<>();
+    for (int i = 0; i < 4; i++) {
+      selected.add(tracker.selectLeastLoaded());
+    }
+    assertThat(selected).containsExactly(0, 1, 2, 3);
+  }
+
+  @Test
+  public void testSelectLeastLoadedAvoidsBusyChannels() {
+    ChannelLoadTracker tracker = new ChannelLoadTracker(3);
+    tracker.start(0);
+    tracker.start(0);
+    tracker.start(1);
+    for (int i = 0; i < 6; i++) {
+      assertThat(tracker.selectLeastLoaded()).isEqualTo(2);
+    }
+    assertThat(tracker.getInFlight(0)).isEqualTo(2);
+  }
+
+  @Test
+  public void testSelectLeastLoadedAvoidsSlowChannels() {
+    FakeTicker ticker = new FakeTicker();
+    ChannelLoadTracker tracker = new ChannelLoadTracker(2, 2, Integer.MAX_VALUE, ticker);
+    Call slow = tracker.start(0);
+    Call fast = tracker.start(1);
+    ticker.advance(1L);
+    fast.finish();
+    ticker.advance(99L);
+    slow.finish();
+    assertThat(tracker.getLatencyMicros(0)).isEqualTo(100000L);
+    assertThat(tracker.getLatencyMicros(1)).isEqualTo(1000L);
+    for (int i = 0; i < 4; i++) {
+      assertThat(tracker.selectLeastLoaded()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testFinishIsIdempotent() {
+    ChannelLoadTracker tracker = new ChannelLoadTracker(1);
+    Call call = tracker.start(0);
+    assertThat(tracker.getInFlight(0)).isEqualTo(1);
+    call.finish();
+    call.finish();
+    assertThat(tracker.getInFlight(0)).isEqualTo(0);
+  }
+
+  @Test
+  public void testTrackFuture() {
+    ChannelLoadTracker tracker = new ChannelLoadTracker(2);
+    SettableApiFuture<Void> future = SettableApiFuture.create();
+    tracker.track(1, future);
+    assertThat(tracker.getInFlight(1)).isEqualTo(1);
+    future.setException(new IllegalStateException());
+    assertThat(tracker.getInFlight(1)).isEqualTo(0);
+  }
+
+  @Test
+  public void testScaleUpAndDown() {
+    FakeTicker ticker = new FakeTicker();
+    ChannelLoadTracker tracker = new ChannelLoadTracker(1, 3, 2, ticker);
+    assertThat(tracker.getNumChannels()).isEqualTo(3);
+    assertThat(tracker.getActiveChannels()).isEqualTo(1);
+    List<Call> calls = new ArrayList<>();
+    calls.add(tracker.start(0));
+    calls.add(tracker.start(0));
+    assertThat(tracker.getActiveChannels()).isEqualTo(1);
+    // A third call exceeds the threshold of 2 calls per channel.
+    calls.add(tracker.start(0));
+    assertThat(tracker.getActiveChannels()).isEqualTo(2);
+    assertThat(tracker.channelForAffinity(5)).isEqualTo(1);
+    for (int i = 0; i < 10; i++) {
+      calls.add(tracker.start(tracker.selectLeastLoaded()));
+    }
+    assertThat(tracker.getActiveChannels()).isEqualTo(3);
+    for (Call call : calls) {
+      call.finish();
+    }
+
+    // The number of channels is only decreased after the load has been low for a while.
+    tracker.start(0).finish();
+    assertThat(tracker.getActiveChannels()).isEqualTo(3);
+    ticker.advance(TimeUnit.NANOSECONDS.toMillis(ChannelLoadTracker.SCALE_DOWN_DELAY_NANOS));
+    tracker.start(0).finish();
+    assertThat(tracker.getActiveChannels()).isEqualTo(2);
+    tracker.start(0).finish();
+    assertThat(tracker.getActiveChannels()).isEqualTo(2);
+    ticker.advance(TimeUnit.NANOSECONDS.toMillis(ChannelLoadTracker.SCALE_DOWN_DELAY_NANOS));
+    tracker.start(0).finish();
+    assertThat(tracker.getActiveChannels()).isEqualTo(1);
+    // The minimum number of channels is always kept.
+    ticker.advance(TimeUnit.NANOSECONDS.toMillis(ChannelLoadTracker.SCALE_DOWN_DELAY_NANOS));
+    tracker.start(0).finish();
+    assertThat(tracker.getActiveChannels()).isEqualTo(1);
+    assertThat(tracker.channelForAffinity(5)).isEqualTo(0);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.spi.v1;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.spanner.CompressionPolicy;
+import com.google.cloud.spanner.spi.v1.CompressionInterceptor.CompressionMetrics;
+import com.google.protobuf.ByteString;
+import com.google.spanner.v1.BeginTransactionRequest;
+import com.google.spanner.v1.CommitRequest;
+import com.google.spanner.v1.CommitResponse;
+import com.google.spanner.v1.SpannerGrpc;
+import com.google.spanner.v1.Transaction;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+@RunWith(JUnit4.class)
+public class CompressionInterceptorTest {
+  private static final CommitRequest SMALL_COMMIT =
+      CommitRequest.newBuilder()
+          .setSession("s")
+          .setTransactionId(ByteString.copyFromUtf8("t"))
+          .build();
+  private static final CommitRequest LARGE_COMMIT =
+      CommitRequest.newBuilder()
+          .setSession("s")
+          .setTransactionId(ByteString.copyFrom(new byte[2048]))
+          .build();
+
+  private CompressionMetrics metrics;
+  private CompressionInterceptor interceptor;
+  private Channel channel;
+  private ClientCall<Object, Object> delegate;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    MetricRegistry registry = mock(MetricRegistry.class);
+    when(registry.addDerivedLongCumulative(anyString(), any(MetricOptions.class)))
+        .thenReturn(mock(DerivedLongCumulative.class));
+    metrics = new CompressionMetrics(registry, "1.0.0");
+    interceptor =
+        new CompressionInterceptor(
+            CompressionPolicy.newBuilder().setMinMessageSize(1024).setMethods("Commit").build(),
+            metrics);
+    channel = mock(Channel.class);
+    delegate = mock(ClientCall.class);
+    when(channel.newCall(any(MethodDescriptor.class), any(CallOptions.class))).thenReturn(delegate);
+  }
+
+  @Test
+  public void testMethodNotInPolicy() {
+    MethodDescriptor<BeginTransactionRequest, Transaction> method =
+        SpannerGrpc.getBeginTransactionMethod();
+    interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+    verify(channel).newCall(method, CallOptions.DEFAULT);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCompressLargeMessages() {
+    MethodDescriptor<CommitRequest, CommitResponse> method = SpannerGrpc.getCommitMethod();
+    ClientCall<CommitRequest, CommitResponse> call =
+        interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+    ArgumentCaptor<CallOptions> options = ArgumentCaptor.forClass(CallOptions.class);
+    verify(channel).newCall(any(MethodDescriptor.class), options.capture());
+    assertThat(options.getValue().getCompressor()).isEqualTo("gzip");
+
+    call.start(mock(ClientCall.Listener.class), new Metadata());
+    call.sendMessage(LARGE_COMMIT);
+    verify(delegate).setMessageCompression(true);
+
+    // The sizes of the message are reported by the transport through the stream tracer.
+    ClientStreamTracer tracer =
+        options
+            .getValue()
+            .getStreamTracerFactories()
+            .get(0)
+            .newClientStreamTracer(
+                ClientStreamTracer.StreamInfo.newBuilder().build(), new Metadata());
+    tracer.outboundMessageSent(0, 100L, LARGE_COMMIT.getSerializedSize());
+
+    assertThat(metrics.getValue(CompressionInterceptor.NUM_COMPRESSED_REQUESTS, "Commit"))
+        .isEqualTo(1L);
+    assertThat(metrics.getValue(CompressionInterceptor.NUM_UNCOMPRESSED_REQUESTS, "Commit"))
+        .isEqualTo(0L);
+    assertThat(metrics.getValue(CompressionInterceptor.COMPRESSED_REQUEST_BYTES, "Commit"))
+        .isEqualTo(LARGE_COMMIT.getSerializedSize());
+    assertThat(metrics.getValue(CompressionInterceptor.COMPRESSED_REQUEST_WIRE_BYTES, "Commit"))
+        .isEqualTo(100L);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testDoNotCompressSmallMessages() {
+    MethodDescriptor<CommitRequest, CommitResponse> method = SpannerGrpc.getCommitMethod();
+    ClientCall<CommitRequest, CommitResponse> call =
+        interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+    ArgumentCaptor<CallOptions> options = ArgumentCaptor.forClass(CallOptions.class);
+    verify(channel).newCall(any(MethodDescriptor.class), options.capture());
+
+    call.start(mock(ClientCall.Listener.class), new Metadata());
+    call.sendMessage(SMALL_COMMIT);
+    verify(delegate).setMessageCompression(false);
+    verify(delegate, never()).setMessageCompression(true);
+
+    options
+        .getValue()
+        .getStreamTracerFactories()
+        .get(0)
+        .newClientStreamTracer(ClientStreamTracer.StreamInfo.newBuilder().build(), new Metadata())
+        .outboundMessageSent(0, SMALL_COMMIT.getSerializedSize(), SMALL_COMMIT.getSerializedSize());
+
+    assertThat(metrics.getValue(CompressionInterceptor.NUM_COMPRESSED_REQUESTS, "Commit"))
+        .isEqualTo(0L);
+    assertThat(metrics.getValue(CompressionInterceptor.NUM_UNCOMPRESSED_REQUESTS, "Commit"))
+        .isEqualTo(1L);
+    assertThat(metrics.getValue(CompressionInterceptor.COMPRESSED_REQUEST_BYTES, "Commit"))
+        .isEqualTo(0L);
+  }
+
+  @Test
+  public void testPolicy() {
+    CompressionPolicy policy = CompressionPolicy.newBuilder().build();
+    assertThat(policy.getCompressorName()).isEqualTo("gzip");
+    assertThat(policy.shouldCompress("Commit", 16 * 1024)).isTrue();
+    assertThat(policy.shouldCompress("Commit", 16 * 1024 - 1)).isFalse();
+    assertThat(policy.shouldCompress("ExecuteBatchDml", 1 << 20)).isTrue();
+    assertThat(policy.shouldCompress("ExecuteStreamingSql", 1 << 20)).isFalse();
+
+    CompressionPolicy all =
+        CompressionPolicy.newBuilder().setMethods().setMinMessageSize(0).build();
+    assertThat(all.shouldCompress("ExecuteStreamingSql", 0)).isTrue();
+  }
+}
@@ -22,6 +22,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import com.google.api.core.ApiFunction;
+import com.google.api.gax.core.FixedExecutorProvider;
 import com.google.auth.oauth2.AccessToken;
 import com.google.auth.oauth2.OAuth2Credentials;
 import com.google.cloud.spanner.DatabaseAdminClient;
@@ -45,7 +46,9 @@ import com.google.spanner.admin.database.v1.DatabaseName;
 import com.google.spanner.admin.instance.v1.Instance;
 import com.google.spanner.admin.instance.v1.InstanceConfigName;
 import com.google.spanner.admin.instance.v1.InstanceName;
+import com.google.spanner.v1.ExecuteSqlRequest;
 import com.google.spanner.v1.ResultSetMetadata;
+import com.google.spanner.v1.Session;
 import com.google.spanner.v1.StructType;
 import com.google.spanner.v1.StructType.Field;
 import com.google.spanner.v1.TypeCode;
@@ -64,9 +67,12 @@ import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import org.junit.After;
@@ -332,6 +338,102 @@ public class GapicSpannerRpcTest {
     rpc.shutdown();
   }
 
+  @Test
+  public void testLoadAwareChannelSelection() throws InterruptedException {
+    SpannerOptions options =
+        createSpannerOptions().toBuilder().setLoadAwareChannelSelection(true).build();
+    GapicSpannerRpc rpc = new GapicSpannerRpc(options);
+    try {
+      ChannelLoadTracker tracker = rpc.getChannelLoadTracker();
+      assertThat(tracker).isNotNull();
+      assertThat(tracker.getNumChannels()).isEqualTo(options.getNumChannels());
+      Session session =
+          rpc.createSession(
+              "projects/[PROJECT]/instances/[INSTANCE]/databases/[DATABASE]", null, optionsMap);
+      com.google.spanner.v1.ResultSet resultSet =
+          rpc.executeQuery(
+              ExecuteSqlRequest.newBuilder()
+                  .setSession(session.getName())
+                  .setSql(SELECT1AND2.getSql())
+                  .build(),
+              optionsMap);
+      assertThat(resultSet.getRowsCount()).isEqualTo(2);
+      // The call is marked as finished by a listener of the future, which may run after the
+      // future has returned its result.
+      Stopwatch watch = Stopwatch.createStarted();
+      while (totalInFlight(tracker) > 0 && watch.elapsed(TimeUnit.SECONDS) < 2) {
+        Thread.sleep(1L);
+      }
+      long totalLatency = 0L;
+      for (int channel = 0; channel < tracker.getNumChannels(); channel++) {
+        assertThat(tracker.getInFlight(channel)).isEqualTo(0);
+        totalLatency += tracker.getLatencyMicros(channel);
+      }
+      assertThat(totalLatency).isGreaterThan(0L);
+    } finally {
+      rpc.shutdown();
+    }
+  }
+
+  @Test
+  public void testDynamicChannelPool() {
+    SpannerOptions options =
+        createSpannerOptions().toBuilder().setNumChannels(2).setMaxNumChannels(6).build();
+    GapicSpannerRpc rpc = new GapicSpannerRpc(options);
+    try {
+      ChannelLoadTracker tracker = rpc.getChannelLoadTracker();
+      assertThat(tracker).isNotNull();
+      assertThat(tracker.getNumChannels()).isEqualTo(6);
+      assertThat(tracker.getActiveChannels()).isEqualTo(2);
+      // Channel hints are mapped to the active channels.
+      optionsMap.put(Option.CHANNEL_HINT, Long.valueOf(5L));
+      assertThat(rpc.newCallContext(optionsMap, "/some/resource").getChannelAffinity())
+          .isEqualTo(1);
+      // Calls without a channel hint are also only sent to the active channels.
+      for (int i = 0; i < 10; i++) {
+        assertThat(rpc.newCallContext(null, "/some/resource").getChannelAffinity())
+            .isIn(Arrays.asList(0, 1));
+      }
+    } finally {
+      rpc.shutdown();
+    }
+  }
+
+  @Test
+  public void testLoadAwareChannelSelectionDisabledByDefault() {
+    GapicSpannerRpc rpc = new GapicSpannerRpc(createSpannerOptions());
+    assertThat(rpc.getChannelLoadTracker()).isNull();
+    rpc.shutdown();
+  }
+
+  @Test
+  public void testCustomTransportExecutorIsNotClosed() throws InterruptedException {
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+    try {
+      SpannerOptions options =
+          createSpannerOptions()
+              .toBuilder()
+              .setTransportExecutorProvider(FixedExecutorProvider.create(executor))
+              .build();
+      // Multiple clients can share the same executor.
+      GapicSpannerRpc rpc1 = new GapicSpannerRpc(options);
+      GapicSpannerRpc rpc2 = new GapicSpannerRpc(options);
+      rpc1.shutdown();
+      rpc2.shutdown();
+      assertThat(executor.isShutdown()).isFalse();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static int totalInFlight(ChannelLoadTracker tracker) {
+    int total = 0;
+    for (int channel = 0; channel < tracker.getNumChannels(); channel++) {
+      total += tracker.getInFlight(channel);
+    }
+    return total;
+  }
+
   @SuppressWarnings("rawtypes")
   private SpannerOptions createSpannerOptions() {
     String endpoint = address.getHostString() + ":" + server.getPort();
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner.spi.v1;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.spanner.MockSpannerServiceImpl;
+import com.google.cloud.spanner.MockSpannerServiceImpl.StatementResult;
+import com.google.cloud.spanner.Statement;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ListValue;
+import com.google.spanner.v1.CreateSessionRequest;
+import com.google.spanner.v1.ExecuteSqlRequest;
+import com.google.spanner.v1.PartialResultSet;
+import com.google.spanner.v1.ResultSetMetadata;
+import com.google.spanner.v1.Session;
+import com.google.spanner.v1.SpannerGrpc;
+import com.google.spanner.v1.SpannerGrpc.SpannerBlockingStub;
+import com.google.spanner.v1.StructType;
+import com.google.spanner.v1.StructType.Field;
+import com.google.spanner.v1.TypeCode;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.MetadataUtils;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.MetricRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MetricsInterceptorTest {
+  private static final String DATABASE = "projects/p/instances/i/databases/d";
+  private static final Statement SELECT1 = Statement.of("SELECT 1 AS COL1");
+  private static final com.google.spanner.v1.ResultSet SELECT1_RESULTSET =
+      com.google.spanner.v1.ResultSet.newBuilder()
+          .addRows(
+              ListValue.newBuilder()
+                  .addValues(com.google.protobuf.Value.newBuilder().setStringValue("1").build())
+                  .build())
+          .setMetadata(
+              ResultSetMetadata.newBuilder()
+                  .setRowType(
+                      StructType.newBuilder()
+                          .addFields(
+                              Field.newBuilder()
+                                  .setName("COL1")
+                                  .setType(
+                                      com.google.spanner.v1.Type.newBuilder()
+                                          .setCode(TypeCode.INT64)
+                                          .build())
+                                  .build())
+                          .build())
+                  .build())
+          .build();
+
+  private static final class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      // Every call to the ticker takes 3 milliseconds.
+      nanos += TimeUnit.MILLISECONDS.toNanos(3L);
+      return nanos;
+    }
+  }
+
+  private MockSpannerServiceImpl mockSpanner;
+  private Server server;
+  private ManagedChannel channel;
+  private MetricsInterceptor interceptor;
+  private SpannerBlockingStub stub;
+
+  @Before
+  public void setUp() throws IOException {
+    mockSpanner = new MockSpannerServiceImpl();
+    mockSpanner.setAbortProbability(0.0D);
+    mockSpanner.putStatementResult(StatementResult.query(SELECT1, SELECT1_RESULTSET));
+    // The byte counts are reported by the transport, so the test uses a real network transport.
+    server =
+        NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+            .addService(mockSpanner)
+            .build()
+            .start();
+    channel =
+        ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+
+    MetricRegistry registry = mock(MetricRegistry.class);
+    when(registry.addDerivedLongCumulative(anyString(), any(MetricOptions.class)))
+        .thenReturn(mock(DerivedLongCumulative.class));
+    interceptor = new MetricsInterceptor(registry, "1.0.0", new FakeTicker());
+    Metadata headers = new Metadata();
+    headers.put(
+        Metadata.Key.of("google-cloud-resource-prefix", Metadata.ASCII_STRING_MARSHALLER),
+        DATABASE);
+    stub =
+        MetadataUtils.attachHeaders(
+            SpannerGrpc.newBlockingStub(ClientInterceptors.intercept(channel, interceptor)),
+            headers);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    channel.shutdownNow();
+    server.shutdownNow();
+    server.awaitTermination();
+  }
+
+  private static List<LabelValue> labels(String method, String... extra) {
+    ImmutableList.Builder<LabelValue> builder =
+        ImmutableList.<LabelValue>builder()
+            .add(LabelValue.create("d"))
+            .add(LabelValue.create("projects/p/instances/i"))
+            .add(LabelValue.create("1.0.0"))
+            .add(LabelValue.create(method));
+    for (String value : extra) {
+      builder.add(LabelValue.create(value));
+    }
+    return builder.build();
+  }
+
+  @Test
+  public void testUnaryCall() {
+    stub.createSession(CreateSessionRequest.newBuilder().setDatabase(DATABASE).build());
+
+    assertThat(interceptor.getValue(MetricsInterceptor.RPC_COUNT, labels("CreateSession", "OK")))
+        .isEqualTo(1L);
+    assertThat(interceptor.getValue(MetricsInterceptor.RPC_LATENCY, labels("CreateSession")))
+        .isEqualTo(3L);
+    assertThat(
+            interceptor.getValue(
+                MetricsInterceptor.RPC_LATENCY_BUCKETS, labels("CreateSession", "5")))
+        .isEqualTo(1L);
+    assertThat(interceptor.getValue(MetricsInterceptor.RPC_REQUEST_BYTES, labels("CreateSession")))
+        .isEqualTo(
+            CreateSessionRequest.newBuilder().setDatabase(DATABASE).build().getSerializedSize());
+    assertThat(interceptor.getValue(MetricsInterceptor.RPC_RESPONSE_BYTES, labels("CreateSession")))
+        .isGreaterThan(0L);
+  }
+
+  @Test
+  public void testStreamingCall() {
+    Session session =
+        stub.createSession(CreateSessionRequest.newBuilder().setDatabase(DATABASE).build());
+    Iterator<PartialResultSet> iterator =
+        stub.executeStreamingSql(
+            ExecuteSqlRequest.newBuilder()
+                .setSession(session.getName())
+                .setSql(SELECT1.getSql())
+                .build());
+    while (iterator.hasNext()) {
+      iterator.next();
+    }
+
+    assertThat(
+            interceptor.getValue(MetricsInterceptor.RPC_COUNT, labels("ExecuteStreamingSql", "OK")))
+        .isEqualTo(1L);
+    long firstResponses = 0L;
+    for (long bound : MetricsInterceptor.LATENCY_BUCKET_BOUNDS) {
+      firstResponses +=
+          interceptor.getValue(
+              MetricsInterceptor.RPC_FIRST_RESPONSE_LATENCY_BUCKETS,
+              labels("ExecuteStreamingSql", String.valueOf(bound)));
+    }
+    assertThat(firstResponses).isEqualTo(1L);
+    // Time to first response is not recorded for unary calls.
+    assertThat(
+            interceptor.getValue(
+                MetricsInterceptor.RPC_FIRST_RESPONSE_LATENCY_BUCKETS,
+                labels("CreateSession", "5")))
+        .isEqualTo(0L);
+    assertThat(
+            interceptor.getValue(
+                MetricsInterceptor.RPC_RESPONSE_BYTES, labels("ExecuteStreamingSql")))
+        .isGreaterThan(0L);
+    assertThat(
+            interceptor.getValue(
+                MetricsInterceptor.RPC_REQUEST_BYTES, labels("ExecuteStreamingSql")))
+        .isEqualTo(
+            ExecuteSqlRequest.newBuilder()
+                .setSession(session.getName())
+                .setSql(SELECT1.getSql())
+                .build()
+                .getSerializedSize());
+  }
+
+  @Test
+  public void testFailedCall() {
+    try {
+      stub.executeStreamingSql(
+              ExecuteSqlRequest.newBuilder()
+                  .setSession(DATABASE + "/sessions/unknown")
+                  .setSql(SELECT1.getSql())
+                  .build())
+          .next();
+      fail("missing expected exception");
+    } catch (StatusRuntimeException e) {
+      assertThat(
+              interceptor.getValue(
+                  MetricsInterceptor.RPC_COUNT,
+                  labels("ExecuteStreamingSql", e.getStatus().getCode().name())))
+          .isEqualTo(1L);
+    }
+  }
+
+  @Test
+  public void testBucketLabel() {
+    assertThat(MetricsInterceptor.bucketLabel(0L)).isEqualTo(LabelValue.create("1"));
+    assertThat(MetricsInterceptor.bucketLabel(7L)).isEqualTo(LabelValue.create("10"));
+    assertThat(MetricsInterceptor.bucketLabel(10000L)).isEqualTo(LabelValue.create("10000"));
+    assertThat(MetricsInterceptor.bucketLabel(10001L)).isEqualTo(LabelValue.create("+Inf"));
+  }
+}